@@ -11,6 +11,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.beust.jcommander.JCommander;
@@ -18,27 +19,32 @@ import net.seninp.gi.GIAlgorithm;
 import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.GrammarRules;
 import net.seninp.gi.logic.RuleInterval;
-import net.seninp.gi.repair.RePairFactory;
-import net.seninp.gi.repair.RePairGrammar;
 import net.seninp.gi.rulepruner.ReducedGrammarSizeSorter;
 import net.seninp.gi.rulepruner.ReductionSorter;
-import net.seninp.gi.rulepruner.RulePruner;
 import net.seninp.gi.rulepruner.RulePrunerFactory;
 import net.seninp.gi.rulepruner.SampledPoint;
-import net.seninp.gi.sequitur.SequiturFactory;
 import net.seninp.grammarviz.anomaly.AnomalyAlgorithm;
+import net.seninp.grammarviz.anomaly.BruteForceImplementation;
+import net.seninp.grammarviz.anomaly.DistanceKernels;
+import net.seninp.grammarviz.anomaly.MASSDistanceProfile;
+import net.seninp.grammarviz.anomaly.MatrixProfile;
+import net.seninp.grammarviz.anomaly.MatrixProfileImplementation;
+import net.seninp.grammarviz.anomaly.ParallelHOTSAXImplementation;
+import net.seninp.grammarviz.anomaly.RRAExactVerification;
 import net.seninp.grammarviz.anomaly.RRAImplementation;
 import net.seninp.grammarviz.anomaly.RRAIntervalBuilder;
-import net.seninp.jmotif.distance.EuclideanDistance;
+import net.seninp.grammarviz.anomaly.RRARunStats;
+import net.seninp.grammarviz.anomaly.RRASearchOptions;
+import net.seninp.grammarviz.anomaly.RRASearchResult;
+import net.seninp.grammarviz.anomaly.ReducedIntervalCache;
+import net.seninp.grammarviz.anomaly.SAXWordVisitOrder;
+import net.seninp.grammarviz.anomaly.VisitOrder;
+import net.seninp.grammarviz.logic.GrammarSampler;
+import net.seninp.grammarviz.logic.TokenGrammarFactory;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 import net.seninp.jmotif.sax.SAXProcessor;
 import net.seninp.jmotif.sax.TSProcessor;
-import net.seninp.jmotif.sax.datastructure.SAXRecords;
-import net.seninp.jmotif.sax.discord.BruteForceDiscordImplementation;
 import net.seninp.jmotif.sax.discord.DiscordRecords;
-import net.seninp.jmotif.sax.discord.HOTSAXImplementation;
-import net.seninp.jmotif.sax.parallel.ParallelSAXImplementation;
-import net.seninp.jmotif.sax.registry.LargeWindowAlgorithm;
 
 /**
  * Main executable wrapping all the discord discovery methods.
@@ -56,7 +62,6 @@ public class GrammarVizAnomaly {
   // workers
   //
   private static TSProcessor tp = new TSProcessor();
-  private static EuclideanDistance ed = new EuclideanDistance();
 
   // static block - we instantiate the logger
   //
@@ -101,7 +106,8 @@ public class GrammarVizAnomaly {
             .append(GrammarVizAnomalyParameters.SAX_WINDOW_SIZE).append(CR);
       }
 
-      if (!(AnomalyAlgorithm.BRUTEFORCE.equals(GrammarVizAnomalyParameters.ALGORITHM))) {
+      if (!(AnomalyAlgorithm.BRUTEFORCE.equals(GrammarVizAnomalyParameters.ALGORITHM)
+          || AnomalyAlgorithm.MATRIXPROFILE.equals(GrammarVizAnomalyParameters.ALGORITHM))) {
         if (!(AnomalyAlgorithm.RRASAMPLED.equals(GrammarVizAnomalyParameters.ALGORITHM)
             || AnomalyAlgorithm.EXPERIMENT.equals(GrammarVizAnomalyParameters.ALGORITHM))) {
           sb.append(" SAX PAA size:                ")
@@ -121,6 +127,57 @@ public class GrammarVizAnomaly {
           || AnomalyAlgorithm.EXPERIMENT.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
         sb.append(" GI Algorithm:                ")
             .append(GrammarVizAnomalyParameters.GI_ALGORITHM_IMPLEMENTATION).append(CR);
+        sb.append(" RRA search threads:          ")
+            .append(GrammarVizAnomalyParameters.THREADS_NUM).append(CR);
+        sb.append(" RRA PAA cache budget, MB:    ")
+            .append(GrammarVizAnomalyParameters.PAA_CACHE_MB).append(CR);
+        sb.append(" RRA pair memo budget, MB:    ")
+            .append(GrammarVizAnomalyParameters.PAIR_MEMO_MB).append(CR);
+        sb.append(" RRA single-pass top-k:       ")
+            .append(GrammarVizAnomalyParameters.TOPK_MODE).append(CR);
+        sb.append(" RRA MINDIST pruning:         ")
+            .append(GrammarVizAnomalyParameters.MINDIST_PRUNING).append(CR);
+        sb.append(" RRA neighbor visit order:    ")
+            .append(GrammarVizAnomalyParameters.VISIT_ORDER).append(CR);
+        sb.append(" RRA exact NN verification:   ")
+            .append(GrammarVizAnomalyParameters.EXACT_NN).append(CR);
+        sb.append(" RRA run stats format:        ")
+            .append(GrammarVizAnomalyParameters.RUN_STATS).append(CR);
+        sb.append(" RRA distance kernel:         ")
+            .append(DistanceKernels.getSelectedName()).append(CR);
+        sb.append(" Distances export threads:    ")
+            .append(GrammarVizAnomalyParameters.EXPORT_THREADS_NUM).append(CR);
+        if (GrammarVizAnomalyParameters.TIME_BUDGET_MS > 0) {
+          sb.append(" RRA time budget, ms:         ")
+              .append(GrammarVizAnomalyParameters.TIME_BUDGET_MS).append(CR);
+        }
+        if (GrammarVizAnomalyParameters.DISTANCE_BUDGET > 0) {
+          sb.append(" RRA distance calls budget:   ")
+              .append(GrammarVizAnomalyParameters.DISTANCE_BUDGET).append(CR);
+        }
+      }
+
+      if (AnomalyAlgorithm.BRUTEFORCE.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
+        sb.append(" Brute-force search threads:  ")
+            .append(GrammarVizAnomalyParameters.THREADS_NUM).append(CR);
+      }
+
+      if (AnomalyAlgorithm.HOTSAX.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
+        sb.append(" HOTSAX search threads:       ")
+            .append(GrammarVizAnomalyParameters.THREADS_NUM).append(CR);
+      }
+
+      if (AnomalyAlgorithm.MATRIXPROFILE.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
+        sb.append(" SAX normalization threshold: ")
+            .append(GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD).append(CR);
+        sb.append(" Matrix profile threads:      ")
+            .append(GrammarVizAnomalyParameters.THREADS_NUM).append(CR);
+        sb.append(" SCRIMP++ diagonals fraction: ")
+            .append(GrammarVizAnomalyParameters.MP_FRACTION).append(CR);
+        if (GrammarVizAnomalyParameters.TIME_BUDGET_MS > 0) {
+          sb.append(" SCRIMP++ time budget, ms:    ")
+              .append(GrammarVizAnomalyParameters.TIME_BUDGET_MS).append(CR);
+        }
       }
 
       if (AnomalyAlgorithm.RRASAMPLED.equals(GrammarVizAnomalyParameters.ALGORITHM)
@@ -151,6 +208,11 @@ public class GrammarVizAnomaly {
             GrammarVizAnomalyParameters.DISCORDS_NUM,
             GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD);
       }
+      else if (AnomalyAlgorithm.MATRIXPROFILE.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
+        findMatrixProfile(series, GrammarVizAnomalyParameters.SAX_WINDOW_SIZE,
+            GrammarVizAnomalyParameters.DISCORDS_NUM, GrammarVizAnomalyParameters.OUT_FILE,
+            GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD);
+      }
       else if (AnomalyAlgorithm.HOTSAX.equals(GrammarVizAnomalyParameters.ALGORITHM)) {
         findHotSax(series, GrammarVizAnomalyParameters.DISCORDS_NUM,
             GrammarVizAnomalyParameters.SAX_WINDOW_SIZE, GrammarVizAnomalyParameters.SAX_PAA_SIZE,
@@ -200,10 +262,10 @@ public class GrammarVizAnomaly {
     ArrayList<SampledPoint> res = new ArrayList<SampledPoint>();
 
     // we need to use this in the loop
-    RulePruner rp;
+    GrammarSampler sampler;
     if (GrammarVizAnomalyParameters.SUBSAMPLING_FRACTION.isNaN()) {
       LOGGER.info("sampling on full time series length");
-      rp = new RulePruner(ts);
+      sampler = new GrammarSampler(ts);
     }
     else {
       int sampleIntervalStart = 0;
@@ -211,11 +273,12 @@ public class GrammarVizAnomaly {
           .round(ts.length * GrammarVizAnomalyParameters.SUBSAMPLING_FRACTION);
       LOGGER.info("sampling parameters on interval [" + sampleIntervalStart + ", "
           + sampleIntervalEnd + "]");
-      rp = new RulePruner(Arrays.copyOfRange(ts, sampleIntervalStart, sampleIntervalEnd));
+      sampler = new GrammarSampler(Arrays.copyOfRange(ts, sampleIntervalStart, sampleIntervalEnd));
     }
 
-    // iterate over the grid evaluating the grammar
+    // iterate over the grid collecting the points, they are sampled concurrently
     //
+    ArrayList<int[]> points = new ArrayList<int[]>();
     for (int WINDOW_SIZE = bounds[0]; WINDOW_SIZE < bounds[1]; WINDOW_SIZE += bounds[2]) {
       for (int PAA_SIZE = bounds[3]; PAA_SIZE < bounds[4]; PAA_SIZE += bounds[5]) {
         // check for invalid cases
@@ -223,10 +286,7 @@ public class GrammarVizAnomaly {
           continue;
         }
         for (int ALPHABET_SIZE = bounds[6]; ALPHABET_SIZE < bounds[7]; ALPHABET_SIZE += bounds[8]) {
-          SampledPoint p = rp.sample(WINDOW_SIZE, PAA_SIZE, ALPHABET_SIZE, GIAlgorithm.REPAIR,
-              GrammarVizAnomalyParameters.SAX_NR_STRATEGY,
-              GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD);
-          res.add(p);
+          points.add(new int[] { WINDOW_SIZE, PAA_SIZE, ALPHABET_SIZE });
           ///
           ///
           ///
@@ -287,10 +347,6 @@ public class GrammarVizAnomaly {
           //
           // if (discords.getSize() > 0) {
           // // if the discord(s) found
-          LOGGER.info("# " + WINDOW_SIZE + "," + PAA_SIZE + "," + ALPHABET_SIZE + ","
-              + p.getApproxDist() + "," + p.getGrammarSize() + "," + p.getCompressedGrammarSize()
-              + "," + p.getGrammarRules() + "," + p.getPrunedRules() + "," + p.getCoverage() + ","
-              + p.getMaxFrequency());
           // }
           // else {
           // // no discords were discovered
@@ -304,6 +360,15 @@ public class GrammarVizAnomaly {
         }
       }
     }
+    sampler.sample(points, GIAlgorithm.REPAIR, GrammarVizAnomalyParameters.SAX_NR_STRATEGY,
+        GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD, GrammarVizAnomalyParameters.THREADS_NUM,
+        res);
+    for (SampledPoint p : res) {
+      LOGGER.info("# " + p.getWindow() + "," + p.getPAA() + "," + p.getAlphabet() + ","
+          + p.getApproxDist() + "," + p.getGrammarSize() + "," + p.getCompressedGrammarSize() + ","
+          + p.getGrammarRules() + "," + p.getPrunedRules() + "," + p.getCoverage() + ","
+          + p.getMaxFrequency());
+    }
 
     // Collections.sort(res, new ReductionSorter());
     Collections.sort(res, new GrammarSizeSorter());
@@ -395,10 +460,10 @@ public class GrammarVizAnomaly {
     ArrayList<SampledPoint> res = new ArrayList<SampledPoint>();
 
     // we need to use this in the loop
-    RulePruner rp;
+    GrammarSampler sampler;
     if (GrammarVizAnomalyParameters.SUBSAMPLING_FRACTION.isNaN()) {
       LOGGER.info("sampling on full time series length");
-      rp = new RulePruner(ts);
+      sampler = new GrammarSampler(ts);
     }
     else {
       int sampleIntervalStart = 0;
@@ -406,11 +471,12 @@ public class GrammarVizAnomaly {
           .round(ts.length * GrammarVizAnomalyParameters.SUBSAMPLING_FRACTION);
       LOGGER.info("sampling parameters on interval [" + sampleIntervalStart + ", "
           + sampleIntervalEnd + "]");
-      rp = new RulePruner(Arrays.copyOfRange(ts, sampleIntervalStart, sampleIntervalEnd));
+      sampler = new GrammarSampler(Arrays.copyOfRange(ts, sampleIntervalStart, sampleIntervalEnd));
     }
 
-    // iterate over the grid evaluating the grammar
+    // iterate over the grid collecting the points, they are sampled concurrently
     //
+    ArrayList<int[]> points = new ArrayList<int[]>();
     for (int WINDOW_SIZE = bounds[0]; WINDOW_SIZE < bounds[1]; WINDOW_SIZE += bounds[2]) {
       for (int PAA_SIZE = bounds[3]; PAA_SIZE < bounds[4]; PAA_SIZE += bounds[5]) {
         // check for invalid cases
@@ -418,13 +484,13 @@ public class GrammarVizAnomaly {
           continue;
         }
         for (int ALPHABET_SIZE = bounds[6]; ALPHABET_SIZE < bounds[7]; ALPHABET_SIZE += bounds[8]) {
-          SampledPoint p = rp.sample(WINDOW_SIZE, PAA_SIZE, ALPHABET_SIZE, GIAlgorithm.REPAIR,
-              GrammarVizAnomalyParameters.SAX_NR_STRATEGY,
-              GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD);
-          res.add(p);
+          points.add(new int[] { WINDOW_SIZE, PAA_SIZE, ALPHABET_SIZE });
         }
       }
     }
+    sampler.sample(points, GIAlgorithm.REPAIR, GrammarVizAnomalyParameters.SAX_NR_STRATEGY,
+        GrammarVizAnomalyParameters.SAX_NORM_THRESHOLD, GrammarVizAnomalyParameters.THREADS_NUM,
+        res);
 
     Collections.sort(res, new ReductionSorter());
 
@@ -541,17 +607,12 @@ public class GrammarVizAnomaly {
     GrammarRules rules;
 
     if (GIAlgorithm.SEQUITUR.equals(giImplementation)) {
-      rules = SequiturFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
+      rules = TokenGrammarFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
           saxNRStrategy, normalizationThreshold);
     }
     else {
-      ParallelSAXImplementation ps = new ParallelSAXImplementation();
-      SAXRecords parallelRes = ps.process(ts, 2, windowSize, paaSize, alphabetSize, saxNRStrategy,
-          normalizationThreshold);
-      RePairGrammar rePairGrammar = RePairFactory.buildGrammar(parallelRes);
-      rePairGrammar.expandRules();
-      rePairGrammar.buildIntervals(parallelRes, ts, windowSize);
-      rules = rePairGrammar.toGrammarRulesData();
+      rules = TokenGrammarFactory.series2RePairRules(ts, windowSize, paaSize, alphabetSize,
+          saxNRStrategy, normalizationThreshold);
     }
     LOGGER.info(rules.size() + " rules inferred in "
         + SAXProcessor.timeToString(start.getTime(), new Date().getTime()) + ", pruning ...");
@@ -564,7 +625,7 @@ public class GrammarVizAnomaly {
             + ", keeping " + prunedRulesSet.size() + " rules for anomaly discovery ...");
 
     RRAIntervalBuilder.BuildResult built = RRAIntervalBuilder.buildFromGrammarRules(prunedRulesSet,
-        ts.length, paaSize);
+        ts.length, paaSize, GrammarVizAnomalyParameters.THREADS_NUM);
     ArrayList<RuleInterval> intervals = built.getIntervals();
     int[] coverageArray = built.getCoverageArray();
 
@@ -578,12 +639,21 @@ public class GrammarVizAnomaly {
     }
 
     // run RRA with this intervals set
-    DiscordRecords discords = RRAImplementation.series2RRAAnomalies(ts, discordsToReport, intervals,
-        normalizationThreshold);
+    ReducedIntervalCache cache = new ReducedIntervalCache(ts,
+        GrammarVizAnomalyParameters.PAA_CACHE_MB * 1024L * 1024L);
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(ts, discordsToReport,
+        intervals, normalizationThreshold, new Random(),
+        rraSearchOptions(cache, paaSize, alphabetSize));
+    DiscordRecords discords = verifyDiscords(ts, result.getDiscords(), normalizationThreshold);
+    LOGGER.info(cache.toString());
     Date end = new Date();
+    if (result.isPartial()) {
+      System.out.println("Partial result: " + result.toString());
+    }
 
     System.out.println(discords.toString() + CR + "Discords found in "
         + SAXProcessor.timeToString(start.getTime(), end.getTime()) + CR);
+    printRunStats(result);
 
     // THE DISCORD SEARCH IS DONE RIGHT HERE
     // BELOW IS THE CODE WHICH WRITES THE CURVE AND THE DISTANCE FILE ON FILESYSTEM
@@ -592,6 +662,7 @@ public class GrammarVizAnomaly {
 
       // write the coverage array
       //
+      Date stageStart = new Date();
       String currentPath = new File(".").getCanonicalPath();
       BufferedWriter bw = new BufferedWriter( // NOPMD - CloseResource; file frozen pending prior uncommitted fix
           new FileWriter(new File(currentPath + File.separator + outputPrefix + "_coverage.txt")));
@@ -599,6 +670,7 @@ public class GrammarVizAnomaly {
         bw.write(i + "\n");
       }
       bw.close();
+      stageStart = logStage("coverage written", stageStart);
 
       Collections.sort(intervals, new Comparator<RuleInterval>() {
         public int compare(RuleInterval c1, RuleInterval c2) {
@@ -611,37 +683,17 @@ public class GrammarVizAnomaly {
           return 0;
         }
       });
+      stageStart = logStage("intervals sorted", stageStart);
 
       // now lets find all the distances to non-self match
       //
       double[] distances = new double[ts.length];
       double[] widths = new double[ts.length];
 
-      for (RuleInterval ri : intervals) {
-
-        int ruleStart = ri.getStart();
-        int ruleEnd = ruleStart + ri.getLength();
-        int window = ruleEnd - ruleStart;
-
-        double[] cw = tp.subseriesByCopy(ts, ruleStart, ruleStart + window);
-
-        double cwNNDist = Double.MAX_VALUE;
-
-        // this effectively finds the furthest hit
-        //
-        for (int j = 0; j <= ts.length - window; j++) {
-          if (Math.abs(ruleStart - j) > window) {
-            double[] currentSubsequence = tp.subseriesByCopy(ts, j, j + window);
-            double dist = ed.distance(cw, currentSubsequence);
-            if (dist < cwNNDist) {
-              cwNNDist = dist;
-            }
-          }
-        }
-
-        distances[ruleStart] = cwNNDist;
-        widths[ruleStart] = ri.getLength();
-      }
+      nearestNeighborDistances(ts, intervals, distances, widths,
+          GrammarVizAnomalyParameters.EXPORT_THREADS_NUM);
+      stageStart = logStage(intervals.size() + " NN distances computed on "
+          + GrammarVizAnomalyParameters.EXPORT_THREADS_NUM + " threads", stageStart);
 
       bw = new BufferedWriter(
           new FileWriter(new File(currentPath + File.separator + outputPrefix + "_distances.txt")));
@@ -649,6 +701,7 @@ public class GrammarVizAnomaly {
         bw.write(i + "," + distances[i] + "," + widths[i] + "\n");
       }
       bw.close();
+      logStage("distances written", stageStart);
     }
   }
 
@@ -678,27 +731,22 @@ public class GrammarVizAnomaly {
     GrammarRules rules;
 
     if (GIAlgorithm.SEQUITUR.equals(giImplementation)) {
-      rules = SequiturFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
+      rules = TokenGrammarFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
           saxNRStrategy, normalizationThreshold);
       Date end = new Date();
       LOGGER.info(rules.size() + " Sequitur rules inferred in "
           + SAXProcessor.timeToString(start.getTime(), end.getTime()));
     }
     else {
-      ParallelSAXImplementation ps = new ParallelSAXImplementation();
-      SAXRecords parallelRes = ps.process(ts, 2, windowSize, paaSize, alphabetSize, saxNRStrategy,
-          normalizationThreshold);
-      RePairGrammar rePairGrammar = RePairFactory.buildGrammar(parallelRes);
-      rePairGrammar.expandRules();
-      rePairGrammar.buildIntervals(parallelRes, ts, windowSize);
-      rules = rePairGrammar.toGrammarRulesData();
+      rules = TokenGrammarFactory.series2RePairRules(ts, windowSize, paaSize, alphabetSize,
+          saxNRStrategy, normalizationThreshold);
       Date end = new Date();
       LOGGER.info(rules.size() + " RePair rules inferred in "
           + SAXProcessor.timeToString(start.getTime(), end.getTime()));
     }
 
     RRAIntervalBuilder.BuildResult built = RRAIntervalBuilder.buildFromGrammarRules(rules,
-        ts.length, paaSize);
+        ts.length, paaSize, GrammarVizAnomalyParameters.THREADS_NUM);
     ArrayList<RuleInterval> intervals = built.getIntervals();
     int[] coverageArray = built.getCoverageArray();
 
@@ -712,12 +760,21 @@ public class GrammarVizAnomaly {
     }
 
     // run RRA with this intervals set
-    DiscordRecords discords = RRAImplementation.series2RRAAnomalies(ts, discordsToReport, intervals,
-        normalizationThreshold);
+    ReducedIntervalCache cache = new ReducedIntervalCache(ts,
+        GrammarVizAnomalyParameters.PAA_CACHE_MB * 1024L * 1024L);
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(ts, discordsToReport,
+        intervals, normalizationThreshold, new Random(),
+        rraSearchOptions(cache, paaSize, alphabetSize));
+    DiscordRecords discords = verifyDiscords(ts, result.getDiscords(), normalizationThreshold);
+    LOGGER.info(cache.toString());
     Date end = new Date();
+    if (result.isPartial()) {
+      System.out.println("Partial result: " + result.toString());
+    }
 
     System.out.println(discords.toString() + CR + discords.getSize() + " discords found in "
         + SAXProcessor.timeToString(start.getTime(), end.getTime()) + CR);
+    printRunStats(result);
 
     // THE DISCORD SEARCH IS DONE RIGHT HERE
     // BELOW IS THE CODE WHICH WRITES THE CURVE AND THE DISTANCE FILE ON FILESYSTEM
@@ -726,6 +783,7 @@ public class GrammarVizAnomaly {
 
       // write the coverage array
       //
+      Date stageStart = new Date();
       String currentPath = new File(".").getCanonicalPath();
       BufferedWriter bw = new BufferedWriter( // NOPMD - CloseResource; file frozen pending prior uncommitted fix
           new FileWriter(new File(currentPath + File.separator + outputPrefix + "_coverage.txt")));
@@ -733,6 +791,7 @@ public class GrammarVizAnomaly {
         bw.write(i + "\n");
       }
       bw.close();
+      stageStart = logStage("coverage written", stageStart);
 
       Collections.sort(intervals, new Comparator<RuleInterval>() {
         public int compare(RuleInterval c1, RuleInterval c2) {
@@ -745,37 +804,17 @@ public class GrammarVizAnomaly {
           return 0;
         }
       });
+      stageStart = logStage("intervals sorted", stageStart);
 
       // now lets find all the distances to non-self match
       //
       double[] distances = new double[ts.length];
       double[] widths = new double[ts.length];
 
-      for (RuleInterval ri : intervals) {
-
-        int ruleStart = ri.getStart();
-        int ruleEnd = ruleStart + ri.getLength();
-        int window = ruleEnd - ruleStart;
-
-        double[] cw = tp.subseriesByCopy(ts, ruleStart, ruleStart + window);
-
-        double cwNNDist = Double.MAX_VALUE;
-
-        // this effectively finds the furthest hit
-        //
-        for (int j = 0; j <= ts.length - window; j++) {
-          if (Math.abs(ruleStart - j) > window) {
-            double[] currentSubsequence = tp.subseriesByCopy(ts, j, j + window);
-            double dist = ed.distance(cw, currentSubsequence);
-            if (dist < cwNNDist) {
-              cwNNDist = dist;
-            }
-          }
-        }
-
-        distances[ruleStart] = cwNNDist;
-        widths[ruleStart] = ri.getLength();
-      }
+      nearestNeighborDistances(ts, intervals, distances, widths,
+          GrammarVizAnomalyParameters.EXPORT_THREADS_NUM);
+      stageStart = logStage(intervals.size() + " NN distances computed on "
+          + GrammarVizAnomalyParameters.EXPORT_THREADS_NUM + " threads", stageStart);
 
       bw = new BufferedWriter(
           new FileWriter(new File(currentPath + File.separator + outputPrefix + "_distances.txt")));
@@ -783,9 +822,100 @@ public class GrammarVizAnomaly {
         bw.write(i + "," + distances[i] + "," + widths[i] + "\n");
       }
       bw.close();
+      logStage("distances written", stageStart);
+    }
+  }
+
+  /**
+   * Re-scores the RRA discords with their exact nearest neighbors if asked to.
+   *
+   * @param ts the dataset.
+   * @param discords the discords found by RRA.
+   * @param normalizationThreshold SAX normalization threshold.
+   * @return the verified discords, the found ones if the verification is off.
+   * @throws Exception if error occurs.
+   */
+  private static DiscordRecords verifyDiscords(double[] ts, DiscordRecords discords,
+      double normalizationThreshold) throws Exception {
+    if (!GrammarVizAnomalyParameters.EXACT_NN) {
+      return discords;
+    }
+    LOGGER.info("verifying the discords against their exact nearest neighbors...");
+    return RRAExactVerification.verify(ts, discords, normalizationThreshold,
+        GrammarVizAnomalyParameters.THREADS_NUM);
+  }
+
+  /**
+   * Prints the RRA run statistics in the requested machine-readable format: a single JSON line,
+   * or a CSV header followed by a row per discord iteration.
+   *
+   * @param result the search result.
+   */
+  private static void printRunStats(RRASearchResult result) {
+    RRARunStats stats = result.getRunStats();
+    if (null == stats) {
+      return;
+    }
+    switch (GrammarVizAnomalyParameters.RUN_STATS) {
+    case JSON:
+      System.out.println(stats.toJson());
+      break;
+    case CSV:
+      System.out.println(RRARunStats.CSV_HEADER);
+      for (String row : stats.toCsvRows()) {
+        System.out.println(row);
+      }
+      break;
+    default:
+      break;
     }
   }
 
+  /**
+   * Computes the distance from every rule interval to its nearest non-self match (the windows
+   * starting more than the interval length away) for the distances export. The FFT distance
+   * profile yields the very values of the brute-force scan with {@code ed.distance}; an interval
+   * overwrites the entries of the intervals which start at the same position and precede it.
+   * The intervals are shared out among the workers, each with its own window buffers, and the
+   * arrays are filled in afterwards on the calling thread.
+   *
+   * @param ts the timeseries.
+   * @param intervals the rule intervals, sorted by start.
+   * @param distances the distances by interval start, filled in.
+   * @param widths the interval lengths by start, filled in.
+   * @param threadsNum the number of worker threads.
+   * @throws Exception if error occurs.
+   */
+  private static void nearestNeighborDistances(double[] ts, List<RuleInterval> intervals,
+      double[] distances, double[] widths, int threadsNum) throws Exception {
+    int[] starts = new int[intervals.size()];
+    int[] lengths = new int[intervals.size()];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = intervals.get(i).getStart();
+      lengths[i] = intervals.get(i).getLength();
+    }
+    double[] nnDistances = new MASSDistanceProfile(ts).nearestNeighborDistances(starts,
+        lengths, threadsNum);
+    for (int i = 0; i < starts.length; i++) {
+      distances[starts[i]] = nnDistances[i];
+      widths[starts[i]] = lengths[i];
+    }
+  }
+
+  /**
+   * Logs the time an export stage took.
+   *
+   * @param stage the stage description.
+   * @param stageStart the stage start.
+   * @return the end of the stage, the start of the next one.
+   */
+  private static Date logStage(String stage, Date stageStart) {
+    Date stageEnd = new Date();
+    LOGGER.info("export: " + stage + " in "
+        + SAXProcessor.timeToString(stageStart.getTime(), stageEnd.getTime()));
+    return stageEnd;
+  }
+
   /**
    * Procedure of finding brute-force discords.
    * 
@@ -801,12 +931,59 @@ public class GrammarVizAnomaly {
     LOGGER.info("running brute force algorithm...");
 
     Date start = new Date();
-    DiscordRecords discords = BruteForceDiscordImplementation.series2BruteForceDiscords(ts,
-        windowSize, discordsToReport, new LargeWindowAlgorithm(), nThreshold);
+    DiscordRecords discords = BruteForceImplementation.series2BruteForceDiscords(ts, windowSize,
+        discordsToReport, nThreshold, GrammarVizAnomalyParameters.THREADS_NUM);
+    Date end = new Date();
+
+    System.out.println(CR + discords.toString() + CR + discords.getSize() + " discords found in "
+        + SAXProcessor.timeToString(start.getTime(), end.getTime()) + CR);
+  }
+
+  /**
+   * Finds discords with the matrix profile, the exact STOMP or, given a diagonals fraction below
+   * one or a time budget, the anytime SCRIMP++; the profile is written out when the output prefix
+   * is set.
+   *
+   * @param ts timeseries to use
+   * @param windowSize the sliding window size.
+   * @param discordsToReport num of discords to report.
+   * @param outputPrefix the output prefix.
+   * @param nThreshold the z-Normlization threshold value.
+   * @throws Exception if error occurs.
+   */
+  private static void findMatrixProfile(double[] ts, int windowSize, int discordsToReport,
+      String outputPrefix, double nThreshold) throws Exception {
+
+    Date start = new Date();
+    MatrixProfile profile;
+    if (GrammarVizAnomalyParameters.MP_FRACTION < 1D
+        || GrammarVizAnomalyParameters.TIME_BUDGET_MS > 0) {
+      LOGGER.info("running anytime matrix profile (SCRIMP++) algorithm...");
+      profile = MatrixProfileImplementation.series2MatrixProfileAnytime(ts, windowSize,
+          nThreshold, GrammarVizAnomalyParameters.THREADS_NUM,
+          GrammarVizAnomalyParameters.MP_FRACTION, GrammarVizAnomalyParameters.TIME_BUDGET_MS,
+          new Random());
+    }
+    else {
+      LOGGER.info("running matrix profile (STOMP) algorithm...");
+      profile = MatrixProfileImplementation.series2MatrixProfile(ts, windowSize, nThreshold,
+          GrammarVizAnomalyParameters.THREADS_NUM);
+    }
+    DiscordRecords discords = profile.getDiscords(discordsToReport);
     Date end = new Date();
 
     System.out.println(CR + discords.toString() + CR + discords.getSize() + " discords found in "
         + SAXProcessor.timeToString(start.getTime(), end.getTime()) + CR);
+
+    if (!(outputPrefix.isEmpty())) {
+      String currentPath = new File(".").getCanonicalPath();
+      BufferedWriter bw = new BufferedWriter(
+          new FileWriter(new File(currentPath + File.separator + outputPrefix + "_profile.txt")));
+      for (int i = 0; i < profile.size(); i++) {
+        bw.write(i + "," + profile.getDistance(i) + "," + profile.getIndex(i) + "\n");
+      }
+      bw.close();
+    }
   }
 
   /**
@@ -827,8 +1004,9 @@ public class GrammarVizAnomaly {
     LOGGER.info("running HOT SAX hashtable-based algorithm...");
 
     Date start = new Date();
-    DiscordRecords discords = HOTSAXImplementation.series2Discords(ts, discordsToReport, windowSize,
-        paaSize, alphabetSize, saxNRStrategy, normalizationThreshold);
+    DiscordRecords discords = ParallelHOTSAXImplementation.series2Discords(ts, discordsToReport,
+        windowSize, paaSize, alphabetSize, saxNRStrategy, normalizationThreshold,
+        GrammarVizAnomalyParameters.THREADS_NUM);
     Date end = new Date();
 
     System.out.println(CR + discords.toString() + CR + discords.getSize() + " discords found in "
@@ -890,6 +1068,38 @@ public class GrammarVizAnomaly {
     return covered;
   }
 
+  /**
+   * Builds the RRA search options off the command line parameters.
+   *
+   * @param cache the reduced interval cache to use.
+   * @param paaSize the discretization PAA size, the MINDIST word length.
+   * @param alphabetSize the discretization alphabet size.
+   * @return the search options.
+   */
+  private static RRASearchOptions rraSearchOptions(ReducedIntervalCache cache, int paaSize,
+      int alphabetSize) {
+    RRASearchOptions options = new RRASearchOptions()
+        .setThreadsNum(GrammarVizAnomalyParameters.THREADS_NUM).setReducedCache(cache)
+        .setPairMemoBytes(GrammarVizAnomalyParameters.PAIR_MEMO_MB * 1024L * 1024L)
+        .setTopKMode(GrammarVizAnomalyParameters.TOPK_MODE)
+        .setTimeBudgetMillis(GrammarVizAnomalyParameters.TIME_BUDGET_MS)
+        .setDistanceCallBudget(GrammarVizAnomalyParameters.DISTANCE_BUDGET);
+    if (GrammarVizAnomalyParameters.MINDIST_PRUNING) {
+      options.setMinDistPruning(paaSize, alphabetSize);
+    }
+    switch (GrammarVizAnomalyParameters.VISIT_ORDER) {
+    case RANDOM:
+      options.setVisitOrder(VisitOrder.RANDOM);
+      break;
+    case SAX:
+      options.setVisitOrder(new SAXWordVisitOrder(paaSize, alphabetSize));
+      break;
+    default:
+      break;
+    }
+    return options;
+  }
+
   /**
    * Returns {@code true} when the interval id marks an uncovered gap (negative sentinel ids).
    *
@@ -5,6 +5,8 @@ import java.util.List;
 import com.beust.jcommander.Parameter;
 import net.seninp.gi.GIAlgorithm;
 import net.seninp.grammarviz.anomaly.AnomalyAlgorithm;
+import net.seninp.grammarviz.anomaly.RRARunStatsFormat;
+import net.seninp.grammarviz.anomaly.VisitOrderType;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 
 /**
@@ -57,6 +59,56 @@ public class GrammarVizAnomalyParameters {
   
   @Parameter(names = { "--discords_num", "-n" }, description = "The number of discords to report")
   public static int DISCORDS_NUM = 5;
+
+  @Parameter(names = { "--threads",
+      "-t" }, description = "The number of RRA, HOTSAX, brute-force, matrix profile and "
+          + "parameters sampling threads")
+  public static int THREADS_NUM = 1;
+
+  @Parameter(names = {
+      "--paa_cache_mb" }, description = "RRA reduced interval cache budget in MB (0 disables)")
+  public static int PAA_CACHE_MB = 64;
+
+  @Parameter(names = {
+      "--pair_memo_mb" }, description = "RRA pair distance memo budget in MB (0 disables)")
+  public static int PAIR_MEMO_MB = 32;
+
+  @Parameter(names = {
+      "--topk" }, description = "Single-pass top-k RRA: reuse NN distances across discords")
+  public static boolean TOPK_MODE = false;
+
+  @Parameter(names = {
+      "--mindist" }, description = "Prune RRA distance calls with the SAX MINDIST lower bound")
+  public static boolean MINDIST_PRUNING = false;
+
+  @Parameter(names = { "--visit_order" }, description = "RRA neighbor visit order: "
+      + "random, or sax (nearest SAX words first)")
+  public static VisitOrderType VISIT_ORDER = VisitOrderType.RANDOM;
+
+  @Parameter(names = {
+      "--exact_nn" }, description = "Re-score the RRA discords with their exact nearest neighbors")
+  public static boolean EXACT_NN = false;
+
+  @Parameter(names = { "--run_stats" }, description = "RRA run statistics printout: json (a "
+      + "single line), csv (a row per discord), or none")
+  public static RRARunStatsFormat RUN_STATS = RRARunStatsFormat.JSON;
+
+  @Parameter(names = {
+      "--export_threads" }, description = "The number of threads computing the exported distances")
+  public static int EXPORT_THREADS_NUM = 1;
+
+  @Parameter(names = {
+      "--time_budget_ms" }, description = "Anytime RRA and SCRIMP++ wall-clock budget in ms "
+          + "(0 for none)")
+  public static long TIME_BUDGET_MS = 0;
+
+  @Parameter(names = {
+      "--distance_budget" }, description = "Anytime RRA distance calls budget (0 for none)")
+  public static long DISTANCE_BUDGET = 0;
+
+  @Parameter(names = { "--mp_fraction" }, description = "Anytime SCRIMP++ fraction of the matrix "
+      + "profile diagonals to evaluate (1.0 with no time budget runs the exact STOMP)")
+  public static double MP_FRACTION = 1.0;
   
   // GI parameter
   //
@@ -7,7 +7,8 @@ package net.seninp.grammarviz.anomaly;
  *
  */
 public enum AnomalyAlgorithm {
-  BRUTEFORCE(0), HOTSAX(1), RRA(2), RRAPRUNED(3), RRASAMPLED(4), EXPERIMENT(5);
+  BRUTEFORCE(0), HOTSAX(1), RRA(2), RRAPRUNED(3), RRASAMPLED(4), EXPERIMENT(5),
+  MATRIXPROFILE(6);
 
   private final int index;
 
@@ -33,6 +34,8 @@ public enum AnomalyAlgorithm {
       return AnomalyAlgorithm.RRASAMPLED;
     case 5:
       return AnomalyAlgorithm.EXPERIMENT;
+    case 6:
+      return AnomalyAlgorithm.MATRIXPROFILE;
     default:
       throw new RuntimeException("Unknown index:" + value);
     }
@@ -57,6 +60,9 @@ public enum AnomalyAlgorithm {
     else if (value.equalsIgnoreCase("experiment")) {
       return AnomalyAlgorithm.EXPERIMENT;
     }
+    else if (value.equalsIgnoreCase("matrixprofile")) {
+      return AnomalyAlgorithm.MATRIXPROFILE;
+    }
     else {
       throw new RuntimeException("Unknown index:" + value);
     }
@@ -77,6 +83,8 @@ public enum AnomalyAlgorithm {
       return "RRASAMPLED";
     case 5:
       return "EXPERIMENT";
+    case 6:
+      return "MATRIXPROFILE";
     default:
       throw new RuntimeException("Unknown index");
     }
@@ -0,0 +1,143 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * A series-length bit array of visited positions used by the RRA search in place of boxed
+ * {@code HashSet<Integer>} registries. Ranges are marked word-at-a-time, and the words holding set
+ * bits are remembered so that {@link #clear()} only touches those, which keeps the per-candidate
+ * reset cheap on long series.
+ *
+ * @author psenin
+ *
+ */
+public final class BitVisitRegistry {
+
+  private static final int WORD_SHIFT = 6;
+  private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+  private final int size;
+  private final long[] words;
+
+  // indices of the words that hold set bits, each listed once
+  private final int[] dirtyWords;
+  private int dirtyCount;
+
+  /**
+   * Constructor.
+   *
+   * @param size the registry size, i.e. the series length.
+   */
+  public BitVisitRegistry(int size) {
+    this.size = size;
+    int wordsNum = (size + 63) >>> WORD_SHIFT;
+    this.words = new long[wordsNum];
+    this.dirtyWords = new int[wordsNum];
+  }
+
+  /**
+   * Gets the registry size.
+   *
+   * @return the number of positions tracked.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Marks a single position as visited.
+   *
+   * @param pos the position, out-of-range positions are ignored.
+   */
+  public void markVisited(int pos) {
+    if (pos < 0 || pos >= size) {
+      return;
+    }
+    int w = pos >>> WORD_SHIFT;
+    long word = words[w];
+    if (0L == word) {
+      dirtyWords[dirtyCount++] = w;
+    }
+    words[w] = word | (1L << pos);
+  }
+
+  /**
+   * Marks the positions range {@code [from, upTo)} as visited, clipped to the registry.
+   *
+   * @param from the first position, inclusive.
+   * @param upTo the last position, exclusive.
+   */
+  public void markVisited(int from, int upTo) {
+    int first = Math.max(0, from);
+    int end = Math.min(size, upTo);
+    if (first >= end) {
+      return;
+    }
+    int firstWord = first >>> WORD_SHIFT;
+    int lastWord = (end - 1) >>> WORD_SHIFT;
+    long firstMask = WORD_MASK << first;
+    long lastMask = WORD_MASK >>> -end;
+    if (firstWord == lastWord) {
+      orWord(firstWord, firstMask & lastMask);
+      return;
+    }
+    orWord(firstWord, firstMask);
+    for (int w = firstWord + 1; w < lastWord; w++) {
+      orWord(w, WORD_MASK);
+    }
+    orWord(lastWord, lastMask);
+  }
+
+  /**
+   * Marks all the positions of a boxed registry as visited.
+   *
+   * @param positions the positions.
+   */
+  public void markVisited(Iterable<Integer> positions) {
+    for (Integer pos : positions) {
+      markVisited(pos.intValue());
+    }
+  }
+
+  /**
+   * Checks whether the position was visited.
+   *
+   * @param pos the position.
+   * @return true if visited, out-of-range positions never are.
+   */
+  public boolean isVisited(int pos) {
+    if (pos < 0 || pos >= size) {
+      return false;
+    }
+    return 0L != (words[pos >>> WORD_SHIFT] & (1L << pos));
+  }
+
+  /**
+   * Counts the visited positions.
+   *
+   * @return the number of visited positions.
+   */
+  public int cardinality() {
+    int res = 0;
+    for (int i = 0; i < dirtyCount; i++) {
+      res += Long.bitCount(words[dirtyWords[i]]);
+    }
+    return res;
+  }
+
+  /**
+   * Unmarks all the positions; costs as much as the number of words which hold visited positions.
+   */
+  public void clear() {
+    for (int i = 0; i < dirtyCount; i++) {
+      words[dirtyWords[i]] = 0L;
+    }
+    dirtyCount = 0;
+  }
+
+  private void orWord(int w, long mask) {
+    long word = words[w];
+    if (0L == word) {
+      dirtyWords[dirtyCount++] = w;
+    }
+    words[w] = word | mask;
+  }
+}
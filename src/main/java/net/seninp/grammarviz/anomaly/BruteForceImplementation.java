@@ -0,0 +1,243 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * Implements the brute-force discord search, the exact baseline of the jmotif
+ * {@code BruteForceDiscordImplementation} with a {@code LargeWindowAlgorithm} registry: the same
+ * candidate windows, the same non-self matches ({@code |i - j| > windowSize}), the same
+ * exclusion zone around the reported discords and the very same distances, computed through a
+ * {@link ZNormWindowIndex} with the jmotif arithmetic. Ties, which jmotif resolves in a random
+ * order, go to the earliest window.
+ *
+ * A candidate stops scanning for its nearest neighbor as soon as a match nearer than the best
+ * discord so far turns up, and every distance gives up once it exceeds the candidate's current
+ * nearest neighbor distance; neither changes the result. The candidate windows are split up
+ * into a fork/join task tree, so idle threads steal the ranges left, and the best-so-far is
+ * shared. The nearest neighbor distances, exact or bounded from above, are kept across the
+ * discords of a run.
+ *
+ * @author psenin
+ *
+ */
+public class BruteForceImplementation {
+
+  // the candidate ranges are not split below that many windows
+  private static final int LEAF_SIZE = 64;
+
+  // the early abandoning limit is widened by a relative slack, so a distance equal to the
+  // current nearest one in exact arithmetic is never dropped on rounding
+  private static final double ABANDON_SLACK = 1D + 1E-9;
+
+  private static final ThreadLocal<double[][]> WINDOW_BUFFER =
+      ThreadLocal.withInitial(() -> new double[1][0]);
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory.getLogger(BruteForceImplementation.class);
+
+  /**
+   * Finds the discords by brute force.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param discordsNum the number of discords to report.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @return the discords.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2BruteForceDiscords(double[] series, int windowSize,
+      int discordsNum, double nThreshold, int threadsNum) throws Exception {
+    if (windowSize < 2 || windowSize >= series.length) {
+      throw new IllegalArgumentException("invalid window size: " + windowSize);
+    }
+
+    Date start = new Date();
+    SearchState state = new SearchState(new ZNormWindowIndex(series, windowSize, nThreshold),
+        series.length - windowSize - 1, series.length - windowSize);
+    ForkJoinPool pool = (threadsNum > 1) ? new ForkJoinPool(threadsNum) : null;
+    DiscordRecords discords = new DiscordRecords();
+    try {
+      while (discords.getSize() < discordsNum) {
+        Date discordStart = new Date();
+        state.resetBest();
+        if (null == pool) {
+          scan(state, 0, state.candidates);
+        }
+        else {
+          pool.invoke(new CandidateRangeTask(state, 0, state.candidates));
+        }
+
+        int position = state.bestPosition;
+        double distance = state.bestDistance;
+        if (-1 == position || 0D == distance) {
+          LOGGER.debug("breaking the outer search loop, discords found: " + discords.getSize());
+          break;
+        }
+        DiscordRecord discord = new DiscordRecord(position, distance);
+        discord.setLength(windowSize);
+        discord.setPayload("#" + discords.getSize());
+        discord.setInfo("position " + position + ", NN distance " + distance
+            + ", elapsed time: "
+            + SAXProcessor.timeToString(discordStart.getTime(), new Date().getTime()));
+        discords.add(discord);
+
+        // the exclusion zone of LargeWindowAlgorithm
+        state.registry.markVisited(Math.max(0, position - windowSize),
+            Math.min(state.candidates, position + windowSize));
+      }
+    }
+    finally {
+      if (null != pool) {
+        pool.shutdownNow();
+      }
+    }
+
+    LOGGER.info(discords.getSize() + " brute-force discords found in "
+        + SAXProcessor.timeToString(start.getTime(), new Date().getTime()) + " on "
+        + Math.max(1, threadsNum) + " threads, distance calls: " + state.distanceCalls.sum());
+    return discords;
+  }
+
+  /**
+   * The search state shared by the tasks: the candidate registry, the nearest neighbor distance
+   * bounds of the candidates and the best discord so far.
+   */
+  private static final class SearchState {
+
+    private final ZNormWindowIndex index;
+    private final int candidates;
+    private final int neighbors;
+    private final BitVisitRegistry registry;
+    private final double[] nnBounds;
+    private final boolean[] exact;
+    private final LongAdder distanceCalls = new LongAdder();
+
+    private volatile double bestDistance;
+    private int bestPosition;
+
+    private SearchState(ZNormWindowIndex index, int candidates, int neighbors) {
+      this.index = index;
+      this.candidates = candidates;
+      this.neighbors = neighbors;
+      this.registry = new BitVisitRegistry(candidates);
+      this.nnBounds = new double[candidates];
+      Arrays.fill(nnBounds, Double.MAX_VALUE);
+      this.exact = new boolean[candidates];
+    }
+
+    private void resetBest() {
+      bestDistance = -1D;
+      bestPosition = -1;
+    }
+
+    private synchronized void offer(int position, double distance) {
+      if (distance > bestDistance || (distance == bestDistance && position < bestPosition)) {
+        bestDistance = distance;
+        bestPosition = position;
+      }
+    }
+  }
+
+  /**
+   * A range of candidate windows, split in halves down to the leaf size.
+   */
+  private static final class CandidateRangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient SearchState state;
+    private final int from;
+    private final int to;
+
+    private CandidateRangeTask(SearchState state, int from, int to) {
+      this.state = state;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > LEAF_SIZE) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new CandidateRangeTask(state, from, middle),
+            new CandidateRangeTask(state, middle, to));
+      }
+      else {
+        scan(state, from, to);
+      }
+    }
+  }
+
+  /**
+   * Runs the nearest neighbor searches of the candidates in the range.
+   */
+  private static void scan(SearchState state, int from, int to) {
+    ZNormWindowIndex index = state.index;
+    int windowSize = index.windowSize();
+    double[][] holder = WINDOW_BUFFER.get();
+    if (holder[0].length != windowSize) {
+      holder[0] = new double[windowSize];
+    }
+    double[] window = holder[0];
+    long calls = 0;
+    // the match of the previous window shifted by one is the first one tried
+    int hint = -1;
+
+    for (int i = from; i < to; i++) {
+      if (state.registry.isVisited(i)) {
+        continue;
+      }
+      double nn = state.nnBounds[i];
+      if (state.exact[i]) {
+        state.offer(i, nn);
+        continue;
+      }
+      if (nn < state.bestDistance) {
+        continue;
+      }
+
+      index.normalize(i, window);
+      int first = (hint >= 0 && hint + 1 < state.neighbors) ? hint + 1 : -1;
+      int nnPosition = -1;
+      boolean abandoned = false;
+      for (int step = -1; step < state.neighbors; step++) {
+        int j = (-1 == step) ? first : step;
+        if (j < 0 || (step >= 0 && j == first) || Math.abs(i - j) <= windowSize) {
+          continue;
+        }
+        double limit = (Double.MAX_VALUE == nn) ? Double.MAX_VALUE : nn * nn * ABANDON_SLACK;
+        double dist = index.earlyAbandonedDistance(window, j, limit);
+        calls++;
+        if (dist < nn) {
+          nn = dist;
+          nnPosition = j;
+          if (nn < state.bestDistance) {
+            abandoned = true;
+            break;
+          }
+        }
+      }
+
+      state.nnBounds[i] = nn;
+      if (-1 != nnPosition) {
+        hint = nnPosition;
+      }
+      if (!abandoned) {
+        state.exact[i] = true;
+        state.offer(i, nn);
+      }
+    }
+    state.distanceCalls.add(calls);
+  }
+}
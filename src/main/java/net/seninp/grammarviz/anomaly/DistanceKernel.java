@@ -0,0 +1,89 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * The numeric inner loops of the RRA distance: the window statistics, the z-normalization and
+ * the early-abandoning squared Euclidean distances. {@link DistanceKernels} picks the
+ * implementation once per JVM, the SIMD one when the Vector API is there, the scalar one
+ * otherwise; the SIMD kernels sum in a different order, so the values agree with the scalar ones
+ * within the floating point rounding only.
+ *
+ * Kernels are stateless and shared by all the search threads.
+ *
+ * @author psenin
+ *
+ */
+interface DistanceKernel {
+
+  /**
+   * Gets the kernel name, used in the logs.
+   *
+   * @return the name.
+   */
+  String getName();
+
+  /**
+   * Computes the mean of the window.
+   *
+   * @param values the values.
+   * @param from the window start.
+   * @param len the window length.
+   * @return the mean.
+   */
+  double mean(double[] values, int from, int len);
+
+  /**
+   * Computes the population standard deviation of the window, off the sum and the sum of squares
+   * and not clamped, as the RRA distance has always done for the shrunk windows.
+   *
+   * @param values the values.
+   * @param from the window start.
+   * @param len the window length.
+   * @return the standard deviation.
+   */
+  double stDev(double[] values, int from, int len);
+
+  /**
+   * Writes the z-normalized window into the buffer.
+   *
+   * @param values the values.
+   * @param from the window start.
+   * @param len the window length.
+   * @param mean the window mean.
+   * @param sd the window standard deviation.
+   * @param out the buffer, at least the window length long.
+   */
+  void znormInto(double[] values, int from, int len, double mean, double sd, double[] out);
+
+  /**
+   * Computes the squared Euclidean distance of two windows, giving up once the sum exceeds the
+   * limit.
+   *
+   * @param a the first values.
+   * @param aStart the first window start.
+   * @param b the second values.
+   * @param bStart the second window start.
+   * @param len the windows length.
+   * @param limit the squared sum limit, {@code Double.POSITIVE_INFINITY} for none.
+   * @return the squared distance, {@code Double.POSITIVE_INFINITY} if abandoned.
+   */
+  double squaredDistance(double[] a, int aStart, double[] b, int bStart, int len, double limit);
+
+  /**
+   * Computes the squared Euclidean distance of two windows z-normalized on the fly, giving up
+   * once the sum exceeds the limit.
+   *
+   * @param a the first values.
+   * @param aStart the first window start.
+   * @param aMean the first window mean.
+   * @param aSd the first window standard deviation.
+   * @param b the second values.
+   * @param bStart the second window start.
+   * @param bMean the second window mean.
+   * @param bSd the second window standard deviation.
+   * @param len the windows length.
+   * @param limit the squared sum limit, {@code Double.POSITIVE_INFINITY} for none.
+   * @return the squared distance, {@code Double.POSITIVE_INFINITY} if abandoned.
+   */
+  double squaredZnormDistance(double[] a, int aStart, double aMean, double aSd, double[] b,
+      int bStart, double bMean, double bSd, int len, double limit);
+}
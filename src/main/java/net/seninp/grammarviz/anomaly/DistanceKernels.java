@@ -0,0 +1,120 @@
+package net.seninp.grammarviz.anomaly;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the {@link DistanceKernel} once per JVM. The scalar kernel is the default; the SIMD one
+ * is opt-in with the {@value #KERNEL_PROPERTY} system property set to {@code vector}, or to
+ * {@code auto} which takes it only when available. The SIMD kernel is built by the {@code simd}
+ * profile and needs the incubating {@code jdk.incubator.vector} module, i.e. the JVM started
+ * with {@code --add-modules jdk.incubator.vector}; a requested SIMD kernel which can not be
+ * loaded falls back to the scalar one with a warning.
+ *
+ * @author psenin
+ *
+ */
+public final class DistanceKernels {
+
+  /** The system property selecting the kernel. */
+  public static final String KERNEL_PROPERTY = "grammarviz.kernel";
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  private static final String VECTOR_KERNEL =
+      "net.seninp.grammarviz.anomaly.VectorDistanceKernel";
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory.getLogger(DistanceKernels.class);
+
+  private static final DistanceKernel SCALAR = new ScalarDistanceKernel();
+
+  private static final DistanceKernel VECTOR = loadVectorKernel();
+
+  private static final DistanceKernel SELECTED = select(System.getProperty(KERNEL_PROPERTY,
+      "scalar"));
+
+  private DistanceKernels() {
+    // utility
+  }
+
+  /**
+   * Gets the kernel the RRA distance runs on.
+   *
+   * @return the selected kernel.
+   */
+  static DistanceKernel get() {
+    return SELECTED;
+  }
+
+  /**
+   * Gets the scalar kernel.
+   *
+   * @return the scalar kernel.
+   */
+  static DistanceKernel scalar() {
+    return SCALAR;
+  }
+
+  /**
+   * Gets the SIMD kernel.
+   *
+   * @return the SIMD kernel, null if the Vector API is not available.
+   */
+  static DistanceKernel vector() {
+    return VECTOR;
+  }
+
+  /**
+   * Gets the name of the kernel the RRA distance runs on.
+   *
+   * @return the kernel name.
+   */
+  public static String getSelectedName() {
+    return SELECTED.getName();
+  }
+
+  /**
+   * Picks the kernel for the property value.
+   *
+   * @param choice the property value.
+   * @return the kernel.
+   */
+  static DistanceKernel select(String choice) {
+    if ("scalar".equalsIgnoreCase(choice)) {
+      return SCALAR;
+    }
+    if (!"vector".equalsIgnoreCase(choice) && !"auto".equalsIgnoreCase(choice)) {
+      LOGGER.warn("unknown " + KERNEL_PROPERTY + " value: " + choice + ", using scalar");
+      return SCALAR;
+    }
+    if (null != VECTOR) {
+      return VECTOR;
+    }
+    if ("vector".equalsIgnoreCase(choice)) {
+      LOGGER.warn("the SIMD distance kernel was asked for, but it is not available, build with"
+          + " the simd profile and add --add-modules " + VECTOR_MODULE
+          + " to the JVM options; running the scalar kernel");
+    }
+    return SCALAR;
+  }
+
+  private static DistanceKernel loadVectorKernel() {
+    if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      return null;
+    }
+    try {
+      return (DistanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor()
+          .newInstance();
+    }
+    catch (ClassNotFoundException e) {
+      // the build went without the simd profile
+      return null;
+    }
+    catch (ReflectiveOperationException | LinkageError e) {
+      LOGGER.warn("unable to load the SIMD distance kernel: " + e.getMessage());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-place iterative radix-2 complex FFT of a fixed power-of-two size, with the twiddle factors
+ * and the bit-reversal permutation computed once. Plans are immutable, shared through
+ * {@link #forSize(int)}, and safe to use from several threads on distinct arrays.
+ *
+ * @author psenin
+ *
+ */
+final class FFTPlan {
+
+  private static final ConcurrentHashMap<Integer, FFTPlan> PLANS =
+      new ConcurrentHashMap<Integer, FFTPlan>();
+
+  private final int size;
+  private final double[] cos;
+  private final double[] sin;
+  private final int[] reversed;
+
+  private FFTPlan(int size) {
+    this.size = size;
+    this.cos = new double[size / 2];
+    this.sin = new double[size / 2];
+    for (int i = 0; i < size / 2; i++) {
+      double angle = -2D * Math.PI * i / size;
+      cos[i] = Math.cos(angle);
+      sin[i] = Math.sin(angle);
+    }
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      reversed[i] = (0 == bits) ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+  }
+
+  /**
+   * Gets the plan of the given size.
+   *
+   * @param size the transform size, a power of two.
+   * @return the plan.
+   */
+  static FFTPlan forSize(int size) {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("the FFT size must be a power of two: " + size);
+    }
+    FFTPlan plan = PLANS.get(size);
+    if (null == plan) {
+      plan = new FFTPlan(size);
+      FFTPlan previous = PLANS.putIfAbsent(size, plan);
+      if (null != previous) {
+        plan = previous;
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * The smallest power of two not below the value.
+   *
+   * @param value the value, positive.
+   * @return the power of two.
+   */
+  static int ceilPowerOfTwo(int value) {
+    return (value <= 1) ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  /**
+   * Gets the transform size.
+   *
+   * @return the size.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * The forward transform, in place.
+   *
+   * @param re the real parts.
+   * @param im the imaginary parts.
+   */
+  void forward(double[] re, double[] im) {
+    transform(re, im, 1D);
+  }
+
+  /**
+   * The inverse transform, in place, scaled by 1 / size.
+   *
+   * @param re the real parts.
+   * @param im the imaginary parts.
+   */
+  void inverse(double[] re, double[] im) {
+    transform(re, im, -1D);
+    double scale = 1D / size;
+    for (int i = 0; i < size; i++) {
+      re[i] *= scale;
+      im[i] *= scale;
+    }
+  }
+
+  private void transform(double[] re, double[] im, double direction) {
+    for (int i = 0; i < size; i++) {
+      int j = reversed[i];
+      if (i < j) {
+        double t = re[i];
+        re[i] = re[j];
+        re[j] = t;
+        t = im[i];
+        im[i] = im[j];
+        im[j] = t;
+      }
+    }
+    for (int len = 2; len <= size; len <<= 1) {
+      int half = len >> 1;
+      int step = size / len;
+      for (int i = 0; i < size; i += len) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = direction * sin[k * step];
+          int a = i + k;
+          int b = a + half;
+          double xr = re[b] * wr - im[b] * wi;
+          double xi = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - xr;
+          im[b] = im[a] - xi;
+          re[a] += xr;
+          im[a] += xi;
+        }
+      }
+    }
+  }
+}
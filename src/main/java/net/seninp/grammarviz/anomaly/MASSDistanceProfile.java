@@ -0,0 +1,427 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.seninp.jmotif.distance.EuclideanDistance;
+
+/**
+ * MASS-style distance profiles: the Euclidean distance of a series window to every other window of
+ * the same length, computed off FFT sliding dot products and rolling window energies, with the
+ * nearest non-self match reported exactly as the brute-force scan
+ * {@code min over |start - j| > length of ed.distance(window(start), window(j))} does.
+ *
+ * The series is cut into overlapping blocks whose spectra are computed once per FFT size, the size
+ * being the power of two at least twice the query length, so a query costs one forward transform
+ * of its own plus one inverse transform per block, O(n log m) in total. The FFT profile is only
+ * a filter: every window whose approximate distance may, within a rounding error bound, be the
+ * minimal one has its distance recomputed with {@link EuclideanDistance}, and the minimum is taken
+ * over those exact values. The profile therefore reproduces the brute-force minimum bit for bit.
+ *
+ * An instance keeps its own work buffers and is not thread safe. The batch methods process the
+ * queries grouped by FFT size, so the block spectra of a size are computed once; on several threads
+ * every worker gets its own buffers while the centered series, the energies and the block spectra
+ * are shared read-only.
+ *
+ * @author psenin
+ *
+ */
+public final class MASSDistanceProfile {
+
+  private static final int MIN_FFT_SIZE = 64;
+
+  // generous multiple of the unit roundoff for the error bound of the approximate profile
+  private static final double ROUNDOFF = 8D * Math.ulp(1D);
+
+  private final SeriesData data;
+  private final double[] series;
+  private final int n;
+  private final EuclideanDistance ed = new EuclideanDistance();
+
+  // work buffers
+  private double[] re = new double[0];
+  private double[] im = new double[0];
+  private double[] queryRe = new double[0];
+  private double[] queryIm = new double[0];
+  private double[] approx = new double[0];
+  private double[] tolerance = new double[0];
+  private double[] query = new double[0];
+  private double[] window = new double[0];
+
+  /**
+   * Constructor.
+   *
+   * @param series the timeseries.
+   */
+  public MASSDistanceProfile(double[] series) {
+    this(new SeriesData(series));
+  }
+
+  private MASSDistanceProfile(SeriesData data) {
+    this.data = data;
+    this.series = data.series;
+    this.n = data.series.length;
+  }
+
+  /**
+   * Computes the nearest non-self match distances of a batch of windows.
+   *
+   * @param starts the windows start positions.
+   * @param lengths the windows lengths.
+   * @return the distances, {@code Double.MAX_VALUE} for a window without a non-self match.
+   * @throws Exception if error occurs.
+   */
+  public double[] nearestNeighborDistances(int[] starts, int[] lengths) throws Exception {
+    return nearestNeighborDistances(starts, lengths, 1);
+  }
+
+  /**
+   * Computes the nearest non-self match distances of a batch of windows on a worker pool. The
+   * queries of an FFT size are claimed off a shared cursor by the workers, each with its own
+   * buffers, and every worker writes the result slots of the queries it claimed only, so the
+   * output does not depend on the number of threads.
+   *
+   * @param starts the windows start positions.
+   * @param lengths the windows lengths.
+   * @param threadsNum the number of threads, the calling thread does the work when below 2.
+   * @return the distances, {@code Double.MAX_VALUE} for a window without a non-self match.
+   * @throws Exception if error occurs.
+   */
+  public double[] nearestNeighborDistances(final int[] starts, final int[] lengths,
+      int threadsNum) throws Exception {
+    int count = starts.length;
+    final long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = ((long) fftSize(lengths[i]) << 32) | i;
+    }
+    Arrays.sort(keys);
+    final double[] res = new double[count];
+
+    int workersNum = Math.max(1, Math.min(threadsNum, count));
+    MASSDistanceProfile[] profiles = new MASSDistanceProfile[workersNum];
+    profiles[0] = this;
+    for (int w = 1; w < workersNum; w++) {
+      profiles[w] = new MASSDistanceProfile(data);
+    }
+
+    ForkJoinPool pool = (workersNum > 1) ? new ForkJoinPool(workersNum) : null;
+    try {
+      for (int from = 0; from < count;) {
+        int size = (int) (keys[from] >>> 32);
+        int to = from;
+        while (to < count && (int) (keys[to] >>> 32) == size) {
+          to++;
+        }
+
+        // the spectra of the size are built before the workers start on it
+        data.prepareBlocks(size);
+        final AtomicInteger cursor = new AtomicInteger(from);
+        final int end = to;
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(workersNum);
+        for (final MASSDistanceProfile profile : profiles) {
+          workers.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              for (int k = cursor.getAndIncrement(); k < end; k = cursor.getAndIncrement()) {
+                int i = (int) keys[k];
+                res[i] = profile.nearestNeighborDistance(starts[i], lengths[i]);
+              }
+              return null;
+            }
+          });
+        }
+
+        if (null == pool) {
+          workers.get(0).call();
+        }
+        else {
+          for (Future<Void> future : pool.invokeAll(workers)) {
+            try {
+              future.get();
+            }
+            catch (ExecutionException e) {
+              if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+              }
+              throw e;
+            }
+          }
+        }
+        from = to;
+      }
+    }
+    finally {
+      if (null != pool) {
+        pool.shutdownNow();
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Computes the distance of the window {@code [start, start + length)} to its nearest match among
+   * the windows {@code [j, j + length)} with {@code |start - j| > length}.
+   *
+   * @param start the window start.
+   * @param length the window length.
+   * @return the distance, {@code Double.MAX_VALUE} if there is no such window.
+   * @throws Exception if error occurs.
+   */
+  public double nearestNeighborDistance(int start, int length) throws Exception {
+
+    int last = n - length;
+    if (length < 1 || last < 0) {
+      return Double.MAX_VALUE;
+    }
+
+    int size = fftSize(length);
+    Blocks blocks = data.prepareBlocks(size);
+    FFTPlan plan = blocks.plan;
+    int half = size / 2;
+    double logSize = Integer.numberOfTrailingZeros(size);
+    double[] energies = data.energies;
+
+    double qq = transformQuery(start, length, plan);
+
+    if (approx.length < n) {
+      approx = new double[n];
+      tolerance = new double[n];
+    }
+
+    // the approximate profile and the smallest distance it may be hiding
+    double threshold = Double.POSITIVE_INFINITY;
+    for (int b = 0, s = 0; s <= last; b++, s += half) {
+      int offset = b * size;
+      for (int k = 0; k < size; k++) {
+        double xr = blocks.re[offset + k];
+        double xi = blocks.im[offset + k];
+        re[k] = xr * queryRe[k] + xi * queryIm[k];
+        im[k] = xi * queryRe[k] - xr * queryIm[k];
+      }
+      plan.inverse(re, im);
+      double dotError = 2D * logSize * Math.sqrt(blocks.energies[b] * qq);
+      for (int k = 0; k < half && s + k <= last; k++) {
+        int j = s + k;
+        if (Math.abs(start - j) <= length) {
+          continue;
+        }
+        double tt = energies[j + length] - energies[j];
+        double d2 = qq + tt - 2D * re[k];
+        double tol = ROUNDOFF * (dotError + (length + 4D) * (qq + tt) + 4D * data.totalEnergy);
+        approx[j] = d2;
+        tolerance[j] = tol;
+        if (d2 + tol < threshold) {
+          threshold = d2 + tol;
+        }
+      }
+    }
+
+    if (Double.POSITIVE_INFINITY == threshold) {
+      return Double.MAX_VALUE;
+    }
+
+    // the exact distances of the windows which may be the nearest
+    if (query.length != length) {
+      query = new double[length];
+      window = new double[length];
+    }
+    System.arraycopy(series, start, query, 0, length);
+    double res = Double.MAX_VALUE;
+    for (int j = 0; j <= last; j++) {
+      if (Math.abs(start - j) <= length || approx[j] - tolerance[j] > threshold) {
+        continue;
+      }
+      System.arraycopy(series, j, window, 0, length);
+      double dist = ed.distance(query, window);
+      if (dist < res) {
+        res = dist;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Computes the sliding dot products of the centered window {@code [start, start + length)} with
+   * every centered window of the same length; the products come off the FFT and carry its
+   * rounding error.
+   *
+   * @param start the window start.
+   * @param length the window length.
+   * @param out the products by window start, {@code n - length + 1} slots filled in.
+   */
+  void slidingDotProducts(int start, int length, double[] out) {
+    int last = n - length;
+    int size = fftSize(length);
+    Blocks blocks = data.prepareBlocks(size);
+    int half = size / 2;
+    transformQuery(start, length, blocks.plan);
+    for (int b = 0, s = 0; s <= last; b++, s += half) {
+      int offset = b * size;
+      for (int k = 0; k < size; k++) {
+        double xr = blocks.re[offset + k];
+        double xi = blocks.im[offset + k];
+        re[k] = xr * queryRe[k] + xi * queryIm[k];
+        im[k] = xi * queryRe[k] - xr * queryIm[k];
+      }
+      blocks.plan.inverse(re, im);
+      for (int k = 0; k < half && s + k <= last; k++) {
+        out[s + k] = re[k];
+      }
+    }
+  }
+
+  /**
+   * Gets the series shifted by its mean, the one the dot products are computed on.
+   *
+   * @return the centered series, not to be modified.
+   */
+  double[] centeredSeries() {
+    return data.centered;
+  }
+
+  /**
+   * Makes a profile with its own work buffers sharing the series data and the block spectra of
+   * this one, for use on another thread.
+   *
+   * @return the new profile.
+   */
+  MASSDistanceProfile newWorker() {
+    return new MASSDistanceProfile(data);
+  }
+
+  /**
+   * Loads the centered window into the query buffers and transforms it.
+   *
+   * @return the window energy.
+   */
+  private double transformQuery(int start, int length, FFTPlan plan) {
+    int size = plan.size();
+    if (re.length != size) {
+      re = new double[size];
+      im = new double[size];
+      queryRe = new double[size];
+      queryIm = new double[size];
+    }
+
+    // the reversed-role correlation: block spectrum times the conjugate query spectrum
+    Arrays.fill(queryRe, 0D);
+    Arrays.fill(queryIm, 0D);
+    double[] centered = data.centered;
+    double qq = 0D;
+    for (int i = 0; i < length; i++) {
+      double v = centered[start + i];
+      queryRe[i] = v;
+      qq += v * v;
+    }
+    plan.forward(queryRe, queryIm);
+    return qq;
+  }
+
+  private static int fftSize(int length) {
+    return Math.max(MIN_FFT_SIZE, FFTPlan.ceilPowerOfTwo(2 * length));
+  }
+
+  /**
+   * The read-only data shared by the profiles of a series: the centered series, its energy prefix
+   * and the block spectra of the last FFT size requested.
+   */
+  private static final class SeriesData {
+
+    private final double[] series;
+    private final double[] centered;
+    private final double[] energies;
+    private final double totalEnergy;
+
+    private volatile Blocks blocks;
+
+    private SeriesData(double[] series) {
+      this.series = series;
+      int n = series.length;
+
+      // the distance does not change when both windows are shifted, centering keeps the sliding
+      // dot products and the energies small
+      double mean = 0D;
+      for (double v : series) {
+        mean += v;
+      }
+      mean = (0 == n) ? 0D : mean / n;
+      this.centered = new double[n];
+      this.energies = new double[n + 1];
+      double sum = 0D;
+      double compensation = 0D;
+      for (int i = 0; i < n; i++) {
+        centered[i] = series[i] - mean;
+        // compensated summation keeps the energy prefix error at a couple of roundoffs
+        double y = centered[i] * centered[i] - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+        energies[i + 1] = sum;
+      }
+      this.totalEnergy = sum;
+    }
+
+    /**
+     * Gets the block spectra for the FFT size, computing them unless they are at hand; block b
+     * holds {@code centered[b * half, b * half + size)}.
+     */
+    private Blocks prepareBlocks(int size) {
+      Blocks current = blocks;
+      if (null != current && current.plan.size() == size) {
+        return current;
+      }
+      synchronized (this) {
+        current = blocks;
+        if (null != current && current.plan.size() == size) {
+          return current;
+        }
+        // drop the previous size first, the spectra of the largest sizes take a lot of memory
+        blocks = null;
+        current = new Blocks(FFTPlan.forSize(size), centered, energies);
+        blocks = current;
+        return current;
+      }
+    }
+  }
+
+  /**
+   * The spectra of the overlapping series blocks for an FFT size.
+   */
+  private static final class Blocks {
+
+    private final FFTPlan plan;
+    private final double[] re;
+    private final double[] im;
+    private final double[] energies;
+
+    private Blocks(FFTPlan plan, double[] centered, double[] prefix) {
+      this.plan = plan;
+      int n = centered.length;
+      int size = plan.size();
+      int half = size / 2;
+      int count = Math.max(1, (n + half - 1) / half);
+      this.re = new double[count * size];
+      this.im = new double[count * size];
+      this.energies = new double[count];
+      double[] r = new double[size];
+      double[] i = new double[size];
+      for (int b = 0; b < count; b++) {
+        int s = b * half;
+        int len = Math.max(0, Math.min(size, n - s));
+        Arrays.fill(r, 0D);
+        Arrays.fill(i, 0D);
+        System.arraycopy(centered, s, r, 0, len);
+        plan.forward(r, i);
+        System.arraycopy(r, 0, re, b * size, size);
+        System.arraycopy(i, 0, im, b * size, size);
+        energies[b] = prefix[s + len] - prefix[s];
+      }
+    }
+  }
+}
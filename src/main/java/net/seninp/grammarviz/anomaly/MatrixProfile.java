@@ -0,0 +1,134 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * A z-normalized matrix profile: for every window of the series, the distance to its nearest
+ * non-self match and the start of that match. The windows and the matches are the ones of the
+ * brute-force discord search, i.e. starts in {@code [0, n - windowSize)} and matches farther than
+ * {@code windowSize} away. A window without a match has the distance {@code Double.MAX_VALUE} and
+ * the index -1.
+ *
+ * A profile cut short by the anytime search is an upper bound of the exact one, entry by entry.
+ *
+ * @author psenin
+ *
+ */
+public final class MatrixProfile {
+
+  private final int windowSize;
+  private final double[] distances;
+  private final int[] indexes;
+  private final double completeness;
+
+  /**
+   * Constructor.
+   *
+   * @param windowSize the window size.
+   * @param distances the nearest neighbor distances by window start.
+   * @param indexes the nearest neighbor starts by window start.
+   * @param completeness the fraction of the window pairs evaluated.
+   */
+  MatrixProfile(int windowSize, double[] distances, int[] indexes, double completeness) {
+    this.windowSize = windowSize;
+    this.distances = distances;
+    this.indexes = indexes;
+    this.completeness = completeness;
+  }
+
+  /**
+   * Gets the window size.
+   *
+   * @return the window size.
+   */
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Gets the number of profile entries.
+   *
+   * @return the number of windows.
+   */
+  public int size() {
+    return distances.length;
+  }
+
+  /**
+   * Gets the nearest non-self match distance of a window.
+   *
+   * @param start the window start.
+   * @return the distance.
+   */
+  public double getDistance(int start) {
+    return distances[start];
+  }
+
+  /**
+   * Gets the nearest non-self match start of a window.
+   *
+   * @param start the window start.
+   * @return the match start, -1 if there is none.
+   */
+  public int getIndex(int start) {
+    return indexes[start];
+  }
+
+  /**
+   * Gets the fraction of the window pairs the profile was computed over.
+   *
+   * @return the fraction, 1.0 for the exact profile.
+   */
+  public double getCompleteness() {
+    return completeness;
+  }
+
+  /**
+   * Checks if the profile is the exact one.
+   *
+   * @return true if all window pairs were evaluated.
+   */
+  public boolean isExact() {
+    return completeness >= 1D;
+  }
+
+  /**
+   * Picks the top discords off the profile the way the brute-force search does: the window with
+   * the largest nearest neighbor distance, the earliest one on a tie, excluding the last window
+   * and the windows starting within {@code windowSize} before or after an earlier discord; the
+   * search stops at a zero distance.
+   *
+   * @param discordsNum the number of discords to report.
+   * @return the discords.
+   */
+  public DiscordRecords getDiscords(int discordsNum) {
+    DiscordRecords discords = new DiscordRecords();
+    int candidates = distances.length - 1;
+    if (candidates < 1) {
+      return discords;
+    }
+    BitVisitRegistry registry = new BitVisitRegistry(candidates);
+    while (discords.getSize() < discordsNum) {
+      int best = -1;
+      double bestDistance = -1D;
+      for (int i = 0; i < candidates; i++) {
+        if (!registry.isVisited(i) && distances[i] > bestDistance) {
+          best = i;
+          bestDistance = distances[i];
+        }
+      }
+      if (-1 == best || 0D == bestDistance) {
+        break;
+      }
+      DiscordRecord discord = new DiscordRecord(best, bestDistance);
+      discord.setLength(windowSize);
+      discord.setPayload("#" + discords.getSize());
+      discord.setInfo("position " + best + ", NN distance " + bestDistance + ", NN position "
+          + indexes[best] + ", profile completeness " + completeness);
+      discords.add(discord);
+      registry.markVisited(Math.max(0, best - windowSize), Math.min(candidates, best + windowSize));
+    }
+    return discords;
+  }
+}
@@ -0,0 +1,370 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * Implements the matrix profile discord discovery: the z-normalized nearest non-self match
+ * distance of every window, computed along the diagonals of the distance matrix, followed by the
+ * top discords picked off the profile. The windows, the matches and the distances are those of
+ * the brute-force search, {@code ed.distance(znorm(window(i)), znorm(window(j)))} for
+ * {@code |i - j| > windowSize}, with a window whose standard deviation is below the threshold
+ * normalized to zeros.
+ *
+ * The exact mode is STOMP: the dot product of two windows follows from the one of the preceding
+ * pair on the same diagonal in O(1), so a diagonal costs O(n) and the whole profile O(n^2)
+ * independently of the window size. The diagonals are claimed by the workers off a shared
+ * cursor, each worker keeps a profile of its own, and the profiles are merged at the end, the
+ * same way for any number of threads. The anytime mode is SCRIMP++: PreSCRIMP seeds the profile
+ * with the neighborhoods of the nearest matches of every quarter-window-th window, found through
+ * FFT dot products, and then the diagonals are evaluated in a random order until their fraction
+ * or the time budget runs out.
+ *
+ * @author psenin
+ *
+ */
+public class MatrixProfileImplementation {
+
+  // the diagonal dot products are recomputed from scratch every that many steps, which keeps the
+  // rounding error of the O(1) updates from piling up along the diagonals of long series
+  private static final int REFRESH_STEPS = 1024;
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory.getLogger(MatrixProfileImplementation.class);
+
+  /**
+   * Finds discords with the exact matrix profile.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param discordsNum the number of discords to report.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @return the discords.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2MatrixProfileDiscords(double[] series, int windowSize,
+      int discordsNum, double nThreshold, int threadsNum) throws Exception {
+    return series2MatrixProfile(series, windowSize, nThreshold, threadsNum)
+        .getDiscords(discordsNum);
+  }
+
+  /**
+   * Computes the exact matrix profile with the parallel STOMP.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @return the profile.
+   * @throws Exception if error occurs.
+   */
+  public static MatrixProfile series2MatrixProfile(double[] series, int windowSize,
+      double nThreshold, int threadsNum) throws Exception {
+    return computeProfile(series, windowSize, nThreshold, threadsNum, 1D, 0L, null);
+  }
+
+  /**
+   * Computes an anytime matrix profile with SCRIMP++: the PreSCRIMP pass followed by the
+   * diagonals in a random order. Each entry is an upper bound of the exact one, and the profile is
+   * exact once all diagonals are done.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @param fraction the fraction of the diagonals to evaluate, in (0, 1].
+   * @param timeBudgetMillis the wall-clock budget in milliseconds, 0 for none.
+   * @param rnd the random source of the sampling and of the diagonals order.
+   * @return the profile.
+   * @throws Exception if error occurs.
+   */
+  public static MatrixProfile series2MatrixProfileAnytime(double[] series, int windowSize,
+      double nThreshold, int threadsNum, double fraction, long timeBudgetMillis, Random rnd)
+      throws Exception {
+    if (!(fraction > 0D && fraction <= 1D)) {
+      throw new IllegalArgumentException("the diagonals fraction must be in (0, 1]: " + fraction);
+    }
+    if (timeBudgetMillis < 0) {
+      throw new IllegalArgumentException("the time budget must be non-negative: "
+          + timeBudgetMillis);
+    }
+    return computeProfile(series, windowSize, nThreshold, threadsNum, fraction, timeBudgetMillis,
+        rnd);
+  }
+
+  private static MatrixProfile computeProfile(double[] series, int windowSize, double nThreshold,
+      int threadsNum, double fraction, long timeBudgetMillis, Random rnd) throws Exception {
+    if (windowSize < 2 || windowSize > series.length) {
+      throw new IllegalArgumentException("invalid window size: " + windowSize);
+    }
+
+    Date start = new Date();
+    final long deadline = (timeBudgetMillis > 0)
+        ? System.nanoTime() + timeBudgetMillis * 1000000L : Long.MAX_VALUE;
+    MASSDistanceProfile mass = new MASSDistanceProfile(series);
+    final SeriesWindows windows = new SeriesWindows(mass.centeredSeries(), windowSize,
+        nThreshold);
+    final int count = windows.count;
+    final int diagonalsNum = Math.max(0, count - windowSize - 1);
+
+    int workersNum = Math.max(1, threadsNum);
+    final ProfileWorker[] workers = new ProfileWorker[workersNum];
+    for (int w = 0; w < workersNum; w++) {
+      workers[w] = new ProfileWorker(windows);
+    }
+    final AtomicLong pairsDone = new AtomicLong();
+    int seeds = 0;
+
+    ForkJoinPool pool = (workersNum > 1) ? new ForkJoinPool(workersNum) : null;
+    try {
+
+      // PreSCRIMP: the diagonal stretches around the nearest matches of the sampled windows
+      //
+      if (null != rnd && diagonalsNum > 0) {
+        final int step = Math.max(1, windowSize / 4);
+        final int[] samples = new int[(count + step - 1) / step];
+        for (int s = 0; s < samples.length; s++) {
+          samples[s] = s * step;
+        }
+        RandomVisitOrder.shuffle(samples, samples.length, rnd);
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicInteger sampled = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workersNum);
+        for (int w = 0; w < workersNum; w++) {
+          final ProfileWorker worker = workers[w];
+          final MASSDistanceProfile own = (0 == w) ? mass : mass.newWorker();
+          tasks.add(() -> {
+            double[] row = new double[series.length - windowSize + 1];
+            for (int c = cursor.getAndIncrement(); c < samples.length
+                && System.nanoTime() < deadline; c = cursor.getAndIncrement()) {
+              worker.preScrimp(own, samples[c], step, row);
+              sampled.incrementAndGet();
+            }
+            return null;
+          });
+        }
+        run(pool, tasks);
+        seeds = sampled.get();
+      }
+
+      // the diagonals, in order for STOMP and shuffled for SCRIMP
+      //
+      final int[] order = new int[diagonalsNum];
+      for (int d = 0; d < diagonalsNum; d++) {
+        order[d] = windowSize + 1 + d;
+      }
+      if (null != rnd) {
+        RandomVisitOrder.shuffle(order, diagonalsNum, rnd);
+      }
+      final int target = (int) Math.min(diagonalsNum, Math.ceil(fraction * diagonalsNum));
+      final AtomicInteger cursor = new AtomicInteger();
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workersNum);
+      for (final ProfileWorker worker : workers) {
+        tasks.add(() -> {
+          for (int c = cursor.getAndIncrement(); c < target
+              && System.nanoTime() < deadline; c = cursor.getAndIncrement()) {
+            int k = order[c];
+            worker.diagonal(k, 0, count - k);
+            pairsDone.addAndGet(count - k);
+          }
+          return null;
+        });
+      }
+      run(pool, tasks);
+    }
+    finally {
+      if (null != pool) {
+        pool.shutdownNow();
+      }
+    }
+
+    // merge the workers profiles, the nearer and then the earlier match wins
+    //
+    double[] squares = workers[0].squares;
+    int[] indexes = workers[0].indexes;
+    for (int w = 1; w < workersNum; w++) {
+      for (int i = 0; i < count; i++) {
+        ProfileWorker worker = workers[w];
+        if (worker.squares[i] < squares[i]
+            || (worker.squares[i] == squares[i] && worker.indexes[i] < indexes[i])) {
+          squares[i] = worker.squares[i];
+          indexes[i] = worker.indexes[i];
+        }
+      }
+    }
+    double[] distances = new double[count];
+    for (int i = 0; i < count; i++) {
+      distances[i] = (indexes[i] < 0) ? Double.MAX_VALUE : Math.sqrt(squares[i]);
+    }
+
+    long pairsTotal = (long) diagonalsNum * (diagonalsNum + 1) / 2;
+    double completeness = (pairsDone.get() == pairsTotal) ? 1D
+        : (double) pairsDone.get() / pairsTotal;
+    LOGGER.info("matrix profile of " + count + " windows computed on " + workersNum
+        + " threads in " + SAXProcessor.timeToString(start.getTime(), new Date().getTime())
+        + ((null == rnd) ? ", STOMP" : ", SCRIMP++ with " + seeds + " PreSCRIMP samples")
+        + ", completeness " + completeness);
+    return new MatrixProfile(windowSize, distances, indexes, completeness);
+  }
+
+  private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) throws Exception {
+    if (null == pool) {
+      tasks.get(0).call();
+      return;
+    }
+    for (Future<Void> future : pool.invokeAll(tasks)) {
+      try {
+        future.get();
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * The windows of the centered series with the statistics of their z-normalization, shared
+   * read-only by the workers.
+   */
+  private static final class SeriesWindows {
+
+    private final double[] x;
+    private final int m;
+    private final int count;
+    private final double[] means;
+    private final double[] inverses;
+    private final double[] norms;
+
+    private SeriesWindows(double[] centered, int m, double nThreshold) {
+      this.x = centered;
+      this.m = m;
+      this.count = centered.length - m;
+      this.means = new double[count];
+      this.inverses = new double[count];
+      this.norms = new double[count];
+      for (int i = 0; i < count; i++) {
+        double sum = 0D;
+        for (int k = 0; k < m; k++) {
+          sum += x[i + k];
+        }
+        double mean = sum / m;
+        double squares = 0D;
+        for (int k = 0; k < m; k++) {
+          double v = x[i + k] - mean;
+          squares += v * v;
+        }
+        // the sample standard deviation of TSProcessor.znorm, a flat window normalizes to zeros
+        double sd = Math.sqrt(squares / (m - 1));
+        means[i] = mean;
+        if (sd >= nThreshold) {
+          inverses[i] = 1D / sd;
+          norms[i] = squares / (sd * sd);
+        }
+      }
+    }
+
+    private double dot(int a, int b) {
+      double res = 0D;
+      for (int k = 0; k < m; k++) {
+        res += x[a + k] * x[b + k];
+      }
+      return res;
+    }
+
+    private double squaredDistance(int a, int b, double dot) {
+      double d2 = norms[a] + norms[b]
+          - 2D * (dot - m * means[a] * means[b]) * inverses[a] * inverses[b];
+      return (d2 > 0D) ? d2 : 0D;
+    }
+  }
+
+  /**
+   * A worker with a profile of its own, squared distances and match starts.
+   */
+  private static final class ProfileWorker {
+
+    private final SeriesWindows windows;
+    private final double[] squares;
+    private final int[] indexes;
+
+    private ProfileWorker(SeriesWindows windows) {
+      this.windows = windows;
+      this.squares = new double[windows.count];
+      this.indexes = new int[windows.count];
+      Arrays.fill(squares, Double.POSITIVE_INFINITY);
+      Arrays.fill(indexes, -1);
+    }
+
+    /**
+     * Evaluates the pairs {@code (i, i + k)} for {@code i} in {@code [from, to)}.
+     */
+    private void diagonal(int k, int from, int to) {
+      double[] x = windows.x;
+      int m = windows.m;
+      double dot = 0D;
+      for (int i = from; i < to; i++) {
+        int j = i + k;
+        if (0 == (i - from) % REFRESH_STEPS) {
+          dot = windows.dot(i, j);
+        }
+        else {
+          dot += x[i + m - 1] * x[j + m - 1] - x[i - 1] * x[j - 1];
+        }
+        double d2 = windows.squaredDistance(i, j, dot);
+        update(i, j, d2);
+        update(j, i, d2);
+      }
+    }
+
+    /**
+     * Finds the nearest match of the window off its FFT dot products and evaluates the stretch of
+     * the diagonal through the pair, {@code step - 1} windows to either side.
+     */
+    private void preScrimp(MASSDistanceProfile mass, int i, int step, double[] row) {
+      int m = windows.m;
+      mass.slidingDotProducts(i, m, row);
+      int nearest = -1;
+      double nearestDistance = Double.POSITIVE_INFINITY;
+      for (int j = 0; j < windows.count; j++) {
+        if (Math.abs(i - j) > m) {
+          double d2 = windows.squaredDistance(i, j, row[j]);
+          if (d2 < nearestDistance) {
+            nearest = j;
+            nearestDistance = d2;
+          }
+        }
+      }
+      if (-1 == nearest) {
+        return;
+      }
+      int a = Math.min(i, nearest);
+      int k = Math.abs(nearest - i);
+      diagonal(k, Math.max(0, a - step + 1), Math.min(windows.count - k, a + step));
+    }
+
+    private void update(int i, int j, double d2) {
+      if (d2 < squares[i] || (d2 == squares[i] && j < indexes[i])) {
+        squares[i] = d2;
+        indexes[i] = j;
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.SAXException;
+
+/**
+ * The PAA of {@code TSProcessor.paa} writing into a caller-supplied buffer. The segment bounds and
+ * the fractional weights of the boundary points depend on the source and the target lengths only,
+ * so they are computed once per length pair and kept in a small set-associative table, the least
+ * recently used way of a set making room. An evicted table is refilled in place, its arrays only
+ * ever grow, so a reduction costs one pass over the window and allocates nothing in steady state,
+ * however many length pairs the search cycles through. The arithmetic is that of jmotif, the same
+ * products summed in the same order, so the values are bit for bit the same.
+ *
+ * A kernel is not thread safe, every search thread keeps its own.
+ *
+ * @author psenin
+ *
+ */
+final class PAAKernel {
+
+  // the sets, a power of two, and the length pairs kept per set
+  private static final int SETS_NUM = 64;
+  private static final int WAYS_NUM = 4;
+
+  private final long[] keys = new long[SETS_NUM * WAYS_NUM];
+  private final long[] used = new long[SETS_NUM * WAYS_NUM];
+  private final WeightTable[] tables = new WeightTable[SETS_NUM * WAYS_NUM];
+  private long clock;
+
+  /**
+   * Shrinks the window {@code [start, start + length)} of the series to the PAA size.
+   *
+   * @param series the timeseries.
+   * @param start the window start.
+   * @param length the window length.
+   * @param paaSize the PAA size.
+   * @param out the buffer the PAA values are written to, at least the PAA size long.
+   * @throws SAXException if the PAA size is greater than the window length.
+   */
+  void paa(double[] series, int start, int length, int paaSize, double[] out)
+      throws SAXException {
+    if (length < paaSize) {
+      throw new SAXException("PAA size can't be greater than the timeseries size.");
+    }
+    if (length == paaSize) {
+      System.arraycopy(series, start, out, 0, length);
+      return;
+    }
+    WeightTable table = table(length, paaSize);
+    for (int i = 0; i < paaSize; i++) {
+      int from = start + table.from[i];
+      int last = start + table.to[i] - 1;
+      double sum = 0D;
+      for (int k = from; k <= last; k++) {
+        double v = series[k];
+        if (k == from && table.left[i] > 0D) {
+          v = v * table.left[i];
+        }
+        if (k == last && table.right[i] > 0D) {
+          v = v * table.right[i];
+        }
+        sum += v;
+      }
+      out[i] = sum / table.ratio;
+    }
+  }
+
+  private WeightTable table(int length, int paaSize) {
+    long key = ((long) length << 32) | paaSize;
+    int first = ((int) ((key * 0x9E3779B97F4A7C15L) >>> 58) & (SETS_NUM - 1)) * WAYS_NUM;
+    int victim = first;
+    for (int slot = first; slot < first + WAYS_NUM; slot++) {
+      if (null != tables[slot] && keys[slot] == key) {
+        used[slot] = ++clock;
+        return tables[slot];
+      }
+      if (used[slot] < used[victim]) {
+        victim = slot;
+      }
+    }
+    if (null == tables[victim]) {
+      tables[victim] = new WeightTable();
+    }
+    tables[victim].fill(length, paaSize);
+    keys[victim] = key;
+    used[victim] = ++clock;
+    return tables[victim];
+  }
+
+  /**
+   * The segments of a length pair: the first and the past-the-last points covered, and the
+   * weights of the partially covered boundary points, zero where a boundary falls on a point
+   * border. The arrays may be longer than the PAA size of the pair the table holds.
+   */
+  private static final class WeightTable {
+
+    private double ratio;
+    private int[] from = new int[0];
+    private int[] to = new int[0];
+    private double[] left = new double[0];
+    private double[] right = new double[0];
+
+    private void fill(int length, int paaSize) {
+      if (from.length < paaSize) {
+        // a power of two, so that recycled tables soon have room for any PAA size in use
+        int capacity = Integer.highestOneBit(Math.max(1, paaSize - 1)) << 1;
+        this.from = new int[capacity];
+        this.to = new int[capacity];
+        this.left = new double[capacity];
+        this.right = new double[capacity];
+      }
+      this.ratio = (double) length / paaSize;
+      for (int i = 0; i < paaSize; i++) {
+        double segStart = i * ratio;
+        double segEnd = (i + 1) * ratio;
+        left[i] = Math.ceil(segStart) - segStart;
+        right[i] = segEnd - Math.floor(segEnd);
+        from[i] = (int) Math.floor(segStart);
+        to[i] = (int) Math.ceil(segEnd);
+        // the last bound may round up past the window, jmotif then weights a zero padding point
+        if (to[i] > length) {
+          to[i] = length;
+          right[i] = 0D;
+        }
+      }
+    }
+  }
+}
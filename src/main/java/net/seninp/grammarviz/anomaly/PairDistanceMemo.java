@@ -0,0 +1,358 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * A bounded memo of the RRA candidate pair distances, kept over all the discord iterations of a
+ * search run. The series and the candidates do not change between the iterations, so most of the
+ * pairs the search for a discord examines come up again in the search for the next one, with the
+ * same outcome.
+ *
+ * The distance is symmetric and the key is the unordered pair of candidate indices packed into a
+ * long. A completed distance is kept as is; an abandoned one leaves the threshold it was abandoned
+ * at, a lower bound which answers any later call with a threshold at or below it. The entries live
+ * in open-addressing tables of primitive arrays which grow up to the byte budget and then make
+ * room with the clock (second chance) eviction.
+ *
+ * A memo is safe to share between search threads: the tables are split into segments, each one
+ * locked on its own.
+ *
+ * @author psenin
+ *
+ */
+final class PairDistanceMemo {
+
+  // the key, the value and the flags of a slot
+  private static final int SLOT_BYTES = 17;
+
+  // the number of segments, a power of two
+  private static final int SEGMENTS_NUM = 16;
+  private static final int SEGMENT_BITS = 4;
+
+  private static final int INITIAL_SLOTS = 64;
+
+  private static final long EMPTY = -1L;
+
+  private static final byte REFERENCED = 1;
+  private static final byte LOWER_BOUND = 2;
+
+  private final long byteBudget;
+  private final Segment[] segments;
+
+  /**
+   * Constructor.
+   *
+   * @param byteBudget the memo memory budget in bytes.
+   */
+  PairDistanceMemo(long byteBudget) {
+    if (byteBudget < 0) {
+      throw new IllegalArgumentException("negative memo budget: " + byteBudget);
+    }
+    this.byteBudget = byteBudget;
+    long slots = byteBudget / SEGMENTS_NUM / SLOT_BYTES;
+    int maxSlots = (slots < 2) ? 0 : Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+    this.segments = new Segment[SEGMENTS_NUM];
+    for (int i = 0; i < SEGMENTS_NUM; i++) {
+      segments[i] = new Segment(maxSlots);
+    }
+  }
+
+  /**
+   * Looks the pair distance up.
+   *
+   * @param a the first candidate index.
+   * @param b the second candidate index.
+   * @param abandonThreshold the distance above which the exact value is of no interest.
+   * @return the distance, {@code Double.POSITIVE_INFINITY} if it is known to be above the
+   * threshold, or {@code Double.NaN} if it is not known.
+   */
+  double lookup(int a, int b, double abandonThreshold) {
+    long key = key(a, b);
+    long hash = key * 0x9E3779B97F4A7C15L;
+    Segment segment = segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    synchronized (segment) {
+      return segment.lookup(key, hash, abandonThreshold);
+    }
+  }
+
+  /**
+   * Records the outcome of a distance call.
+   *
+   * @param a the first candidate index.
+   * @param b the second candidate index.
+   * @param abandonThreshold the threshold the distance was computed with.
+   * @param distance the distance, {@code Double.POSITIVE_INFINITY} if it was abandoned.
+   */
+  void record(int a, int b, double abandonThreshold, double distance) {
+    boolean bound = Double.POSITIVE_INFINITY == distance;
+    if (Double.isNaN(distance) || (bound && abandonThreshold >= Double.MAX_VALUE)) {
+      return;
+    }
+    long key = key(a, b);
+    long hash = key * 0x9E3779B97F4A7C15L;
+    Segment segment = segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    synchronized (segment) {
+      segment.record(key, hash, bound ? abandonThreshold : distance, bound);
+    }
+  }
+
+  /**
+   * Gets the number of lookups answered by the memo.
+   *
+   * @return the hits count.
+   */
+  long getHits() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.hits;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the number of lookups which required a distance call.
+   *
+   * @return the misses count.
+   */
+  long getMisses() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.misses;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the number of evicted entries.
+   *
+   * @return the evictions count.
+   */
+  long getEvictions() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.evictions;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the number of memoized pairs.
+   *
+   * @return the entries count.
+   */
+  int size() {
+    int res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.size;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the memory taken by the tables.
+   *
+   * @return the size in bytes.
+   */
+  long getBytes() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += (long) SLOT_BYTES * segment.keys.length;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the byte budget.
+   *
+   * @return the budget in bytes.
+   */
+  long getByteBudget() {
+    return byteBudget;
+  }
+
+  @Override
+  public String toString() {
+    long hits = getHits();
+    long lookups = hits + getMisses();
+    return "pair distance memo: " + size() + " entries, " + (getBytes() >> 10) + " KB of "
+        + (byteBudget >> 10) + " KB, hits: " + hits + ", misses: " + (lookups - hits)
+        + ", hit rate: " + ((0 == lookups) ? 0 : Math.round(100D * hits / lookups))
+        + "%, evictions: " + getEvictions();
+  }
+
+  private static long key(int a, int b) {
+    return (a < b) ? ((long) a << 32) | b : ((long) b << 32) | a;
+  }
+
+  /**
+   * A linear probing table with the clock hand sweeping its slots.
+   */
+  private static final class Segment {
+
+    private final int maxSlots;
+
+    private long[] keys;
+    private double[] values;
+    private byte[] flags;
+    private int size;
+    private int hand;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    Segment(int maxSlots) {
+      this.maxSlots = maxSlots;
+      allocate(Math.min(INITIAL_SLOTS, maxSlots));
+    }
+
+    double lookup(long key, long hash, double abandonThreshold) {
+      int slot = find(key, hash);
+      if (slot < 0) {
+        misses++;
+        return Double.NaN;
+      }
+      flags[slot] |= REFERENCED;
+      if (0 == (flags[slot] & LOWER_BOUND)) {
+        hits++;
+        return values[slot];
+      }
+      if (abandonThreshold <= values[slot]) {
+        hits++;
+        return Double.POSITIVE_INFINITY;
+      }
+      misses++;
+      return Double.NaN;
+    }
+
+    void record(long key, long hash, double value, boolean bound) {
+      if (0 == keys.length) {
+        return;
+      }
+      int slot = find(key, hash);
+      if (slot >= 0) {
+        // an exact distance is final, a bound is only ever raised
+        if (0 != (flags[slot] & LOWER_BOUND)) {
+          if (!bound) {
+            values[slot] = value;
+            flags[slot] = REFERENCED;
+          }
+          else if (value > values[slot]) {
+            values[slot] = value;
+          }
+        }
+        return;
+      }
+      if (4 * (size + 1) > 3 * keys.length) {
+        if (keys.length < maxSlots) {
+          grow();
+        }
+        else {
+          evict();
+        }
+      }
+      slot = home(hash, keys.length);
+      while (EMPTY != keys[slot]) {
+        slot = (slot + 1) & (keys.length - 1);
+      }
+      keys[slot] = key;
+      values[slot] = value;
+      flags[slot] = bound ? (byte) (REFERENCED | LOWER_BOUND) : REFERENCED;
+      size++;
+    }
+
+    private int find(long key, long hash) {
+      if (0 == keys.length) {
+        return -1;
+      }
+      int mask = keys.length - 1;
+      for (int slot = home(hash, keys.length); EMPTY != keys[slot]; slot = (slot + 1) & mask) {
+        if (key == keys[slot]) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Sweeps the hand over the slots, giving the referenced entries a second chance, and drops
+     * the first entry which has not been used since the hand passed it last.
+     */
+    private void evict() {
+      int mask = keys.length - 1;
+      while (true) {
+        if (EMPTY != keys[hand]) {
+          if (0 == (flags[hand] & REFERENCED)) {
+            // the hand stays, the deletion may shift the next entry into its slot
+            delete(hand);
+            evictions++;
+            return;
+          }
+          flags[hand] &= ~REFERENCED;
+        }
+        hand = (hand + 1) & mask;
+      }
+    }
+
+    /**
+     * Empties the slot shifting back the entries of the probe run which follows it, so that no
+     * tombstones are needed.
+     */
+    private void delete(int slot) {
+      int mask = keys.length - 1;
+      int hole = slot;
+      for (int next = (hole + 1) & mask; EMPTY != keys[next]; next = (next + 1) & mask) {
+        int home = home(keys[next] * 0x9E3779B97F4A7C15L, keys.length);
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          keys[hole] = keys[next];
+          values[hole] = values[next];
+          flags[hole] = flags[next];
+          hole = next;
+        }
+      }
+      keys[hole] = EMPTY;
+      size--;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      double[] oldValues = values;
+      byte[] oldFlags = flags;
+      allocate(2 * oldKeys.length);
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (EMPTY != oldKeys[i]) {
+          int slot = home(oldKeys[i] * 0x9E3779B97F4A7C15L, keys.length);
+          while (EMPTY != keys[slot]) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+          flags[slot] = oldFlags[i];
+        }
+      }
+      hand = 0;
+    }
+
+    private void allocate(int slots) {
+      keys = new long[slots];
+      values = new double[slots];
+      flags = new byte[slots];
+      Arrays.fill(keys, EMPTY);
+    }
+
+    private static int home(long hash, int slots) {
+      return (int) (hash >>> 24) & (slots - 1);
+    }
+  }
+}
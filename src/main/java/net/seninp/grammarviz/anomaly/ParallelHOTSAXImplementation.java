@@ -0,0 +1,306 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * Implements the HOTSAX discord search of the jmotif {@code HOTSAXImplementation} over a
+ * {@link SAXBucketIndex}: the same SAX words as candidates, the rarest words first, the same
+ * word occurrences tried first as the nearest neighbors, then all the other windows in a random
+ * order, and the same exclusion zone around the reported discords. The distances are computed
+ * through a {@link ZNormWindowIndex} with the jmotif arithmetic. Ties, which jmotif resolves in
+ * the hash order of its words, go to the candidate ranked first.
+ *
+ * The outer loop is shared by the workers, which claim the ranked candidates in small chunks and
+ * abandon a candidate as soon as a match nearer than the best discord so far, shared by all of
+ * them, turns up. The nearest neighbor distances, exact or bounded from above, are kept across
+ * the discords of a run.
+ *
+ * @author psenin
+ *
+ */
+public class ParallelHOTSAXImplementation {
+
+  // the workers claim that many ranked candidates at once
+  private static final int CHUNK_SIZE = 16;
+
+  // the early abandoning limit is widened by a relative slack, so a distance equal to the
+  // current nearest one in exact arithmetic is never dropped on rounding
+  private static final double ABANDON_SLACK = 1D + 1E-9;
+
+  // the random visit order does not change the discords, the seed keeps the run repeatable
+  private static final long SEED = 42L;
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(ParallelHOTSAXImplementation.class);
+
+  /**
+   * Finds the discords with HOTSAX.
+   *
+   * @param series the timeseries.
+   * @param discordsNum the number of discords to report.
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param strategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @return the discords.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2Discords(double[] series, int discordsNum, int windowSize,
+      int paaSize, int alphabetSize, NumerosityReductionStrategy strategy, double nThreshold,
+      int threadsNum) throws Exception {
+    return series2Discords(series, discordsNum, windowSize, paaSize, alphabetSize, strategy,
+        nThreshold, threadsNum, new Random(SEED));
+  }
+
+  /**
+   * Finds the discords with HOTSAX.
+   *
+   * @param series the timeseries.
+   * @param discordsNum the number of discords to report.
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param strategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @param rnd the source of the random neighbor visit order.
+   * @return the discords.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2Discords(double[] series, int discordsNum, int windowSize,
+      int paaSize, int alphabetSize, NumerosityReductionStrategy strategy, double nThreshold,
+      int threadsNum, Random rnd) throws Exception {
+    if (windowSize < 2 || windowSize >= series.length) {
+      throw new IllegalArgumentException("invalid window size: " + windowSize);
+    }
+
+    Date start = new Date();
+    SAXRecords sax = new SAXProcessor().ts2saxViaWindow(series, windowSize, paaSize,
+        new NormalAlphabet().getCuts(alphabetSize), strategy, nThreshold);
+    SAXBucketIndex buckets = new SAXBucketIndex(sax, alphabetSize,
+        series.length - windowSize + 1);
+    SearchState state = new SearchState(new ZNormWindowIndex(series, windowSize, nThreshold),
+        buckets, series.length - windowSize, rnd);
+    LOGGER.debug("discretized " + buckets.size() + " words in "
+        + SAXProcessor.timeToString(start.getTime(), new Date().getTime()));
+
+    int workersNum = Math.max(1, threadsNum);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workersNum);
+    for (int w = 0; w < workersNum; w++) {
+      tasks.add(() -> {
+        search(state);
+        return null;
+      });
+    }
+
+    ForkJoinPool pool = (workersNum > 1) ? new ForkJoinPool(workersNum) : null;
+    DiscordRecords discords = new DiscordRecords();
+    try {
+      while (discords.getSize() < discordsNum) {
+        Date discordStart = new Date();
+        long callsBefore = state.distanceCalls.sum();
+        state.resetBest();
+        run(pool, tasks);
+
+        int rank = state.bestRank;
+        double distance = state.bestDistance;
+        if (-1 == rank || 0D == distance) {
+          LOGGER.debug("breaking the outer search loop, discords found: " + discords.getSize());
+          break;
+        }
+        int position = buckets.positionAt(rank);
+        DiscordRecord discord = new DiscordRecord(position, distance,
+            buckets.word(buckets.bucketOf(position)));
+        discord.setLength(windowSize);
+        discord.setInfo("position " + position + ", NN distance " + distance
+            + ", elapsed time: "
+            + SAXProcessor.timeToString(discordStart.getTime(), new Date().getTime())
+            + ", distance calls: " + (state.distanceCalls.sum() - callsBefore));
+        discords.add(discord);
+
+        // the exclusion zone of jmotif HOTSAX
+        state.registry.markVisited(Math.max(0, position - windowSize),
+            Math.min(state.registry.size(), position + windowSize));
+      }
+    }
+    finally {
+      if (null != pool) {
+        pool.shutdownNow();
+      }
+    }
+
+    LOGGER.info(discords.getSize() + " HOTSAX discords found in "
+        + SAXProcessor.timeToString(start.getTime(), new Date().getTime()) + " on " + workersNum
+        + " threads, distance calls: " + state.distanceCalls.sum());
+    return discords;
+  }
+
+  private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) throws Exception {
+    if (null == pool) {
+      tasks.get(0).call();
+      return;
+    }
+    for (Future<Void> future : pool.invokeAll(tasks)) {
+      try {
+        future.get();
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * The search state shared by the workers: the ranked candidates, the random neighbor visit
+   * order, the nearest neighbor distance bounds and the best discord so far.
+   */
+  private static final class SearchState {
+
+    private final ZNormWindowIndex index;
+    private final SAXBucketIndex buckets;
+    private final int neighbors;
+    private final int[] visitOrder;
+    private final BitVisitRegistry registry;
+    private final double[] nnBounds;
+    private final boolean[] exact;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final LongAdder distanceCalls = new LongAdder();
+
+    private volatile double bestDistance;
+    private int bestRank;
+
+    private SearchState(ZNormWindowIndex index, SAXBucketIndex buckets, int neighbors,
+        Random rnd) {
+      this.index = index;
+      this.buckets = buckets;
+      this.neighbors = neighbors;
+      this.visitOrder = new int[neighbors];
+      for (int j = 0; j < neighbors; j++) {
+        visitOrder[j] = j;
+      }
+      RandomVisitOrder.shuffle(visitOrder, neighbors, rnd);
+      this.registry = new BitVisitRegistry(neighbors + 1);
+      this.nnBounds = new double[neighbors + 1];
+      Arrays.fill(nnBounds, Double.MAX_VALUE);
+      this.exact = new boolean[neighbors + 1];
+    }
+
+    private void resetBest() {
+      cursor.set(0);
+      bestDistance = -1D;
+      bestRank = -1;
+    }
+
+    private synchronized void offer(int rank, double distance) {
+      if (Double.MAX_VALUE == distance) {
+        return;
+      }
+      if (distance > bestDistance || (distance == bestDistance && rank < bestRank)) {
+        bestDistance = distance;
+        bestRank = rank;
+      }
+    }
+  }
+
+  /**
+   * Claims the ranked candidates off the shared cursor and runs their nearest neighbor searches.
+   */
+  private static void search(SearchState state) {
+    ZNormWindowIndex index = state.index;
+    SAXBucketIndex buckets = state.buckets;
+    int windowSize = index.windowSize();
+    int size = buckets.size();
+    double[] window = new double[windowSize];
+    long calls = 0;
+
+    for (int from = state.cursor.getAndAdd(CHUNK_SIZE); from < size; from = state.cursor
+        .getAndAdd(CHUNK_SIZE)) {
+      for (int rank = from; rank < Math.min(size, from + CHUNK_SIZE); rank++) {
+        int i = buckets.positionAt(rank);
+        if (state.registry.isVisited(i)) {
+          continue;
+        }
+        double nn = state.nnBounds[i];
+        if (state.exact[i]) {
+          state.offer(rank, nn);
+          continue;
+        }
+        if (nn < state.bestDistance) {
+          continue;
+        }
+
+        index.normalize(i, window);
+        int bucket = buckets.bucketOf(i);
+        boolean abandoned = false;
+        search: {
+          // the occurrences of the same word first
+          for (int o = buckets.bucketStart(bucket); o < buckets.bucketEnd(bucket); o++) {
+            int j = buckets.occurrence(o);
+            if (Math.abs(i - j) <= windowSize) {
+              continue;
+            }
+            double limit = (Double.MAX_VALUE == nn) ? Double.MAX_VALUE : nn * nn * ABANDON_SLACK;
+            double dist = index.earlyAbandonedDistance(window, j, limit);
+            calls++;
+            if (dist < nn) {
+              nn = dist;
+              if (nn < state.bestDistance) {
+                abandoned = true;
+                break search;
+              }
+            }
+          }
+          // all the other windows
+          for (int k = 0; k < state.neighbors; k++) {
+            int j = state.visitOrder[k];
+            if (Math.abs(i - j) <= windowSize || buckets.bucketOf(j) == bucket) {
+              continue;
+            }
+            double limit = (Double.MAX_VALUE == nn) ? Double.MAX_VALUE : nn * nn * ABANDON_SLACK;
+            double dist = index.earlyAbandonedDistance(window, j, limit);
+            calls++;
+            if (dist < nn) {
+              nn = dist;
+              if (nn < state.bestDistance) {
+                abandoned = true;
+                break search;
+              }
+            }
+          }
+        }
+
+        state.nnBounds[i] = nn;
+        if (!abandoned) {
+          state.exact[i] = true;
+          state.offer(rank, nn);
+        }
+      }
+    }
+    state.distanceCalls.add(calls);
+  }
+}
@@ -0,0 +1,32 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A cancellation token for the anytime RRA search. Unlike a thread interrupt, which aborts the
+ * search with an exception, cancelling the token makes the search return the discords found so
+ * far, flagged as partial.
+ *
+ * @author psenin
+ *
+ */
+public final class RRACancellationToken {
+
+  private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+  /**
+   * Requests the search to stop at the next check point.
+   */
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+  /**
+   * Checks whether the cancellation was requested.
+   *
+   * @return true if cancelled.
+   */
+  public boolean isCancelled() {
+    return cancelled.get();
+  }
+}
@@ -0,0 +1,257 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.grammarviz.GrammarVizAnomaly;
+
+/**
+ * The RRA candidate intervals laid out as parallel primitive arrays: start, end, rule id and
+ * coverage. Along with the arrays the store holds the candidates' visit order -- a stable,
+ * ascending coverage sort -- and a compressed (CSR) rule-to-occurrences index, both computed once
+ * at construction, so a search run neither boxes indices nor rebuilds a map per discord.
+ *
+ * Stores are immutable and safe to share between search threads.
+ *
+ * @author psenin
+ *
+ */
+public final class RRACandidateStore {
+
+  private final int size;
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] ruleIds;
+  private final int[] coverage;
+
+  // candidate indices in the ascending coverage order, ties in the index order
+  private final int[] sortOrder;
+
+  // CSR index: the occurrences of the rule of candidate i are
+  // occurrences[ruleOffsets[ruleSlots[i]] .. ruleOffsets[ruleSlots[i] + 1])
+  private final int[] ruleSlots;
+  private final int[] ruleOffsets;
+  private final int[] occurrences;
+
+  /**
+   * Constructor; the arrays are taken over, not copied.
+   *
+   * @param starts the intervals start positions, inclusive.
+   * @param ends the intervals end positions, exclusive.
+   * @param ruleIds the intervals rule ids, negative for uncovered gaps.
+   * @param coverage the intervals coverage, i.e. their rule occurrence counts.
+   */
+  public RRACandidateStore(int[] starts, int[] ends, int[] ruleIds, int[] coverage) {
+    this.size = starts.length;
+    if (ends.length != size || ruleIds.length != size || coverage.length != size) {
+      throw new IllegalArgumentException("the candidate arrays differ in length");
+    }
+    this.starts = starts;
+    this.ends = ends;
+    this.ruleIds = ruleIds;
+    this.coverage = coverage;
+
+    this.sortOrder = new int[size];
+    long[] keys = new long[size];
+
+    // (coverage, index) pairs packed into longs sort stably with a primitive sort
+    for (int i = 0; i < size; i++) {
+      keys[i] = ((long) coverage[i] << 32) | i;
+    }
+    Arrays.sort(keys);
+    for (int i = 0; i < size; i++) {
+      sortOrder[i] = (int) keys[i];
+    }
+
+    // same trick groups the candidates by rule, each group in the index order
+    for (int i = 0; i < size; i++) {
+      keys[i] = ((long) ruleIds[i] << 32) | i;
+    }
+    Arrays.sort(keys);
+    this.ruleSlots = new int[size];
+    this.occurrences = new int[size];
+    int[] offsets = new int[size + 1];
+    int slots = 0;
+    for (int i = 0; i < size; i++) {
+      int idx = (int) keys[i];
+      if (0 == i || ruleIds[idx] != ruleIds[(int) keys[i - 1]]) {
+        offsets[slots++] = i;
+      }
+      occurrences[i] = idx;
+      ruleSlots[idx] = slots - 1;
+    }
+    offsets[slots] = size;
+    this.ruleOffsets = Arrays.copyOf(offsets, slots + 1);
+  }
+
+  /**
+   * Builds a store off a list of intervals; the list is left untouched. Non-integral coverage
+   * values are replaced by their ranks, which keeps the visit order.
+   *
+   * @param intervals the candidate intervals.
+   * @return the store.
+   */
+  public static RRACandidateStore fromIntervals(List<RuleInterval> intervals) {
+    int size = intervals.size();
+    int[] starts = new int[size];
+    int[] ends = new int[size];
+    int[] ruleIds = new int[size];
+    int[] coverage = new int[size];
+    boolean integral = true;
+    for (int i = 0; i < size; i++) {
+      RuleInterval interval = intervals.get(i);
+      starts[i] = interval.getStart();
+      ends[i] = interval.getEnd();
+      ruleIds[i] = interval.getId();
+      double c = interval.getCoverage();
+      coverage[i] = (int) c;
+      integral &= (coverage[i] == c);
+    }
+    if (!integral) {
+      double[] distinct = new double[size];
+      for (int i = 0; i < size; i++) {
+        distinct[i] = intervals.get(i).getCoverage();
+      }
+      Arrays.sort(distinct);
+      for (int i = 0; i < size; i++) {
+        coverage[i] = Arrays.binarySearch(distinct, intervals.get(i).getCoverage());
+      }
+    }
+    return new RRACandidateStore(starts, ends, ruleIds, coverage);
+  }
+
+  /**
+   * Gets the number of candidates.
+   *
+   * @return the candidates count.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the candidate start.
+   *
+   * @param i the candidate index.
+   * @return the start position, inclusive.
+   */
+  public int getStart(int i) {
+    return starts[i];
+  }
+
+  /**
+   * Gets the candidate end.
+   *
+   * @param i the candidate index.
+   * @return the end position, exclusive.
+   */
+  public int getEnd(int i) {
+    return ends[i];
+  }
+
+  /**
+   * Gets the candidate length.
+   *
+   * @param i the candidate index.
+   * @return the length.
+   */
+  public int getLength(int i) {
+    return ends[i] - starts[i];
+  }
+
+  /**
+   * Gets the candidate rule id.
+   *
+   * @param i the candidate index.
+   * @return the rule id, negative for uncovered gaps.
+   */
+  public int getRuleId(int i) {
+    return ruleIds[i];
+  }
+
+  /**
+   * Gets the candidate coverage.
+   *
+   * @param i the candidate index.
+   * @return the coverage.
+   */
+  public int getCoverage(int i) {
+    return coverage[i];
+  }
+
+  /**
+   * Checks whether the candidate is long enough for the distance computation, see
+   * {@link GrammarVizAnomaly#isViableAnomalyCandidate(RuleInterval)}.
+   *
+   * @param i the candidate index.
+   * @return true if viable.
+   */
+  public boolean isViable(int i) {
+    return ends[i] - starts[i] >= GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH;
+  }
+
+  /**
+   * Gets the index of the candidate visited at the given step of the outer loop.
+   *
+   * @param rank the visit step.
+   * @return the candidate index.
+   */
+  public int sortedIndex(int rank) {
+    return sortOrder[rank];
+  }
+
+  /**
+   * Gets the CSR occurrences array, see {@link #occurrencesFrom(int)}; must not be modified.
+   *
+   * @return the occurrences array.
+   */
+  public int[] occurrences() {
+    return occurrences;
+  }
+
+  /**
+   * Gets the first slot in {@link #occurrences()} of the candidate's rule occurrences.
+   *
+   * @param i the candidate index.
+   * @return the first slot, inclusive.
+   */
+  public int occurrencesFrom(int i) {
+    return ruleOffsets[ruleSlots[i]];
+  }
+
+  /**
+   * Gets the end slot in {@link #occurrences()} of the candidate's rule occurrences.
+   *
+   * @param i the candidate index.
+   * @return the end slot, exclusive.
+   */
+  public int occurrencesTo(int i) {
+    return ruleOffsets[ruleSlots[i] + 1];
+  }
+
+  /**
+   * Counts the uncovered gap candidates.
+   *
+   * @return the number of candidates with a negative rule id.
+   */
+  public int uncoveredCount() {
+    int res = 0;
+    for (int id : ruleIds) {
+      if (id < 0) {
+        res++;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Materializes a candidate as a rule interval.
+   *
+   * @param i the candidate index.
+   * @return a new rule interval.
+   */
+  public RuleInterval toRuleInterval(int i) {
+    return new RuleInterval(ruleIds[i], starts[i], ends[i], coverage[i]);
+  }
+}
@@ -0,0 +1,204 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.seninp.grammarviz.GrammarVizAnomaly;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * Re-scores the RRA discords against every window of their length. The RRA search only compares
+ * a discord to the rule intervals, shrinking the longer ones with PAA, so its NN distance is an
+ * upper bound; the verification finds the exact nearest neighbor by the very distance RRA uses,
+ * among the windows starting outside of the RRA exclusion band {@code [start - length, end)}.
+ *
+ * The distance profile of a discord comes off the FFT sliding dot products of a
+ * {@link MASSDistanceProfile} and the rolling window sums, and serves as a filter only: every
+ * window the profile can not rule out, within a generous error bound, has its distance
+ * recomputed with the RRA kernel, so the reported minimum is the one a full scan with the RRA
+ * distance finds. The discords are shared out among the workers.
+ *
+ * @author psenin
+ *
+ */
+public final class RRAExactVerification {
+
+  // a relative error bound well above the FFT rounding, the filter only has to be safe
+  private static final double TOLERANCE = 1.0E-9;
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory.getLogger(RRAExactVerification.class);
+
+  private final double[] series;
+  private final double zNormThreshold;
+  private final SeriesStatsIndex stats;
+  private final MASSDistanceProfile profile;
+  private final double[] sums;
+  private final double[] energies;
+
+  private RRAExactVerification(double[] series, double zNormThreshold) {
+    this.series = series;
+    this.zNormThreshold = zNormThreshold;
+    this.stats = new SeriesStatsIndex(series);
+    this.profile = new MASSDistanceProfile(series);
+    double[] centered = profile.centeredSeries();
+    this.sums = new double[series.length + 1];
+    this.energies = new double[series.length + 1];
+    for (int i = 0; i < series.length; i++) {
+      sums[i + 1] = sums[i] + centered[i];
+      energies[i + 1] = energies[i] + centered[i] * centered[i];
+    }
+  }
+
+  /**
+   * Annotates the discords with their exact nearest neighbors.
+   *
+   * @param series the timeseries.
+   * @param discords the discords found by the RRA search.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param threadsNum the number of threads.
+   * @return the verified discords, in the order of the input.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords verify(double[] series, DiscordRecords discords,
+      double zNormThreshold, int threadsNum) throws Exception {
+
+    Date start = new Date();
+    final int size = discords.getSize();
+    final VerifiedDiscordRecord[] res = new VerifiedDiscordRecord[size];
+    if (size > 0) {
+      final RRAExactVerification verification = new RRAExactVerification(series, zNormThreshold);
+      final AtomicInteger cursor = new AtomicInteger();
+      int workersNum = Math.max(1, Math.min(threadsNum, size));
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workersNum);
+      for (int w = 0; w < workersNum; w++) {
+        final MASSDistanceProfile worker = (0 == w) ? verification.profile
+            : verification.profile.newWorker();
+        tasks.add(() -> {
+          double[][] buffers = new double[3][series.length];
+          for (int i = cursor.getAndIncrement(); i < size; i = cursor.getAndIncrement()) {
+            res[i] = verification.verify(discords.get(i), worker, buffers);
+          }
+          return null;
+        });
+      }
+      run((workersNum > 1) ? new ForkJoinPool(workersNum) : null, tasks);
+    }
+
+    DiscordRecords verified = new DiscordRecords();
+    for (VerifiedDiscordRecord discord : res) {
+      verified.add(discord);
+    }
+    LOGGER.info(size + " discords verified against their exact nearest neighbors in "
+        + SAXProcessor.timeToString(start.getTime(), new Date().getTime()));
+    return verified;
+  }
+
+  private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) throws Exception {
+    if (null == pool) {
+      tasks.get(0).call();
+      return;
+    }
+    try {
+      for (Future<Void> future : pool.invokeAll(tasks)) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Finds the exact nearest neighbor of the discord.
+   */
+  private VerifiedDiscordRecord verify(DiscordRecord discord, MASSDistanceProfile worker,
+      double[][] buffers) throws Exception {
+
+    int start = discord.getPosition();
+    int len = discord.getLength();
+    int last = series.length - len;
+    if (len < GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH || last < 0) {
+      return annotate(discord, Double.MAX_VALUE, -1);
+    }
+    double[] dots = buffers[0];
+    double[] approx = buffers[1];
+    double[] tolerance = buffers[2];
+    worker.slidingDotProducts(start, len, dots);
+
+    double sd = stats.stDev(start, start + len);
+    boolean nearThreshold = stats.isNearThreshold(start, start + len, zNormThreshold);
+    double mean = (sums[start + len] - sums[start]) / len;
+    double energy = energies[start + len] - energies[start];
+    double dotError = TOLERANCE * Math.sqrt(energy * energies[series.length]);
+
+    // the approximate squared distances and the smallest one they may be hiding
+    double threshold = Double.POSITIVE_INFINITY;
+    for (int j = 0; j <= last; j++) {
+      if (j >= start - len && j < start + len) {
+        continue;
+      }
+      double otherSd = stats.stDev(j, j + len);
+      double otherMean = (sums[j + len] - sums[j]) / len;
+      double otherEnergy = energies[j + len] - energies[j];
+      if (sd < zNormThreshold || otherSd < zNormThreshold) {
+        approx[j] = energy + otherEnergy - 2D * dots[j];
+        tolerance[j] = 2D * dotError + TOLERANCE * (energy + otherEnergy);
+      }
+      else {
+        double scale = sd * otherSd;
+        approx[j] = 2D * len - 2D * (dots[j] - len * mean * otherMean) / scale;
+        tolerance[j] = 2D * (dotError + TOLERANCE
+            * (Math.sqrt(energy * otherEnergy) + len * Math.abs(mean * otherMean))) / scale
+            + 2D * len * TOLERANCE;
+      }
+      if (nearThreshold || stats.isNearThreshold(j, j + len, zNormThreshold)) {
+        // the branch of the exact distance is not known here, the window is always measured
+        tolerance[j] = Double.POSITIVE_INFINITY;
+      }
+      threshold = Math.min(threshold, approx[j] + tolerance[j]);
+    }
+
+    // the exact distances of the windows which may be the nearest
+    double nn = Double.MAX_VALUE;
+    int nnPosition = -1;
+    for (int j = 0; j <= last; j++) {
+      if ((j >= start - len && j < start + len) || approx[j] - tolerance[j] > threshold) {
+        continue;
+      }
+      double dist = RRAImplementation.normalizedDistance(series, stats, start, len, j, len,
+          zNormThreshold, Double.MAX_VALUE, null);
+      if (dist < nn) {
+        nn = dist;
+        nnPosition = j;
+      }
+    }
+    return annotate(discord, nn, nnPosition);
+  }
+
+  private static VerifiedDiscordRecord annotate(DiscordRecord discord, double distance,
+      int position) {
+    VerifiedDiscordRecord res = new VerifiedDiscordRecord(discord, distance, position);
+    String exact = "exact NN distance " + distance + " at " + position;
+    res.setInfo((null == discord.getInfo()) ? exact : discord.getInfo() + ", " + exact);
+    return res;
+  }
+}
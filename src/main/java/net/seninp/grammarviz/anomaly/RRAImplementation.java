@@ -4,16 +4,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.seninp.gi.logic.RuleInterval;
 import net.seninp.grammarviz.GrammarVizAnomaly;
 import net.seninp.jmotif.sax.SAXProcessor;
-import net.seninp.jmotif.sax.TSProcessor;
 import net.seninp.jmotif.sax.discord.DiscordRecord;
 import net.seninp.jmotif.sax.discord.DiscordRecords;
 
@@ -28,12 +34,25 @@ public class RRAImplementation {
   /** Default number of discords reported by the GUI anomaly finder. */
   public static final int DEFAULT_DISCORD_COUNT = 5;
 
-  private static TSProcessor tp = new TSProcessor();
+  /** The statistics and distance loops, scalar or SIMD, see {@link DistanceKernels}. */
+  private static final DistanceKernel KERNEL = DistanceKernels.get();
+
+  /**
+   * The former in-loop statistics, taken for the windows whose index deviation is too close to
+   * the z-normalization threshold to tell the branch, see {@link SeriesStatsIndex}.
+   */
+  private static final DistanceKernel TWO_PASS = DistanceKernels.scalar();
 
   /** Reusable buffers for {@link #normalizedDistance} (one set per worker thread). */
   private static final ThreadLocal<DistanceScratch> DISTANCE_SCRATCH =
       ThreadLocal.withInitial(DistanceScratch::new);
 
+  /** Relative widening of the early-abandon bound, see {@link #squaredSumLimit}. */
+  private static final double ABANDON_SLACK = 1D + 1E-9;
+
+  /** The anytime search charges its budget, and checks it, every that many distance calls. */
+  private static final int BUDGET_CHECK_CALLS = 64;
+
   // static block - we instantiate the logger
   //
   private static final Logger LOGGER = LoggerFactory.getLogger(RRAImplementation.class);
@@ -75,69 +94,268 @@ public class RRAImplementation {
    */
   public static DiscordRecords series2RRAAnomalies(double[] series, int discordCollectionSize,
       ArrayList<RuleInterval> intervals, double zNormThreshold, Random rnd) throws Exception {
+    return series2RRAAnomalies(series, discordCollectionSize, intervals, zNormThreshold, rnd, 1);
+  }
+
+  /**
+   * Parallel overload of {@link #series2RRAAnomalies(double[], int, ArrayList, double, Random)}.
+   * The frequency-sorted candidate list is split across {@code threadsNum} workers of a
+   * {@link ForkJoinPool} that share an atomically updated best-so-far NN distance, so early
+   * abandoning stays effective on every thread. The reported discords are the same as the
+   * sequential search's; only the search trajectory and the distance-call count differ.
+   *
+   * @param series the input timeseries.
+   * @param discordCollectionSize the number of discords to report.
+   * @param intervals the candidate rule intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param threadsNum the number of worker threads, values below 2 run the sequential search.
+   * @return the discords collection.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2RRAAnomalies(double[] series, int discordCollectionSize,
+      ArrayList<RuleInterval> intervals, double zNormThreshold, Random rnd, int threadsNum)
+      throws Exception {
+    return series2RRAAnomalies(series, discordCollectionSize, intervals, zNormThreshold, rnd,
+        new RRASearchOptions().setThreadsNum(threadsNum));
+  }
+
+  /**
+   * The RRA search configured with {@link RRASearchOptions}. Cross-length distances take the
+   * PAA-reduced windows from a {@link ReducedIntervalCache} -- the one supplied with the options,
+   * or one built for this run -- so an interval is shrunk once per target length for all the
+   * discord iterations rather than on every comparison.
+   *
+   * @param series the input timeseries.
+   * @param discordCollectionSize the number of discords to report.
+   * @param intervals the candidate rule intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param options the search options.
+   * @return the discords collection.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2RRAAnomalies(double[] series, int discordCollectionSize,
+      ArrayList<RuleInterval> intervals, double zNormThreshold, Random rnd,
+      RRASearchOptions options) throws Exception {
+    if (intervals.isEmpty()) {
+      return new DiscordRecords();
+    }
+    return series2RRAAnomalies(series, discordCollectionSize,
+        RRACandidateStore.fromIntervals(intervals), zNormThreshold, rnd, options);
+  }
+
+  /**
+   * The RRA search over a {@link RRACandidateStore}; the candidate visit order and the rule
+   * occurrences index come with the store, built once for all the discord iterations.
+   *
+   * @param series the input timeseries.
+   * @param discordCollectionSize the number of discords to report.
+   * @param candidates the candidate intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param options the search options.
+   * @return the discords collection.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecords series2RRAAnomalies(double[] series, int discordCollectionSize,
+      RRACandidateStore candidates, double zNormThreshold, Random rnd, RRASearchOptions options)
+      throws Exception {
+    return searchRRAAnomalies(series, discordCollectionSize, candidates, zNormThreshold, rnd,
+        options).getDiscords();
+  }
+
+  /**
+   * The anytime RRA search over a list of intervals, see the {@link RRACandidateStore} overload.
+   *
+   * @param series the input timeseries.
+   * @param discordCollectionSize the number of discords to report.
+   * @param intervals the candidate rule intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param options the search options.
+   * @return the search result.
+   * @throws Exception if error occurs.
+   */
+  public static RRASearchResult searchRRAAnomalies(double[] series, int discordCollectionSize,
+      ArrayList<RuleInterval> intervals, double zNormThreshold, Random rnd,
+      RRASearchOptions options) throws Exception {
+    return searchRRAAnomalies(series, discordCollectionSize,
+        RRACandidateStore.fromIntervals(intervals), zNormThreshold, rnd, options);
+  }
+
+  /**
+   * The anytime RRA search. Without a time or distance calls budget and a cancellation token it is
+   * the plain search, run to completion. Otherwise the workers check the budget between
+   * candidates and every few distance calls; once it is exhausted the search returns the discords
+   * of the completed iterations plus the best-so-far candidate of the interrupted one, flagged as
+   * partial, with the fraction of the candidate scans carried out as the completeness estimate.
+   *
+   * @param series the input timeseries.
+   * @param discordCollectionSize the number of discords to report.
+   * @param candidates the candidate intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param options the search options.
+   * @return the search result.
+   * @throws Exception if error occurs.
+   */
+  public static RRASearchResult searchRRAAnomalies(double[] series, int discordCollectionSize,
+      RRACandidateStore candidates, double zNormThreshold, Random rnd, RRASearchOptions options)
+      throws Exception {
 
     Date gStart = new Date();
+    long runStart = System.nanoTime();
 
     // resulting discords collection
     DiscordRecords discords = new DiscordRecords();
 
-    if (intervals.isEmpty()) {
-      return discords;
+    if (0 == candidates.size()) {
+      return new RRASearchResult(discords, RRASearchResult.StopReason.COMPLETED, 1D,
+          new RRARunStats(new ArrayList<RRARunStats.DiscordStats>(), 0,
+              options.getThreadsNum(), DistanceKernels.getSelectedName(),
+              System.nanoTime() - runStart, 0L, 0L, 0L, 0L, 0L));
     }
 
+    // the anytime limits, null for an unbounded search
+    RRASearchBudget budget = RRASearchBudget.start(options);
+    double scansDone = 0D;
+    boolean stoppedEarly = false;
+
     // visit registry
-    HashSet<Integer> registry = new HashSet<Integer>(
-        discordCollectionSize * intervals.get(0).getLength() * 2);
+    BitVisitRegistry registry = new BitVisitRegistry(series.length);
+
+    // window statistics and reduced windows, shared by all the discord iterations
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = reducedIntervalCache(series, options);
+    long cacheHits = cache.getHits();
+    long cacheMisses = cache.getMisses();
+
+    // the pair distances, shared by all the discord iterations too
+    PairDistanceMemo memo = (options.getPairMemoBytes() > 0)
+        ? new PairDistanceMemo(options.getPairMemoBytes())
+        : null;
+
+    // the SAX words for the MINDIST lower bound, built once per run
+    SAXMinDistBound minDist = options.isMinDistPruning()
+        ? new SAXMinDistBound(series, stats, candidates, zNormThreshold,
+            options.getMinDistPaaSize(), options.getMinDistAlphabetSize())
+        : null;
+    List<RRARunStats.DiscordStats> iterations = new ArrayList<RRARunStats.DiscordStats>();
+    VisitOrder visitOrder = options.getVisitOrder();
+    RRAVisitContext context = new RRAVisitContext(series, stats, candidates, zNormThreshold,
+        minDist);
+
+    // the single-pass top-k mode carries the candidates' NN bounds over the discord iterations
+    CandidateBounds bounds = options.isTopKMode()
+        ? new CandidateBounds(candidates, discordCollectionSize)
+        : null;
+
+    // a single pool serves all the discord iterations of this run
+    int threadsNum = options.getThreadsNum();
+    ForkJoinPool pool = (threadsNum > 1) ? new ForkJoinPool(threadsNum) : null;
+
+    try {
+
+      // we conduct the search until the number of discords is less than desired
+      //
+      while (discords.getSize() < discordCollectionSize) {
 
-    // we conduct the search until the number of discords is less than desired
-    //
-    while (discords.getSize() < discordCollectionSize) {
+        LOGGER.trace("currently known discords: " + discords.getSize() + " out of "
+            + discordCollectionSize);
 
-      LOGGER.trace(
-          "currently known discords: " + discords.getSize() + " out of " + discordCollectionSize);
+        if (null != budget && budget.isExhausted()) {
+          stoppedEarly = true;
+          break;
+        }
 
-      Date start = new Date();
-      DiscordRecord bestDiscord = findBestDiscordForIntervals(series, intervals, registry,
-          zNormThreshold, rnd);
-      Date end = new Date();
+        Date start = new Date();
+        long iterationStart = System.nanoTime();
+        SearchOutcome outcome = findBestDiscord(series, stats, cache, memo, candidates,
+            registry, zNormThreshold, rnd, pool, bounds, visitOrder, context, budget);
+        DiscordRecord bestDiscord = outcome.discord;
+        iterations.add(outcome.stats(RRAValidation.isValidDiscord(bestDiscord),
+            System.nanoTime() - iterationStart));
+        Date end = new Date();
+
+        boolean interrupted = outcome.scannedFraction < 1D;
+        scansDone += outcome.scannedFraction;
+        stoppedEarly |= interrupted;
+
+        // if the discord is null, or has a duplicate elsewhere (zero NN distance), stop
+        if (!RRAValidation.isValidDiscord(bestDiscord)) {
+          LOGGER.trace("breaking the outer search loop, discords found: " + discords.getSize()
+              + " last seen discord: " + bestDiscord.toString());
+          break;
+        }
 
-      // if the discord is null, or has a duplicate elsewhere (zero NN distance), stop
-      if (!RRAValidation.isValidDiscord(bestDiscord)) {
-        LOGGER.trace("breaking the outer search loop, discords found: " + discords.getSize()
-            + " last seen discord: " + bestDiscord.toString());
-        break;
-      }
+        bestDiscord.setInfo("position " + bestDiscord.getPosition() + ", length "
+            + bestDiscord.getLength() + ", NN distance " + bestDiscord.getNNDistance()
+            + ", elapsed time: " + SAXProcessor.timeToString(start.getTime(), end.getTime())
+            + ", " + bestDiscord.getInfo()
+            + (interrupted ? ", best-so-far of a partial search, "
+                + String.format("%.1f%%", 100D * outcome.scannedFraction)
+                + " of the candidates examined" : ""));
+        LOGGER.debug(bestDiscord.getInfo());
 
-      bestDiscord.setInfo("position " + bestDiscord.getPosition() + ", length "
-          + bestDiscord.getLength() + ", NN distance " + bestDiscord.getNNDistance()
-          + ", elapsed time: " + SAXProcessor.timeToString(start.getTime(), end.getTime()) + ", "
-          + bestDiscord.getInfo());
-      LOGGER.debug(bestDiscord.getInfo());
+        // collect the result
+        //
+        discords.add(bestDiscord);
 
-      // collect the result
-      //
-      discords.add(bestDiscord);
+        if (interrupted) {
+          break;
+        }
 
-      // saxpy / jmotif-R mark symmetric exclusion band [start−length, end)
-      int markStart = bestDiscord.getPosition() - bestDiscord.getLength();
-      if (markStart < 0) {
-        markStart = 0;
-      }
-      int markEnd = bestDiscord.getPosition() + bestDiscord.getLength();
-      if (markEnd > series.length) {
-        markEnd = series.length;
+        // saxpy / jmotif-R mark symmetric exclusion band [start−length, end)
+        int markStart = bestDiscord.getPosition() - bestDiscord.getLength();
+        if (markStart < 0) {
+          markStart = 0;
+        }
+        int markEnd = bestDiscord.getPosition() + bestDiscord.getLength();
+        if (markEnd > series.length) {
+          markEnd = series.length;
+        }
+        registry.markVisited(markStart, markEnd);
+
+        // the candidates whose NN fell inside the band are searched again
+        if (null != bounds) {
+          LOGGER.trace(bounds.release(markStart, markEnd)
+              + " candidates had their NN inside the exclusion band, to be searched again");
+        }
       }
-      for (int i = markStart; i < markEnd; i++) {
-        registry.add(i);
+
+    }
+    finally {
+      if (null != pool) {
+        pool.shutdownNow();
       }
     }
 
+    RRASearchResult.StopReason stopReason = stoppedEarly
+        ? budget.getStopReason()
+        : RRASearchResult.StopReason.COMPLETED;
+    double completeness = (RRASearchResult.StopReason.COMPLETED == stopReason) ? 1D
+        : Math.min(1D, scansDone / discordCollectionSize);
+    RRARunStats runStats = new RRARunStats(iterations, candidates.size(), threadsNum,
+        DistanceKernels.getSelectedName(), System.nanoTime() - runStart,
+        cache.getHits() - cacheHits, cache.getMisses() - cacheMisses,
+        (null == memo) ? 0L : memo.getHits(),
+        (null == memo) ? 0L : memo.getHits() + memo.getMisses(),
+        (null == memo) ? 0L : memo.getBytes());
+    RRASearchResult result = new RRASearchResult(discords, stopReason, completeness, runStats);
+
     LOGGER.info(discords.getSize() + " discords found in "
-        + SAXProcessor.timeToString(gStart.getTime(), new Date().getTime()));
+        + SAXProcessor.timeToString(gStart.getTime(), new Date().getTime())
+        + ", reduced interval cache hits: " + runStats.getCacheHits() + ", misses: "
+        + runStats.getCacheMisses() + ", distance calls: " + runStats.getDistanceCalls()
+        + " (" + visitOrder.getName() + " visit order)"
+        + ((null == minDist) ? "" : ", MINDIST pruned pairs: " + runStats.getMinDistPruned())
+        + ((null == memo) ? "" : ", " + memo.toString())
+        + (result.isPartial() ? ", " + result.toString() : ""));
 
     // done deal
     //
-    return discords;
+    return result;
   }
 
   /**
@@ -173,367 +391,1046 @@ public class RRAImplementation {
   public static DiscordRecord findBestDiscordForIntervals(double[] series,
       ArrayList<RuleInterval> globalIntervals, HashSet<Integer> registry, double zNormThreshold,
       Random rnd) throws Exception {
+    return findBestDiscordForIntervals(series, globalIntervals, registry, zNormThreshold, rnd, 1);
+  }
 
-    // prepare the visits array, note that there can't be more points to visit that in a SAX index
-    int intervalCount = globalIntervals.size();
-    int[] visitArray = new int[intervalCount];
+  /**
+   * Parallel overload that splits the outer loop across {@code threadsNum} workers sharing the
+   * best-so-far distance. Returns the same discord as the sequential search.
+   *
+   * @param series the data.
+   * @param globalIntervals set of intervals.
+   * @param registry the registry for track keeping.
+   * @param zNormThreshold normalization threshold value.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param threadsNum the number of worker threads, values below 2 run the sequential search.
+   * @return the best discord.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecord findBestDiscordForIntervals(double[] series,
+      ArrayList<RuleInterval> globalIntervals, HashSet<Integer> registry, double zNormThreshold,
+      Random rnd, int threadsNum) throws Exception {
+    BitVisitRegistry bitRegistry = new BitVisitRegistry(series.length);
+    bitRegistry.markVisited(registry);
+    return findBestDiscordForIntervals(series, globalIntervals, bitRegistry, zNormThreshold, rnd,
+        threadsNum);
+  }
 
-    Integer[] sortOrder = new Integer[intervalCount];
-    for (int i = 0; i < intervalCount; i++) {
-      sortOrder[i] = i;
+  /**
+   * Finds a best discord for the specified intervals skipping the candidates whose start is marked
+   * in the bit registry.
+   *
+   * @param series the data.
+   * @param globalIntervals set of intervals.
+   * @param registry the series-length registry of positions excluded by prior discords.
+   * @param zNormThreshold normalization threshold value.
+   * @param rnd the random source for the visit-order shuffle (seeds the workers' own RNGs).
+   * @param threadsNum the number of worker threads, values below 2 run the sequential search.
+   * @return the best discord.
+   * @throws Exception if error occurs.
+   */
+  public static DiscordRecord findBestDiscordForIntervals(double[] series,
+      ArrayList<RuleInterval> globalIntervals, BitVisitRegistry registry, double zNormThreshold,
+      Random rnd, int threadsNum) throws Exception {
+    RRACandidateStore candidates = RRACandidateStore.fromIntervals(globalIntervals);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    RRAVisitContext context = new RRAVisitContext(series, stats, candidates, zNormThreshold,
+        null);
+    if (threadsNum < 2) {
+      return findBestDiscord(series, stats, cache, null, candidates, registry, zNormThreshold,
+          rnd, null, null, VisitOrder.RANDOM, context, null).discord;
     }
-    Arrays.sort(sortOrder, new Comparator<Integer>() {
-      public int compare(Integer a, Integer b) {
-        return Double.compare(globalIntervals.get(a).getCoverage(),
-            globalIntervals.get(b).getCoverage());
-      }
-    });
+    ForkJoinPool pool = new ForkJoinPool(threadsNum);
+    try {
+      return findBestDiscord(series, stats, cache, null, candidates, registry, zNormThreshold,
+          rnd, pool, null, VisitOrder.RANDOM, context, null).discord;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * The discord search itself. With a {@code null} pool a single worker walks the candidates on
+   * the calling thread with the caller's RNG, which is exactly the historical sequential search.
+   * Otherwise one worker per pool thread claims candidates off the same frequency-sorted order.
+   * With candidate bounds (the top-k mode) the best-so-far distance starts off the best exact NN
+   * known from prior iterations, candidates whose NN upper bound falls below it are skipped, and
+   * exact NN distances are reused rather than recomputed. With a budget the workers stop once it
+   * is exhausted, and the outcome tells how much of the candidate scan was carried out. With a
+   * MINDIST bound the pairs it proves irrelevant are skipped without a distance call. The visit
+   * order arranges the neighbors each worker visits after a candidate's rule occurrences. With a
+   * pair distance memo the pairs whose distance, or whose being above the abandon threshold, is
+   * known from prior iterations are answered without a distance call.
+   */
+  private static SearchOutcome findBestDiscord(double[] series, SeriesStatsIndex stats,
+      ReducedIntervalCache cache, PairDistanceMemo memo, RRACandidateStore candidates,
+      BitVisitRegistry registry, double zNormThreshold, Random rnd, ForkJoinPool pool,
+      CandidateBounds bounds, VisitOrder visitOrder, RRAVisitContext context,
+      RRASearchBudget budget) throws Exception {
 
-    Map<Integer, int[]> ruleOccurrenceIndex = buildRuleOccurrenceIndex(globalIntervals);
-    HashSet<Integer> alreadyVisited = new HashSet<Integer>(256);
+    SAXMinDistBound minDist = context.getMinDist();
 
-    // init variables
-    int bestSoFarPosition = Integer.MIN_VALUE;
-    int bestSoFarLength = Integer.MIN_VALUE;
-    int bestSoFarRule = Integer.MIN_VALUE;
+    LOGGER.trace(
+        "going to iterate over " + candidates.size() + " intervals looking for the discord");
 
-    double bestSoFarDistance = Double.NEGATIVE_INFINITY;
+    // the workers claim candidates (in the store's coverage order) via the shared cursor
+    //
+    AtomicInteger cursor = new AtomicInteger(0);
+    BestSoFarDistance bestSoFar = new BestSoFarDistance();
+    if (null != bounds) {
+      bestSoFar.offer(bounds.seed(registry));
+    }
+
+    List<DiscordSearchWorker> workers = new ArrayList<DiscordSearchWorker>();
+    if (null == pool) {
+      DiscordSearchWorker worker = new DiscordSearchWorker(series, stats, cache, memo,
+          candidates, registry, zNormThreshold, rnd, cursor, bestSoFar, bounds, minDist,
+          visitOrder.newArranger(context), budget);
+      worker.call();
+      workers.add(worker);
+    }
+    else {
+      for (int i = 0; i < pool.getParallelism(); i++) {
+        workers.add(new DiscordSearchWorker(series, stats, cache, memo, candidates, registry,
+            zNormThreshold, new Random(rnd.nextLong()), cursor, bestSoFar, bounds, minDist,
+            visitOrder.newArranger(context), budget));
+      }
+      for (Future<DiscordSearchWorker> future : pool.invokeAll(workers)) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    }
 
-    // we will iterate over words from rarest to frequent ones - this is an OUTER LOOP of the best
-    // discord search
+    // merge the workers' candidates: the largest NN distance wins, ties go to the candidate which
+    // comes first in the sort order -- the one the sequential search would have kept
     //
-    int iterationCounter = 0;
+    DiscordSearchWorker best = workers.get(0);
     int distanceCalls = 0;
+    int abandonedCalls = 0;
+    int boundSkips = 0;
+    int reusedDistances = 0;
+    int prunedPairs = 0;
+    int memoHits = 0;
+    int examined = 0;
+    int randomVisits = 0;
+    int exclusionSkips = 0;
+    int scanned = 0;
+    for (DiscordSearchWorker worker : workers) {
+      scanned += worker.scanned;
+      distanceCalls += worker.distanceCalls;
+      abandonedCalls += worker.abandonedCalls;
+      boundSkips += worker.boundSkips;
+      reusedDistances += worker.reusedDistances;
+      prunedPairs += worker.prunedPairs;
+      memoHits += worker.memoHits;
+      examined += worker.examined;
+      randomVisits += worker.randomVisits;
+      exclusionSkips += worker.exclusionSkips;
+      if (worker.bestDistance > best.bestDistance || (worker.bestDistance == best.bestDistance
+          && worker.bestOrder < best.bestOrder)) {
+        best = worker;
+      }
+    }
+
+    DiscordRecord res = new DiscordRecord(best.bestPosition, best.bestDistance,
+        "pos,calls,len,rule " + best.bestPosition + " " + distanceCalls + " " + best.bestLength
+            + " " + best.bestRule);
+
+    res.setLength(best.bestLength);
+    res.setRuleId(best.bestRule);
+    String info = "distance calls: " + distanceCalls + ", early abandoned: " + abandonedCalls
+        + ", completed: " + (distanceCalls - abandonedCalls);
+    if (null != bounds) {
+      info = info + ", bound skips: " + boundSkips + ", reused NN distances: " + reusedDistances;
+    }
+    if (null != minDist) {
+      info = info + ", MINDIST pruned: " + prunedPairs;
+    }
+    if (null != memo) {
+      info = info + ", memoized: " + memoHits;
+    }
+    res.setInfo(info);
+
+    SearchOutcome outcome = new SearchOutcome(res,
+        (scanned >= candidates.size()) ? 1D : (double) scanned / candidates.size());
+    outcome.examined = examined;
+    outcome.distanceCalls = distanceCalls;
+    outcome.abandonedCalls = abandonedCalls;
+    outcome.randomVisits = randomVisits;
+    outcome.exclusionSkips = exclusionSkips;
+    outcome.memoHits = memoHits;
+    outcome.prunedPairs = prunedPairs;
+    return outcome;
+  }
+
+  /**
+   * A discord iteration outcome: the best discord, the fraction of the candidates scanned, and
+   * the workers' counters summed up.
+   */
+  private static final class SearchOutcome {
+    private final DiscordRecord discord;
+    private final double scannedFraction;
+    private long examined;
+    private long distanceCalls;
+    private long abandonedCalls;
+    private long randomVisits;
+    private long exclusionSkips;
+    private long memoHits;
+    private long prunedPairs;
+
+    SearchOutcome(DiscordRecord discord, double scannedFraction) {
+      this.discord = discord;
+      this.scannedFraction = scannedFraction;
+    }
+
+    RRARunStats.DiscordStats stats(boolean valid, long elapsedNanos) {
+      return new RRARunStats.DiscordStats(valid ? discord.getPosition() : -1,
+          valid ? discord.getLength() : -1, valid ? discord.getNNDistance() : Double.NaN,
+          examined, distanceCalls, abandonedCalls, randomVisits, exclusionSkips, memoHits,
+          prunedPairs, elapsedNanos);
+    }
+  }
+
+  /**
+   * The best-so-far NN distance shared by the search workers; only ever grows.
+   */
+  private static final class BestSoFarDistance {
+    private final AtomicLong bits = new AtomicLong(
+        Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+
+    double get() {
+      return Double.longBitsToDouble(bits.get());
+    }
+
+    void offer(double distance) {
+      long current = bits.get();
+      while (distance > Double.longBitsToDouble(current)
+          && !bits.compareAndSet(current, Double.doubleToLongBits(distance))) {
+        current = bits.get();
+      }
+    }
+  }
 
-    LOGGER
-        .trace("going to iterate over " + intervalCount + " intervals looking for the discord");
+  /**
+   * The per-candidate NN distance bounds kept over the discord iterations of the top-k mode: a
+   * completed search yields a candidate's NN distance exactly, an abandoned one an upper bound,
+   * and each comes with the start of the neighbor it was seen at. A bound stays valid as long as
+   * that neighbor is, so once a discord marks its exclusion band, only the candidates whose
+   * neighbor starts inside the band are revisited. (Under the saxpy / jmotif-R semantics the band
+   * only excludes candidates by their start, so the revisit finds the same distance again; it is
+   * what keeps the bounds sound should the band ever narrow the neighbors.)
+   *
+   * A bounded heap keeps the k best exact candidates which do not overlap one another, in the
+   * sense of the band: no kept candidate starts inside the band a better kept one would mark. The
+   * best of them still eligible seeds the next iteration's best-so-far distance.
+   *
+   * The workers of an iteration claim distinct candidates, so the arrays need no locking; the heap
+   * does.
+   */
+  private static final class CandidateBounds {
+
+    private final RRACandidateStore candidates;
+    private final double[] nnBounds;
+    private final boolean[] exact;
+    private final int[] nnStarts;
+    private final int capacity;
+    // the worst of the kept candidates on top: the smallest distance, the latest in the order
+    private final PriorityQueue<long[]> best;
+
+    CandidateBounds(RRACandidateStore candidates, int capacity) {
+      this.candidates = candidates;
+      this.nnBounds = new double[candidates.size()];
+      Arrays.fill(this.nnBounds, Double.POSITIVE_INFINITY);
+      this.exact = new boolean[candidates.size()];
+      this.nnStarts = new int[candidates.size()];
+      Arrays.fill(this.nnStarts, -1);
+      this.capacity = Math.max(1, capacity);
+      this.best = new PriorityQueue<long[]>(this.capacity + 1, new Comparator<long[]>() {
+        public int compare(long[] a, long[] b) {
+          return CandidateBounds.compare(a, b);
+        }
+      });
+    }
 
-    for (int si = 0; si < intervalCount; si++) {
+    void recordExact(int index, int order, double nn, int nnStart) {
+      nnBounds[index] = nn;
+      exact[index] = true;
+      nnStarts[index] = nnStart;
+      if (nn < Double.MAX_VALUE) {
+        long[] entry = new long[] { Double.doubleToLongBits(nn), order, index };
+        synchronized (best) {
+          keep(entry);
+        }
+      }
+    }
 
-      iterationCounter++;
+    void recordUpperBound(int index, double bound, int nnStart) {
+      if (bound < nnBounds[index]) {
+        nnBounds[index] = bound;
+        nnStarts[index] = nnStart;
+      }
+    }
 
-      RuleInterval currentEntry = globalIntervals.get(sortOrder[si]);
+    /**
+     * Adds the entry to the heap, unless a better kept candidate excludes it; drops the worse
+     * kept candidates it excludes, and the worst one if the heap is over capacity.
+     */
+    private void keep(long[] entry) {
+      Iterator<long[]> it = best.iterator();
+      while (it.hasNext()) {
+        long[] kept = it.next();
+        if (compare(kept, entry) > 0) {
+          if (excludes(kept, entry)) {
+            return;
+          }
+        }
+        else if (excludes(entry, kept)) {
+          it.remove();
+        }
+      }
+      best.add(entry);
+      if (best.size() > capacity) {
+        best.poll();
+      }
+    }
+
+    /**
+     * Checks whether the first candidate, once a discord, would mark the second one's start.
+     */
+    private boolean excludes(long[] discord, long[] other) {
+      int start = candidates.getStart((int) discord[2]);
+      int length = candidates.getLength((int) discord[2]);
+      int otherStart = candidates.getStart((int) other[2]);
+      return otherStart >= start - length && otherStart < start + length;
+    }
+
+    /**
+     * Drops the bounds of the candidates whose neighbor starts inside the newly marked band, so
+     * the next iterations search them again, and forgets them in the heap.
+     */
+    int release(int markStart, int markEnd) {
+      int released = 0;
+      for (int i = 0; i < nnStarts.length; i++) {
+        if (nnStarts[i] >= markStart && nnStarts[i] < markEnd) {
+          nnBounds[i] = Double.POSITIVE_INFINITY;
+          exact[i] = false;
+          nnStarts[i] = -1;
+          released++;
+        }
+      }
+      if (released > 0) {
+        synchronized (best) {
+          Iterator<long[]> it = best.iterator();
+          while (it.hasNext()) {
+            if (!exact[(int) it.next()[2]]) {
+              it.remove();
+            }
+          }
+        }
+      }
+      return released;
+    }
+
+    /**
+     * Drops the kept candidates excluded by prior discords, and gets the best remaining distance.
+     */
+    double seed(BitVisitRegistry registry) {
+      double res = Double.NEGATIVE_INFINITY;
+      synchronized (best) {
+        Iterator<long[]> it = best.iterator();
+        while (it.hasNext()) {
+          long[] entry = it.next();
+          if (registry.isVisited(candidates.getStart((int) entry[2]))) {
+            it.remove();
+          }
+          else {
+            res = Math.max(res, Double.longBitsToDouble(entry[0]));
+          }
+        }
+      }
+      return res;
+    }
+
+    /**
+     * Orders the heap entries: the smaller distance first, then the later in the sort order.
+     */
+    private static int compare(long[] a, long[] b) {
+      int res = Double.compare(Double.longBitsToDouble(a[0]), Double.longBitsToDouble(b[0]));
+      return (0 != res) ? res : Long.compare(b[1], a[1]);
+    }
+  }
+
+  /**
+   * A discord search worker. Claims candidates off the shared sort order, runs the two INNER
+   * LOOPS against the shared best-so-far distance, and keeps its own best candidate along with the
+   * per-candidate exclusion set and visit array.
+   */
+  private static final class DiscordSearchWorker implements Callable<DiscordSearchWorker> {
+
+    private final double[] series;
+    private final SeriesStatsIndex stats;
+    private final ReducedIntervalCache cache;
+    private final PairDistanceMemo memo;
+    private final RRACandidateStore candidates;
+    private final BitVisitRegistry registry;
+    private final double zNormThreshold;
+    private final Random rnd;
+    private final AtomicInteger cursor;
+    private final BestSoFarDistance bestSoFar;
+    private final CandidateBounds bounds;
+    private final SAXMinDistBound minDist;
+    private final VisitOrder.Arranger arranger;
+    private final RRASearchBudget budget;
+
+    private final int[] visitArray;
+    private final BitVisitRegistry alreadyVisited;
+
+    private int distanceCalls;
+    private int abandonedCalls;
+    private int boundSkips;
+    private int reusedDistances;
+    private int prunedPairs;
+    private int memoHits;
+    private int examined;
+    private int randomVisits;
+    private int exclusionSkips;
+
+    // whether the last NN search was cut short by the best-so-far distance
+    private boolean lastSearchAbandoned;
+    // the start of the neighbor the last NN search returned the distance to, -1 for none
+    private int lastNeighborStart;
+
+    // the anytime bookkeeping: candidates done, distance calls not charged to the budget yet
+    private int scanned;
+    private int unchargedCalls;
+    private boolean budgetExhausted;
+
+    private double bestDistance = Double.NEGATIVE_INFINITY;
+    private int bestOrder = Integer.MAX_VALUE;
+    private int bestPosition = Integer.MIN_VALUE;
+    private int bestLength = Integer.MIN_VALUE;
+    private int bestRule = Integer.MIN_VALUE;
+
+    DiscordSearchWorker(double[] series, SeriesStatsIndex stats, ReducedIntervalCache cache,
+        PairDistanceMemo memo, RRACandidateStore candidates, BitVisitRegistry registry,
+        double zNormThreshold, Random rnd, AtomicInteger cursor, BestSoFarDistance bestSoFar,
+        CandidateBounds bounds, SAXMinDistBound minDist, VisitOrder.Arranger arranger,
+        RRASearchBudget budget) {
+      this.series = series;
+      this.stats = stats;
+      this.cache = cache;
+      this.memo = memo;
+      this.candidates = candidates;
+      this.registry = registry;
+      this.zNormThreshold = zNormThreshold;
+      this.rnd = rnd;
+      this.cursor = cursor;
+      this.bestSoFar = bestSoFar;
+      this.bounds = bounds;
+      this.minDist = minDist;
+      this.arranger = arranger;
+      this.budget = budget;
+      // prepare the visits array, note that there can't be more points to visit that in a SAX
+      // index
+      this.visitArray = new int[candidates.size()];
+      this.alreadyVisited = new BitVisitRegistry(series.length);
+    }
+
+    @Override
+    public DiscordSearchWorker call() throws Exception {
+
+      int intervalCount = candidates.size();
+
+      for (int si = cursor.getAndIncrement(); si < intervalCount; si = cursor
+          .getAndIncrement()) {
+
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException("RRA discord search interrupted");
+        }
+
+        if (null != budget && (budgetExhausted || budget.isExhausted())) {
+          break;
+        }
+
+        examine(si);
+
+        // a candidate whose search ran out of budget is left out, it was not examined
+        if (budgetExhausted) {
+          break;
+        }
+        scanned++;
+
+      } // outer loop
+
+      if (null != budget) {
+        budget.charge(unchargedCalls);
+        unchargedCalls = 0;
+      }
+
+      return this;
+    }
+
+    /**
+     * Examines the candidate at the given position of the sort order.
+     */
+    private void examine(int si) throws Exception {
+
+      int intervalCount = candidates.size();
+      int current = candidates.sortedIndex(si);
 
       // skip degenerate candidates (e.g. one-point boundary gaps)
-      if (!GrammarVizAnomaly.isViableAnomalyCandidate(currentEntry)) {
-        continue;
+      if (!candidates.isViable(current)) {
+        return;
       }
 
       // skip if this candidate start was marked by a prior discord (saxpy / jmotif-R)
-      if (registry.contains(currentEntry.getStart())) {
-        continue;
+      if (registry.isVisited(candidates.getStart(current))) {
+        exclusionSkips++;
+        return;
       }
 
-      int currentPos = currentEntry.getStart();
-      String currentRule = String.valueOf(currentEntry.getId());
+      LOGGER.trace("iteration " + si + ", out of " + intervalCount + ", rule "
+          + candidates.getRuleId(current) + " at " + candidates.getStart(current)
+          + ", length " + candidates.getLength(current));
 
-      LOGGER.trace("iteration " + si + ", out of " + intervalCount + ", rule " + currentRule
-          + " at " + currentPos + ", length " + currentEntry.getLength());
+      if (candidates.occurrencesFrom(current) == candidates.occurrencesTo(current)) {
+        return;
+      }
 
-      int[] currentOccurences = ruleOccurrenceIndex.get(currentEntry.getId());
-      if (null == currentOccurences || 0 == currentOccurences.length) {
-        continue;
+      double nearestNeighborDist;
+      if (null == bounds) {
+        examined++;
+        nearestNeighborDist = nearestNeighborDistance(current);
+        if (budgetExhausted) {
+          return;
+        }
+      }
+      else if (bounds.exact[current]) {
+        nearestNeighborDist = bounds.nnBounds[current];
+        reusedDistances++;
       }
-      LOGGER.trace(" there are " + currentOccurences.length + " occurrences for the rule "
-          + currentEntry.getId() + ", iterating...");
+      else if (bounds.nnBounds[current] < bestSoFar.get()) {
+        // its NN distance is below a distance some other candidate has got
+        boundSkips++;
+        return;
+      }
+      else {
+        examined++;
+        nearestNeighborDist = nearestNeighborDistance(current);
+        if (budgetExhausted) {
+          return;
+        }
+        if (lastSearchAbandoned) {
+          bounds.recordUpperBound(current, nearestNeighborDist, lastNeighborStart);
+        }
+        else {
+          bounds.recordExact(current, si, nearestNeighborDist, lastNeighborStart);
+        }
+      }
+
+      if (nearestNeighborDist < Double.MAX_VALUE && nearestNeighborDist > bestDistance) {
+        LOGGER.trace(" updating discord candidate: rule " + candidates.getRuleId(current)
+            + " at " + candidates.getStart(current) + " len " + candidates.getLength(current)
+            + " NN dist: " + nearestNeighborDist);
+        bestDistance = nearestNeighborDist;
+        bestOrder = si;
+        bestPosition = candidates.getStart(current);
+        bestLength = candidates.getLength(current);
+        bestRule = candidates.getRuleId(current);
+        bestSoFar.offer(nearestNeighborDist);
+      }
+
+      LOGGER.trace(" . . iterated " + si + " times, best distance:  " + bestDistance
+          + " for a rule " + bestRule + " at " + bestPosition + " len " + bestLength);
+
+    }
+
+    /**
+     * Computes the candidate's NN distance, or any distance below the best-so-far as soon as one
+     * is seen (the candidate cannot be the discord then).
+     */
+    private double nearestNeighborDistance(int current) throws Exception {
+
+      int currentStart = candidates.getStart(current);
+      int currentLength = candidates.getLength(current);
+      int occurrencesFrom = candidates.occurrencesFrom(current);
+      int occurrencesTo = candidates.occurrencesTo(current);
+      int[] occurrences = candidates.occurrences();
+
+      LOGGER.trace(" there are " + (occurrencesTo - occurrencesFrom)
+          + " occurrences for the rule " + candidates.getRuleId(current) + ", iterating...");
 
       // organize visited so-far positions tracking
       //
-      int markStart = currentPos - currentEntry.getLength();
+      int markStart = currentStart - currentLength;
       if (markStart < 0) {
         markStart = 0;
       }
-      int markEnd = currentEntry.getEnd();
+      int markEnd = candidates.getEnd(current);
       if (markEnd > series.length) {
         markEnd = series.length;
       }
 
       // exclusion band [start−length, end) — neighbor skip uses start-in-set membership
       alreadyVisited.clear();
-      for (int j = markStart; j < markEnd; j++) {
-        alreadyVisited.add(j);
-      }
-
-      // extract the subsequence & mark visited current substring
-      // double[] currentSubsequence = tp.subseriesByCopy(series, currentEntry.getStart(),
-      // currentEntry.getEnd());
+      alreadyVisited.markVisited(markStart, markEnd);
 
       // so, lets the search begin...
       double nearestNeighborDist = Double.MAX_VALUE;
-      boolean doRandomSearch = true;
+      lastSearchAbandoned = false;
+      lastNeighborStart = -1;
 
       // this is the first INNER LOOP
-      for (int nextOccurrenceIdx : currentOccurences) {
+      for (int k = occurrencesFrom; k < occurrencesTo; k++) {
 
-        RuleInterval nextOccurrence = globalIntervals.get(nextOccurrenceIdx);
-        int occStart = nextOccurrence.getStart();
-        if (alreadyVisited.contains(occStart)) {
+        int next = occurrences[k];
+        int occStart = candidates.getStart(next);
+        if (alreadyVisited.isVisited(occStart)) {
+          exclusionSkips++;
           continue;
         }
-        alreadyVisited.add(occStart);
+        alreadyVisited.markVisited(occStart);
 
-        // double[] occurrenceSubsequence = extractSubsequence(series, nextOccurrence);
-
-        double dist = normalizedDistance(series, currentEntry, nextOccurrence, zNormThreshold);
-        distanceCalls++;
+        // a distance above the current NN changes nothing, so it is the abandon threshold
+        double dist = memoizedDistance(current, next, nearestNeighborDist);
+        if (budgetExhausted) {
+          return Double.MAX_VALUE;
+        }
 
         // keep track of best so far distance
         if (dist < nearestNeighborDist) {
           nearestNeighborDist = dist;
-          LOGGER.trace(" ** current NN at interval " + nextOccurrence.getStart() + "-"
-              + nextOccurrence.getEnd() + ", distance: " + nearestNeighborDist);
+          lastNeighborStart = occStart;
+          LOGGER.trace(" ** current NN at interval " + occStart + "-" + candidates.getEnd(next)
+              + ", distance: " + nearestNeighborDist);
         }
-        if (dist < bestSoFarDistance) {
+        if (dist < bestSoFar.get()) {
           LOGGER.trace(" ** abandoning the occurrences iterations");
-          doRandomSearch = false;
-          break;
+          lastSearchAbandoned = true;
+          return nearestNeighborDist;
         }
       }
 
-      // check if we must continue with random neighbors
-      if (doRandomSearch) {
-        LOGGER.trace("starting random search");
+      // continue with random neighbors
+      LOGGER.trace("starting random search");
 
-        // init the visit array
-        //
-        int visitCounter = 0;
-        int cIndex = 0;
-        for (int j = 0; j < intervalCount; j++) {
-          RuleInterval interval = globalIntervals.get(j);
-          if (!GrammarVizAnomaly.isViableAnomalyCandidate(interval)) {
-            continue;
-          }
-          if (!alreadyVisited.contains(interval.getStart())) {
-            visitArray[cIndex] = j;
-            cIndex++;
-          }
+      // init the visit array
+      //
+      int cIndex = 0;
+      for (int j = 0; j < visitArray.length; j++) {
+        if (!candidates.isViable(j)) {
+          continue;
         }
-        cIndex--;
-
-        if (cIndex < 0) {
-          // every remaining interval overlaps the exclusion band
+        if (!alreadyVisited.isVisited(candidates.getStart(j))) {
+          visitArray[cIndex] = j;
+          cIndex++;
         }
         else {
-
-        // shuffle the visit array (rnd is supplied by the caller; an unseeded Random preserves
-        // the historical non-reproducible order, a seeded one makes the trajectory reproducible)
-        //
-        for (int j = cIndex; j > 0; j--) {
-          int index = rnd.nextInt(j + 1);
-          int a = visitArray[index];
-          visitArray[index] = visitArray[j];
-          visitArray[j] = a;
+          exclusionSkips++;
         }
+      }
+      cIndex--;
 
-        // while there are unvisited locations
-        while (cIndex >= 0) {
+      // every remaining interval may overlap the exclusion band
+      if (cIndex < 0) {
+        return nearestNeighborDist;
+      }
 
-          RuleInterval randomInterval = globalIntervals.get(visitArray[cIndex]);
-          cIndex--;
+      // arrange the visit array (rnd is supplied by the caller; an unseeded Random preserves
+      // the historical non-reproducible order, a seeded one makes the trajectory reproducible)
+      //
+      arranger.arrange(current, visitArray, cIndex + 1, rnd);
 
-          // double[] randomSubsequence = extractSubsequence(series, randomInterval);
+      // while there are unvisited locations
+      int visitCounter = 0;
+      while (cIndex >= 0) {
 
-          double dist = normalizedDistance(series, currentEntry, randomInterval, zNormThreshold);
-          distanceCalls++;
+        int random = visitArray[cIndex];
+        cIndex--;
+        randomVisits++;
 
-          // early abandoning of the search:
-          // the current word is not discord, we have seen better
-          if (dist < bestSoFarDistance) {
-            nearestNeighborDist = dist;
-            LOGGER.trace(" ** abandoning random visits loop, seen distance " + nearestNeighborDist
-                + " at iteration " + visitCounter);
-            break;
-          }
+        double dist = memoizedDistance(current, random, nearestNeighborDist);
+        if (budgetExhausted) {
+          return Double.MAX_VALUE;
+        }
 
-          // keep track
-          if (dist < nearestNeighborDist) {
-            LOGGER.trace(" ** current NN id rule " + randomInterval.getId() + " at "
-                + randomInterval.startPos + ", distance: " + dist);
-            nearestNeighborDist = dist;
-          }
+        // early abandoning of the search:
+        // the current word is not discord, we have seen better
+        if (dist < bestSoFar.get()) {
+          LOGGER.trace(" ** abandoning random visits loop, seen distance " + dist
+              + " at iteration " + visitCounter);
+          lastSearchAbandoned = true;
+          lastNeighborStart = candidates.getStart(random);
+          return dist;
+        }
 
-          visitCounter = visitCounter + 1;
+        // keep track
+        if (dist < nearestNeighborDist) {
+          LOGGER.trace(" ** current NN id rule " + candidates.getRuleId(random) + " at "
+              + candidates.getStart(random) + ", distance: " + dist);
+          nearestNeighborDist = dist;
+          lastNeighborStart = candidates.getStart(random);
+        }
 
-        } // while inner loop
+        visitCounter = visitCounter + 1;
 
-        } // cIndex >= 0
+      } // while inner loop
 
-      } // end of random search branch
+      return nearestNeighborDist;
+    }
 
-      if (nearestNeighborDist < Double.MAX_VALUE && nearestNeighborDist > bestSoFarDistance) {
-        LOGGER.trace(" updating discord candidate: rule " + currentEntry.getId() + " at "
-            + currentEntry.getStart() + " len " + currentEntry.getLength() + " NN dist: "
-            + bestSoFarDistance);
-        bestSoFarDistance = nearestNeighborDist;
-        bestSoFarPosition = currentEntry.getStart();
-        bestSoFarLength = currentEntry.getLength();
-        bestSoFarRule = currentEntry.getId();
+    /**
+     * The bounded distance between two candidates, off the memo if it knows the answer, or
+     * computed, counted and memoized otherwise.
+     */
+    private double memoizedDistance(int current, int neighbor, double nearestNeighborDist)
+        throws Exception {
+      if (null != memo) {
+        double known = memo.lookup(current, neighbor, nearestNeighborDist);
+        if (!Double.isNaN(known)) {
+          memoHits++;
+          return known;
+        }
       }
+      double dist = pairDistance(current, neighbor, nearestNeighborDist);
+      countDistanceCall(dist);
+      if (null != memo) {
+        memo.record(current, neighbor, nearestNeighborDist, dist);
+      }
+      return dist;
+    }
 
-      LOGGER.trace(" . . iterated " + iterationCounter + " times, best distance:  "
-          + bestSoFarDistance + " for a rule " + bestSoFarRule + " at " + bestSoFarPosition
-          + " len " + bestSoFarLength);
-
-    } // outer loop
+    /**
+     * The bounded distance between two candidates, or {@code Double.NaN} if the MINDIST bound
+     * shows it is above the current NN distance: such a pair updates neither the NN distance nor,
+     * as the NN distance is not below the best-so-far one, triggers the abandon.
+     */
+    private double pairDistance(int current, int neighbor, double nearestNeighborDist)
+        throws Exception {
+
+      int currentStart = candidates.getStart(current);
+      int currentLength = candidates.getLength(current);
+      int neighborStart = candidates.getStart(neighbor);
+      int neighborLength = candidates.getLength(neighbor);
+
+      if (null == minDist || null == cache || nearestNeighborDist >= Double.MAX_VALUE
+          || !candidates.isViable(current) || !candidates.isViable(neighbor)) {
+        return normalizedDistance(series, stats, currentStart, currentLength, neighborStart,
+            neighborLength, zNormThreshold, nearestNeighborDist, cache);
+      }
 
-    DiscordRecord res = new DiscordRecord(bestSoFarPosition, bestSoFarDistance,
-        "pos,calls,len,rule " + bestSoFarPosition + " " + distanceCalls + " " + bestSoFarLength
-            + " " + bestSoFarRule);
+      if (currentLength == neighborLength) {
+        if (isPruned(minDist.lowerBound(current, neighbor, currentLength),
+            nearestNeighborDist)) {
+          return Double.NaN;
+        }
+        return normalizedDistance(series, stats, currentStart, currentLength, neighborStart,
+            neighborLength, zNormThreshold, nearestNeighborDist, cache);
+      }
 
-    res.setLength(bestSoFarLength);
-    res.setRuleId(bestSoFarRule);
-    res.setInfo("distance calls: " + distanceCalls);
+      // the reduced longer window serves both the bound and the distance
+      boolean currentIsLonger = currentLength > neighborLength;
+      int len = currentIsLonger ? neighborLength : currentLength;
+      ReducedIntervalCache.ReducedInterval reduced = currentIsLonger
+          ? cache.get(currentStart, currentLength, len)
+          : cache.get(neighborStart, neighborLength, len);
+      if (isPruned(
+          minDist.lowerBound(currentIsLonger ? neighbor : current, reduced, zNormThreshold),
+          nearestNeighborDist)) {
+        return Double.NaN;
+      }
+      return reducedDistance(series, stats, reduced, currentIsLonger,
+          currentIsLonger ? neighborStart : currentStart, len, zNormThreshold,
+          nearestNeighborDist);
+    }
 
-    return res;
+    private void countDistanceCall(double dist) {
+      if (Double.isNaN(dist)) {
+        prunedPairs++;
+        return;
+      }
+      distanceCalls++;
+      if (Double.POSITIVE_INFINITY == dist) {
+        abandonedCalls++;
+      }
+      if (null != budget && ++unchargedCalls >= BUDGET_CHECK_CALLS) {
+        budgetExhausted = budget.charge(unchargedCalls);
+        unchargedCalls = 0;
+      }
+    }
   }
 
   /**
    * Computes the normalized distance. The whole idea is that rules map to subsequences of different
-   * length.
+   * length. Equal-length windows are compared in a single fused pass over the series with the
+   * window statistics taken from the index; otherwise the longer window is shrunk with PAA first.
+   * The index statistics make the distance equal to the former copying one within a tolerance,
+   * not bit for bit; the windows whose deviation is near the threshold are measured the former
+   * way, so the raw or z-normalized branch is always the former one.
+   * 
+   * @param series the timeseries.
+   * @param stats the series statistics index.
+   * @param reference the reference interval.
+   * @param candidate the candidate interval.
+   * @param zNormThreshold the z-normalization threshold.
+   * @return the distance divided by the compared length.
+   * @throws Exception if error occurs.
+   */
+  static double normalizedDistance(double[] series, SeriesStatsIndex stats,
+      RuleInterval reference, RuleInterval candidate, double zNormThreshold) throws Exception {
+    return normalizedDistance(series, stats, reference, candidate, zNormThreshold,
+        Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Computes the normalized distance, abandoning the computation once it is known to exceed the
+   * threshold. The kernels accumulate squared differences and compare the partial sum against the
+   * threshold scaled back by the divisor and squared, so no square root is taken until the end; a
+   * completed computation yields exactly the unbounded distance.
+   * 
+   * @param series the timeseries.
+   * @param stats the series statistics index.
+   * @param reference the reference interval.
+   * @param candidate the candidate interval.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param abandonThreshold the distance above which the exact value is of no interest.
+   * @return the distance divided by the compared length, or {@code Double.POSITIVE_INFINITY} if
+   * abandoned.
+   * @throws Exception if error occurs.
+   */
+  static double normalizedDistance(double[] series, SeriesStatsIndex stats,
+      RuleInterval reference, RuleInterval candidate, double zNormThreshold,
+      double abandonThreshold) throws Exception {
+    return normalizedDistance(series, stats, reference, candidate, zNormThreshold,
+        abandonThreshold, null);
+  }
+
+  /**
+   * Computes the bounded normalized distance taking the PAA-reduced longer window from the cache.
+   * Cached windows come pre-normalized and are fed to the fused kernel with a zero mean and a unit
+   * standard deviation, which reproduces the uncached distance bit for bit.
    * 
-   * @param series
-   * @param reference
-   * @param candidate
-   * @param zNormThreshold
-   * @return
-   * @throws Exception
+   * @param series the timeseries.
+   * @param stats the series statistics index.
+   * @param reference the reference interval.
+   * @param candidate the candidate interval.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param abandonThreshold the distance above which the exact value is of no interest.
+   * @param cache the reduced interval cache bound to the series, null to shrink on every call.
+   * @return the distance divided by the compared length, or {@code Double.POSITIVE_INFINITY} if
+   * abandoned.
+   * @throws Exception if error occurs.
    */
-  private static double normalizedDistance(double[] series, RuleInterval reference,
-      RuleInterval candidate, double zNormThreshold) throws Exception {
+  static double normalizedDistance(double[] series, SeriesStatsIndex stats,
+      RuleInterval reference, RuleInterval candidate, double zNormThreshold,
+      double abandonThreshold, ReducedIntervalCache cache) throws Exception {
+    return normalizedDistance(series, stats, reference.getStart(), reference.getLength(),
+        candidate.getStart(), candidate.getLength(), zNormThreshold, abandonThreshold, cache);
+  }
 
-    if (reference.getLength() < GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH
-        || candidate.getLength() < GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH) {
+  /**
+   * The bounded normalized distance between the windows {@code [refStart, refStart + refLen)}
+   * and {@code [candStart, candStart + candLen)}.
+   */
+  static double normalizedDistance(double[] series, SeriesStatsIndex stats, int refStart,
+      int refLen, int candStart, int candLen, double zNormThreshold, double abandonThreshold,
+      ReducedIntervalCache cache) throws Exception {
+
+    if (refLen < GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH
+        || candLen < GrammarVizAnomaly.MIN_ANOMALY_CANDIDATE_LENGTH) {
       return Double.MAX_VALUE;
     }
 
-    DistanceScratch scratch = DISTANCE_SCRATCH.get();
-    scratch.loadRef(series, reference.getStart(), reference.getEnd());
-    scratch.loadCand(series, candidate.getStart(), candidate.getEnd());
-    double divisor = scratch.refLen;
-
-    // if the reference is the longest, we shrink it down with PAA
-    //
-    if (scratch.refLen > scratch.candLen) {
-      scratch.shrinkRefTo(scratch.candLen);
-      divisor = scratch.candLen;
+    double[] refValues = series;
+    double[] candValues = series;
+    double refMean;
+    double refSd;
+    double candMean;
+    double candSd;
+    int len;
+
+    if (refLen == candLen) {
+      len = refLen;
+      if (stats.isNearThreshold(refStart, refStart + len, zNormThreshold)
+          || stats.isNearThreshold(candStart, candStart + len, zNormThreshold)) {
+        // the threshold decides on the former statistics, which also keeps the distance exact
+        refMean = TWO_PASS.mean(series, refStart, len);
+        refSd = TWO_PASS.stDev(series, refStart, len);
+        candMean = TWO_PASS.mean(series, candStart, len);
+        candSd = TWO_PASS.stDev(series, candStart, len);
+      }
+      else {
+        refMean = stats.mean(refStart, refStart + len);
+        refSd = stats.stDev(refStart, refStart + len);
+        candMean = stats.mean(candStart, candStart + len);
+        candSd = stats.stDev(candStart, candStart + len);
+      }
     }
-    // if the candidate is longest, we shrink it with PAA too
-    //
-    else if (scratch.candLen > scratch.refLen) {
-      scratch.shrinkCandTo(scratch.refLen);
+    else if (null != cache) {
+      // the longer window, reduced and normalized once per target length
+      //
+      boolean refIsLonger = refLen > candLen;
+      len = refIsLonger ? candLen : refLen;
+      ReducedIntervalCache.ReducedInterval reduced = refIsLonger
+          ? cache.get(refStart, refLen, len)
+          : cache.get(candStart, candLen, len);
+      return reducedDistance(series, stats, reduced, refIsLonger,
+          refIsLonger ? candStart : refStart, len, zNormThreshold, abandonThreshold);
+    }
+    else {
+      DistanceScratch scratch = DISTANCE_SCRATCH.get();
+      // if the reference is the longest, we shrink it down with PAA
+      //
+      if (refLen > candLen) {
+        len = candLen;
+        refValues = scratch.shrink(series, refStart, refLen, len);
+        refStart = 0;
+        refMean = KERNEL.mean(refValues, 0, len);
+        refSd = KERNEL.stDev(refValues, 0, len);
+        candMean = windowMean(series, stats, candStart, len, zNormThreshold);
+        candSd = windowStDev(series, stats, candStart, len, zNormThreshold);
+      }
+      // if the candidate is longest, we shrink it with PAA too
+      //
+      else {
+        len = refLen;
+        candValues = scratch.shrink(series, candStart, candLen, len);
+        candStart = 0;
+        candMean = KERNEL.mean(candValues, 0, len);
+        candSd = KERNEL.stDev(candValues, 0, len);
+        refMean = windowMean(series, stats, refStart, len, zNormThreshold);
+        refSd = windowStDev(series, stats, refStart, len, zNormThreshold);
+      }
     }
 
+    double limit = squaredSumLimit(abandonThreshold, len);
+
     // z-norm below threshold returns all zeros and makes unrelated segments look identical
-    if (stDev(scratch.ref, scratch.refLen) < zNormThreshold
-        || stDev(scratch.cand, scratch.candLen) < zNormThreshold) {
-      return euclideanDistance(scratch.ref, scratch.cand, scratch.refLen) / divisor;
+    double sum;
+    if (refSd < zNormThreshold || candSd < zNormThreshold) {
+      sum = KERNEL.squaredDistance(refValues, refStart, candValues, candStart, len, limit);
     }
-
-    scratch.znormRef(zNormThreshold);
-    scratch.znormCand(zNormThreshold);
-    return euclideanDistance(scratch.zRef, scratch.zCand, scratch.refLen) / divisor;
+    else {
+      sum = KERNEL.squaredZnormDistance(refValues, refStart, refMean, refSd, candValues,
+          candStart, candMean, candSd, len, limit);
+    }
+    if (Double.POSITIVE_INFINITY == sum) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.sqrt(sum) / len;
 
   }
 
   /**
-   * Thread-local scratch for RRA distance: window extraction, PAA shrink, and z-norm.
+   * The bounded normalized distance between a reduced longer window and the series window
+   * {@code [otherStart, otherStart + len)}, the operands in the reference, candidate order.
    */
-  private static final class DistanceScratch {
-    double[] ref = new double[0];
-    double[] cand = new double[0];
-    double[] zRef = new double[0];
-    double[] zCand = new double[0];
-    int refLen;
-    int candLen;
-
-    void loadRef(double[] series, int start, int end) {
-      refLen = end - start;
-      if (ref.length != refLen) {
-        ref = new double[refLen];
-      }
-      System.arraycopy(series, start, ref, 0, refLen);
+  private static double reducedDistance(double[] series, SeriesStatsIndex stats,
+      ReducedIntervalCache.ReducedInterval reduced, boolean refIsLonger, int otherStart, int len,
+      double zNormThreshold, double abandonThreshold) {
+    double otherMean = windowMean(series, stats, otherStart, len, zNormThreshold);
+    double otherSd = windowStDev(series, stats, otherStart, len, zNormThreshold);
+    double limit = squaredSumLimit(abandonThreshold, len);
+    double sum;
+    if (reduced.getStDev() < zNormThreshold || otherSd < zNormThreshold
+        || null == reduced.getNormalizedValues()) {
+      sum = refIsLonger
+          ? KERNEL.squaredDistance(reduced.getValues(), 0, series, otherStart, len, limit)
+          : KERNEL.squaredDistance(series, otherStart, reduced.getValues(), 0, len, limit);
     }
-
-    void loadCand(double[] series, int start, int end) {
-      candLen = end - start;
-      if (cand.length != candLen) {
-        cand = new double[candLen];
-      }
-      System.arraycopy(series, start, cand, 0, candLen);
+    else if (refIsLonger) {
+      sum = KERNEL.squaredZnormDistance(reduced.getNormalizedValues(), 0, 0D, 1D, series,
+          otherStart, otherMean, otherSd, len, limit);
     }
-
-    void shrinkRefTo(int paaSize) throws Exception {
-      double[] paa = tp.paa(ref, paaSize);
-      if (ref.length != paaSize) {
-        ref = new double[paaSize];
-      }
-      System.arraycopy(paa, 0, ref, 0, paaSize);
-      refLen = paaSize;
-    }
-
-    void shrinkCandTo(int paaSize) throws Exception {
-      double[] paa = tp.paa(cand, paaSize);
-      if (cand.length != paaSize) {
-        cand = new double[paaSize];
-      }
-      System.arraycopy(paa, 0, cand, 0, paaSize);
-      candLen = paaSize;
+    else {
+      sum = KERNEL.squaredZnormDistance(series, otherStart, otherMean, otherSd,
+          reduced.getNormalizedValues(), 0, 0D, 1D, len, limit);
     }
+    return (Double.POSITIVE_INFINITY == sum) ? sum : Math.sqrt(sum) / len;
+  }
 
-    void znormRef(double threshold) {
-      if (zRef.length != refLen) {
-        zRef = new double[refLen];
-      }
-      znormInto(ref, refLen, threshold, zRef);
-    }
+  /**
+   * The window mean off the index, or the former in-loop one if the window deviation is near the
+   * threshold.
+   */
+  private static double windowMean(double[] series, SeriesStatsIndex stats, int start, int len,
+      double zNormThreshold) {
+    return stats.isNearThreshold(start, start + len, zNormThreshold)
+        ? TWO_PASS.mean(series, start, len) : stats.mean(start, start + len);
+  }
 
-    void znormCand(double threshold) {
-      if (zCand.length != candLen) {
-        zCand = new double[candLen];
-      }
-      znormInto(cand, candLen, threshold, zCand);
-    }
+  /**
+   * The window standard deviation off the index, or the former in-loop one if it is near the
+   * threshold.
+   */
+  private static double windowStDev(double[] series, SeriesStatsIndex stats, int start, int len,
+      double zNormThreshold) {
+    return stats.isNearThreshold(start, start + len, zNormThreshold)
+        ? TWO_PASS.stDev(series, start, len) : stats.stDev(start, start + len);
   }
 
-  private static double mean(double[] series, int len) {
-    double sum = 0D;
-    for (int i = 0; i < len; i++) {
-      sum += series[i];
-    }
-    return sum / len;
+  /**
+   * Checks whether a MINDIST bound rules the pair out: the bound has to clear the NN distance by
+   * the same relative hair the abandon limit is widened with.
+   */
+  private static boolean isPruned(double lowerBound, double nearestNeighborDist) {
+    return lowerBound > nearestNeighborDist * ABANDON_SLACK;
   }
 
-  private static double stDev(double[] series, int len) {
-    double num0 = 0D;
-    double sum = 0D;
-    for (int i = 0; i < len; i++) {
-      double v = series[i];
-      num0 += v * v;
-      sum += v;
+  /**
+   * Thread-local scratch for RRA distance: the PAA shrink of the longer window, written into a
+   * buffer which only ever grows, so the distance path allocates nothing in steady state.
+   */
+  private static final class DistanceScratch {
+    final PAAKernel kernel = new PAAKernel();
+    double[] shrunk = new double[0];
+
+    double[] shrink(double[] series, int start, int len, int paaSize) throws Exception {
+      if (shrunk.length < paaSize) {
+        shrunk = new double[paaSize];
+      }
+      kernel.paa(series, start, len, paaSize, shrunk);
+      return shrunk;
     }
-    double n = len;
-    return Math.sqrt((n * num0 - sum * sum) / (n * n));
   }
 
-  private static void znormInto(double[] src, int len, double threshold, double[] dest) {
-    double sd = stDev(src, len);
-    if (sd < threshold) {
-      Arrays.fill(dest, 0, len, 0.0);
-      return;
-    }
-    double avg = mean(src, len);
-    for (int i = 0; i < len; i++) {
-      dest[i] = (src[i] - avg) / sd;
+  /**
+   * Gets the reduced interval cache of a search run: the supplied one if it was built for this
+   * series, a fresh one of the configured budget otherwise.
+   */
+  private static ReducedIntervalCache reducedIntervalCache(double[] series,
+      RRASearchOptions options) {
+    ReducedIntervalCache cache = options.getReducedCache();
+    if (null != cache) {
+      if (cache.isBoundTo(series)) {
+        return cache;
+      }
+      LOGGER.warn("the supplied reduced interval cache belongs to another series, ignoring it");
     }
+    return new ReducedIntervalCache(series, options.getReducedCacheBytes());
   }
 
-  private static double euclideanDistance(double[] a, double[] b, int len) {
-    double sum = 0D;
-    for (int i = 0; i < len; i++) {
-      double d = b[i] - a[i];
-      sum += d * d;
+  /**
+   * Converts a distance threshold into the squared partial sum bound. The bound is widened by a
+   * relative hair so that rounding can only delay the abandon, never trigger it for a distance that
+   * would come out at or below the threshold.
+   */
+  private static double squaredSumLimit(double abandonThreshold, int len) {
+    if (abandonThreshold >= Double.MAX_VALUE) {
+      return Double.POSITIVE_INFINITY;
     }
-    return Math.sqrt(sum);
+    double scaled = abandonThreshold * len;
+    return scaled * scaled * ABANDON_SLACK;
   }
 
   // /**
@@ -547,30 +1444,4 @@ public class RRAImplementation {
   // private static double[] extractSubsequence(double[] series, RuleInterval randomInterval) {
   // return Arrays.copyOfRange(series, randomInterval.getStart(), randomInterval.getEnd());
   // }
-
-  /**
-   * Maps rule id to indices of its occurrences in {@code intervals} (includes negative gap ids).
-   */
-  private static Map<Integer, int[]> buildRuleOccurrenceIndex(ArrayList<RuleInterval> intervals) {
-    HashMap<Integer, ArrayList<Integer>> buckets = new HashMap<Integer, ArrayList<Integer>>();
-    for (int j = 0; j < intervals.size(); j++) {
-      Integer id = intervals.get(j).getId();
-      ArrayList<Integer> bucket = buckets.get(id);
-      if (null == bucket) {
-        bucket = new ArrayList<Integer>(4);
-        buckets.put(id, bucket);
-      }
-      bucket.add(j);
-    }
-    HashMap<Integer, int[]> index = new HashMap<Integer, int[]>(buckets.size());
-    for (Map.Entry<Integer, ArrayList<Integer>> entry : buckets.entrySet()) {
-      ArrayList<Integer> bucket = entry.getValue();
-      int[] arr = new int[bucket.size()];
-      for (int i = 0; i < bucket.size(); i++) {
-        arr[i] = bucket.get(i);
-      }
-      index.put(entry.getKey(), arr);
-    }
-    return index;
-  }
 }
@@ -6,6 +6,8 @@ import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.GrammarRules;
 import net.seninp.gi.logic.RuleInterval;
 import net.seninp.grammarviz.GrammarVizAnomaly;
+import net.seninp.grammarviz.logic.CoverageCountStrategy;
+import net.seninp.grammarviz.logic.RuleCoverage;
 
 /**
  * Builds the candidate interval list used by RRA from an inferred grammar.
@@ -52,18 +54,21 @@ public final class RRAIntervalBuilder {
    * @return per-point coverage counts (used for zero-gap detection and CLI export).
    */
   public static int[] computePointCoverage(GrammarRules rules, int seriesLength) {
-    int[] coverageArray = new int[seriesLength];
-    for (GrammarRuleRecord rule : rules) {
-      if (0 == rule.ruleNumber()) {
-        continue;
-      }
-      for (RuleInterval ri : rule.getRuleIntervals()) {
-        for (int j = ri.getStart(); j < ri.getEnd(); j++) {
-          coverageArray[j] = coverageArray[j] + 1;
-        }
-      }
-    }
-    return coverageArray;
+    return computePointCoverage(rules, seriesLength, 1);
+  }
+
+  /**
+   * Counts how many grammar rule intervals cover each time-series index, see
+   * {@link RuleCoverage}.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength length of the original time series.
+   * @param threadsNum the number of threads.
+   * @return per-point coverage counts (used for zero-gap detection and CLI export).
+   */
+  public static int[] computePointCoverage(GrammarRules rules, int seriesLength,
+      int threadsNum) {
+    return RuleCoverage.compute(rules, seriesLength, CoverageCountStrategy.COUNT, threadsNum);
   }
 
   /**
@@ -99,8 +104,16 @@ public final class RRAIntervalBuilder {
    */
   public static BuildResult buildFromGrammarRules(GrammarRules rules, int seriesLength, int paaSize)
       throws CloneNotSupportedException {
+    return buildFromGrammarRules(rules, seriesLength, paaSize, 1);
+  }
+
+  /**
+   * Builds intervals and coverage in one pass, the coverage on the given number of threads.
+   */
+  public static BuildResult buildFromGrammarRules(GrammarRules rules, int seriesLength,
+      int paaSize, int threadsNum) throws CloneNotSupportedException {
     ArrayList<RuleInterval> intervals = new ArrayList<RuleInterval>(rules.size() * 6);
-    int[] coverageArray = computePointCoverage(rules, seriesLength);
+    int[] coverageArray = computePointCoverage(rules, seriesLength, threadsNum);
 
     for (GrammarRuleRecord rule : rules) {
       if (0 == rule.ruleNumber()) {
@@ -119,4 +132,68 @@ public final class RRAIntervalBuilder {
     intervals.addAll(zeros);
     return new BuildResult(intervals, coverageArray, zeros);
   }
+
+  /**
+   * Builds the RRA candidate store straight off the grammar, without cloning the rule intervals;
+   * the candidates come in the same order as those of {@link #buildFromGrammarRules}.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength length of the original time series.
+   * @param paaSize PAA size (zero gaps shorter than {@code max(2, paaSize)} are dropped).
+   * @return the candidate store.
+   */
+  public static RRACandidateStore buildCandidateStore(GrammarRules rules, int seriesLength,
+      int paaSize) {
+    return buildCandidateStore(rules, seriesLength, paaSize, 1);
+  }
+
+  /**
+   * Builds the RRA candidate store, the coverage on the given number of threads.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength length of the original time series.
+   * @param paaSize PAA size (zero gaps shorter than {@code max(2, paaSize)} are dropped).
+   * @param threadsNum the number of threads.
+   * @return the candidate store.
+   */
+  public static RRACandidateStore buildCandidateStore(GrammarRules rules, int seriesLength,
+      int paaSize, int threadsNum) {
+    int[] coverageArray = computePointCoverage(rules, seriesLength, threadsNum);
+    List<RuleInterval> zeros = GrammarVizAnomaly.filterZeroIntervalsForAnomalySearch(
+        GrammarVizAnomaly.getZeroIntervals(coverageArray), paaSize);
+
+    int size = zeros.size();
+    for (GrammarRuleRecord rule : rules) {
+      if (0 != rule.ruleNumber()) {
+        size += rule.getRuleIntervals().size();
+      }
+    }
+    int[] starts = new int[size];
+    int[] ends = new int[size];
+    int[] ruleIds = new int[size];
+    int[] coverage = new int[size];
+
+    int i = 0;
+    for (GrammarRuleRecord rule : rules) {
+      if (0 == rule.ruleNumber()) {
+        continue;
+      }
+      int occurrences = rule.getRuleIntervals().size();
+      for (RuleInterval ri : rule.getRuleIntervals()) {
+        starts[i] = ri.getStart();
+        ends[i] = ri.getEnd();
+        ruleIds[i] = rule.ruleNumber();
+        coverage[i] = occurrences;
+        i++;
+      }
+    }
+    for (RuleInterval zero : zeros) {
+      starts[i] = zero.getStart();
+      ends[i] = zero.getEnd();
+      ruleIds[i] = zero.getId();
+      coverage[i] = (int) zero.getCoverage();
+      i++;
+    }
+    return new RRACandidateStore(starts, ends, ruleIds, coverage);
+  }
 }
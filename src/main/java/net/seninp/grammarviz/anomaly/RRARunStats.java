@@ -0,0 +1,452 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The cost of an RRA search run: per discord iteration the candidates examined, the distance calls
+ * and how they went, and the elapsed time; per run the cache and memo figures. Meant for tracking
+ * the search cost over time, it renders itself as a single JSON line or as CSV rows.
+ *
+ * The last iteration of a run may have found no valid discord, it is listed nevertheless, with
+ * the position -1, as its cost was paid.
+ *
+ * @author psenin
+ *
+ */
+public final class RRARunStats {
+
+  /** The CSV columns of {@link #toCsvRows()}. */
+  public static final String CSV_HEADER = "iteration,position,length,nn_distance,"
+      + "candidates_examined,distance_calls,early_abandons,random_phase_visits,exclusion_skips,"
+      + "memo_hits,mindist_pruned,elapsed_ns";
+
+  private final List<DiscordStats> discords;
+  private final int candidatesNum;
+  private final int threadsNum;
+  private final String kernelName;
+  private final long elapsedNanos;
+  private final long cacheHits;
+  private final long cacheMisses;
+  private final long pairMemoHits;
+  private final long pairMemoLookups;
+  private final long pairMemoBytes;
+
+  /**
+   * Constructor.
+   *
+   * @param discords the per-iteration statistics, in the iterations order.
+   * @param candidatesNum the number of candidate intervals.
+   * @param threadsNum the number of search threads.
+   * @param kernelName the distance kernel name.
+   * @param elapsedNanos the run wall-clock time.
+   * @param cacheHits the reduced interval cache hits of the run.
+   * @param cacheMisses the reduced interval cache misses of the run.
+   * @param pairMemoHits the pair distance memo hits.
+   * @param pairMemoLookups the pair distance memo lookups.
+   * @param pairMemoBytes the pair distance memo footprint.
+   */
+  RRARunStats(List<DiscordStats> discords, int candidatesNum, int threadsNum, String kernelName,
+      long elapsedNanos, long cacheHits, long cacheMisses, long pairMemoHits,
+      long pairMemoLookups, long pairMemoBytes) {
+    this.discords = Collections.unmodifiableList(new ArrayList<DiscordStats>(discords));
+    this.candidatesNum = candidatesNum;
+    this.threadsNum = threadsNum;
+    this.kernelName = kernelName;
+    this.elapsedNanos = elapsedNanos;
+    this.cacheHits = cacheHits;
+    this.cacheMisses = cacheMisses;
+    this.pairMemoHits = pairMemoHits;
+    this.pairMemoLookups = pairMemoLookups;
+    this.pairMemoBytes = pairMemoBytes;
+  }
+
+  /**
+   * Gets the per-iteration statistics.
+   *
+   * @return the statistics, one per discord iteration, unmodifiable.
+   */
+  public List<DiscordStats> getDiscords() {
+    return discords;
+  }
+
+  /**
+   * Gets the number of candidate intervals.
+   *
+   * @return the candidates count.
+   */
+  public int getCandidatesNum() {
+    return candidatesNum;
+  }
+
+  /**
+   * Gets the number of search threads.
+   *
+   * @return the threads count.
+   */
+  public int getThreadsNum() {
+    return threadsNum;
+  }
+
+  /**
+   * Gets the name of the distance kernel the run used.
+   *
+   * @return the kernel name.
+   */
+  public String getKernelName() {
+    return kernelName;
+  }
+
+  /**
+   * Gets the run wall-clock time.
+   *
+   * @return the elapsed nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the reduced interval cache hits of the run.
+   *
+   * @return the hits count.
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * Gets the reduced interval cache misses of the run.
+   *
+   * @return the misses count.
+   */
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * Gets the number of pair distances the memo answered.
+   *
+   * @return the memo hits count, 0 if the memo was off.
+   */
+  public long getPairMemoHits() {
+    return pairMemoHits;
+  }
+
+  /**
+   * Gets the number of pair distances looked up in the memo.
+   *
+   * @return the memo lookups count, 0 if the memo was off.
+   */
+  public long getPairMemoLookups() {
+    return pairMemoLookups;
+  }
+
+  /**
+   * Gets the memory the pair distance memo took.
+   *
+   * @return the size in bytes, 0 if the memo was off.
+   */
+  public long getPairMemoBytes() {
+    return pairMemoBytes;
+  }
+
+  /**
+   * Gets the candidates examined over all the iterations.
+   *
+   * @return the candidates examined count.
+   */
+  public long getCandidatesExamined() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.candidatesExamined;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the distance calls over all the iterations.
+   *
+   * @return the distance calls count.
+   */
+  public long getDistanceCalls() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.distanceCalls;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the early abandoned distance calls over all the iterations.
+   *
+   * @return the early abandons count.
+   */
+  public long getEarlyAbandons() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.earlyAbandons;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the random phase visits over all the iterations.
+   *
+   * @return the random phase visits count.
+   */
+  public long getRandomPhaseVisits() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.randomPhaseVisits;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the exclusion skips over all the iterations.
+   *
+   * @return the exclusion skips count.
+   */
+  public long getExclusionSkips() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.exclusionSkips;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the pairs the MINDIST bound ruled out over all the iterations.
+   *
+   * @return the pruned pairs count.
+   */
+  public long getMinDistPruned() {
+    long res = 0;
+    for (DiscordStats d : discords) {
+      res += d.minDistPruned;
+    }
+    return res;
+  }
+
+  /**
+   * Renders the statistics as a single line JSON object, the run figures and totals followed by
+   * the array of the per-iteration ones.
+   *
+   * @return the JSON line.
+   */
+  public String toJson() {
+    StringBuilder sb = new StringBuilder(256 + 256 * discords.size());
+    sb.append("{\"algorithm\":\"RRA\"");
+    sb.append(",\"candidates\":").append(candidatesNum);
+    sb.append(",\"threads\":").append(threadsNum);
+    sb.append(",\"kernel\":\"").append(escape(kernelName)).append('"');
+    sb.append(",\"elapsed_ns\":").append(elapsedNanos);
+    sb.append(",\"candidates_examined\":").append(getCandidatesExamined());
+    sb.append(",\"distance_calls\":").append(getDistanceCalls());
+    sb.append(",\"early_abandons\":").append(getEarlyAbandons());
+    sb.append(",\"random_phase_visits\":").append(getRandomPhaseVisits());
+    sb.append(",\"exclusion_skips\":").append(getExclusionSkips());
+    sb.append(",\"mindist_pruned\":").append(getMinDistPruned());
+    sb.append(",\"cache_hits\":").append(cacheHits);
+    sb.append(",\"cache_misses\":").append(cacheMisses);
+    sb.append(",\"memo_hits\":").append(pairMemoHits);
+    sb.append(",\"memo_lookups\":").append(pairMemoLookups);
+    sb.append(",\"memo_bytes\":").append(pairMemoBytes);
+    sb.append(",\"discords\":[");
+    for (int i = 0; i < discords.size(); i++) {
+      DiscordStats d = discords.get(i);
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"position\":").append(d.position);
+      sb.append(",\"length\":").append(d.length);
+      sb.append(",\"nn_distance\":").append(number(d.nnDistance));
+      sb.append(",\"candidates_examined\":").append(d.candidatesExamined);
+      sb.append(",\"distance_calls\":").append(d.distanceCalls);
+      sb.append(",\"early_abandons\":").append(d.earlyAbandons);
+      sb.append(",\"random_phase_visits\":").append(d.randomPhaseVisits);
+      sb.append(",\"exclusion_skips\":").append(d.exclusionSkips);
+      sb.append(",\"memo_hits\":").append(d.memoHits);
+      sb.append(",\"mindist_pruned\":").append(d.minDistPruned);
+      sb.append(",\"elapsed_ns\":").append(d.elapsedNanos).append('}');
+    }
+    sb.append("]}");
+    return sb.toString();
+  }
+
+  /**
+   * Renders the per-iteration statistics as CSV rows of the {@link #CSV_HEADER} columns.
+   *
+   * @return the rows, one per iteration.
+   */
+  public List<String> toCsvRows() {
+    List<String> res = new ArrayList<String>(discords.size());
+    for (int i = 0; i < discords.size(); i++) {
+      DiscordStats d = discords.get(i);
+      res.add(i + "," + d.position + "," + d.length + "," + number(d.nnDistance) + ","
+          + d.candidatesExamined + "," + d.distanceCalls + "," + d.earlyAbandons + ","
+          + d.randomPhaseVisits + "," + d.exclusionSkips + "," + d.memoHits + ","
+          + d.minDistPruned + "," + d.elapsedNanos);
+    }
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    return "RRA run: " + discords.size() + " iterations in "
+        + String.format(Locale.US, "%.3f", elapsedNanos / 1.0E9) + " s, candidates examined: "
+        + getCandidatesExamined() + ", distance calls: " + getDistanceCalls()
+        + ", early abandons: " + getEarlyAbandons() + ", random phase visits: "
+        + getRandomPhaseVisits() + ", exclusion skips: " + getExclusionSkips();
+  }
+
+  private static String number(double value) {
+    // JSON has neither infinities nor NaN
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "null";
+    }
+    return Double.toString(value);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /**
+   * The statistics of a discord iteration.
+   */
+  public static final class DiscordStats {
+
+    private final int position;
+    private final int length;
+    private final double nnDistance;
+    private final long candidatesExamined;
+    private final long distanceCalls;
+    private final long earlyAbandons;
+    private final long randomPhaseVisits;
+    private final long exclusionSkips;
+    private final long memoHits;
+    private final long minDistPruned;
+    private final long elapsedNanos;
+
+    DiscordStats(int position, int length, double nnDistance, long candidatesExamined,
+        long distanceCalls, long earlyAbandons, long randomPhaseVisits, long exclusionSkips,
+        long memoHits, long minDistPruned, long elapsedNanos) {
+      this.position = position;
+      this.length = length;
+      this.nnDistance = nnDistance;
+      this.candidatesExamined = candidatesExamined;
+      this.distanceCalls = distanceCalls;
+      this.earlyAbandons = earlyAbandons;
+      this.randomPhaseVisits = randomPhaseVisits;
+      this.exclusionSkips = exclusionSkips;
+      this.memoHits = memoHits;
+      this.minDistPruned = minDistPruned;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the discord position.
+     *
+     * @return the position, -1 if the iteration found no valid discord.
+     */
+    public int getPosition() {
+      return position;
+    }
+
+    /**
+     * Gets the discord length.
+     *
+     * @return the length, -1 if the iteration found no valid discord.
+     */
+    public int getLength() {
+      return length;
+    }
+
+    /**
+     * Gets the discord NN distance.
+     *
+     * @return the distance, NaN if the iteration found no valid discord.
+     */
+    public double getNNDistance() {
+      return nnDistance;
+    }
+
+    /**
+     * Gets the number of candidates whose NN search was run.
+     *
+     * @return the candidates examined count.
+     */
+    public long getCandidatesExamined() {
+      return candidatesExamined;
+    }
+
+    /**
+     * Gets the number of distance calls.
+     *
+     * @return the distance calls count.
+     */
+    public long getDistanceCalls() {
+      return distanceCalls;
+    }
+
+    /**
+     * Gets the number of distance calls abandoned early.
+     *
+     * @return the early abandons count.
+     */
+    public long getEarlyAbandons() {
+      return earlyAbandons;
+    }
+
+    /**
+     * Gets the number of neighbors visited past the rule occurrences, in the random (or the
+     * configured) visit order.
+     *
+     * @return the random phase visits count.
+     */
+    public long getRandomPhaseVisits() {
+      return randomPhaseVisits;
+    }
+
+    /**
+     * Gets the number of candidates and neighbors skipped for their start falling within an
+     * exclusion band: that of a prior discord, or the self-match band of the candidate.
+     *
+     * @return the exclusion skips count.
+     */
+    public long getExclusionSkips() {
+      return exclusionSkips;
+    }
+
+    /**
+     * Gets the number of pair distances the memo answered.
+     *
+     * @return the memo hits count.
+     */
+    public long getMemoHits() {
+      return memoHits;
+    }
+
+    /**
+     * Gets the number of pairs the MINDIST bound ruled out.
+     *
+     * @return the pruned pairs count.
+     */
+    public long getMinDistPruned() {
+      return minDistPruned;
+    }
+
+    /**
+     * Gets the iteration wall-clock time.
+     *
+     * @return the elapsed nanoseconds.
+     */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * The RRA run statistics printout selector: a single JSON line, a CSV row per discord iteration,
+ * or none.
+ * 
+ * @author psenin
+ *
+ */
+public enum RRARunStatsFormat {
+  JSON, CSV, NONE;
+}
@@ -0,0 +1,87 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.seninp.grammarviz.anomaly.RRASearchResult.StopReason;
+
+/**
+ * The wall-clock, distance calls and cancellation limits of an anytime RRA run, checked by the
+ * search workers; once any of them trips the budget stays exhausted.
+ *
+ * @author psenin
+ *
+ */
+final class RRASearchBudget {
+
+  private final long deadlineNanos;
+  private final long maxDistanceCalls;
+  private final RRACancellationToken token;
+
+  private final AtomicLong distanceCalls = new AtomicLong();
+  private volatile StopReason stopReason;
+
+  private RRASearchBudget(long deadlineNanos, long maxDistanceCalls,
+      RRACancellationToken token) {
+    this.deadlineNanos = deadlineNanos;
+    this.maxDistanceCalls = maxDistanceCalls;
+    this.token = token;
+  }
+
+  /**
+   * Starts the budget clock.
+   *
+   * @param options the search options.
+   * @return the budget, null if the search is unbounded.
+   */
+  static RRASearchBudget start(RRASearchOptions options) {
+    long millis = options.getTimeBudgetMillis();
+    long calls = options.getDistanceCallBudget();
+    if (millis <= 0 && calls <= 0 && null == options.getCancellationToken()) {
+      return null;
+    }
+    long deadline = (millis > 0) ? System.nanoTime() + millis * 1000000L : Long.MAX_VALUE;
+    return new RRASearchBudget(deadline, (calls > 0) ? calls : Long.MAX_VALUE,
+        options.getCancellationToken());
+  }
+
+  /**
+   * Charges distance calls to the budget.
+   *
+   * @param calls the calls made since the last charge.
+   * @return true if the budget is exhausted.
+   */
+  boolean charge(long calls) {
+    if (calls > 0 && distanceCalls.addAndGet(calls) >= maxDistanceCalls && null == stopReason) {
+      stopReason = StopReason.DISTANCE_BUDGET;
+    }
+    return isExhausted();
+  }
+
+  /**
+   * Checks the budget.
+   *
+   * @return true if the budget is exhausted.
+   */
+  boolean isExhausted() {
+    if (null != stopReason) {
+      return true;
+    }
+    if (null != token && token.isCancelled()) {
+      stopReason = StopReason.CANCELLED;
+    }
+    else if (Long.MAX_VALUE != deadlineNanos && System.nanoTime() - deadlineNanos >= 0) {
+      stopReason = StopReason.TIME_BUDGET;
+    }
+    return null != stopReason;
+  }
+
+  /**
+   * Gets what exhausted the budget.
+   *
+   * @return the stop reason, {@code COMPLETED} while the budget lasts.
+   */
+  StopReason getStopReason() {
+    StopReason res = stopReason;
+    return (null == res) ? StopReason.COMPLETED : res;
+  }
+}
@@ -0,0 +1,284 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * Settings of the RRA discord search. The number of search threads, the reduced interval cache,
+ * the pair distance memo, the single-pass top-k mode, the MINDIST pruning and the neighbor visit
+ * order are tuning knobs which do not change the reported discords; the time and distance calls
+ * budgets and the cancellation token make the search an anytime one which may stop with
+ * best-so-far discords. The defaults reproduce the iterative sequential search, run to
+ * completion, with a per-run cache and memo of the default budgets.
+ *
+ * @author psenin
+ *
+ */
+public final class RRASearchOptions {
+
+  /** The default byte budget of the pair distance memo, 32 MB. */
+  public static final long DEFAULT_PAIR_MEMO_BYTES = 32L * 1024L * 1024L;
+
+  private int threadsNum = 1;
+  private long reducedCacheBytes = ReducedIntervalCache.DEFAULT_BYTE_BUDGET;
+  private ReducedIntervalCache reducedCache;
+  private long pairMemoBytes = DEFAULT_PAIR_MEMO_BYTES;
+  private boolean topKMode;
+  private long timeBudgetMillis;
+  private long distanceCallBudget;
+  private RRACancellationToken cancellationToken;
+  private int minDistPaaSize;
+  private int minDistAlphabetSize;
+  private VisitOrder visitOrder = VisitOrder.RANDOM;
+
+  /**
+   * Sets the number of search threads.
+   *
+   * @param threadsNum the number of threads, values below 2 run the sequential search.
+   * @return this options object.
+   */
+  public RRASearchOptions setThreadsNum(int threadsNum) {
+    this.threadsNum = threadsNum;
+    return this;
+  }
+
+  /**
+   * Gets the number of search threads.
+   *
+   * @return the number of threads.
+   */
+  public int getThreadsNum() {
+    return threadsNum;
+  }
+
+  /**
+   * Sets the byte budget of the reduced interval cache a search run builds when no cache was
+   * supplied.
+   *
+   * @param bytes the budget in bytes, 0 disables caching.
+   * @return this options object.
+   */
+  public RRASearchOptions setReducedCacheBytes(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("negative cache budget: " + bytes);
+    }
+    this.reducedCacheBytes = bytes;
+    return this;
+  }
+
+  /**
+   * Gets the byte budget of the per-run reduced interval cache.
+   *
+   * @return the budget in bytes.
+   */
+  public long getReducedCacheBytes() {
+    return reducedCacheBytes;
+  }
+
+  /**
+   * Supplies a reduced interval cache to use (and keep warm) across search runs on the same
+   * series; its own budget applies.
+   *
+   * @param cache the cache, null to let every run build its own.
+   * @return this options object.
+   */
+  public RRASearchOptions setReducedCache(ReducedIntervalCache cache) {
+    this.reducedCache = cache;
+    return this;
+  }
+
+  /**
+   * Gets the supplied reduced interval cache.
+   *
+   * @return the cache or null.
+   */
+  public ReducedIntervalCache getReducedCache() {
+    return reducedCache;
+  }
+
+  /**
+   * Sets the byte budget of the memo a search run keeps the candidate pair distances in, so that
+   * the search for a discord does not recompute the distances the prior searches have computed.
+   * Once the budget is used up, the pairs not looked up lately make room.
+   *
+   * @param bytes the budget in bytes, 0 disables the memo.
+   * @return this options object.
+   */
+  public RRASearchOptions setPairMemoBytes(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("negative memo budget: " + bytes);
+    }
+    this.pairMemoBytes = bytes;
+    return this;
+  }
+
+  /**
+   * Gets the byte budget of the per-run pair distance memo.
+   *
+   * @return the budget in bytes, 0 if the memo is off.
+   */
+  public long getPairMemoBytes() {
+    return pairMemoBytes;
+  }
+
+  /**
+   * Switches the single-pass top-k mode on or off. In that mode the NN distances computed while
+   * searching for a discord are kept for the following ones: exact distances are reused, upper
+   * bounds left by abandoned searches let candidates be skipped, and the best of the k best
+   * non-overlapping exact candidates still eligible seeds the best-so-far distance. A candidate
+   * whose nearest neighbor falls inside a newly marked exclusion band is searched again.
+   *
+   * @param topKMode true to reuse the NN distances across the discord iterations.
+   * @return this options object.
+   */
+  public RRASearchOptions setTopKMode(boolean topKMode) {
+    this.topKMode = topKMode;
+    return this;
+  }
+
+  /**
+   * Checks whether the single-pass top-k mode is on.
+   *
+   * @return true if NN distances are reused across the discord iterations.
+   */
+  public boolean isTopKMode() {
+    return topKMode;
+  }
+
+  /**
+   * Sets the wall-clock budget of the search.
+   *
+   * @param millis the budget in milliseconds, 0 for none.
+   * @return this options object.
+   */
+  public RRASearchOptions setTimeBudgetMillis(long millis) {
+    this.timeBudgetMillis = Math.max(0L, millis);
+    return this;
+  }
+
+  /**
+   * Gets the wall-clock budget of the search.
+   *
+   * @return the budget in milliseconds, 0 for none.
+   */
+  public long getTimeBudgetMillis() {
+    return timeBudgetMillis;
+  }
+
+  /**
+   * Sets the distance calls budget of the search, summed over all the discords and threads.
+   *
+   * @param calls the maximal number of distance calls, 0 for none.
+   * @return this options object.
+   */
+  public RRASearchOptions setDistanceCallBudget(long calls) {
+    this.distanceCallBudget = Math.max(0L, calls);
+    return this;
+  }
+
+  /**
+   * Gets the distance calls budget of the search.
+   *
+   * @return the maximal number of distance calls, 0 for none.
+   */
+  public long getDistanceCallBudget() {
+    return distanceCallBudget;
+  }
+
+  /**
+   * Sets the token which stops the search with the discords found so far.
+   *
+   * @param token the cancellation token, null for none.
+   * @return this options object.
+   */
+  public RRASearchOptions setCancellationToken(RRACancellationToken token) {
+    this.cancellationToken = token;
+    return this;
+  }
+
+  /**
+   * Gets the cancellation token.
+   *
+   * @return the token or null.
+   */
+  public RRACancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  /**
+   * Switches the SAX MINDIST pruning on: every candidate gets a SAX word of its z-normalized
+   * window, and a neighbor whose MINDIST lower bound is above the current NN distance is skipped
+   * without computing the distance.
+   *
+   * @param paaSize the SAX word length, usually the discretization PAA size.
+   * @param alphabetSize the SAX alphabet size, usually the discretization one.
+   * @return this options object.
+   */
+  public RRASearchOptions setMinDistPruning(int paaSize, int alphabetSize) {
+    if (paaSize < 1 || alphabetSize < 2) {
+      throw new IllegalArgumentException(
+          "invalid MINDIST PAA or alphabet size: " + paaSize + ", " + alphabetSize);
+    }
+    this.minDistPaaSize = paaSize;
+    this.minDistAlphabetSize = alphabetSize;
+    return this;
+  }
+
+  /**
+   * Switches the SAX MINDIST pruning off.
+   *
+   * @return this options object.
+   */
+  public RRASearchOptions disableMinDistPruning() {
+    this.minDistPaaSize = 0;
+    this.minDistAlphabetSize = 0;
+    return this;
+  }
+
+  /**
+   * Checks whether the SAX MINDIST pruning is on.
+   *
+   * @return true if the neighbors are screened with the MINDIST lower bound.
+   */
+  public boolean isMinDistPruning() {
+    return minDistPaaSize > 0;
+  }
+
+  /**
+   * Gets the SAX word length of the MINDIST pruning.
+   *
+   * @return the PAA size, 0 if the pruning is off.
+   */
+  public int getMinDistPaaSize() {
+    return minDistPaaSize;
+  }
+
+  /**
+   * Gets the SAX alphabet size of the MINDIST pruning.
+   *
+   * @return the alphabet size, 0 if the pruning is off.
+   */
+  public int getMinDistAlphabetSize() {
+    return minDistAlphabetSize;
+  }
+
+  /**
+   * Sets the order in which the neighbors of a candidate are visited after its rule occurrences.
+   *
+   * @param visitOrder the strategy, {@link VisitOrder#RANDOM} by default.
+   * @return this options object.
+   */
+  public RRASearchOptions setVisitOrder(VisitOrder visitOrder) {
+    if (null == visitOrder) {
+      throw new IllegalArgumentException("null visit order");
+    }
+    this.visitOrder = visitOrder;
+    return this;
+  }
+
+  /**
+   * Gets the neighbor visit order.
+   *
+   * @return the strategy.
+   */
+  public VisitOrder getVisitOrder() {
+    return visitOrder;
+  }
+}
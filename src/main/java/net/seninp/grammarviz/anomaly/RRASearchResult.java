@@ -0,0 +1,195 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The outcome of an anytime RRA search: the discords along with whether the search ran to
+ * completion and, if it did not, what stopped it and how far it got.
+ *
+ * @author psenin
+ *
+ */
+public final class RRASearchResult {
+
+  /**
+   * What ended the search.
+   */
+  public enum StopReason {
+    /** The search ran to completion. */
+    COMPLETED,
+    /** The wall-clock budget ran out. */
+    TIME_BUDGET,
+    /** The distance calls budget ran out. */
+    DISTANCE_BUDGET,
+    /** The cancellation token was cancelled. */
+    CANCELLED
+  }
+
+  private final DiscordRecords discords;
+  private final StopReason stopReason;
+  private final double completeness;
+  private final long distanceCalls;
+  private final long minDistPrunedPairs;
+  private final RRARunStats runStats;
+
+  /**
+   * Constructor.
+   *
+   * @param discords the discords found.
+   * @param stopReason what ended the search.
+   * @param completeness the completeness estimate, in [0, 1].
+   */
+  public RRASearchResult(DiscordRecords discords, StopReason stopReason, double completeness) {
+    this(discords, stopReason, completeness, 0L, 0L);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param discords the discords found.
+   * @param stopReason what ended the search.
+   * @param completeness the completeness estimate, in [0, 1].
+   * @param distanceCalls the number of distance calls made.
+   * @param minDistPrunedPairs the number of pairs the MINDIST bound ruled out.
+   */
+  public RRASearchResult(DiscordRecords discords, StopReason stopReason, double completeness,
+      long distanceCalls, long minDistPrunedPairs) {
+    this.discords = discords;
+    this.stopReason = stopReason;
+    this.completeness = completeness;
+    this.distanceCalls = distanceCalls;
+    this.minDistPrunedPairs = minDistPrunedPairs;
+    this.runStats = null;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param discords the discords found.
+   * @param stopReason what ended the search.
+   * @param completeness the completeness estimate, in [0, 1].
+   * @param runStats the statistics of the search run.
+   */
+  public RRASearchResult(DiscordRecords discords, StopReason stopReason, double completeness,
+      RRARunStats runStats) {
+    this.discords = discords;
+    this.stopReason = stopReason;
+    this.completeness = completeness;
+    this.distanceCalls = runStats.getDistanceCalls();
+    this.minDistPrunedPairs = runStats.getMinDistPruned();
+    this.runStats = runStats;
+  }
+
+  /**
+   * Gets the discords; on a partial result the last one is the best-so-far of the interrupted
+   * discord iteration, which may not be the exact discord.
+   *
+   * @return the discords.
+   */
+  public DiscordRecords getDiscords() {
+    return discords;
+  }
+
+  /**
+   * Checks whether the search was stopped before completion.
+   *
+   * @return true if the discords are best-so-far ones.
+   */
+  public boolean isPartial() {
+    return StopReason.COMPLETED != stopReason;
+  }
+
+  /**
+   * Gets what ended the search.
+   *
+   * @return the stop reason.
+   */
+  public StopReason getStopReason() {
+    return stopReason;
+  }
+
+  /**
+   * Gets the completeness estimate: the fraction of the candidate scans the requested discords
+   * take that was carried out, 1 for a completed search.
+   *
+   * @return the completeness, in [0, 1].
+   */
+  public double getCompleteness() {
+    return completeness;
+  }
+
+  /**
+   * Gets the number of distance calls made by the search, over all the discords and threads.
+   *
+   * @return the distance calls count.
+   */
+  public long getDistanceCalls() {
+    return distanceCalls;
+  }
+
+  /**
+   * Gets the number of candidate-neighbor pairs the SAX MINDIST bound ruled out, i.e. the
+   * distance calls saved.
+   *
+   * @return the pruned pairs count, 0 if the pruning was off.
+   */
+  public long getMinDistPrunedPairs() {
+    return minDistPrunedPairs;
+  }
+
+  /**
+   * Gets the number of pair distances the memo answered, i.e. the distance calls saved.
+   *
+   * @return the memo hits count, 0 if the memo was off.
+   */
+  public long getPairMemoHits() {
+    return (null == runStats) ? 0L : runStats.getPairMemoHits();
+  }
+
+  /**
+   * Gets the number of pair distances looked up in the memo.
+   *
+   * @return the memo lookups count, 0 if the memo was off.
+   */
+  public long getPairMemoLookups() {
+    return (null == runStats) ? 0L : runStats.getPairMemoLookups();
+  }
+
+  /**
+   * Gets the fraction of the memo lookups which were answered.
+   *
+   * @return the hit rate, in [0, 1].
+   */
+  public double getPairMemoHitRate() {
+    long lookups = getPairMemoLookups();
+    return (0 == lookups) ? 0D : (double) getPairMemoHits() / lookups;
+  }
+
+  /**
+   * Gets the memory the pair distance memo took.
+   *
+   * @return the size in bytes, 0 if the memo was off.
+   */
+  public long getPairMemoBytes() {
+    return (null == runStats) ? 0L : runStats.getPairMemoBytes();
+  }
+
+  /**
+   * Gets the per-discord statistics of the search run.
+   *
+   * @return the run statistics, null if the result was not produced by a search run.
+   */
+  public RRARunStats getRunStats() {
+    return runStats;
+  }
+
+  @Override
+  public String toString() {
+    if (!isPartial()) {
+      return "complete search, " + discords.getSize() + " discords";
+    }
+    return "partial search (" + stopReason.toString().toLowerCase().replace('_', ' ') + "), "
+        + discords.getSize() + " discords, completeness "
+        + String.format("%.1f%%", 100D * completeness);
+  }
+}
@@ -0,0 +1,90 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.SAXException;
+
+/**
+ * What a {@link VisitOrder} strategy may look at when arranging the neighbors: the series, its
+ * window statistics, the candidates and, on demand, the candidates' SAX words. One context serves
+ * all the workers and discord iterations of a search run.
+ *
+ * @author psenin
+ *
+ */
+public final class RRAVisitContext {
+
+  private final double[] series;
+  private final SeriesStatsIndex stats;
+  private final RRACandidateStore candidates;
+  private final double zNormThreshold;
+
+  // the run's MINDIST bound, if on, and the words built for a visit order of other parameters
+  private final SAXMinDistBound minDist;
+  private SAXMinDistBound saxWords;
+
+  RRAVisitContext(double[] series, SeriesStatsIndex stats, RRACandidateStore candidates,
+      double zNormThreshold, SAXMinDistBound minDist) {
+    this.series = series;
+    this.stats = stats;
+    this.candidates = candidates;
+    this.zNormThreshold = zNormThreshold;
+    this.minDist = minDist;
+  }
+
+  /**
+   * Gets the timeseries.
+   *
+   * @return the series; must not be modified.
+   */
+  public double[] getSeries() {
+    return series;
+  }
+
+  /**
+   * Gets the series window statistics.
+   *
+   * @return the statistics index.
+   */
+  public SeriesStatsIndex getStats() {
+    return stats;
+  }
+
+  /**
+   * Gets the search candidates.
+   *
+   * @return the candidate store.
+   */
+  public RRACandidateStore getCandidates() {
+    return candidates;
+  }
+
+  /**
+   * Gets the z-normalization threshold.
+   *
+   * @return the threshold.
+   */
+  public double getZNormThreshold() {
+    return zNormThreshold;
+  }
+
+  /**
+   * Gets the MINDIST bound of the run.
+   */
+  SAXMinDistBound getMinDist() {
+    return minDist;
+  }
+
+  /**
+   * Gets the candidates' SAX words of the given parameters, sharing them with the MINDIST pruning
+   * when the parameters match.
+   */
+  synchronized SAXMinDistBound saxWords(int paaSize, int alphabetSize) throws SAXException {
+    if (null != minDist && minDist.isFor(paaSize, alphabetSize)) {
+      return minDist;
+    }
+    if (null == saxWords || !saxWords.isFor(paaSize, alphabetSize)) {
+      saxWords = new SAXMinDistBound(series, stats, candidates, zNormThreshold, paaSize,
+          alphabetSize);
+    }
+    return saxWords;
+  }
+}
@@ -0,0 +1,44 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Random;
+
+/**
+ * The uniform random neighbor visit order: a Fisher-Yates shuffle drawing from the worker's random
+ * source, which reproduces the historical search trajectory for a given seed.
+ *
+ * @author psenin
+ *
+ */
+public final class RandomVisitOrder implements VisitOrder {
+
+  @Override
+  public String getName() {
+    return "random";
+  }
+
+  @Override
+  public Arranger newArranger(RRAVisitContext context) {
+    return new Arranger() {
+      @Override
+      public void arrange(int current, int[] neighbors, int count, Random rnd) {
+        shuffle(neighbors, count, rnd);
+      }
+    };
+  }
+
+  /**
+   * Shuffles the first {@code count} slots of the array.
+   *
+   * @param array the array.
+   * @param count the number of slots to shuffle.
+   * @param rnd the random source.
+   */
+  static void shuffle(int[] array, int count, Random rnd) {
+    for (int j = count - 1; j > 0; j--) {
+      int index = rnd.nextInt(j + 1);
+      int a = array[index];
+      array[index] = array[j];
+      array[j] = a;
+    }
+  }
+}
@@ -0,0 +1,478 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * A bounded, least-recently-used cache of PAA-reduced interval windows used by the RRA
+ * cross-length distance. Each entry holds the window shrunk to a target length along with its mean,
+ * its standard deviation and, when the latter is positive, the z-normalized values, so a cached
+ * interval is neither re-shrunk nor re-normalized. Entries are keyed by the interval start, length
+ * and target length, and are evicted in access order once their estimated footprint exceeds the
+ * byte budget.
+ *
+ * A cache is bound to the series it was built for and is safe to share between search threads.
+ * As in the {@link PairDistanceMemo}, the entries live in open-addressing tables of primitive keys
+ * split into segments, each one locked on its own and keeping its own access order within its
+ * share of the budget; a small budget gets a single segment, that is the exact LRU order. The
+ * interval start and length are packed into a long key, the target length sits next to it, so a
+ * lookup allocates nothing. The reduction itself runs unlocked.
+ *
+ * @author psenin
+ *
+ */
+public final class ReducedIntervalCache {
+
+  /** The default byte budget, 64 MB. */
+  public static final long DEFAULT_BYTE_BUDGET = 64L * 1024L * 1024L;
+
+  // the entry object, its two array headers, and the slot arrays
+  private static final long ENTRY_OVERHEAD_BYTES = 96L;
+
+  // at most that many segments, a power of two, each one with at least the minimal budget
+  private static final int MAX_SEGMENTS = 16;
+  private static final long MIN_SEGMENT_BYTES = 1L << 20;
+
+  private static final int INITIAL_SLOTS = 64;
+
+  private static final long EMPTY = -1L;
+
+  private static final int NONE = -1;
+
+  private static final ThreadLocal<PAAKernel> PAA = ThreadLocal.withInitial(PAAKernel::new);
+
+  private static final DistanceKernel KERNEL = DistanceKernels.get();
+
+  private final double[] series;
+  private final long byteBudget;
+  private final Segment[] segments;
+  private final int segmentShift;
+
+  /**
+   * Constructor.
+   *
+   * @param series the timeseries the cached intervals belong to.
+   * @param byteBudget the cache memory budget in bytes, 0 disables caching.
+   */
+  public ReducedIntervalCache(double[] series, long byteBudget) {
+    if (byteBudget < 0) {
+      throw new IllegalArgumentException("negative cache budget: " + byteBudget);
+    }
+    this.series = series;
+    this.byteBudget = byteBudget;
+    int segmentsNum = 1;
+    while (segmentsNum < MAX_SEGMENTS && byteBudget / (2 * segmentsNum) >= MIN_SEGMENT_BYTES) {
+      segmentsNum *= 2;
+    }
+    this.segments = new Segment[segmentsNum];
+    for (int i = 0; i < segmentsNum; i++) {
+      segments[i] = new Segment(byteBudget / segmentsNum);
+    }
+    this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentsNum);
+  }
+
+  /**
+   * Checks whether the cache was built for the series.
+   *
+   * @param timeseries the timeseries.
+   * @return true if the cached windows were taken off that very array.
+   */
+  public boolean isBoundTo(double[] timeseries) {
+    return this.series == timeseries;
+  }
+
+  /**
+   * Gets the series window {@code [start, start + length)} reduced to {@code targetLength}
+   * points, from the cache if possible.
+   *
+   * @param start the window start.
+   * @param length the window length.
+   * @param targetLength the reduced length.
+   * @return the reduced window.
+   * @throws Exception if PAA fails.
+   */
+  public ReducedInterval get(int start, int length, int targetLength) throws Exception {
+    long key = ((long) start << 32) | (length & 0xFFFFFFFFL);
+    long hash = Segment.hash(key, targetLength);
+    Segment segment = (1 == segments.length) ? segments[0]
+        : segments[(int) (hash >>> segmentShift)];
+    synchronized (segment) {
+      ReducedInterval cached = segment.lookup(key, targetLength, hash);
+      if (null != cached) {
+        return cached;
+      }
+    }
+
+    ReducedInterval reduced = reduce(series, start, length, targetLength);
+    if (reduced.estimatedBytes() > segment.byteBudget) {
+      return reduced;
+    }
+
+    synchronized (segment) {
+      // another thread may have reduced the same window meanwhile, keep the first one
+      return segment.insert(key, targetLength, hash, reduced);
+    }
+  }
+
+  /**
+   * Gets the number of lookups served from the cache.
+   *
+   * @return the hits count.
+   */
+  public long getHits() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.hits;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the number of lookups which required a reduction.
+   *
+   * @return the misses count.
+   */
+  public long getMisses() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.misses;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the number of evicted entries.
+   *
+   * @return the evictions count.
+   */
+  public long getEvictions() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.evictions;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the estimated footprint of the cached entries.
+   *
+   * @return the size in bytes.
+   */
+  public long getBytes() {
+    long res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.bytes;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Gets the byte budget.
+   *
+   * @return the budget in bytes.
+   */
+  public long getByteBudget() {
+    return byteBudget;
+  }
+
+  /**
+   * Gets the number of cached entries.
+   *
+   * @return the entries count.
+   */
+  public int size() {
+    int res = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        res += segment.size;
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    long hits = getHits();
+    long misses = getMisses();
+    long lookups = hits + misses;
+    return "reduced interval cache: " + size() + " entries, " + (getBytes() >> 10) + " KB of "
+        + (byteBudget >> 10) + " KB, hits: " + hits + ", misses: " + misses + ", hit rate: "
+        + ((0 == lookups) ? 0 : Math.round(100D * hits / lookups)) + "%, evictions: "
+        + getEvictions();
+  }
+
+  /**
+   * Shrinks a series window with PAA and computes its statistics; the standard deviation is the
+   * unclamped population one the RRA distance has always used for shrunk windows.
+   */
+  static ReducedInterval reduce(double[] series, int start, int length, int targetLength)
+      throws Exception {
+    double[] values = new double[targetLength];
+    PAA.get().paa(series, start, length, targetLength, values);
+    double mean = KERNEL.mean(values, 0, targetLength);
+    double sd = KERNEL.stDev(values, 0, targetLength);
+    double[] normalized = null;
+    if (sd > 0D) {
+      normalized = new double[targetLength];
+      KERNEL.znormInto(values, 0, targetLength, mean, sd, normalized);
+    }
+    return new ReducedInterval(values, mean, sd, normalized);
+  }
+
+  /**
+   * A PAA-reduced series window.
+   */
+  public static final class ReducedInterval {
+
+    private final double[] values;
+    private final double mean;
+    private final double sd;
+    private final double[] normalized;
+
+    // the SAX word of the normalized values, attached by the MINDIST bound on first use
+    volatile SAXMinDistBound.ReducedWord saxWord;
+
+    ReducedInterval(double[] values, double mean, double sd, double[] normalized) {
+      this.values = values;
+      this.mean = mean;
+      this.sd = sd;
+      this.normalized = normalized;
+    }
+
+    /**
+     * Gets the reduced values; the array is shared and must not be modified.
+     *
+     * @return the reduced values.
+     */
+    public double[] getValues() {
+      return values;
+    }
+
+    /**
+     * Gets the z-normalized reduced values; the array is shared and must not be modified.
+     *
+     * @return the z-normalized values, null if the standard deviation is zero.
+     */
+    public double[] getNormalizedValues() {
+      return normalized;
+    }
+
+    /**
+     * Gets the mean of the reduced values.
+     *
+     * @return the mean.
+     */
+    public double getMean() {
+      return mean;
+    }
+
+    /**
+     * Gets the standard deviation of the reduced values.
+     *
+     * @return the standard deviation.
+     */
+    public double getStDev() {
+      return sd;
+    }
+
+    long estimatedBytes() {
+      return ENTRY_OVERHEAD_BYTES + 8L * values.length * ((null == normalized) ? 1 : 2);
+    }
+  }
+
+  /**
+   * A linear probing table whose entries are also chained in the access order, the most recently
+   * used at the head.
+   */
+  private static final class Segment {
+
+    private final long byteBudget;
+
+    private long[] keys;
+    private int[] targets;
+    private ReducedInterval[] values;
+    private int[] newer;
+    private int[] older;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    Segment(long byteBudget) {
+      this.byteBudget = byteBudget;
+      allocate((byteBudget > 0) ? INITIAL_SLOTS : 0);
+    }
+
+    ReducedInterval lookup(long key, int target, long hash) {
+      int slot = find(key, target, hash);
+      if (NONE == slot) {
+        misses++;
+        return null;
+      }
+      hits++;
+      unlink(slot);
+      pushHead(slot);
+      return values[slot];
+    }
+
+    ReducedInterval insert(long key, int target, long hash, ReducedInterval value) {
+      int slot = find(key, target, hash);
+      if (NONE != slot) {
+        return values[slot];
+      }
+      bytes += value.estimatedBytes();
+      while (bytes > byteBudget && NONE != tail) {
+        bytes -= values[tail].estimatedBytes();
+        delete(tail);
+        evictions++;
+      }
+      if (4 * (size + 1) > 3 * keys.length) {
+        grow();
+      }
+      slot = home(hash, keys.length);
+      while (EMPTY != keys[slot]) {
+        slot = (slot + 1) & (keys.length - 1);
+      }
+      keys[slot] = key;
+      targets[slot] = target;
+      values[slot] = value;
+      pushHead(slot);
+      size++;
+      return value;
+    }
+
+    private int find(long key, int target, long hash) {
+      if (0 == keys.length) {
+        return NONE;
+      }
+      int mask = keys.length - 1;
+      for (int slot = home(hash, keys.length); EMPTY != keys[slot]; slot = (slot + 1) & mask) {
+        if (key == keys[slot] && target == targets[slot]) {
+          return slot;
+        }
+      }
+      return NONE;
+    }
+
+    private void pushHead(int slot) {
+      older[slot] = head;
+      newer[slot] = NONE;
+      if (NONE != head) {
+        newer[head] = slot;
+      }
+      head = slot;
+      if (NONE == tail) {
+        tail = slot;
+      }
+    }
+
+    private void unlink(int slot) {
+      if (NONE != newer[slot]) {
+        older[newer[slot]] = older[slot];
+      }
+      else {
+        head = older[slot];
+      }
+      if (NONE != older[slot]) {
+        newer[older[slot]] = newer[slot];
+      }
+      else {
+        tail = newer[slot];
+      }
+    }
+
+    /**
+     * Empties the slot shifting back the entries of the probe run which follows it, so that no
+     * tombstones are needed; a shifted entry takes its access order links along.
+     */
+    private void delete(int slot) {
+      unlink(slot);
+      int mask = keys.length - 1;
+      int hole = slot;
+      for (int next = (hole + 1) & mask; EMPTY != keys[next]; next = (next + 1) & mask) {
+        int home = home(hash(keys[next], targets[next]), keys.length);
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          move(next, hole);
+          hole = next;
+        }
+      }
+      keys[hole] = EMPTY;
+      values[hole] = null;
+      size--;
+    }
+
+    private void move(int from, int to) {
+      keys[to] = keys[from];
+      targets[to] = targets[from];
+      values[to] = values[from];
+      newer[to] = newer[from];
+      older[to] = older[from];
+      if (NONE != newer[to]) {
+        older[newer[to]] = to;
+      }
+      else {
+        head = to;
+      }
+      if (NONE != older[to]) {
+        newer[older[to]] = to;
+      }
+      else {
+        tail = to;
+      }
+    }
+
+    /**
+     * Doubles the table, re-inserting the entries from the least recently used one on so that
+     * the access order is kept.
+     */
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldTargets = targets;
+      ReducedInterval[] oldValues = values;
+      int[] oldNewer = newer;
+      int oldTail = tail;
+      allocate(Math.max(INITIAL_SLOTS, 2 * oldKeys.length));
+      int mask = keys.length - 1;
+      for (int i = oldTail; NONE != i; i = oldNewer[i]) {
+        int slot = home(hash(oldKeys[i], oldTargets[i]), keys.length);
+        while (EMPTY != keys[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        targets[slot] = oldTargets[i];
+        values[slot] = oldValues[i];
+        pushHead(slot);
+      }
+    }
+
+    private void allocate(int slots) {
+      keys = new long[slots];
+      targets = new int[slots];
+      values = new ReducedInterval[slots];
+      newer = new int[slots];
+      older = new int[slots];
+      Arrays.fill(keys, EMPTY);
+      head = NONE;
+      tail = NONE;
+    }
+
+    private static long hash(long key, int target) {
+      return (key + target * 0xC2B2AE3D27D4EB4FL) * 0x9E3779B97F4A7C15L;
+    }
+
+    private static int home(long hash, int slots) {
+      return (int) (hash >>> 24) & (slots - 1);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+import net.seninp.jmotif.sax.SAXException;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The HOTSAX "magic array" over primitives: every SAX word is packed into a long, a few bits per
+ * letter, and an open-addressing table with linear probing maps the packed words to dense bucket
+ * ids. The occurrences of the buckets are kept in one flat array, bucket after bucket, and the
+ * buckets are ordered by their size, the rarest first, ties going to the bucket occurring first.
+ *
+ * @author psenin
+ *
+ */
+final class SAXBucketIndex {
+
+  private static final int EMPTY = -1;
+
+  private final int bitsPerLetter;
+  private final long[] keys;
+  private final int[] ids;
+  private final int mask;
+
+  private final String[] words;
+  private final int[] bucketStarts;
+  private final int[] occurrences;
+  private final int[] bucketOf;
+  private final int[] order;
+
+  /**
+   * Constructor.
+   *
+   * @param sax the discretized series.
+   * @param alphabetSize the alphabet size.
+   * @param positions the number of sliding window positions.
+   * @throws SAXException if a word does not fit into a long.
+   */
+  SAXBucketIndex(SAXRecords sax, int alphabetSize, int positions) throws SAXException {
+    this.bitsPerLetter = Math.max(1, 32 - Integer.numberOfLeadingZeros(alphabetSize - 1));
+
+    int[] starts = new int[sax.getIndexes().size()];
+    int count = 0;
+    for (Integer pos : sax.getIndexes()) {
+      starts[count++] = pos;
+    }
+    Arrays.sort(starts);
+
+    int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.ids = new int[capacity];
+    Arrays.fill(ids, EMPTY);
+    this.mask = capacity - 1;
+
+    // packs the words and assigns the dense bucket ids in the order of the first occurrence
+    int[] bucketIds = new int[count];
+    int[] sizes = new int[count];
+    String[] bucketWords = new String[count];
+    int buckets = 0;
+    for (int k = 0; k < count; k++) {
+      char[] word = sax.getByIndex(starts[k]).getPayload();
+      int slot = find(pack(word));
+      if (EMPTY == ids[slot]) {
+        ids[slot] = buckets;
+        bucketWords[buckets] = String.valueOf(word);
+        buckets++;
+      }
+      bucketIds[k] = ids[slot];
+      sizes[bucketIds[k]]++;
+    }
+    this.words = Arrays.copyOf(bucketWords, buckets);
+
+    // the flat occurrences array, every bucket sorted by position
+    this.bucketStarts = new int[buckets + 1];
+    for (int b = 0; b < buckets; b++) {
+      bucketStarts[b + 1] = bucketStarts[b] + sizes[b];
+    }
+    this.occurrences = new int[count];
+    this.bucketOf = new int[positions];
+    Arrays.fill(bucketOf, EMPTY);
+    int[] fill = Arrays.copyOf(bucketStarts, buckets);
+    for (int k = 0; k < count; k++) {
+      occurrences[fill[bucketIds[k]]++] = starts[k];
+      if (starts[k] < positions) {
+        bucketOf[starts[k]] = bucketIds[k];
+      }
+    }
+
+    // the buckets by size, since the ids follow the first occurrence a stable sort keeps the
+    // earliest bucket first among the equally sized ones
+    Integer[] bySize = new Integer[buckets];
+    for (int b = 0; b < buckets; b++) {
+      bySize[b] = b;
+    }
+    Arrays.sort(bySize, (a, b) -> Integer.compare(sizes[a], sizes[b]));
+    this.order = new int[count];
+    int k = 0;
+    for (Integer b : bySize) {
+      for (int i = bucketStarts[b]; i < bucketStarts[b + 1]; i++) {
+        order[k++] = occurrences[i];
+      }
+    }
+  }
+
+  /**
+   * Gets the number of indexed words.
+   *
+   * @return the number of SAX word occurrences.
+   */
+  int size() {
+    return order.length;
+  }
+
+  /**
+   * Gets the start of the word at the rank, the rarest words ranked first.
+   *
+   * @param rank the rank.
+   * @return the window start.
+   */
+  int positionAt(int rank) {
+    return order[rank];
+  }
+
+  /**
+   * Gets the bucket of the window start.
+   *
+   * @param position the window start.
+   * @return the bucket id, -1 if no word starts there.
+   */
+  int bucketOf(int position) {
+    return (position >= 0 && position < bucketOf.length) ? bucketOf[position] : EMPTY;
+  }
+
+  /**
+   * Gets the first occurrence offset of the bucket.
+   *
+   * @param bucket the bucket id.
+   * @return the offset into the occurrences.
+   */
+  int bucketStart(int bucket) {
+    return bucketStarts[bucket];
+  }
+
+  /**
+   * Gets the offset past the last occurrence of the bucket.
+   *
+   * @param bucket the bucket id.
+   * @return the offset into the occurrences.
+   */
+  int bucketEnd(int bucket) {
+    return bucketStarts[bucket + 1];
+  }
+
+  /**
+   * Gets the occurrence at the offset.
+   *
+   * @param offset the offset.
+   * @return the window start.
+   */
+  int occurrence(int offset) {
+    return occurrences[offset];
+  }
+
+  /**
+   * Gets the SAX word of the bucket.
+   *
+   * @param bucket the bucket id.
+   * @return the word.
+   */
+  String word(int bucket) {
+    return words[bucket];
+  }
+
+  /**
+   * Packs a SAX word into a long.
+   *
+   * @param word the word.
+   * @return the packed word.
+   * @throws SAXException if the word does not fit.
+   */
+  long pack(char[] word) throws SAXException {
+    if (word.length * bitsPerLetter > Long.SIZE) {
+      throw new SAXException("a SAX word of " + word.length + " letters with " + bitsPerLetter
+          + " bits per letter does not fit into a long");
+    }
+    long res = 0L;
+    for (char c : word) {
+      res = (res << bitsPerLetter) | (c - 'a');
+    }
+    return res;
+  }
+
+  /**
+   * Finds the slot of the packed word, either the one holding it or the empty one ending the
+   * probe sequence.
+   */
+  private int find(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    int slot = (int) (h ^ (h >>> 32)) & mask;
+    while (EMPTY != ids[slot] && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    return slot;
+  }
+}
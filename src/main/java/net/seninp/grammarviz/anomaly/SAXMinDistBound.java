@@ -0,0 +1,235 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.SAXException;
+import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
+
+/**
+ * The SAX MINDIST lower bound of the RRA normalized distance. Every candidate gets a SAX word of
+ * its z-normalized window -- the very values the distance kernel compares -- and PAA-reduced
+ * windows get theirs on first use, kept along with the reduced window in the cache. The MINDIST of
+ * two words never exceeds the Euclidean distance of the windows, so a pair whose bound is above
+ * the candidate's current NN distance cannot change the search and needs no exact distance.
+ *
+ * The cell distances are taken from the {@link NormalAlphabet} breakpoints themselves rather than
+ * from its distance matrix, whose entries are rounded up; a symbol is the breakpoint range its PAA
+ * value falls into, so a non-zero cell is at most the difference of the two PAA values and the
+ * bound holds up to rounding of those, far below a breakpoint gap.
+ *
+ * Windows falling back to the raw Euclidean distance (standard deviation below the z-normalization
+ * threshold) get no word and are never pruned. The bound is immutable once built and safe to share
+ * between search threads.
+ *
+ * @author psenin
+ *
+ */
+final class SAXMinDistBound {
+
+  private static final NormalAlphabet NORMAL_ALPHABET = new NormalAlphabet();
+
+  private final int paaSize;
+  private final int alphabetSize;
+  private final double[] cuts;
+
+  // squared MINDIST cell values, indexed by symbol * alphabetSize + symbol
+  private final double[] cells;
+
+  // candidate i word is words[i * paaSize .. (i + 1) * paaSize), if hasWord[i]
+  private final byte[] words;
+  private final boolean[] hasWord;
+
+  /**
+   * Constructor, computes the candidates' words.
+   *
+   * @param series the timeseries.
+   * @param stats the series statistics index.
+   * @param candidates the candidate intervals.
+   * @param zNormThreshold the z-normalization threshold.
+   * @param paaSize the SAX word length.
+   * @param alphabetSize the SAX alphabet size.
+   * @throws SAXException if the alphabet size is not supported.
+   */
+  SAXMinDistBound(double[] series, SeriesStatsIndex stats, RRACandidateStore candidates,
+      double zNormThreshold, int paaSize, int alphabetSize) throws SAXException {
+    if (paaSize < 1) {
+      throw new IllegalArgumentException("invalid PAA size: " + paaSize);
+    }
+    this.paaSize = paaSize;
+    this.alphabetSize = alphabetSize;
+    this.cuts = NORMAL_ALPHABET.getCuts(alphabetSize);
+
+    this.cells = new double[alphabetSize * alphabetSize];
+    for (int r = 0; r < alphabetSize; r++) {
+      for (int c = r + 2; c < alphabetSize; c++) {
+        double d = cuts[c - 1] - cuts[r];
+        cells[r * alphabetSize + c] = d * d;
+        cells[c * alphabetSize + r] = d * d;
+      }
+    }
+
+    int size = candidates.size();
+    this.words = new byte[size * paaSize];
+    this.hasWord = new boolean[size];
+    double[] paa = new double[paaSize];
+    for (int i = 0; i < size; i++) {
+      if (!candidates.isViable(i)) {
+        continue;
+      }
+      int start = candidates.getStart(i);
+      int end = candidates.getEnd(i);
+      double sd = stats.stDev(start, end);
+      // the distance may take the raw branch, which the SAX words do not bound
+      if (sd < zNormThreshold || stats.isNearThreshold(start, end, zNormThreshold)) {
+        continue;
+      }
+      normalizedPAA(series, start, end - start, stats.mean(start, end), sd, paa);
+      symbolize(paa, words, i * paaSize);
+      hasWord[i] = true;
+    }
+  }
+
+  /**
+   * Checks whether the words are of the given parameters.
+   *
+   * @param paa the SAX word length.
+   * @param alphabet the SAX alphabet size.
+   * @return true if they match.
+   */
+  boolean isFor(int paa, int alphabet) {
+    return paaSize == paa && alphabetSize == alphabet;
+  }
+
+  /**
+   * The Hamming distance between two candidates' words.
+   *
+   * @param a the first candidate index.
+   * @param b the second candidate index.
+   * @return the number of differing symbols, the word length if either has no word.
+   */
+  int hammingDistance(int a, int b) {
+    if (!hasWord[a] || !hasWord[b]) {
+      return paaSize;
+    }
+    int res = 0;
+    for (int j = 0, ai = a * paaSize, bi = b * paaSize; j < paaSize; j++) {
+      if (words[ai + j] != words[bi + j]) {
+        res++;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * The lower bound of the normalized distance between two candidates of equal length.
+   *
+   * @param a the first candidate index.
+   * @param b the second candidate index.
+   * @param length the candidates length.
+   * @return the bound, 0 if either window is compared raw.
+   */
+  double lowerBound(int a, int b, int length) {
+    if (!hasWord[a] || !hasWord[b]) {
+      return 0D;
+    }
+    return bound(words, a * paaSize, words, b * paaSize, length);
+  }
+
+  /**
+   * The lower bound of the normalized distance between a candidate and a longer window reduced to
+   * the candidate's length.
+   *
+   * @param shorter the shorter candidate index.
+   * @param reduced the longer window reduced to the shorter one's length.
+   * @param zNormThreshold the z-normalization threshold.
+   * @return the bound, 0 if either window is compared raw.
+   */
+  double lowerBound(int shorter, ReducedIntervalCache.ReducedInterval reduced,
+      double zNormThreshold) {
+    if (!hasWord[shorter] || reduced.getStDev() < zNormThreshold
+        || null == reduced.getNormalizedValues()) {
+      return 0D;
+    }
+    byte[] word = reducedWord(reduced);
+    return bound(words, shorter * paaSize, word, 0, reduced.getValues().length);
+  }
+
+  /**
+   * Gets the word of a reduced window, computing and attaching it on first use.
+   */
+  private byte[] reducedWord(ReducedIntervalCache.ReducedInterval reduced) {
+    ReducedWord word = reduced.saxWord;
+    if (null == word || word.paaSize != paaSize || word.alphabetSize != alphabetSize) {
+      double[] normalized = reduced.getNormalizedValues();
+      double[] paa = new double[paaSize];
+      normalizedPAA(normalized, 0, normalized.length, 0D, 1D, paa);
+      byte[] symbols = new byte[paaSize];
+      symbolize(paa, symbols, 0);
+      word = new ReducedWord(paaSize, alphabetSize, symbols);
+      // a race merely computes the same word twice
+      reduced.saxWord = word;
+    }
+    return word.symbols;
+  }
+
+  /**
+   * MINDIST scaled the way the RRA distance is: sqrt(length / w * sum of cells) / length.
+   */
+  private double bound(byte[] a, int aFrom, byte[] b, int bFrom, int length) {
+    double sum = 0D;
+    for (int j = 0; j < paaSize; j++) {
+      sum += cells[a[aFrom + j] * alphabetSize + b[bFrom + j]];
+    }
+    if (0D == sum) {
+      return 0D;
+    }
+    return Math.sqrt(sum / ((double) paaSize * length));
+  }
+
+  /**
+   * PAA of the window {@code (values[start + i] - mean) / sd} over {@code paa.length} segments
+   * with fractional point weights. In units of 1 / paa.length points, point i spans
+   * {@code [i * w, (i + 1) * w)} and segment j spans {@code [j * len, (j + 1) * len)}; the weights
+   * are the integer overlaps, so every point weighs 1 in total and every segment len / w.
+   */
+  private static void normalizedPAA(double[] values, int start, int len, double mean, double sd,
+      double[] paa) {
+    long w = paa.length;
+    for (int j = 0; j < paa.length; j++) {
+      long lo = j * (long) len;
+      long hi = lo + len;
+      double sum = 0D;
+      for (long i = lo / w; i * w < hi; i++) {
+        long overlap = Math.min(hi, (i + 1) * w) - Math.max(lo, i * w);
+        sum += overlap * ((values[start + (int) i] - mean) / sd);
+      }
+      paa[j] = sum / len;
+    }
+  }
+
+  /**
+   * Maps the PAA values to the indices of the breakpoint ranges they fall into.
+   */
+  private void symbolize(double[] paa, byte[] dest, int from) {
+    for (int j = 0; j < paa.length; j++) {
+      int symbol = 0;
+      while (symbol < cuts.length && cuts[symbol] <= paa[j]) {
+        symbol++;
+      }
+      dest[from + j] = (byte) symbol;
+    }
+  }
+
+  /**
+   * The word of a reduced window, tagged with the SAX parameters it was computed for.
+   */
+  static final class ReducedWord {
+    private final int paaSize;
+    private final int alphabetSize;
+    private final byte[] symbols;
+
+    ReducedWord(int paaSize, int alphabetSize, byte[] symbols) {
+      this.paaSize = paaSize;
+      this.alphabetSize = alphabetSize;
+      this.symbols = symbols;
+    }
+  }
+}
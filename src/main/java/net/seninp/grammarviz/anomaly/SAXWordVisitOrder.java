@@ -0,0 +1,73 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Visits the neighbors in the ascending Hamming distance of their SAX words to the candidate's
+ * one, so the likely near neighbors come up first; ties keep a random order. The words are those
+ * of the MINDIST pruning: z-normalized windows, each at its own length. A window compared raw has
+ * no word and goes last. The arrangement is a random shuffle followed by a stable counting sort,
+ * both linear in the number of neighbors.
+ *
+ * @author psenin
+ *
+ */
+public final class SAXWordVisitOrder implements VisitOrder {
+
+  private final int paaSize;
+  private final int alphabetSize;
+
+  /**
+   * Constructor.
+   *
+   * @param paaSize the SAX word length, usually the discretization PAA size.
+   * @param alphabetSize the SAX alphabet size, usually the discretization one.
+   */
+  public SAXWordVisitOrder(int paaSize, int alphabetSize) {
+    if (paaSize < 1 || alphabetSize < 2) {
+      throw new IllegalArgumentException(
+          "invalid SAX PAA or alphabet size: " + paaSize + ", " + alphabetSize);
+    }
+    this.paaSize = paaSize;
+    this.alphabetSize = alphabetSize;
+  }
+
+  @Override
+  public String getName() {
+    return "sax-hamming";
+  }
+
+  @Override
+  public Arranger newArranger(RRAVisitContext context) throws Exception {
+    final SAXMinDistBound words = context.saxWords(paaSize, alphabetSize);
+    return new Arranger() {
+
+      private final int[] counts = new int[paaSize + 2];
+      private int[] keys = new int[0];
+      private int[] sorted = new int[0];
+
+      @Override
+      public void arrange(int current, int[] neighbors, int count, Random rnd) {
+        RandomVisitOrder.shuffle(neighbors, count, rnd);
+        if (keys.length < count) {
+          keys = new int[count];
+          sorted = new int[count];
+        }
+        // farthest first, as the array is consumed from its end
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < count; i++) {
+          keys[i] = paaSize - words.hammingDistance(current, neighbors[i]);
+          counts[keys[i] + 1]++;
+        }
+        for (int k = 1; k < counts.length; k++) {
+          counts[k] += counts[k - 1];
+        }
+        for (int i = 0; i < count; i++) {
+          sorted[counts[keys[i]]++] = neighbors[i];
+        }
+        System.arraycopy(sorted, 0, neighbors, 0, count);
+      }
+    };
+  }
+}
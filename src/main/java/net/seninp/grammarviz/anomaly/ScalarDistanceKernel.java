@@ -0,0 +1,74 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * The plain loops, summing in the index order; the reference the SIMD kernels are checked
+ * against.
+ *
+ * @author psenin
+ *
+ */
+final class ScalarDistanceKernel implements DistanceKernel {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public double mean(double[] values, int from, int len) {
+    double sum = 0D;
+    for (int i = from; i < from + len; i++) {
+      sum += values[i];
+    }
+    return sum / len;
+  }
+
+  @Override
+  public double stDev(double[] values, int from, int len) {
+    double num0 = 0D;
+    double sum = 0D;
+    for (int i = from; i < from + len; i++) {
+      double v = values[i];
+      num0 += v * v;
+      sum += v;
+    }
+    double n = len;
+    return Math.sqrt((n * num0 - sum * sum) / (n * n));
+  }
+
+  @Override
+  public void znormInto(double[] values, int from, int len, double mean, double sd,
+      double[] out) {
+    for (int i = 0; i < len; i++) {
+      out[i] = (values[from + i] - mean) / sd;
+    }
+  }
+
+  @Override
+  public double squaredDistance(double[] a, int aStart, double[] b, int bStart, int len,
+      double limit) {
+    double sum = 0D;
+    for (int i = 0; i < len; i++) {
+      double d = b[bStart + i] - a[aStart + i];
+      sum += d * d;
+      if (sum > limit) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public double squaredZnormDistance(double[] a, int aStart, double aMean, double aSd,
+      double[] b, int bStart, double bMean, double bSd, int len, double limit) {
+    double sum = 0D;
+    for (int i = 0; i < len; i++) {
+      double d = (b[bStart + i] - bMean) / bSd - (a[aStart + i] - aMean) / aSd;
+      sum += d * d;
+      if (sum > limit) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,143 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * Cumulative sums and sums of squares over a timeseries, giving the mean and the standard deviation
+ * of any {@code [start, end)} window in O(1). Built once per search run; the series is shifted by
+ * its global mean before accumulating which keeps the window differences well-conditioned on
+ * series with a large offset.
+ * <p>
+ * The statistics are not bitwise those of the former in-loop {@code mean} and {@code stDev}: the
+ * differences of the prefix sums round differently, so they agree within about 1e-9 rather than to
+ * the last bit. The prefix sums are compensated and the standard deviation carries a rounding
+ * error bound covering both computations, so a window whose deviation is closer to the
+ * z-normalization threshold than that bound can be recognized with
+ * {@link #isNearThreshold(int, int, double)} and its statistics taken again the former way.
+ *
+ * @author psenin
+ *
+ */
+public final class SeriesStatsIndex {
+
+  // the slack factor of the rounding error bounds
+  private static final double SAFETY = 4D;
+
+  private final double offset;
+  private final double[] sums;
+  private final double[] sumsOfSquares;
+
+  // the rounding error bounds of the prefix sums and the largest value magnitude, shifted or not
+  private final double sumsErr;
+  private final double squaresErr;
+  private final double maxDeviation;
+
+  /**
+   * Constructor.
+   *
+   * @param series the timeseries to index.
+   */
+  public SeriesStatsIndex(double[] series) {
+    int len = series.length;
+    double total = 0D;
+    double maxAbs = 0D;
+    for (double v : series) {
+      total += v;
+      maxAbs = Math.max(maxAbs, Math.abs(v));
+    }
+    this.offset = (0 == len) ? 0D : total / len;
+    this.sums = new double[len + 1];
+    this.sumsOfSquares = new double[len + 1];
+
+    // compensated prefix sums, their error does not grow with the series length
+    double sum = 0D;
+    double sumCompensation = 0D;
+    double square = 0D;
+    double squareCompensation = 0D;
+    double maxAbsSum = 0D;
+    double absSum = 0D;
+    for (int i = 0; i < len; i++) {
+      double v = series[i] - offset;
+      double t = sum + v;
+      sumCompensation += (Math.abs(sum) >= Math.abs(v)) ? (sum - t) + v : (v - t) + sum;
+      sum = t;
+      sums[i + 1] = sum + sumCompensation;
+      double vv = v * v;
+      t = square + vv;
+      squareCompensation += (square >= vv) ? (square - t) + vv : (vv - t) + square;
+      square = t;
+      sumsOfSquares[i + 1] = square + squareCompensation;
+      maxAbsSum = Math.max(maxAbsSum, Math.abs(sums[i + 1]));
+      absSum += Math.abs(v);
+    }
+    this.sumsErr = 2D * Math.ulp(maxAbsSum) + len * Math.ulp(Math.ulp(absSum));
+    this.squaresErr = 2D * Math.ulp(sumsOfSquares[len])
+        + len * Math.ulp(Math.ulp(sumsOfSquares[len]));
+    this.maxDeviation = maxAbs + Math.abs(offset);
+  }
+
+  /**
+   * Gets the indexed series length.
+   *
+   * @return the series length.
+   */
+  public int length() {
+    return sums.length - 1;
+  }
+
+  /**
+   * Computes the window mean.
+   *
+   * @param start the window start, inclusive.
+   * @param end the window end, exclusive.
+   * @return the mean value.
+   */
+  public double mean(int start, int end) {
+    return (sums[end] - sums[start]) / (end - start) + offset;
+  }
+
+  /**
+   * Computes the window (population) standard deviation.
+   *
+   * @param start the window start, inclusive.
+   * @param end the window end, exclusive.
+   * @return the standard deviation.
+   */
+  public double stDev(int start, int end) {
+    double n = end - start;
+    double sum = sums[end] - sums[start];
+    double num0 = sumsOfSquares[end] - sumsOfSquares[start];
+    double var = (n * num0 - sum * sum) / (n * n);
+    return (var > 0D) ? Math.sqrt(var) : 0D;
+  }
+
+  /**
+   * Checks whether the window standard deviation is too close to the threshold to tell on which
+   * side of it the former in-loop computation, {@code sqrt((n * sum(v^2) - sum(v)^2) / n^2)} over
+   * the raw values, falls.
+   *
+   * @param start the window start, inclusive.
+   * @param end the window end, exclusive.
+   * @param threshold the z-normalization threshold.
+   * @return true if the window statistics are to be taken again the former way.
+   */
+  public boolean isNearThreshold(int start, int end, double threshold) {
+    double sd = stDev(start, end);
+    double err = stDevError(end - start, sd);
+    return !(sd - err >= threshold) && !(sd + err < threshold);
+  }
+
+  /**
+   * The bound of the difference between the index standard deviation and the former one: the
+   * prefix sums differences round once each plus a second order term, the shifted values and the
+   * in-loop sums round once per window point, and the in-loop variance cancels two products of
+   * about the window size squared times the squared values.
+   */
+  private double stDevError(int len, double sd) {
+    double w = len;
+    double sumErr = SAFETY * (sumsErr + w * Math.ulp(maxDeviation)
+        + w * Math.ulp(w * maxDeviation));
+    double squareErr = SAFETY * (squaresErr + w * Math.ulp(w * maxDeviation * maxDeviation));
+    double cancellationErr = SAFETY * 3D * Math.ulp(w * w * maxDeviation * maxDeviation) / (w * w);
+    double varErr = (squareErr + 2D * maxDeviation * sumErr) / w + cancellationErr;
+    return Math.min(Math.sqrt(varErr), varErr / sd);
+  }
+}
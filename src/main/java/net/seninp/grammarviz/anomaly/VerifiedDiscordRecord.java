@@ -0,0 +1,52 @@
+package net.seninp.grammarviz.anomaly;
+
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+
+/**
+ * A discord annotated with its exact nearest neighbor: the closest window of the discord length
+ * over the whole series, by the RRA distance, rather than the closest one among the rule
+ * intervals the search visited.
+ *
+ * @author psenin
+ *
+ */
+public final class VerifiedDiscordRecord extends DiscordRecord {
+
+  private final double exactNNDistance;
+  private final int exactNNPosition;
+
+  /**
+   * Constructor.
+   *
+   * @param discord the discord as reported by the search.
+   * @param exactNNDistance the exact nearest neighbor distance.
+   * @param exactNNPosition the exact nearest neighbor start, -1 if there is none.
+   */
+  public VerifiedDiscordRecord(DiscordRecord discord, double exactNNDistance,
+      int exactNNPosition) {
+    super(discord.getPosition(), discord.getNNDistance(), discord.getPayload());
+    setLength(discord.getLength());
+    setRuleId(discord.getRuleId());
+    setInfo(discord.getInfo());
+    this.exactNNDistance = exactNNDistance;
+    this.exactNNPosition = exactNNPosition;
+  }
+
+  /**
+   * Gets the exact nearest neighbor distance.
+   *
+   * @return the distance, {@code Double.MAX_VALUE} if there is no neighbor.
+   */
+  public double getExactNNDistance() {
+    return exactNNDistance;
+  }
+
+  /**
+   * Gets the exact nearest neighbor start.
+   *
+   * @return the start, -1 if there is no neighbor.
+   */
+  public int getExactNNPosition() {
+    return exactNNPosition;
+  }
+}
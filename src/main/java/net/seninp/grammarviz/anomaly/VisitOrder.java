@@ -0,0 +1,53 @@
+package net.seninp.grammarviz.anomaly;
+
+import java.util.Random;
+
+/**
+ * The order in which the second RRA inner loop visits a candidate's neighbors. The search result
+ * does not depend on it, only the number of distance calls does: the sooner a near neighbor comes
+ * up, the sooner a non-discord candidate is abandoned.
+ *
+ * A strategy hands out one {@link Arranger} per search worker and run, so arrangers may keep
+ * scratch state; strategies themselves are shared and must be stateless.
+ *
+ * @author psenin
+ *
+ */
+public interface VisitOrder {
+
+  /** The historical uniform random shuffle, the default. */
+  VisitOrder RANDOM = new RandomVisitOrder();
+
+  /**
+   * Gets the strategy name, used in the search reports.
+   *
+   * @return the name.
+   */
+  String getName();
+
+  /**
+   * Creates an arranger for a search worker.
+   *
+   * @param context the search run context.
+   * @return a new arranger.
+   * @throws Exception if the strategy can't be set up for the run.
+   */
+  Arranger newArranger(RRAVisitContext context) throws Exception;
+
+  /**
+   * Arranges the neighbors of a candidate, used by a single search worker.
+   */
+  interface Arranger {
+
+    /**
+     * Arranges the neighbors in place. The inner loop consumes the array from its end: the
+     * neighbor in the last slot is visited first, the one in slot 0 last.
+     *
+     * @param current the candidate index.
+     * @param neighbors the neighbor candidate indices.
+     * @param count the number of neighbors, the slots past it are to be left alone.
+     * @param rnd the worker's random source.
+     */
+    void arrange(int current, int[] neighbors, int count, Random rnd);
+  }
+}
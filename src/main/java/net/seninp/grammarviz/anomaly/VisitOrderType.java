@@ -0,0 +1,11 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * The RRA neighbor visit order selector: the random one, or the nearest SAX words first.
+ * 
+ * @author psenin
+ *
+ */
+public enum VisitOrderType {
+  RANDOM, SAX;
+}
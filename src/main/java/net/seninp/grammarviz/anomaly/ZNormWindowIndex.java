@@ -0,0 +1,110 @@
+package net.seninp.grammarviz.anomaly;
+
+/**
+ * The mean and the standard deviation of every sliding window of a series, computed once with the
+ * very arithmetic of {@code TSProcessor.znorm} (sequential sums, the sample standard deviation off
+ * the sum and the sum of squares), so a window normalized through the index is bit for bit the
+ * jmotif z-normalized copy. A window whose standard deviation is below the threshold normalizes
+ * to zeros, as in jmotif.
+ *
+ * @author psenin
+ *
+ */
+final class ZNormWindowIndex {
+
+  private final double[] series;
+  private final int windowSize;
+  private final double[] means;
+  private final double[] stDevs;
+  private final boolean[] flat;
+
+  /**
+   * Constructor.
+   *
+   * @param series the timeseries.
+   * @param windowSize the window size.
+   * @param nThreshold the z-normalization threshold.
+   */
+  ZNormWindowIndex(double[] series, int windowSize, double nThreshold) {
+    this.series = series;
+    this.windowSize = windowSize;
+    int count = Math.max(0, series.length - windowSize + 1);
+    this.means = new double[count];
+    this.stDevs = new double[count];
+    this.flat = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      double sum = 0D;
+      double squares = 0D;
+      for (int k = 0; k < windowSize; k++) {
+        double v = series[i + k];
+        squares += v * v;
+        sum += v;
+      }
+      double n = windowSize;
+      means[i] = sum / n;
+      stDevs[i] = Math.sqrt((n * squares - sum * sum) / (n * (n - 1D)));
+      flat[i] = stDevs[i] < nThreshold;
+    }
+  }
+
+  /**
+   * Gets the window size.
+   *
+   * @return the window size.
+   */
+  int windowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Writes the z-normalized window into the buffer.
+   *
+   * @param start the window start.
+   * @param buffer the buffer, at least the window size long.
+   */
+  void normalize(int start, double[] buffer) {
+    if (flat[start]) {
+      for (int k = 0; k < windowSize; k++) {
+        buffer[k] = 0D;
+      }
+      return;
+    }
+    double mean = means[start];
+    double sd = stDevs[start];
+    for (int k = 0; k < windowSize; k++) {
+      buffer[k] = (series[start + k] - mean) / sd;
+    }
+  }
+
+  /**
+   * Computes the Euclidean distance of a z-normalized window to the window at the start,
+   * normalizing the latter on the fly, and gives up once the squared sum exceeds the limit.
+   *
+   * @param normalized the z-normalized window.
+   * @param start the other window start.
+   * @param limit the squared sum limit.
+   * @return the distance, NaN if abandoned.
+   */
+  double earlyAbandonedDistance(double[] normalized, int start, double limit) {
+    double sum = 0D;
+    if (flat[start]) {
+      for (int k = 0; k < windowSize; k++) {
+        sum += normalized[k] * normalized[k];
+        if (sum > limit) {
+          return Double.NaN;
+        }
+      }
+      return Math.sqrt(sum);
+    }
+    double mean = means[start];
+    double sd = stDevs[start];
+    for (int k = 0; k < windowSize; k++) {
+      double d = normalized[k] - (series[start + k] - mean) / sd;
+      sum += d * d;
+      if (sum > limit) {
+        return Double.NaN;
+      }
+    }
+    return Math.sqrt(sum);
+  }
+}
@@ -3,8 +3,10 @@ package net.seninp.grammarviz.cli;
 import com.beust.jcommander.JCommander;
 import net.seninp.gi.logic.GrammarRules;
 import net.seninp.gi.rulepruner.RulePrunerFactory;
-import net.seninp.gi.sequitur.SAXRule;
 import net.seninp.gi.sequitur.SequiturFactory;
+import net.seninp.grammarviz.logic.SAXTokens;
+import net.seninp.grammarviz.logic.SlidingSAXDiscretizer;
+import net.seninp.grammarviz.logic.TokenGrammarFactory;
 import net.seninp.jmotif.sax.SAXException;
 import net.seninp.jmotif.sax.SAXProcessor;
 import net.seninp.jmotif.sax.TSProcessor;
@@ -33,9 +35,14 @@ public class TS2SequiturGrammar {
     parseArgs(args);
 
     double[] series = readTimeSeries();
-    SAXRecords saxData = discretize(series);
-    String str = saxData.getSAXString(" ");
-    GrammarRules rules = inferGrammarRules(series, saxData, str);
+    GrammarRules rules;
+    if (SlidingSAXDiscretizer.fits(TS2GrammarParameters.SAX_PAA_SIZE,
+        TS2GrammarParameters.SAX_ALPHABET_SIZE)) {
+      rules = inferGrammarRules(series, tokenize(series));
+    }
+    else {
+      rules = inferGrammarRules(series, discretize(series));
+    }
 
     if (TS2GrammarParameters.PRUNE_RULES) {
       consoleLogger.info("Pruning rules ...");
@@ -73,19 +80,34 @@ public class TS2SequiturGrammar {
     consoleLogger.info(output);
   }
 
-  private static GrammarRules inferGrammarRules(double[] series, SAXRecords saxData, String str)
-      throws Exception {
+  private static GrammarRules inferGrammarRules(double[] series, SAXRecords saxData) {
     consoleLogger.info("Inferring Sequitur grammar ...");
-    SAXRule grammar = SequiturFactory.runSequitur(str);
+    GrammarRules rules = TokenGrammarFactory.runSequitur(saxData);
 
     consoleLogger.info("Collecting stats ...");
-    GrammarRules rules = grammar.toGrammarRulesData();
-
     SequiturFactory.updateRuleIntervals(rules, saxData, true, series,
         TS2GrammarParameters.SAX_WINDOW_SIZE, TS2GrammarParameters.SAX_PAA_SIZE);
     return rules;
   }
 
+  private static GrammarRules inferGrammarRules(double[] series, SAXTokens tokens) {
+    consoleLogger.info("Inferring Sequitur grammar ...");
+    GrammarRules rules = TokenGrammarFactory.runSequitur(tokens);
+
+    consoleLogger.info("Collecting stats ...");
+    TokenGrammarFactory.updateRuleIntervals(rules, tokens, series,
+        TS2GrammarParameters.SAX_WINDOW_SIZE);
+    return rules;
+  }
+
+  private static SAXTokens tokenize(double[] series) throws SAXException {
+    consoleLogger.info("Performing SAX conversion ...");
+    return new SlidingSAXDiscretizer(TS2GrammarParameters.SAX_WINDOW_SIZE,
+        TS2GrammarParameters.SAX_PAA_SIZE, TS2GrammarParameters.SAX_ALPHABET_SIZE,
+        TS2GrammarParameters.SAX_NR_STRATEGY, TS2GrammarParameters.SAX_NORM_THRESHOLD)
+            .discretize(series).toTokens();
+  }
+
   private static SAXRecords discretize(double[] series) throws SAXException {
     consoleLogger.info("Performing SAX conversion ...");
     if (TS2GrammarParameters.NUM_WORKERS <= 1) {
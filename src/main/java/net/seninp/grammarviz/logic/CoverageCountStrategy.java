@@ -1,5 +1,7 @@
 package net.seninp.grammarviz.logic;
 
+import net.seninp.gi.logic.GrammarRuleRecord;
+
 public enum CoverageCountStrategy {
   COUNT(0), LEVEL(1), OCCURRENCE(2), YIELD(3), PRODUCT(4);
 
@@ -13,6 +15,29 @@ public enum CoverageCountStrategy {
     return index;
   }
 
+  /**
+   * Gets the weight a rule interval adds to the coverage of the points it spans.
+   *
+   * @param rule the rule.
+   * @return the weight.
+   */
+  public int weight(GrammarRuleRecord rule) {
+    switch (this.index) {
+    case 0:
+      return 1;
+    case 1:
+      return rule.getRuleLevel();
+    case 2:
+      return rule.getOccurrences().size();
+    case 3:
+      return rule.getRuleYield();
+    case 4:
+      return rule.getRuleLevel() * rule.getOccurrences().size();
+    default:
+      throw new RuntimeException("Unknown index");
+    }
+  }
+
   public static CoverageCountStrategy fromValue(int value) {
     switch (value) {
     case 0:
@@ -0,0 +1,168 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.rulepruner.RulePrunerFactory;
+import net.seninp.gi.rulepruner.RulePrunerParameters;
+import net.seninp.gi.rulepruner.SampledPoint;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.SAXProcessor;
+
+/**
+ * The parameters sampler: infers and prunes the grammar of a (window, PAA, alphabet) point and
+ * scores it, as the jmotif {@code RulePruner.sample} does, but with the Sequitur and RePair
+ * grammars of the {@link TokenGrammarFactory}. The jmotif one runs {@code SequiturFactory}, whose
+ * global state forbids two samples at once, or a sample along with the GUI inference; this one has
+ * no shared state, so the grid points are sampled concurrently.
+ *
+ * @author psenin
+ *
+ */
+public final class GrammarSampler {
+
+  private final double[] ts;
+
+  // static block - we instantiate the logger
+  //
+  private static final Logger LOGGER = LoggerFactory.getLogger(GrammarSampler.class);
+
+  /**
+   * Constructor.
+   *
+   * @param ts the timeseries to sample.
+   */
+  public GrammarSampler(double[] ts) {
+    this.ts = ts;
+  }
+
+  /**
+   * Samples a parameters point.
+   *
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param giAlgorithm the grammar inference algorithm.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @return the sampled point.
+   * @throws Exception if error occurs.
+   */
+  public SampledPoint sample(int windowSize, int paaSize, int alphabetSize,
+      GIAlgorithm giAlgorithm, NumerosityReductionStrategy nrStrategy, double nThreshold)
+      throws Exception {
+
+    SampledPoint res = new SampledPoint();
+    res.setWindow(windowSize);
+    res.setPAA(paaSize);
+    res.setAlphabet(alphabetSize);
+
+    GrammarRules rules;
+    if (GIAlgorithm.SEQUITUR.equals(giAlgorithm)) {
+      rules = TokenGrammarFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
+          nrStrategy, nThreshold);
+    }
+    else {
+      rules = TokenGrammarFactory.series2RePairRules(ts, windowSize, paaSize, alphabetSize,
+          nrStrategy, nThreshold);
+    }
+
+    // the approximation distance takes the RulePruner threshold, as it does in RulePruner
+    SAXProcessor sp = new SAXProcessor();
+    res.setApproxDist(sp.approximationDistancePAA(ts, windowSize, paaSize,
+        RulePrunerParameters.SAX_NORM_THRESHOLD)
+        + sp.approximationDistanceAlphabet(ts, windowSize, paaSize, alphabetSize,
+            RulePrunerParameters.SAX_NORM_THRESHOLD));
+
+    res.setGrammarSize(RulePrunerFactory.computeGrammarSize(rules, paaSize));
+    res.setGrammarRules(rules.size());
+
+    GrammarRules prunedRules = RulePrunerFactory.performPruning(ts, rules);
+    res.setCompressedGrammarSize(RulePrunerFactory.computeGrammarSize(prunedRules, paaSize));
+    res.setPrunedRules(prunedRules.size());
+
+    boolean[] range = RulePrunerFactory.updateRanges(new boolean[ts.length], prunedRules);
+    res.setCovered(!RulePrunerFactory.hasEmptyRanges(range));
+    res.setCoverage(RulePrunerFactory.computeCover(range));
+    res.setReduction((double) prunedRules.size() / (double) rules.size());
+
+    int maxFrequency = 0;
+    for (GrammarRuleRecord r : prunedRules) {
+      maxFrequency = Math.max(maxFrequency, r.getOccurrences().size());
+    }
+    res.setMaxFrequency(maxFrequency);
+
+    return res;
+  }
+
+  /**
+   * Samples the parameters points, the sampled ones are appended to the list in the points
+   * order. A point which fails to sample (e.g. an out of range alphabet) is logged and skipped.
+   * When interrupted, the list holds the points sampled before the first unfinished one.
+   *
+   * @param points the (window, PAA, alphabet) points.
+   * @param giAlgorithm the grammar inference algorithm.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @param threadsNum the number of the points sampled at once.
+   * @param res the list the sampled points are appended to.
+   * @throws InterruptedException if the current thread is interrupted.
+   */
+  public void sample(List<int[]> points, final GIAlgorithm giAlgorithm,
+      final NumerosityReductionStrategy nrStrategy, final double nThreshold, int threadsNum,
+      List<SampledPoint> res) throws InterruptedException {
+
+    if (threadsNum <= 1 || points.size() <= 1) {
+      for (int[] point : points) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException("sampling interrupted");
+        }
+        SampledPoint p = trySample(point, giAlgorithm, nrStrategy, nThreshold);
+        if (null != p) {
+          res.add(p);
+        }
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadsNum, points.size()));
+    try {
+      List<Future<SampledPoint>> futures = new ArrayList<Future<SampledPoint>>(points.size());
+      for (final int[] point : points) {
+        futures.add(executor.submit(() -> trySample(point, giAlgorithm, nrStrategy, nThreshold)));
+      }
+      for (Future<SampledPoint> future : futures) {
+        SampledPoint p = future.get();
+        if (null != p) {
+          res.add(p);
+        }
+      }
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("sampling failed", e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private SampledPoint trySample(int[] point, GIAlgorithm giAlgorithm,
+      NumerosityReductionStrategy nrStrategy, double nThreshold) {
+    try {
+      return sample(point[0], point[1], point[2], giAlgorithm, nrStrategy, nThreshold);
+    }
+    catch (Exception e) {
+      LOGGER.warn("skipping point [w=" + point[0] + ", p=" + point[1] + ", a=" + point[2] + "]: "
+          + e.getMessage());
+      return null;
+    }
+  }
+}
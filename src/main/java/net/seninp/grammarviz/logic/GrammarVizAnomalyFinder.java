@@ -1,11 +1,17 @@
 package net.seninp.grammarviz.logic;
 
-import java.util.ArrayList;
 import java.util.Date;
-import net.seninp.gi.logic.RuleInterval;
+import java.util.Random;
 import net.seninp.grammarviz.GrammarVizAnomaly;
 import net.seninp.grammarviz.anomaly.RRAImplementation;
+import net.seninp.grammarviz.anomaly.RRACancellationToken;
+import net.seninp.grammarviz.anomaly.RRACandidateStore;
+import net.seninp.grammarviz.anomaly.RRAExactVerification;
 import net.seninp.grammarviz.anomaly.RRAIntervalBuilder;
+import net.seninp.grammarviz.anomaly.RRASearchOptions;
+import net.seninp.grammarviz.anomaly.RRASearchResult;
+import net.seninp.grammarviz.anomaly.ReducedIntervalCache;
+import net.seninp.grammarviz.anomaly.VerifiedDiscordRecord;
 import net.seninp.grammarviz.model.GrammarVizListener;
 import net.seninp.grammarviz.model.GrammarVizMessage;
 import net.seninp.grammarviz.model.GrammarVizMessageBoard;
@@ -29,6 +35,15 @@ public class GrammarVizAnomalyFinder implements Runnable {
   /** The chart data handler. */
   private GrammarVizChartData chartData;
 
+  /** The number of RRA search threads, all the cores by default. */
+  private int threadsNum = Runtime.getRuntime().availableProcessors();
+
+  /** Whether the discords are re-scored with their exact nearest neighbors, off by default. */
+  private boolean exactVerification;
+
+  /** Stops the search with the discords found so far. */
+  private RRACancellationToken cancellationToken = new RRACancellationToken();
+
   /** Broadcasts progress messages to listeners (replaces the deprecated Observable). */
   private final GrammarVizMessageBoard messageBoard = new GrammarVizMessageBoard();
 
@@ -60,35 +75,50 @@ public class GrammarVizAnomalyFinder implements Runnable {
     this.chartData = motifChartData;
   }
 
+  /**
+   * Sets the number of threads the RRA discord search runs on.
+   *
+   * @param threadsNum the number of threads, values below 2 run the sequential search.
+   */
+  public void setThreadsNum(int threadsNum) {
+    this.threadsNum = threadsNum;
+  }
+
+  /**
+   * Switches the exact nearest neighbor verification of the found discords.
+   *
+   * @param exactVerification true to re-score the discords against every window of their length.
+   */
+  public void setExactVerification(boolean exactVerification) {
+    this.exactVerification = exactVerification;
+  }
+
+  /**
+   * Sets the token which stops the search with the discords found so far.
+   *
+   * @param token the cancellation token.
+   */
+  public void setCancellationToken(RRACancellationToken token) {
+    this.cancellationToken = token;
+  }
+
   @Override
   public void run() {
 
     Date start = new Date();
 
     log("walking through the grammar rules...");
-    ArrayList<RuleInterval> intervals;
-    try {
-      intervals = RRAIntervalBuilder.fromGrammarRules(this.chartData.getGrammarRules(),
-          this.chartData.originalTimeSeries.length, this.chartData.getSAXPaaSize());
-    }
-    catch (CloneNotSupportedException e) {
-      LOGGER.error("error while cloning rule intervals", e);
-      log("Exception thrown: " + e.toString());
-      return;
-    }
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        this.chartData.getGrammarRules(), this.chartData.originalTimeSeries.length,
+        this.chartData.getSAXPaaSize(), this.threadsNum);
 
-    if (intervals.isEmpty()) {
+    if (0 == candidates.size()) {
       log("no viable RRA candidates (empty grammar or all gaps too short)");
       this.chartData.discords = new DiscordRecords();
       return;
     }
 
-    int uncovered = 0;
-    for (RuleInterval interval : intervals) {
-      if (GrammarVizAnomaly.isUncoveredInterval(interval)) {
-        uncovered++;
-      }
-    }
+    int uncovered = candidates.uncoveredCount();
     if (uncovered > 0) {
       log("included " + uncovered + " uncovered gap interval(s) long enough for RRA search");
     }
@@ -96,17 +126,45 @@ public class GrammarVizAnomalyFinder implements Runnable {
       log("the whole timeseries is covered by rule intervals ...");
     }
 
-    log("computing discords (this may take a while)...");
+    log("computing discords on " + this.threadsNum + " thread(s) (this may take a while)...");
     try {
-      this.chartData.discords = RRAImplementation.series2RRAAnomalies(
-          this.chartData.originalTimeSeries, RRAImplementation.DEFAULT_DISCORD_COUNT, intervals,
-          this.chartData.getZNormThreshold());
+      ReducedIntervalCache cache = new ReducedIntervalCache(this.chartData.originalTimeSeries,
+          ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+      RRASearchOptions options = new RRASearchOptions().setThreadsNum(this.threadsNum)
+          .setReducedCache(cache)
+          .setCancellationToken(this.cancellationToken)
+          .setMinDistPruning(this.chartData.getSAXPaaSize(), this.chartData.getSAXAlphabetSize());
+      RRASearchResult result = RRAImplementation.searchRRAAnomalies(
+          this.chartData.originalTimeSeries, RRAImplementation.DEFAULT_DISCORD_COUNT, candidates,
+          this.chartData.getZNormThreshold(), new Random(), options);
+      this.chartData.discords = result.getDiscords();
+      log(cache.toString());
+      log(result.getRunStats().toString());
+      if (options.getPairMemoBytes() > 0) {
+        log("pair distance memo hits: " + result.getPairMemoHits() + " of "
+            + result.getPairMemoLookups() + " lookups ("
+            + Math.round(100D * result.getPairMemoHitRate()) + "%), "
+            + (result.getPairMemoBytes() >> 10) + " KB");
+      }
+      log("distance calls saved by the SAX MINDIST bound: " + result.getMinDistPrunedPairs());
+      if (result.isPartial()) {
+        log("the search was stopped early, showing the best-so-far discords: " + result);
+      }
+      if (this.exactVerification) {
+        this.chartData.discords = RRAExactVerification.verify(this.chartData.originalTimeSeries,
+            this.chartData.discords, this.chartData.getZNormThreshold(), this.threadsNum);
+      }
 
       for (int i = 0; i < this.chartData.discords.getSize(); i++) {
         DiscordRecord discord = this.chartData.discords.get(i);
         log("found discord: position " + discord.getPosition() + ", length "
             + discord.getLength() + ", NN distance " + discord.getNNDistance() + ", rule "
-            + GrammarVizAnomaly.formatRuleIdForDisplay(discord.getRuleId()));
+            + GrammarVizAnomaly.formatRuleIdForDisplay(discord.getRuleId())
+            + ((discord instanceof VerifiedDiscordRecord)
+                ? ", exact NN distance "
+                    + ((VerifiedDiscordRecord) discord).getExactNNDistance() + " at "
+                    + ((VerifiedDiscordRecord) discord).getExactNNPosition()
+                : ""));
       }
     }
     catch (Exception e) {
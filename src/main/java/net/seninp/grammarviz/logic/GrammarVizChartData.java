@@ -14,6 +14,7 @@ import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.GrammarRules;
 import net.seninp.gi.logic.RuleInterval;
 import net.seninp.gi.rulepruner.RulePrunerFactory;
+import net.seninp.grammarviz.anomaly.RRACancellationToken;
 import net.seninp.grammarviz.model.GrammarVizListener;
 import net.seninp.grammarviz.model.GrammarVizMessage;
 import net.seninp.grammarviz.model.GrammarVizMessageBoard;
@@ -283,7 +284,32 @@ public class GrammarVizChartData implements GrammarVizListener {
    * @throws Exception if occurs.
    */
   public void findAnomalies() throws Exception {
+    findAnomalies(new RRACancellationToken());
+  }
+
+  /**
+   * This computes anomalies; cancelling the token stops the search with the discords found so
+   * far.
+   * 
+   * @param cancellationToken the cancellation token.
+   * @throws Exception if occurs.
+   */
+  public void findAnomalies(RRACancellationToken cancellationToken) throws Exception {
+    findAnomalies(cancellationToken, false);
+  }
+
+  /**
+   * This computes anomalies and, if asked, re-scores them with their exact nearest neighbors.
+   * 
+   * @param cancellationToken the cancellation token.
+   * @param exactVerification true to verify the discords with their exact nearest neighbors.
+   * @throws Exception if occurs.
+   */
+  public void findAnomalies(RRACancellationToken cancellationToken, boolean exactVerification)
+      throws Exception {
     GrammarVizAnomalyFinder finder = new GrammarVizAnomalyFinder(this);
+    finder.setCancellationToken(cancellationToken);
+    finder.setExactVerification(exactVerification);
     finder.addListener(this);
     finder.run();
   }
@@ -331,18 +357,11 @@ public class GrammarVizChartData implements GrammarVizListener {
       pointsNumber[i].setPointValue(this.originalTimeSeries[i]);
     }
 
-    // get all the rules and populate the occurrence density
-    int rulesNum = this.getRulesNumber();
-    for (int i = 0; i < rulesNum; i++) {
-      ArrayList<RuleInterval> arrPos = this.getRulePositionsByRuleNum(i);
-      for (RuleInterval saxPos : arrPos) {
-        int start = saxPos.getStart();
-        int end = saxPos.getEnd() - 1;
-        for (int position = start; position <= end; position++) {
-          pointsNumber[position]
-              .setPointOccurenceNumber(pointsNumber[position].getPointOccurenceNumber() + 1);
-        }
-      }
+    // get all the rules, R0 included, and populate the occurrence density
+    int[] coverage = RuleCoverage.compute(this.grammarRules, this.originalTimeSeries.length,
+        CoverageCountStrategy.COUNT, false, 1);
+    for (int i = 0; i < coverage.length; i++) {
+      pointsNumber[i].setPointOccurenceNumber(coverage[i]);
     }
 
     // make an output
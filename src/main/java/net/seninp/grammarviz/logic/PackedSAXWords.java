@@ -0,0 +1,191 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.Arrays;
+import net.seninp.jmotif.sax.TSProcessor;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The output of the {@link SlidingSAXDiscretizer}: the SAX words which survived the numerosity
+ * reduction, in the series order, each one packed into a long, and the positions of the windows
+ * they came from. The letters are fixed width bit fields, the first letter in the highest one, so
+ * the codes compare as the words do.
+ *
+ * The codes and the positions arrays are the primitive token stream for the grammar inference; the
+ * {@link #toSAXRecords()} conversion gives the very records {@code SAXProcessor.ts2saxViaWindow}
+ * produces.
+ *
+ * @author psenin
+ *
+ */
+public final class PackedSAXWords {
+
+  private final long[] codes;
+  private final int[] positions;
+  private final int paaSize;
+  private final int alphabetSize;
+  private final int bitsPerLetter;
+  private final int exactWindows;
+
+  PackedSAXWords(long[] codes, int[] positions, int paaSize, int alphabetSize, int bitsPerLetter,
+      int exactWindows) {
+    this.codes = codes;
+    this.positions = positions;
+    this.paaSize = paaSize;
+    this.alphabetSize = alphabetSize;
+    this.bitsPerLetter = bitsPerLetter;
+    this.exactWindows = exactWindows;
+  }
+
+  /**
+   * Gets the number of words.
+   *
+   * @return the words count.
+   */
+  public int size() {
+    return codes.length;
+  }
+
+  /**
+   * Gets the packed word.
+   *
+   * @param i the word index.
+   * @return the word code.
+   */
+  public long getCode(int i) {
+    return codes[i];
+  }
+
+  /**
+   * Gets the position of the window the word came from.
+   *
+   * @param i the word index.
+   * @return the window start.
+   */
+  public int getPosition(int i) {
+    return positions[i];
+  }
+
+  /**
+   * Gets the word letters.
+   *
+   * @param i the word index.
+   * @return the word.
+   */
+  public char[] getWord(int i) {
+    return decode(codes[i]);
+  }
+
+  /**
+   * Gets the word codes, the array is not copied.
+   *
+   * @return the codes.
+   */
+  public long[] getCodes() {
+    return codes;
+  }
+
+  /**
+   * Gets the word positions, the array is not copied.
+   *
+   * @return the positions.
+   */
+  public int[] getPositions() {
+    return positions;
+  }
+
+  /**
+   * Gets the PAA size, i.e. the word length.
+   *
+   * @return the PAA size.
+   */
+  public int getPaaSize() {
+    return paaSize;
+  }
+
+  /**
+   * Gets the alphabet size.
+   *
+   * @return the alphabet size.
+   */
+  public int getAlphabetSize() {
+    return alphabetSize;
+  }
+
+  /**
+   * Gets the number of windows whose letters were too close to a cut for the rolling statistics
+   * and were discretized with the jmotif arithmetic instead.
+   *
+   * @return the windows count.
+   */
+  public int getExactWindows() {
+    return exactWindows;
+  }
+
+  /**
+   * Unpacks a word code into the letters.
+   *
+   * @param code the word code.
+   * @return the word.
+   */
+  public char[] decode(long code) {
+    char[] res = new char[paaSize];
+    long mask = (1L << bitsPerLetter) - 1;
+    for (int j = paaSize - 1; j >= 0; j--) {
+      res[j] = TSProcessor.ALPHABET[(int) (code & mask)];
+      code >>>= bitsPerLetter;
+    }
+    return res;
+  }
+
+  /**
+   * Converts the words into dictionary token ids, numbered in the order of the first appearance.
+   *
+   * @return the token stream.
+   */
+  public SAXTokens toTokens() {
+    // an open addressing map of the codes to the ids, at most half full
+    int slots = Integer.highestOneBit(Math.max(2, codes.length)) << 1;
+    long[] keys = new long[slots];
+    int[] ids = new int[slots];
+    Arrays.fill(ids, -1);
+    long[] dictionary = new long[16];
+    int distinct = 0;
+
+    int[] tokens = new int[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      long code = codes[i];
+      int slot = (int) ((code * 0x9E3779B97F4A7C15L) >>> 32) & (slots - 1);
+      while (ids[slot] >= 0 && keys[slot] != code) {
+        slot = (slot + 1) & (slots - 1);
+      }
+      if (ids[slot] < 0) {
+        if (distinct == dictionary.length) {
+          dictionary = Arrays.copyOf(dictionary, 2 * distinct);
+        }
+        keys[slot] = code;
+        ids[slot] = distinct;
+        dictionary[distinct++] = code;
+      }
+      tokens[i] = ids[slot];
+    }
+
+    String[] words = new String[distinct];
+    for (int id = 0; id < distinct; id++) {
+      words[id] = String.valueOf(decode(dictionary[id]));
+    }
+    return new SAXTokens(tokens, positions, Arrays.copyOf(dictionary, distinct), words);
+  }
+
+  /**
+   * Converts the words into the jmotif SAX records.
+   *
+   * @return the SAX records.
+   */
+  public SAXRecords toSAXRecords() {
+    SAXRecords res = new SAXRecords();
+    for (int i = 0; i < codes.length; i++) {
+      res.add(decode(codes[i]), positions[i]);
+    }
+    return res;
+  }
+}
@@ -0,0 +1,651 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+
+/**
+ * RePair over integer tokens after Larsson and Moffat: the string is a doubly linked list of int
+ * arrays, the occurrences of a pair are a doubly linked list threaded through the positions they
+ * start at, and the pairs queue is a frequency bucketed array of doubly linked lists, so a pair
+ * replacement costs its occurrences count. The rule intervals are set while the occurrences are
+ * replaced, a rule knows its tokens count from the start.
+ *
+ * The jmotif {@code NewRepair} keeps the pairs as strings in a {@code HashMap}, its queue is a
+ * sorted linked list walked on every frequency change, and the rule intervals take the separate
+ * {@code expandRules} and {@code buildIntervals} passes. The pairs here are replaced in the very
+ * order of {@code NewRepair}: the equal frequency pairs are queued in the order its
+ * {@code HashMap} and {@code HashSet} iterate the pair strings, which follows from the strings
+ * hash codes, and a pair is re-queued on a frequency change where its queue puts it. So the rules,
+ * their numbering and their records are those of {@code RePairGrammar.toGrammarRulesData}.
+ *
+ * @author psenin
+ *
+ */
+public final class RePairEngine {
+
+  private static final int NONE = -1;
+
+  // the java.util.HashMap table, NewRepair builds its digrams map with the default one
+  private static final int DEFAULT_TABLE_SIZE = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private final int[] tokens;
+  private final IntFunction<String> words;
+  private final int[] positions;
+  private final int windowSize;
+
+  // the string: the symbol -- a token id, or -rule for a nonterminal -- at the position of its
+  // first token, the live positions links and the pair starting at the position
+  private final int[] symbol;
+  private final int[] next;
+  private final int[] prev;
+  private final int[] pairAt;
+
+  // the pair occurrences lists, threaded through the positions
+  private final int[] occurrenceNext;
+  private final int[] occurrencePrev;
+
+  // the words hash codes and 31 to the power of their lengths, what the pair hash code takes
+  private final int[] wordHash;
+  private final int[] wordPower;
+
+  // the pairs: the symbols, the pair string hash code, the occurrences list, the frequency it is
+  // queued with, or NONE, the queue links and the rule whose new pairs set it is in
+  private int[] pairLeft;
+  private int[] pairRight;
+  private int[] pairHash;
+  private int[] pairCount;
+  private int[] pairHead;
+  private int[] pairTail;
+  private int[] pairFrequency;
+  private int[] queuePrev;
+  private int[] queueNext;
+  private int[] pairStamp;
+  private int[] pairSequence;
+  private int pairsNum;
+
+  // the pairs index, the pair id plus one in a slot
+  private int[] slots;
+
+  // the frequency buckets, the higher frequency first and the bucket head first
+  private final int[] bucketHead;
+  private final int[] bucketTail;
+  private final int[] bucketSize;
+  private int queued;
+  private int lowestFrequency = Integer.MAX_VALUE;
+  private int highestFrequency;
+
+  // the new pairs of the rule being replaced, the NewRepair HashSet emulated
+  private int[] newPairs;
+  private int newPairsNum;
+  private int newPairsSize;
+  private int newPairsTableSize;
+
+  // the rules, R0 excluded
+  private int[] ruleLeft;
+  private int[] ruleRight;
+  private int[] ruleLength;
+  private int[] ruleLevel;
+  private int[] ruleHash;
+  private int[] rulePower;
+  private String[] expandedRules;
+  private final ArrayList<GrammarRuleRecord> records = new ArrayList<GrammarRuleRecord>();
+  private int rulesNum;
+
+  private RePairEngine(int[] tokens, IntFunction<String> words, int[] positions, int windowSize) {
+    int n = tokens.length;
+    this.tokens = tokens;
+    this.words = words;
+    this.positions = positions;
+    this.windowSize = windowSize;
+
+    this.symbol = Arrays.copyOf(tokens, n);
+    this.next = new int[n];
+    this.prev = new int[n];
+    this.pairAt = new int[n];
+    this.occurrenceNext = new int[n];
+    this.occurrencePrev = new int[n];
+    int dictionary = 0;
+    for (int i = 0; i < n; i++) {
+      if (tokens[i] < 0) {
+        throw new IllegalArgumentException("the token id must be non-negative: " + tokens[i]);
+      }
+      next[i] = (i + 1 < n) ? i + 1 : NONE;
+      prev[i] = i - 1;
+      pairAt[i] = NONE;
+      dictionary = Math.max(dictionary, tokens[i] + 1);
+    }
+    this.wordHash = new int[dictionary];
+    this.wordPower = new int[dictionary];
+    boolean[] seen = new boolean[dictionary];
+    for (int token : tokens) {
+      if (!seen[token]) {
+        seen[token] = true;
+        String word = words.apply(token);
+        wordHash[token] = word.hashCode();
+        wordPower[token] = power31(word.length());
+      }
+    }
+
+    int capacity = Math.max(16, n);
+    this.pairLeft = new int[capacity];
+    this.pairRight = new int[capacity];
+    this.pairHash = new int[capacity];
+    this.pairCount = new int[capacity];
+    this.pairHead = new int[capacity];
+    this.pairTail = new int[capacity];
+    this.pairFrequency = new int[capacity];
+    this.queuePrev = new int[capacity];
+    this.queueNext = new int[capacity];
+    this.pairStamp = new int[capacity];
+    this.pairSequence = new int[capacity];
+    this.slots = new int[Integer.highestOneBit(capacity) << 2];
+
+    this.bucketHead = new int[n + 2];
+    this.bucketTail = new int[n + 2];
+    this.bucketSize = new int[n + 2];
+    Arrays.fill(bucketHead, NONE);
+    Arrays.fill(bucketTail, NONE);
+    this.newPairs = new int[16];
+
+    int rulesCapacity = Math.max(16, n / 4);
+    this.ruleLeft = new int[rulesCapacity];
+    this.ruleRight = new int[rulesCapacity];
+    this.ruleLength = new int[rulesCapacity];
+    this.ruleLevel = new int[rulesCapacity];
+    this.ruleHash = new int[rulesCapacity];
+    this.rulePower = new int[rulesCapacity];
+    this.expandedRules = new String[rulesCapacity];
+  }
+
+  /**
+   * Infers the RePair grammar of the token stream, the counterpart of
+   * {@code RePairFactory.buildGrammar} followed by {@code expandRules}, {@code buildIntervals} and
+   * {@code toGrammarRulesData}: an occurrence interval spans from its first window start to its
+   * last window end.
+   *
+   * @param tokens the token ids, non-negative.
+   * @param words the word of a token id, no spaces in it.
+   * @param positions the series position of every token.
+   * @param windowSize the sliding window size.
+   * @return the grammar rules with their intervals.
+   */
+  public static GrammarRules buildGrammar(int[] tokens, IntFunction<String> words,
+      int[] positions, int windowSize) {
+    RePairEngine engine = new RePairEngine(tokens, words, positions, windowSize);
+    engine.queueRepeatedPairs();
+    while (engine.queued > 0) {
+      engine.replace(engine.dequeue());
+    }
+    return engine.toGrammarRules();
+  }
+
+  private void queueRepeatedPairs() {
+    for (int i = 0; i + 1 < symbol.length; i++) {
+      addOccurrence(pairOf(symbol[i], symbol[i + 1]), i);
+    }
+    // the digrams map holds every pair, in the order of their first occurrence
+    int tableSize = DEFAULT_TABLE_SIZE;
+    while (pairsNum > (int) (tableSize * LOAD_FACTOR)) {
+      tableSize <<= 1;
+    }
+    long[] order = new long[pairsNum];
+    int size = 0;
+    for (int pair = 0; pair < pairsNum; pair++) {
+      if (pairCount[pair] > 1) {
+        order[size++] = ((long) bucket(pairHash[pair], tableSize) << 32) | pair;
+      }
+    }
+    Arrays.sort(order, 0, size);
+    for (int i = 0; i < size; i++) {
+      int pair = (int) order[i];
+      enqueue(pair, pairCount[pair]);
+    }
+  }
+
+  private void replace(int pair) {
+    int rule = newRule(pairLeft[pair], pairRight[pair]);
+    int length = ruleLength[rule];
+
+    int[] occurrences = new int[pairCount[pair]];
+    int occurrencesNum = 0;
+    for (int pos = pairHead[pair]; NONE != pos; pos = occurrenceNext[pos]) {
+      occurrences[occurrencesNum++] = pos;
+    }
+    pairCount[pair] = 0;
+    pairHead[pair] = NONE;
+    pairTail[pair] = NONE;
+
+    newPairsNum = 0;
+    newPairsSize = 0;
+    newPairsTableSize = tableSizeFor(occurrencesNum);
+
+    int[] replaced = new int[occurrencesNum];
+    int replacedNum = 0;
+    ArrayList<RuleInterval> intervals = new ArrayList<RuleInterval>(occurrencesNum);
+    int[] lengths = new int[occurrencesNum];
+    long lengthsSum = 0;
+    for (int pos : occurrences) {
+      // an occurrence overlapped by the one before is gone
+      if (pair != pairAt[pos]) {
+        continue;
+      }
+      int start = positions[pos];
+      int end = positions[pos + length - 1] + windowSize;
+      intervals.add(new RuleInterval(start, end));
+      lengths[replacedNum] = end - start;
+      lengthsSum += end - start;
+      replaced[replacedNum++] = pos;
+      substitute(pos, pair, rule);
+    }
+
+    GrammarRuleRecord record = new GrammarRuleRecord();
+    record.setRuleNumber(rule);
+    record.setRuleString(name(ruleLeft[rule]) + " " + name(ruleRight[rule]) + " ");
+    record.setExpandedRuleString(expandedRules[rule]);
+    record.setRuleYield(length - 1);
+    record.setOccurrences(Arrays.copyOf(replaced, replacedNum));
+    record.setRuleIntervals(intervals);
+    record.setRuleLevel(ruleLevel[rule]);
+    record.setMinMaxLength(Arrays.copyOf(lengths, replacedNum));
+    record.setMeanLength((int) (lengthsSum / replacedNum));
+    records.add(record);
+
+    queueNewPairs(rule);
+  }
+
+  private void substitute(int pos, int pair, int rule) {
+    int nonTerminal = -rule;
+    int right = next[pos];
+    int after = next[right];
+    int before = prev[pos];
+    symbol[pos] = nonTerminal;
+    next[pos] = after;
+    if (NONE != after) {
+      prev[after] = pos;
+    }
+    if (NONE != before) {
+      if (pair != pairAt[before]) {
+        removeOccurrence(pairAt[before], before, rule);
+      }
+      int created = pairOf(symbol[before], nonTerminal);
+      addOccurrence(created, before);
+      addNewPair(created, rule);
+    }
+    pairAt[pos] = NONE;
+    if (NONE != after) {
+      // the replaced pair at the right symbol is an overlapping occurrence, skipped
+      if (pair != pairAt[right]) {
+        removeOccurrence(pairAt[right], right, rule);
+      }
+      int created = pairOf(nonTerminal, symbol[after]);
+      addOccurrence(created, pos);
+      addNewPair(created, rule);
+    }
+    pairAt[right] = NONE;
+  }
+
+  private void queueNewPairs(int rule) {
+    // the new pairs HashSet iterates its table buckets, each in the insertion order
+    long[] order = new long[newPairsNum];
+    int size = 0;
+    for (int sequence = 0; sequence < newPairsNum; sequence++) {
+      int pair = newPairs[sequence];
+      if (rule == pairStamp[pair] && sequence == pairSequence[pair]) {
+        order[size++] = ((long) bucket(pairHash[pair], newPairsTableSize) << 32) | sequence;
+      }
+    }
+    Arrays.sort(order, 0, size);
+    for (int i = 0; i < size; i++) {
+      int pair = newPairs[(int) order[i]];
+      if (pairCount[pair] > 1) {
+        enqueue(pair, pairCount[pair]);
+      }
+    }
+  }
+
+  private void addNewPair(int pair, int rule) {
+    if (rule == pairStamp[pair]) {
+      return;
+    }
+    pairStamp[pair] = rule;
+    if (newPairsNum == newPairs.length) {
+      newPairs = Arrays.copyOf(newPairs, newPairsNum * 2);
+    }
+    pairSequence[pair] = newPairsNum;
+    newPairs[newPairsNum++] = pair;
+    if (++newPairsSize > (int) (newPairsTableSize * LOAD_FACTOR)) {
+      newPairsTableSize <<= 1;
+    }
+  }
+
+  // the pair occurrences
+  //
+
+  private void addOccurrence(int pair, int pos) {
+    int tail = pairTail[pair];
+    occurrencePrev[pos] = tail;
+    occurrenceNext[pos] = NONE;
+    if (NONE == tail) {
+      pairHead[pair] = pos;
+    }
+    else {
+      occurrenceNext[tail] = pos;
+    }
+    pairTail[pair] = pos;
+    pairCount[pair]++;
+    pairAt[pos] = pair;
+  }
+
+  private void removeOccurrence(int pair, int pos, int rule) {
+    int before = occurrencePrev[pos];
+    int after = occurrenceNext[pos];
+    if (NONE == before) {
+      pairHead[pair] = after;
+    }
+    else {
+      occurrenceNext[before] = after;
+    }
+    if (NONE == after) {
+      pairTail[pair] = before;
+    }
+    else {
+      occurrencePrev[after] = before;
+    }
+    int count = --pairCount[pair];
+    if (NONE != pairFrequency[pair]) {
+      decrease(pair, count);
+    }
+    if (0 == count && rule == pairStamp[pair]) {
+      // dropped from the new pairs, it goes to the end of its bucket if added again
+      pairStamp[pair] = 0;
+      newPairsSize--;
+    }
+  }
+
+  // the pairs queue, the RepairPriorityQueue order: the list is sorted by the frequency, a queued
+  // pair goes first among its frequency ones, and so does a pair whose frequency drops, unless its
+  // new frequency is the lowest one and held by a single pair, then it goes after that pair
+  //
+
+  private void enqueue(int pair, int frequency) {
+    pairFrequency[pair] = frequency;
+    pushFront(pair);
+    queued++;
+  }
+
+  private int dequeue() {
+    int pair = bucketHead[highestFrequency()];
+    unlink(pair);
+    pairFrequency[pair] = NONE;
+    queued--;
+    return pair;
+  }
+
+  private void decrease(int pair, int frequency) {
+    if (frequency < 2) {
+      unlink(pair);
+      pairFrequency[pair] = NONE;
+      queued--;
+      return;
+    }
+    int old = pairFrequency[pair];
+    boolean stays = 1 == queued
+        // the list tail
+        || (NONE == queueNext[pair] && lowestFrequency() == old)
+        // the list head which is still ahead of the next one
+        || (NONE == queuePrev[pair] && 1 == bucketSize[old] && highestFrequency() == old);
+    unlink(pair);
+    pairFrequency[pair] = frequency;
+    if (!stays && 1 == bucketSize[frequency] && lowestFrequency() == frequency) {
+      pushBack(pair);
+    }
+    else {
+      pushFront(pair);
+    }
+  }
+
+  private void pushFront(int pair) {
+    int frequency = pairFrequency[pair];
+    int head = bucketHead[frequency];
+    queuePrev[pair] = NONE;
+    queueNext[pair] = head;
+    if (NONE == head) {
+      bucketTail[frequency] = pair;
+    }
+    else {
+      queuePrev[head] = pair;
+    }
+    bucketHead[frequency] = pair;
+    added(frequency);
+  }
+
+  private void pushBack(int pair) {
+    int frequency = pairFrequency[pair];
+    int tail = bucketTail[frequency];
+    queuePrev[pair] = tail;
+    queueNext[pair] = NONE;
+    if (NONE == tail) {
+      bucketHead[frequency] = pair;
+    }
+    else {
+      queueNext[tail] = pair;
+    }
+    bucketTail[frequency] = pair;
+    added(frequency);
+  }
+
+  private void added(int frequency) {
+    bucketSize[frequency]++;
+    lowestFrequency = Math.min(lowestFrequency, frequency);
+    highestFrequency = Math.max(highestFrequency, frequency);
+  }
+
+  private void unlink(int pair) {
+    int frequency = pairFrequency[pair];
+    int before = queuePrev[pair];
+    int after = queueNext[pair];
+    if (NONE == before) {
+      bucketHead[frequency] = after;
+    }
+    else {
+      queueNext[before] = after;
+    }
+    if (NONE == after) {
+      bucketTail[frequency] = before;
+    }
+    else {
+      queuePrev[after] = before;
+    }
+    bucketSize[frequency]--;
+  }
+
+  // the queue is not empty when these are called
+  private int lowestFrequency() {
+    while (0 == bucketSize[lowestFrequency]) {
+      lowestFrequency++;
+    }
+    return lowestFrequency;
+  }
+
+  private int highestFrequency() {
+    while (0 == bucketSize[highestFrequency]) {
+      highestFrequency--;
+    }
+    return highestFrequency;
+  }
+
+  // the pairs index
+  //
+
+  private int pairOf(int left, int right) {
+    long key = ((long) left << 32) | (right & 0xFFFFFFFFL);
+    int mask = slots.length - 1;
+    int slot = slot(key, mask);
+    for (int id = slots[slot] - 1; NONE != id; id = slots[slot] - 1) {
+      if (left == pairLeft[id] && right == pairRight[id]) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (pairsNum == pairLeft.length) {
+      growPairs();
+    }
+    int id = pairsNum++;
+    pairLeft[id] = left;
+    pairRight[id] = right;
+    // the hash code of the "left right" string
+    pairHash[id] = (symbolHash(left) * 31 + ' ') * symbolPower(right) + symbolHash(right);
+    pairCount[id] = 0;
+    pairHead[id] = NONE;
+    pairTail[id] = NONE;
+    pairFrequency[id] = NONE;
+    pairStamp[id] = 0;
+    slots[slot] = id + 1;
+    if (2 * pairsNum > slots.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  private static int slot(long key, int mask) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length << 1];
+    int mask = slots.length - 1;
+    for (int id = 0; id < pairsNum; id++) {
+      int slot = slot(((long) pairLeft[id] << 32) | (pairRight[id] & 0xFFFFFFFFL), mask);
+      while (0 != slots[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+  }
+
+  private void growPairs() {
+    int capacity = pairLeft.length + (pairLeft.length >> 1);
+    pairLeft = Arrays.copyOf(pairLeft, capacity);
+    pairRight = Arrays.copyOf(pairRight, capacity);
+    pairHash = Arrays.copyOf(pairHash, capacity);
+    pairCount = Arrays.copyOf(pairCount, capacity);
+    pairHead = Arrays.copyOf(pairHead, capacity);
+    pairTail = Arrays.copyOf(pairTail, capacity);
+    pairFrequency = Arrays.copyOf(pairFrequency, capacity);
+    queuePrev = Arrays.copyOf(queuePrev, capacity);
+    queueNext = Arrays.copyOf(queueNext, capacity);
+    pairStamp = Arrays.copyOf(pairStamp, capacity);
+    pairSequence = Arrays.copyOf(pairSequence, capacity);
+  }
+
+  // the rules and the symbols
+  //
+
+  private int newRule(int left, int right) {
+    int rule = ++rulesNum;
+    if (rule == ruleLeft.length) {
+      int capacity = rule * 2;
+      ruleLeft = Arrays.copyOf(ruleLeft, capacity);
+      ruleRight = Arrays.copyOf(ruleRight, capacity);
+      ruleLength = Arrays.copyOf(ruleLength, capacity);
+      ruleLevel = Arrays.copyOf(ruleLevel, capacity);
+      ruleHash = Arrays.copyOf(ruleHash, capacity);
+      rulePower = Arrays.copyOf(rulePower, capacity);
+      expandedRules = Arrays.copyOf(expandedRules, capacity);
+    }
+    ruleLeft[rule] = left;
+    ruleRight[rule] = right;
+    ruleLength[rule] = symbolLength(left) + symbolLength(right);
+    ruleLevel[rule] = Math.min(symbolLevel(left), symbolLevel(right)) + 1;
+    String name = "R" + rule;
+    ruleHash[rule] = name.hashCode();
+    rulePower[rule] = power31(name.length());
+    expandedRules[rule] = expanded(left) + " " + expanded(right);
+    return rule;
+  }
+
+  private String name(int sym) {
+    return (sym < 0) ? "R" + (-sym) : words.apply(sym);
+  }
+
+  private String expanded(int sym) {
+    return (sym < 0) ? expandedRules[-sym] : words.apply(sym);
+  }
+
+  private int symbolLength(int sym) {
+    return (sym < 0) ? ruleLength[-sym] : 1;
+  }
+
+  private int symbolLevel(int sym) {
+    return (sym < 0) ? ruleLevel[-sym] : 0;
+  }
+
+  private int symbolHash(int sym) {
+    return (sym < 0) ? ruleHash[-sym] : wordHash[sym];
+  }
+
+  private int symbolPower(int sym) {
+    return (sym < 0) ? rulePower[-sym] : wordPower[sym];
+  }
+
+  private GrammarRules toGrammarRules() {
+    int[] uses = new int[rulesNum + 1];
+    StringBuilder r0 = new StringBuilder();
+    if (symbol.length > 0) {
+      for (int pos = 0; NONE != pos; pos = next[pos]) {
+        if (symbol[pos] < 0) {
+          uses[-symbol[pos]]++;
+        }
+        r0.append(name(symbol[pos])).append(' ');
+      }
+    }
+    StringBuilder r0Expanded = new StringBuilder();
+    for (int token : tokens) {
+      r0Expanded.append(words.apply(token)).append(' ');
+    }
+    for (int rule = 1; rule <= rulesNum; rule++) {
+      if (ruleLeft[rule] < 0) {
+        uses[-ruleLeft[rule]]++;
+      }
+      if (ruleRight[rule] < 0) {
+        uses[-ruleRight[rule]]++;
+      }
+    }
+
+    GrammarRules res = new GrammarRules();
+    GrammarRuleRecord record = new GrammarRuleRecord();
+    record.setRuleNumber(0);
+    record.setRuleString(r0.toString());
+    record.setExpandedRuleString(r0Expanded.toString());
+    record.setOccurrences(new int[] { 0 });
+    record.setMeanLength(-1);
+    record.setMinMaxLength(new int[] { -1 });
+    res.addRule(record);
+    for (GrammarRuleRecord r : records) {
+      r.setRuleUseFrequency(uses[r.getRuleNumber()]);
+      res.addRule(r);
+    }
+    return res;
+  }
+
+  private static int bucket(int hash, int tableSize) {
+    return (hash ^ (hash >>> 16)) & (tableSize - 1);
+  }
+
+  private static int tableSizeFor(int capacity) {
+    return (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+  }
+
+  private static int power31(int exponent) {
+    int res = 1;
+    for (int i = 0; i < exponent; i++) {
+      res *= 31;
+    }
+    return res;
+  }
+}
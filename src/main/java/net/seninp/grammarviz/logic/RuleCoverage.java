@@ -0,0 +1,250 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+
+/**
+ * The rule density curve: for every point of the series, the weighted number of rule intervals
+ * covering it. Rather than adding the weight to every point of every interval, each interval adds
+ * the weight at its start and takes it off past its end in a difference array, and a prefix sum
+ * turns the differences into the coverage, so the cost is linear in the series length plus the
+ * number of intervals whatever the intervals lengths.
+ *
+ * With several threads the rules are split into partitions of about the same number of intervals,
+ * every partition filling its own difference array, and the arrays are then summed up by index
+ * ranges. As that costs a pass over the series per partition, the partitions are only used when
+ * the intervals outnumber the points.
+ *
+ * The sums are int ones, as the point by point counts always were; they wrap around in the
+ * difference arrays, which the prefix sum undoes.
+ *
+ * @author psenin
+ *
+ */
+public final class RuleCoverage {
+
+  private RuleCoverage() {
+    // utility
+  }
+
+  /**
+   * Computes the rule coverage of the series by all the rules but R0, one per interval.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength the series length.
+   * @return the coverage by point.
+   */
+  public static int[] compute(GrammarRules rules, int seriesLength) {
+    return compute(rules, seriesLength, CoverageCountStrategy.COUNT, true, 1);
+  }
+
+  /**
+   * Computes the rule coverage of the series by all the rules but R0, weighted as the strategy
+   * says.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength the series length.
+   * @param strategy the weighting strategy.
+   * @param threadsNum the number of threads, values below 2 run on the calling thread.
+   * @return the coverage by point.
+   */
+  public static int[] compute(GrammarRules rules, int seriesLength,
+      CoverageCountStrategy strategy, int threadsNum) {
+    return compute(rules, seriesLength, strategy, true, threadsNum);
+  }
+
+  /**
+   * Computes the rule coverage of the series weighted as the strategy says. Intervals reaching
+   * out of the series are clipped.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength the series length.
+   * @param strategy the weighting strategy.
+   * @param skipR0 whether to leave the R0 intervals out.
+   * @param threadsNum the number of threads, values below 2 run on the calling thread.
+   * @return the coverage by point.
+   */
+  public static int[] compute(GrammarRules rules, int seriesLength,
+      CoverageCountStrategy strategy, boolean skipR0, int threadsNum) {
+
+    List<GrammarRuleRecord> records = new ArrayList<GrammarRuleRecord>(rules.size());
+    long intervalsNum = 0;
+    for (GrammarRuleRecord rule : rules) {
+      if (skipR0 && 0 == rule.ruleNumber()) {
+        continue;
+      }
+      records.add(rule);
+      intervalsNum += rule.getRuleIntervals().size();
+    }
+
+    int partitionsNum = (int) Math.min(Math.max(1, threadsNum), intervalsNum / (seriesLength + 1L));
+    if (partitionsNum < 2) {
+      int[] diff = new int[seriesLength + 1];
+      addIntervals(records, 0, records.size(), seriesLength, strategy, diff);
+      return prefixSum(diff, seriesLength);
+    }
+
+    // cut the rules list into partitions of about the same number of intervals
+    int[] bounds = new int[partitionsNum + 1];
+    long perPartition = intervalsNum / partitionsNum;
+    long seen = 0;
+    int partition = 1;
+    for (int i = 0; i < records.size() && partition < partitionsNum; i++) {
+      seen += records.get(i).getRuleIntervals().size();
+      if (seen >= partition * perPartition) {
+        bounds[partition++] = i + 1;
+      }
+    }
+    while (partition <= partitionsNum) {
+      bounds[partition++] = records.size();
+    }
+
+    final int[][] diffs = new int[partitionsNum][];
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(partitionsNum);
+    for (int p = 0; p < partitionsNum; p++) {
+      final int id = p;
+      final int from = bounds[p];
+      final int to = bounds[p + 1];
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          diffs[id] = new int[seriesLength + 1];
+          addIntervals(records, from, to, seriesLength, strategy, diffs[id]);
+          return null;
+        }
+      });
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(partitionsNum);
+    try {
+      run(pool, tasks);
+
+      // sum the partitions up by index ranges, into the first array
+      tasks.clear();
+      int chunk = (seriesLength + partitionsNum) / partitionsNum;
+      for (int lo = 0; lo < seriesLength; lo += chunk) {
+        final int from = lo;
+        final int to = Math.min(seriesLength, lo + chunk);
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            int[] sum = diffs[0];
+            for (int p = 1; p < diffs.length; p++) {
+              int[] diff = diffs[p];
+              for (int i = from; i < to; i++) {
+                sum[i] += diff[i];
+              }
+            }
+            return null;
+          }
+        });
+      }
+      run(pool, tasks);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+
+    return prefixSum(diffs[0], seriesLength);
+  }
+
+  /**
+   * Computes the smallest coverage value the point by point density loop observed: it walked the
+   * rules but R0 in order, added the weight to every point of every interval and took the
+   * minimum of the running sums. The weights being positive, that is the smallest weight among
+   * the rules which are the first to cover some point. The intervals skip the points already
+   * covered, so every point is visited once.
+   *
+   * @param rules the grammar rules.
+   * @param seriesLength the series length.
+   * @param strategy the weighting strategy.
+   * @return the smallest observed coverage, Integer.MAX_VALUE if no point is covered.
+   */
+  public static int minObservedCoverage(GrammarRules rules, int seriesLength,
+      CoverageCountStrategy strategy) {
+    // the next point not covered yet, union-find style with path halving
+    int[] next = new int[seriesLength + 1];
+    for (int i = 0; i <= seriesLength; i++) {
+      next[i] = i;
+    }
+    int res = Integer.MAX_VALUE;
+    for (GrammarRuleRecord rule : rules) {
+      if (0 == rule.ruleNumber()) {
+        continue;
+      }
+      int weight = strategy.weight(rule);
+      for (RuleInterval interval : rule.getRuleIntervals()) {
+        int end = Math.min(seriesLength, interval.getEnd());
+        int point = uncovered(next, Math.min(seriesLength, Math.max(0, interval.getStart())));
+        if (point < end && weight < res) {
+          res = weight;
+        }
+        while (point < end) {
+          next[point] = point + 1;
+          point = uncovered(next, point + 1);
+        }
+      }
+    }
+    return res;
+  }
+
+  private static int uncovered(int[] next, int point) {
+    int p = point;
+    while (next[p] != p) {
+      next[p] = next[next[p]];
+      p = next[p];
+    }
+    return p;
+  }
+
+  private static void addIntervals(List<GrammarRuleRecord> records, int from, int to,
+      int seriesLength, CoverageCountStrategy strategy, int[] diff) {
+    for (int r = from; r < to; r++) {
+      GrammarRuleRecord rule = records.get(r);
+      int weight = strategy.weight(rule);
+      for (RuleInterval interval : rule.getRuleIntervals()) {
+        int start = Math.max(0, interval.getStart());
+        int end = Math.min(seriesLength, interval.getEnd());
+        if (start < end) {
+          diff[start] += weight;
+          diff[end] -= weight;
+        }
+      }
+    }
+  }
+
+  private static int[] prefixSum(int[] diff, int seriesLength) {
+    int[] res = new int[seriesLength];
+    int running = 0;
+    for (int i = 0; i < seriesLength; i++) {
+      running += diff[i];
+      res[i] = running;
+    }
+    return res;
+  }
+
+  private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) {
+    try {
+      for (Future<Void> future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("rule coverage computation failed", e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("rule coverage computation interrupted", e);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package net.seninp.grammarviz.logic;
+
+/**
+ * The SAX words as a stream of dictionary token ids: the token of every word, the position of the
+ * window it came from, and the dictionary of the distinct words in the order of their first
+ * appearance. The grammar inference reads the tokens and maps the rule occurrences back to the
+ * series through the positions, without the one string of all the words.
+ *
+ * @author psenin
+ *
+ */
+public final class SAXTokens {
+
+  private final int[] tokens;
+  private final int[] positions;
+  private final long[] codes;
+  private final String[] words;
+
+  SAXTokens(int[] tokens, int[] positions, long[] codes, String[] words) {
+    this.tokens = tokens;
+    this.positions = positions;
+    this.codes = codes;
+    this.words = words;
+  }
+
+  /**
+   * Gets the number of tokens.
+   *
+   * @return the tokens count.
+   */
+  public int size() {
+    return tokens.length;
+  }
+
+  /**
+   * Gets the token id.
+   *
+   * @param i the token index.
+   * @return the dictionary id of the word.
+   */
+  public int getToken(int i) {
+    return tokens[i];
+  }
+
+  /**
+   * Gets the position of the window the token came from.
+   *
+   * @param i the token index.
+   * @return the window start.
+   */
+  public int getPosition(int i) {
+    return positions[i];
+  }
+
+  /**
+   * Gets the token ids, the array is not copied.
+   *
+   * @return the tokens.
+   */
+  public int[] getTokens() {
+    return tokens;
+  }
+
+  /**
+   * Gets the token positions, the array is not copied.
+   *
+   * @return the positions.
+   */
+  public int[] getPositions() {
+    return positions;
+  }
+
+  /**
+   * Gets the number of distinct words.
+   *
+   * @return the dictionary size.
+   */
+  public int getDictionarySize() {
+    return words.length;
+  }
+
+  /**
+   * Gets the word of a token id.
+   *
+   * @param token the token id.
+   * @return the word.
+   */
+  public String getWord(int token) {
+    return words[token];
+  }
+
+  /**
+   * Gets the packed word of a token id.
+   *
+   * @param token the token id.
+   * @return the word code.
+   */
+  public long getCode(int token) {
+    return codes[token];
+  }
+}
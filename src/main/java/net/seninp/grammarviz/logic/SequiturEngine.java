@@ -0,0 +1,515 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+
+/**
+ * Sequitur over integer tokens whose whole state lives in the instance, so that grammars can be
+ * inferred concurrently, one engine per inference. The jmotif {@code SAXRule} keeps the digrams
+ * table and the rules counter in static fields, which is why {@code SAXRule.reset()} exists and
+ * why two inferences must never overlap.
+ *
+ * The symbols are nodes of int arrays recycled through a free list, the digram index is an open
+ * addressing table of the packed symbol pairs. The algorithm steps are those of the jmotif
+ * {@code SAXSymbol} one by one, the rule utility check on the first rule symbol only, the rule
+ * levels fixed when a rule is matched and the positionless nonterminal copies included, so the
+ * rules, their numbering and their records are the very ones of {@code SAXRule.toGrammarRulesData}.
+ *
+ * @author psenin
+ *
+ */
+public final class SequiturEngine {
+
+  private static final int NONE = -1;
+
+  // the guard symbol, the guard keeps its rule in the position slot
+  private static final int GUARD = Integer.MIN_VALUE;
+
+  // the nodes: the links, the symbol -- a token id, or ~rule for a nonterminal -- and the position
+  private int[] prev;
+  private int[] next;
+  private int[] symbol;
+  private int[] position;
+  private int nodesNum;
+  private int freeNodes = NONE;
+  private int releasedNodes = NONE;
+
+  // the rules: the guard node, the uses count and the level
+  private int[] guard;
+  private int[] count;
+  private int[] level;
+  private int rulesNum;
+
+  // the rule occurrences, the rule in the high half and the position in the low one
+  private long[] occurrences;
+  private int occurrencesNum;
+
+  // the digram index, the packed symbols pair to the node the digram starts at
+  private long[] digramKeys;
+  private int[] digramNodes;
+  private int digramsNum;
+
+  private int tokensNum;
+
+  /**
+   * Constructor.
+   */
+  public SequiturEngine() {
+    this(1024);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param expectedTokens the expected number of tokens, the initial pools size.
+   */
+  public SequiturEngine(int expectedTokens) {
+    int capacity = Math.max(16, expectedTokens + expectedTokens / 4);
+    this.prev = new int[capacity];
+    this.next = new int[capacity];
+    this.symbol = new int[capacity];
+    this.position = new int[capacity];
+    int rulesCapacity = Math.max(16, capacity / 8);
+    this.guard = new int[rulesCapacity];
+    this.count = new int[rulesCapacity];
+    this.level = new int[rulesCapacity];
+    this.occurrences = new long[rulesCapacity];
+    int slots = Integer.highestOneBit(Math.max(16, capacity)) << 1;
+    this.digramKeys = new long[slots];
+    this.digramNodes = new int[slots];
+    Arrays.fill(this.digramNodes, NONE);
+    newRule();
+  }
+
+  /**
+   * Appends a token to the grammar, its position is the number of the tokens appended before.
+   *
+   * @param token the token id, non-negative.
+   */
+  public void add(int token) {
+    if (token < 0) {
+      throw new IllegalArgumentException("the token id must be non-negative: " + token);
+    }
+    int terminal = newNode(token, tokensNum++);
+    int last = prev[guard[0]];
+    insertAfter(last, terminal);
+    check(prev[terminal]);
+    // the nodes cleaned up by this step are reused from the next one on
+    while (NONE != releasedNodes) {
+      int node = releasedNodes;
+      releasedNodes = next[node];
+      next[node] = freeNodes;
+      freeNodes = node;
+    }
+  }
+
+  /**
+   * Gets the number of the tokens appended.
+   *
+   * @return the tokens count.
+   */
+  public int size() {
+    return tokensNum;
+  }
+
+  /**
+   * Converts the current grammar into the rule records, numbered from R0 in the order their
+   * rules are first referenced. The rule intervals are not set. The engine may keep on taking
+   * tokens afterwards.
+   *
+   * @param words the word of a token id.
+   * @return the grammar rules.
+   */
+  public GrammarRules toGrammarRules(IntFunction<String> words) {
+
+    // number the live rules
+    int[] numbers = new int[rulesNum];
+    Arrays.fill(numbers, NONE);
+    int[] order = new int[rulesNum];
+    numbers[0] = 0;
+    int ordered = 1;
+    String[] ruleStrings = new String[rulesNum];
+    for (int i = 0; i < ordered; i++) {
+      int rule = order[i];
+      StringBuilder sb = new StringBuilder();
+      for (int s = next[guard[rule]]; GUARD != symbol[s]; s = next[s]) {
+        if (symbol[s] < 0) {
+          int child = ~symbol[s];
+          if (NONE == numbers[child]) {
+            numbers[child] = ordered;
+            order[ordered++] = child;
+          }
+          sb.append('R').append(numbers[child]);
+        }
+        else {
+          sb.append(words.apply(symbol[s]));
+        }
+        sb.append(' ');
+      }
+      ruleStrings[rule] = sb.toString();
+    }
+
+    // group the sorted occurrences by rule
+    long[] sorted = Arrays.copyOf(occurrences, occurrencesNum);
+    Arrays.sort(sorted);
+    int[] firstOccurrence = new int[rulesNum + 1];
+    for (long occurrence : sorted) {
+      firstOccurrence[(int) (occurrence >>> 32) + 1]++;
+    }
+    for (int rule = 0; rule < rulesNum; rule++) {
+      firstOccurrence[rule + 1] += firstOccurrence[rule];
+    }
+
+    String[] expanded = expand(order, ordered, words);
+
+    GrammarRules res = new GrammarRules();
+    for (int i = 0; i < ordered; i++) {
+      int rule = order[i];
+      GrammarRuleRecord record = new GrammarRuleRecord();
+      record.setRuleNumber(i);
+      record.setRuleString(ruleStrings[rule]);
+      record.setRuleLevel(level[rule]);
+      record.setRuleUseFrequency(count[rule]);
+      record.setOccurrences(distinctPositions(sorted, firstOccurrence[rule],
+          firstOccurrence[rule + 1]));
+      if (0 == rule) {
+        record.setExpandedRuleString(expanded[rule].trim());
+      }
+      else {
+        record.setExpandedRuleString(expanded[rule]);
+        record.setRuleYield(countSpaces(expanded[rule]));
+      }
+      res.addRule(record);
+    }
+    return res;
+  }
+
+  private String[] expand(int[] order, int ordered, IntFunction<String> words) {
+    // rules expand after the ones they reference, a rule may reference an earlier numbered one
+    String[] res = new String[rulesNum];
+    int[] stack = new int[ordered];
+    for (int i = ordered - 1; i >= 0; i--) {
+      int top = 0;
+      stack[top++] = order[i];
+      while (top > 0) {
+        int rule = stack[top - 1];
+        if (null != res[rule]) {
+          top--;
+          continue;
+        }
+        int pending = NONE;
+        for (int s = next[guard[rule]]; GUARD != symbol[s]; s = next[s]) {
+          if (symbol[s] < 0 && null == res[~symbol[s]]) {
+            pending = ~symbol[s];
+            break;
+          }
+        }
+        if (NONE != pending) {
+          stack[top++] = pending;
+          continue;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int s = next[guard[rule]]; GUARD != symbol[s]; s = next[s]) {
+          if (symbol[s] < 0) {
+            sb.append(res[~symbol[s]]);
+          }
+          else {
+            sb.append(words.apply(symbol[s])).append(' ');
+          }
+        }
+        res[rule] = sb.toString();
+        top--;
+      }
+    }
+    return res;
+  }
+
+  private static int[] distinctPositions(long[] sorted, int from, int to) {
+    int[] res = new int[to - from];
+    int size = 0;
+    for (int k = from; k < to; k++) {
+      int pos = (int) sorted[k];
+      if (0 == size || res[size - 1] != pos) {
+        res[size++] = pos;
+      }
+    }
+    return Arrays.copyOf(res, size);
+  }
+
+  private static int countSpaces(String str) {
+    int res = 0;
+    for (int i = 0; i < str.length(); i++) {
+      if (' ' == str.charAt(i)) {
+        res++;
+      }
+    }
+    return res;
+  }
+
+  // the symbol operations, those of SAXSymbol
+  //
+
+  private void join(int left, int right) {
+    if (NONE != next[left]) {
+      deleteDigram(left);
+    }
+    next[left] = right;
+    prev[right] = left;
+  }
+
+  private void insertAfter(int node, int inserted) {
+    join(inserted, next[node]);
+    join(node, inserted);
+  }
+
+  private void deleteDigram(int node) {
+    if (GUARD == symbol[node] || GUARD == symbol[next[node]]) {
+      return;
+    }
+    long key = digram(node);
+    if (findDigram(key) == node) {
+      removeDigram(key);
+    }
+  }
+
+  private boolean check(int node) {
+    if (GUARD == symbol[node] || GUARD == symbol[next[node]]) {
+      return false;
+    }
+    long key = digram(node);
+    int found = findDigram(key);
+    if (NONE == found) {
+      putDigram(key, node);
+      return false;
+    }
+    if (next[found] != node) {
+      match(node, found);
+    }
+    return true;
+  }
+
+  private void cleanUp(int node) {
+    join(prev[node], next[node]);
+    deleteDigram(node);
+    if (symbol[node] < 0) {
+      count[~symbol[node]]--;
+    }
+  }
+
+  private void substitute(int node, int rule) {
+    addOccurrence(rule, position[node]);
+    int before = prev[node];
+    int after = next[node];
+    cleanUp(node);
+    cleanUp(after);
+    int nonTerminal = newNode(~rule, position[node]);
+    count[rule]++;
+    insertAfter(before, nonTerminal);
+    if (!check(before)) {
+      check(next[before]);
+    }
+    release(node);
+    release(after);
+  }
+
+  private void match(int newDigram, int oldDigram) {
+    int rule;
+    if (GUARD == symbol[prev[oldDigram]] && GUARD == symbol[next[next[oldDigram]]]) {
+      // the digram is a whole rule
+      rule = position[prev[oldDigram]];
+      substitute(newDigram, rule);
+    }
+    else {
+      rule = newRule();
+      int first = copy(newDigram);
+      int second = copy(next[newDigram]);
+      int ruleGuard = guard[rule];
+      next[ruleGuard] = first;
+      prev[first] = ruleGuard;
+      next[first] = second;
+      prev[second] = first;
+      next[second] = ruleGuard;
+      prev[ruleGuard] = second;
+      putDigram(digram(first), first);
+      substitute(oldDigram, rule);
+      substitute(newDigram, rule);
+    }
+    int first = next[guard[rule]];
+    if (symbol[first] < 0 && 1 == count[~symbol[first]]) {
+      expand(first);
+    }
+    assignLevel(rule);
+  }
+
+  private int copy(int node) {
+    if (symbol[node] < 0) {
+      // a copied nonterminal does not keep the position
+      count[~symbol[node]]++;
+      return newNode(symbol[node], 0);
+    }
+    return newNode(symbol[node], position[node]);
+  }
+
+  private void expand(int nonTerminal) {
+    int rule = ~symbol[nonTerminal];
+    int ruleGuard = guard[rule];
+    int after = next[nonTerminal];
+    join(prev[nonTerminal], next[ruleGuard]);
+    join(prev[ruleGuard], after);
+    // the digram the nonterminal starts is stale, its rule is gone
+    if (GUARD != symbol[after]) {
+      long key = digram(nonTerminal);
+      if (findDigram(key) == nonTerminal) {
+        removeDigram(key);
+      }
+    }
+    guard[rule] = NONE;
+    release(ruleGuard);
+    release(nonTerminal);
+  }
+
+  private void assignLevel(int rule) {
+    int min = Integer.MAX_VALUE;
+    for (int s = next[guard[rule]]; GUARD != symbol[s]; s = next[s]) {
+      if (symbol[s] >= 0) {
+        level[rule] = 1;
+        return;
+      }
+      min = Math.min(level[~symbol[s]] + 1, min);
+    }
+    level[rule] = min;
+  }
+
+  // the pools
+  //
+
+  private int newNode(int sym, int pos) {
+    int node;
+    if (NONE != freeNodes) {
+      node = freeNodes;
+      freeNodes = next[node];
+    }
+    else {
+      if (nodesNum == symbol.length) {
+        int capacity = nodesNum + (nodesNum >> 1);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        symbol = Arrays.copyOf(symbol, capacity);
+        position = Arrays.copyOf(position, capacity);
+      }
+      node = nodesNum++;
+    }
+    prev[node] = NONE;
+    next[node] = NONE;
+    symbol[node] = sym;
+    position[node] = pos;
+    return node;
+  }
+
+  private void release(int node) {
+    next[node] = releasedNodes;
+    releasedNodes = node;
+  }
+
+  private int newRule() {
+    if (rulesNum == guard.length) {
+      int capacity = rulesNum + (rulesNum >> 1);
+      guard = Arrays.copyOf(guard, capacity);
+      count = Arrays.copyOf(count, capacity);
+      level = Arrays.copyOf(level, capacity);
+    }
+    int rule = rulesNum++;
+    int ruleGuard = newNode(GUARD, rule);
+    next[ruleGuard] = ruleGuard;
+    prev[ruleGuard] = ruleGuard;
+    guard[rule] = ruleGuard;
+    count[rule] = 0;
+    level[rule] = 0;
+    return rule;
+  }
+
+  private void addOccurrence(int rule, int pos) {
+    if (occurrencesNum == occurrences.length) {
+      occurrences = Arrays.copyOf(occurrences, occurrencesNum + (occurrencesNum >> 1));
+    }
+    occurrences[occurrencesNum++] = ((long) rule << 32) | pos;
+  }
+
+  // the digram index, linear probing with the backward shift deletion
+  //
+
+  private long digram(int node) {
+    return ((long) symbol[node] << 32) | (symbol[next[node]] & 0xFFFFFFFFL);
+  }
+
+  private int slot(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (digramKeys.length - 1);
+  }
+
+  private int findDigram(long key) {
+    int mask = digramKeys.length - 1;
+    for (int s = slot(key); NONE != digramNodes[s]; s = (s + 1) & mask) {
+      if (digramKeys[s] == key) {
+        return digramNodes[s];
+      }
+    }
+    return NONE;
+  }
+
+  private void putDigram(long key, int node) {
+    int mask = digramKeys.length - 1;
+    int s = slot(key);
+    while (NONE != digramNodes[s] && digramKeys[s] != key) {
+      s = (s + 1) & mask;
+    }
+    if (NONE == digramNodes[s]) {
+      digramKeys[s] = key;
+      digramsNum++;
+    }
+    digramNodes[s] = node;
+    if (2 * digramsNum > digramKeys.length) {
+      rehash();
+    }
+  }
+
+  private void removeDigram(long key) {
+    int mask = digramKeys.length - 1;
+    int s = slot(key);
+    while (digramKeys[s] != key || NONE == digramNodes[s]) {
+      s = (s + 1) & mask;
+    }
+    digramsNum--;
+    // shift back the entries of the run which would not be found past the hole
+    int hole = s;
+    for (int k = (hole + 1) & mask; NONE != digramNodes[k]; k = (k + 1) & mask) {
+      int home = slot(digramKeys[k]);
+      if (((k - home) & mask) >= ((k - hole) & mask)) {
+        digramKeys[hole] = digramKeys[k];
+        digramNodes[hole] = digramNodes[k];
+        hole = k;
+      }
+    }
+    digramNodes[hole] = NONE;
+  }
+
+  private void rehash() {
+    long[] keys = digramKeys;
+    int[] nodes = digramNodes;
+    digramKeys = new long[keys.length << 1];
+    digramNodes = new int[keys.length << 1];
+    Arrays.fill(digramNodes, NONE);
+    int mask = digramKeys.length - 1;
+    for (int k = 0; k < keys.length; k++) {
+      if (NONE != nodes[k]) {
+        int s = slot(keys[k]);
+        while (NONE != digramNodes[s]) {
+          s = (s + 1) & mask;
+        }
+        digramKeys[s] = keys[k];
+        digramNodes[s] = nodes[k];
+      }
+    }
+  }
+}
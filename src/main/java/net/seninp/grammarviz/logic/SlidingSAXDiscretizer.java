@@ -0,0 +1,331 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.Arrays;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.SAXException;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.TSProcessor;
+import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The sliding window SAX discretization of {@code SAXProcessor.ts2saxViaWindow} without the
+ * per-window z-normalization. The PAA of a z-normalized window is the PAA of the raw window
+ * shifted by the window mean and scaled by its standard deviation, and both the window statistics
+ * and the PAA segment sums come out of the series prefix sums and sums of squares, so a window
+ * costs O(PAA size) instead of O(window size). The words are packed into longs and the
+ * numerosity reduction compares the codes.
+ *
+ * The output is the jmotif one, letter for letter. The prefix sums round differently from the
+ * jmotif window sums, so every value carries an error bound covering both; a window with a value
+ * closer to a cut than its bound, or a standard deviation that close to the normalization
+ * threshold, is discretized again with the jmotif arithmetic. On real data that is a tiny fraction
+ * of the windows.
+ *
+ * The prefix sums are taken over the series shifted by its global mean, which keeps them
+ * well-conditioned on series with a large offset.
+ *
+ * @author psenin
+ *
+ */
+public final class SlidingSAXDiscretizer {
+
+  // the slack factor of the rounding error bounds
+  private static final double SAFETY = 4D;
+
+  private final int windowSize;
+  private final int paaSize;
+  private final int alphabetSize;
+  private final NumerosityReductionStrategy nrStrategy;
+  private final double nThreshold;
+  private final double[] cuts;
+  private final int bitsPerLetter;
+  private final long flatCode;
+
+  // the PAA segments: the first and the last point, and the weight corrections of both
+  private final double ratio;
+  private final int[] segFrom;
+  private final int[] segLast;
+  private final double[] fromCorrection;
+  private final double[] lastCorrection;
+
+  private final TSProcessor tp = new TSProcessor();
+
+  /**
+   * Constructor.
+   *
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @throws SAXException if the parameters are invalid or the words do not fit a long.
+   */
+  public SlidingSAXDiscretizer(int windowSize, int paaSize, int alphabetSize,
+      NumerosityReductionStrategy nrStrategy, double nThreshold) throws SAXException {
+    if (windowSize < paaSize) {
+      throw new SAXException("PAA size can't be greater than the timeseries size.");
+    }
+    if (!fits(paaSize, alphabetSize)) {
+      throw new SAXException("The words of " + paaSize + " letters over an alphabet of "
+          + alphabetSize + " do not fit a long.");
+    }
+    this.windowSize = windowSize;
+    this.paaSize = paaSize;
+    this.alphabetSize = alphabetSize;
+    this.nrStrategy = nrStrategy;
+    this.nThreshold = nThreshold;
+    this.cuts = new NormalAlphabet().getCuts(alphabetSize);
+    this.bitsPerLetter = bitsPerLetter(alphabetSize);
+
+    // a flat window normalizes to zeros, which make the same letter everywhere
+    long code = 0L;
+    int zeroLetter = tp.num2char(0D, cuts) - TSProcessor.ALPHABET[0];
+    for (int j = 0; j < paaSize; j++) {
+      code = (code << bitsPerLetter) | zeroLetter;
+    }
+    this.flatCode = code;
+
+    // the segments of TSProcessor.paa, the same weights applied to the same points
+    this.ratio = (double) windowSize / paaSize;
+    this.segFrom = new int[paaSize];
+    this.segLast = new int[paaSize];
+    this.fromCorrection = new double[paaSize];
+    this.lastCorrection = new double[paaSize];
+    for (int j = 0; j < paaSize; j++) {
+      double segStart = j * ratio;
+      double segEnd = (j + 1) * ratio;
+      double left = Math.ceil(segStart) - segStart;
+      double right = segEnd - Math.floor(segEnd);
+      int from = (int) Math.floor(segStart);
+      int to = (int) Math.ceil(segEnd);
+      if (to > windowSize) {
+        to = windowSize;
+        right = 0D;
+      }
+      double fromWeight = (left > 0D) ? left : 1D;
+      double lastWeight = (right > 0D) ? right : 1D;
+      segFrom[j] = from;
+      segLast[j] = to - 1;
+      if (from == to - 1) {
+        fromCorrection[j] = fromWeight * lastWeight - 1D;
+      }
+      else {
+        fromCorrection[j] = fromWeight - 1D;
+        lastCorrection[j] = lastWeight - 1D;
+      }
+    }
+  }
+
+  /**
+   * Checks whether the words fit a long.
+   *
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @return true if a word of the PAA size letters can be packed.
+   */
+  public static boolean fits(int paaSize, int alphabetSize) {
+    return alphabetSize > 1 && paaSize > 0
+        && (long) paaSize * bitsPerLetter(alphabetSize) < Long.SIZE;
+  }
+
+  /**
+   * A drop-in for {@code SAXProcessor.ts2saxViaWindow} and {@code ParallelSAXImplementation
+   * .process}, which falls back to the former when the words do not fit a long.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @return the SAX records.
+   * @throws SAXException if error occurs.
+   */
+  public static SAXRecords ts2saxViaWindow(double[] series, int windowSize, int paaSize,
+      int alphabetSize, NumerosityReductionStrategy nrStrategy, double nThreshold)
+      throws SAXException {
+    if (!fits(paaSize, alphabetSize)) {
+      return new SAXProcessor().ts2saxViaWindow(series, windowSize, paaSize,
+          new NormalAlphabet().getCuts(alphabetSize), nrStrategy, nThreshold);
+    }
+    return new SlidingSAXDiscretizer(windowSize, paaSize, alphabetSize, nrStrategy, nThreshold)
+        .discretize(series).toSAXRecords();
+  }
+
+  /**
+   * Discretizes the series.
+   *
+   * @param series the timeseries.
+   * @return the packed words.
+   * @throws SAXException if the window is longer than the series.
+   */
+  public PackedSAXWords discretize(double[] series) throws SAXException {
+    if (windowSize > series.length) {
+      throw new SAXException("Unable to saxify via window, window size is greater than the "
+          + "timeseries length...");
+    }
+    int n = series.length;
+    int count = n - windowSize + 1;
+
+    double offset = 0D;
+    for (double v : series) {
+      offset += v;
+    }
+    offset = offset / n;
+
+    // compensated prefix sums, their error does not grow with the series length
+    double[] deviations = new double[n];
+    double[] sums = new double[n + 1];
+    double[] squares = new double[n + 1];
+    double sum = 0D;
+    double sumCompensation = 0D;
+    double square = 0D;
+    double squareCompensation = 0D;
+    double maxAbs = 0D;
+    double maxAbsSum = 0D;
+    double absSum = 0D;
+    for (int i = 0; i < n; i++) {
+      double d = series[i] - offset;
+      deviations[i] = d;
+      double t = sum + d;
+      sumCompensation += (Math.abs(sum) >= Math.abs(d)) ? (sum - t) + d : (d - t) + sum;
+      sum = t;
+      sums[i + 1] = sum + sumCompensation;
+      double dd = d * d;
+      t = square + dd;
+      squareCompensation += (square >= dd) ? (square - t) + dd : (dd - t) + square;
+      square = t;
+      squares[i + 1] = square + squareCompensation;
+      maxAbs = Math.max(maxAbs, Math.abs(series[i]));
+      maxAbsSum = Math.max(maxAbsSum, Math.abs(sums[i + 1]));
+      absSum += Math.abs(d);
+    }
+
+    // the bounds of the differences between the window sums off the prefix sums and the jmotif
+    // sequential ones: the prefix sums round once each plus a second order term, the shifted
+    // values and the jmotif sums round once per window point
+    double w = windowSize;
+    double maxDeviation = maxAbs + Math.abs(offset);
+    double sumErr = SAFETY * (2D * Math.ulp(maxAbsSum) + n * Math.ulp(Math.ulp(absSum))
+        + w * Math.ulp(maxDeviation) + w * Math.ulp(w * maxAbs));
+    double squaresErr = SAFETY * (2D * Math.ulp(squares[n]) + n * Math.ulp(Math.ulp(squares[n]))
+        + w * Math.ulp(w * maxDeviation * maxDeviation));
+    // the jmotif variance cancels two sums of about the window size squared times the values
+    double cancellationErr = SAFETY * Math.ulp(w * w * maxDeviation * maxDeviation) / (w * (w - 1));
+    // the jmotif PAA rounds once per segment point, with the values below the window size
+    double paaErr = SAFETY * (ratio + 2D) * Math.ulp(w * (ratio + 2D));
+
+    long[] codes = new long[count];
+    int[] positions = new int[count];
+    int size = 0;
+    int exactWindows = 0;
+    long previous = 0L;
+    long mask = (1L << bitsPerLetter) - 1;
+
+    for (int i = 0; i < count; i++) {
+
+      double windowSum = sums[i + windowSize] - sums[i];
+      double mean = windowSum / w;
+      double var = (squares[i + windowSize] - squares[i] - windowSum * mean) / (w - 1D);
+      double varErr = (squaresErr + 2D * Math.abs(mean) * sumErr) / (w - 1D) + cancellationErr;
+      double sd = Math.sqrt(Math.max(0D, var));
+      double sdErr = Math.min(Math.sqrt(varErr), varErr / sd);
+
+      long code = 0L;
+      if (sd - sdErr > nThreshold) {
+        for (int j = 0; j < paaSize; j++) {
+          int from = i + segFrom[j];
+          int last = i + segLast[j];
+          double segment = sums[last + 1] - sums[from] + fromCorrection[j] * deviations[from]
+              + lastCorrection[j] * deviations[last];
+          double z = (segment / ratio - mean) / sd;
+          double zErr = (sumErr / ratio + sumErr / w + Math.abs(z) * sdErr) / sd + paaErr;
+          int letter = letter(z);
+          double gap = Math.min((letter > 0) ? z - cuts[letter - 1] : Double.MAX_VALUE,
+              (letter < cuts.length) ? cuts[letter] - z : Double.MAX_VALUE);
+          if (!(gap > zErr)) {
+            code = exactCode(series, i);
+            exactWindows++;
+            break;
+          }
+          code = (code << bitsPerLetter) | letter;
+        }
+      }
+      else if (sd + sdErr < nThreshold) {
+        code = flatCode;
+      }
+      else {
+        code = exactCode(series, i);
+        exactWindows++;
+      }
+
+      if (size > 0) {
+        if (NumerosityReductionStrategy.EXACT.equals(nrStrategy) && code == previous) {
+          continue;
+        }
+        else if (NumerosityReductionStrategy.MINDIST.equals(nrStrategy)
+            && minDistIsZero(previous, code, mask)) {
+          continue;
+        }
+      }
+      previous = code;
+      codes[size] = code;
+      positions[size] = i;
+      size++;
+    }
+
+    return new PackedSAXWords(Arrays.copyOf(codes, size), Arrays.copyOf(positions, size),
+        paaSize, alphabetSize, bitsPerLetter, exactWindows);
+  }
+
+  /**
+   * The {@code TSProcessor.num2char} letter: the number of cuts at or below the value.
+   */
+  private int letter(double value) {
+    int lo = 0;
+    int hi = cuts.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (cuts[mid] <= value) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Discretizes the window exactly as {@code SAXProcessor.ts2saxViaWindow} does.
+   */
+  private long exactCode(double[] series, int start) throws SAXException {
+    double[] window = tp.znorm(Arrays.copyOfRange(series, start, start + windowSize), nThreshold);
+    double[] paa = tp.paa(window, paaSize);
+    long code = 0L;
+    for (int j = 0; j < paaSize; j++) {
+      code = (code << bitsPerLetter) | (tp.num2char(paa[j], cuts) - TSProcessor.ALPHABET[0]);
+    }
+    return code;
+  }
+
+  /**
+   * The {@code SAXProcessor.checkMinDistIsZero} on codes: no letter differs by more than one.
+   */
+  private boolean minDistIsZero(long a, long b, long mask) {
+    for (int j = 0; j < paaSize; j++) {
+      long diff = (a & mask) - (b & mask);
+      if (diff > 1 || diff < -1) {
+        return false;
+      }
+      a >>>= bitsPerLetter;
+      b >>>= bitsPerLetter;
+    }
+    return true;
+  }
+
+  private static int bitsPerLetter(int alphabetSize) {
+    return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(alphabetSize - 1));
+  }
+}
@@ -0,0 +1,249 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import net.seninp.gi.logic.GIUtils;
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.gi.repair.RePairFactory;
+import net.seninp.gi.repair.RePairGrammar;
+import net.seninp.gi.sequitur.SequiturFactory;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.SAXException;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The grammar inference over a {@link SAXTokens} stream. {@code SequiturFactory.runSequitur} takes
+ * the string of all the words, one per window, and tokenizes it back into the terminals; here the
+ * tokens are fed straight into a {@link SequiturEngine}, the distinct words shared, and the rule
+ * intervals are mapped through the positions array instead of the SAX records index. The rules
+ * are the very ones of {@code SequiturFactory}, but no jmotif global state is involved, so the
+ * inferences are thread-safe. The RePair grammars are inferred by a {@link RePairEngine} the same
+ * way.
+ *
+ * @author psenin
+ *
+ */
+public final class TokenGrammarFactory {
+
+  private TokenGrammarFactory() {
+    // utility
+  }
+
+  /**
+   * Discretizes the series and infers the Sequitur grammar, the token stream counterpart of
+   * {@code SequiturFactory.series2SequiturRules}.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @return the grammar rules with their intervals.
+   * @throws SAXException if error occurs.
+   */
+  public static GrammarRules series2SequiturRules(double[] series, int windowSize, int paaSize,
+      int alphabetSize, NumerosityReductionStrategy nrStrategy, double nThreshold)
+      throws SAXException {
+    if (!SlidingSAXDiscretizer.fits(paaSize, alphabetSize)) {
+      SAXRecords saxData = new SAXProcessor().ts2saxViaWindow(series, windowSize, paaSize,
+          new NormalAlphabet().getCuts(alphabetSize), nrStrategy, nThreshold);
+      GrammarRules rules = runSequitur(saxData);
+      SequiturFactory.updateRuleIntervals(rules, saxData, true, series, windowSize, paaSize);
+      return rules;
+    }
+    SAXTokens tokens = new SlidingSAXDiscretizer(windowSize, paaSize, alphabetSize, nrStrategy,
+        nThreshold).discretize(series).toTokens();
+    GrammarRules rules = runSequitur(tokens);
+    updateRuleIntervals(rules, tokens, series, windowSize);
+    return rules;
+  }
+
+  /**
+   * Runs Sequitur over the token stream, on an engine of its own, so inferences may run
+   * concurrently.
+   *
+   * @param tokens the token stream.
+   * @return the grammar rules, without the intervals.
+   */
+  public static GrammarRules runSequitur(SAXTokens tokens) {
+    SequiturEngine engine = new SequiturEngine(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      engine.add(tokens.getToken(i));
+    }
+    return engine.toGrammarRules(tokens::getWord);
+  }
+
+  /**
+   * Runs Sequitur over the SAX records words in the series order, the counterpart of
+   * {@code SequiturFactory.runSequitur(saxData.getSAXString(" "))} for the words which do not
+   * pack into a token stream, or the chunked discretization. The intervals are set by
+   * {@code SequiturFactory.updateRuleIntervals}.
+   *
+   * @param saxData the SAX records.
+   * @return the grammar rules, without the intervals.
+   */
+  public static GrammarRules runSequitur(SAXRecords saxData) {
+    ArrayList<Integer> indices = saxData.getAllIndices();
+    HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    ArrayList<String> words = new ArrayList<String>();
+    SequiturEngine engine = new SequiturEngine(indices.size());
+    for (Integer idx : indices) {
+      String word = String.valueOf(saxData.getByIndex(idx).getPayload());
+      Integer id = ids.get(word);
+      if (null == id) {
+        id = words.size();
+        ids.put(word, id);
+        words.add(word);
+      }
+      engine.add(id);
+    }
+    return engine.toGrammarRules(words::get);
+  }
+
+  /**
+   * Discretizes the series and infers the RePair grammar, the token stream counterpart of
+   * {@code RePairFactory.buildGrammar} over the {@code ts2saxViaWindow} records followed by
+   * {@code expandRules}, {@code buildIntervals} and {@code toGrammarRulesData}.
+   *
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   * @param paaSize the PAA size.
+   * @param alphabetSize the alphabet size.
+   * @param nrStrategy the numerosity reduction strategy.
+   * @param nThreshold the z-normalization threshold.
+   * @return the grammar rules with their intervals.
+   * @throws SAXException if error occurs.
+   */
+  public static GrammarRules series2RePairRules(double[] series, int windowSize, int paaSize,
+      int alphabetSize, NumerosityReductionStrategy nrStrategy, double nThreshold)
+      throws SAXException {
+    GrammarRules rules;
+    if (SlidingSAXDiscretizer.fits(paaSize, alphabetSize)) {
+      SAXTokens tokens = new SlidingSAXDiscretizer(windowSize, paaSize, alphabetSize, nrStrategy,
+          nThreshold).discretize(series).toTokens();
+      rules = runRePair(tokens, windowSize);
+    }
+    else {
+      SAXRecords saxData = new SAXProcessor().ts2saxViaWindow(series, windowSize, paaSize,
+          new NormalAlphabet().getCuts(alphabetSize), nrStrategy, nThreshold);
+      rules = runRePair(saxData, windowSize);
+    }
+    if (expandsAsRePairGrammar(rules)) {
+      return rules;
+    }
+    SAXRecords saxData = SlidingSAXDiscretizer.ts2saxViaWindow(series, windowSize, paaSize,
+        alphabetSize, nrStrategy, nThreshold);
+    RePairGrammar rePairGrammar = RePairFactory.buildGrammar(saxData);
+    rePairGrammar.expandRules();
+    rePairGrammar.buildIntervals(saxData, series, windowSize);
+    return rePairGrammar.toGrammarRulesData();
+  }
+
+  /**
+   * Runs RePair over the token stream, the rule intervals are set along.
+   *
+   * @param tokens the token stream.
+   * @param windowSize the sliding window size.
+   * @return the grammar rules with their intervals.
+   */
+  public static GrammarRules runRePair(SAXTokens tokens, int windowSize) {
+    return RePairEngine.buildGrammar(tokens.getTokens(), tokens::getWord, tokens.getPositions(),
+        windowSize);
+  }
+
+  /**
+   * Runs RePair over the SAX records words in the series order, for the words which do not pack
+   * into a token stream.
+   *
+   * @param saxData the SAX records.
+   * @param windowSize the sliding window size.
+   * @return the grammar rules with their intervals.
+   */
+  public static GrammarRules runRePair(SAXRecords saxData, int windowSize) {
+    ArrayList<Integer> indices = saxData.getAllIndices();
+    HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    ArrayList<String> words = new ArrayList<String>();
+    int[] tokens = new int[indices.size()];
+    int[] positions = new int[indices.size()];
+    for (int i = 0; i < tokens.length; i++) {
+      positions[i] = indices.get(i);
+      String word = String.valueOf(saxData.getByIndex(positions[i]).getPayload());
+      Integer id = ids.get(word);
+      if (null == id) {
+        id = words.size();
+        ids.put(word, id);
+        words.add(word);
+      }
+      tokens[i] = id;
+    }
+    return RePairEngine.buildGrammar(tokens, words::get, positions, windowSize);
+  }
+
+  /**
+   * Sets the rule intervals, the {@code SequiturFactory.updateRuleIntervals} of the sliding window
+   * discretization: an occurrence spans from its first window start to the end of the window of
+   * the token which follows it, or to the series end.
+   *
+   * @param rules the grammar rules.
+   * @param tokens the token stream the grammar was inferred from.
+   * @param series the timeseries.
+   * @param windowSize the sliding window size.
+   */
+  public static void updateRuleIntervals(GrammarRules rules, SAXTokens tokens, double[] series,
+      int windowSize) {
+    int[] positions = tokens.getPositions();
+    for (GrammarRuleRecord rule : rules) {
+      int tokensNum = countSpaces(rule.getExpandedRuleString());
+      ArrayList<Integer> occurrences = rule.getOccurrences();
+      ArrayList<RuleInterval> intervals = new ArrayList<RuleInterval>(occurrences.size() + 1);
+      int[] lengths = new int[occurrences.size()];
+      for (int k = 0; k < lengths.length; k++) {
+        int occurrence = occurrences.get(k);
+        int start = positions[occurrence];
+        int end = (occurrence + tokensNum >= positions.length) ? series.length
+            : positions[occurrence + tokensNum] + windowSize - 1;
+        intervals.add(new RuleInterval(start, end));
+        lengths[k] = end - start;
+      }
+      if (0 == rule.getRuleNumber()) {
+        intervals.add(new RuleInterval(0, series.length));
+        lengths = new int[] { series.length };
+      }
+      rule.setRuleIntervals(intervals);
+      rule.setMeanLength((int) GIUtils.mean(lengths));
+      rule.setMinMaxLength(lengths);
+    }
+  }
+
+  /**
+   * {@code RePairGrammar.expandRules} substitutes the rule names in the rule strings, and resumes
+   * the names search at the offset the substituted name ended at; an expansion shorter than the
+   * number of digits makes it skip the next name, which is left in. Single letter words from the
+   * thousandth rule on do it, such grammars are left to jmotif.
+   */
+  private static boolean expandsAsRePairGrammar(GrammarRules rules) {
+    for (GrammarRuleRecord rule : rules) {
+      int number = rule.getRuleNumber();
+      if (number > 0
+          && rule.getExpandedRuleString().length() < String.valueOf(number).length()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int countSpaces(String str) {
+    int res = 0;
+    for (int i = 0; i < str.length(); i++) {
+      if (' ' == str.charAt(i)) {
+        res++;
+      }
+    }
+    return res;
+  }
+}
@@ -20,16 +20,13 @@ import net.seninp.gi.GIAlgorithm;
 import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.GrammarRules;
 import net.seninp.gi.logic.RuleInterval;
-import net.seninp.gi.repair.RePairFactory;
-import net.seninp.gi.repair.RePairGrammar;
-import net.seninp.gi.sequitur.SAXRule;
 import net.seninp.gi.sequitur.SequiturFactory;
 import net.seninp.grammarviz.logic.GrammarVizChartData;
+import net.seninp.grammarviz.logic.TokenGrammarFactory;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 import net.seninp.jmotif.sax.SAXProcessor;
 import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
 import net.seninp.jmotif.sax.datastructure.SAXRecords;
-import net.seninp.jmotif.sax.parallel.ParallelSAXImplementation;
 import net.seninp.util.StackTrace;
 
 /**
@@ -236,41 +233,30 @@ public class GrammarVizModel {
 
         if (GIAlgorithm.SEQUITUR.equals(algorithm)) {
 
-          SAXProcessor sp = new SAXProcessor();
-
-          SAXRecords saxFrequencyData = new SAXRecords();
+          GrammarRules rules;
           if (useSlidingWindow) {
-            saxFrequencyData = sp.ts2saxViaWindow(ts, windowSize, paaSize, na.getCuts(alphabetSize),
+            // the token stream pipeline, no string of all the words
+            rules = TokenGrammarFactory.series2SequiturRules(ts, windowSize, paaSize, alphabetSize,
                 numerosityReductionStrategy, normalizationThreshold);
           }
           else {
-            saxFrequencyData = sp.ts2saxByChunking(ts, paaSize, na.getCuts(alphabetSize),
-                normalizationThreshold);
-          }
+            SAXProcessor sp = new SAXProcessor();
+            SAXRecords saxFrequencyData = sp.ts2saxByChunking(ts, paaSize,
+                na.getCuts(alphabetSize), normalizationThreshold);
 
-          SAXRule sequiturGrammar = SequiturFactory
-              .runSequitur(saxFrequencyData.getSAXString(SPACE));
+            rules = TokenGrammarFactory.runSequitur(saxFrequencyData);
 
-          GrammarRules rules = sequiturGrammar.toGrammarRulesData();
-
-          SequiturFactory.updateRuleIntervals(rules, saxFrequencyData, useSlidingWindow, this.ts,
-              windowSize, paaSize);
+            SequiturFactory.updateRuleIntervals(rules, saxFrequencyData, useSlidingWindow,
+                this.ts, windowSize, paaSize);
+          }
 
           this.chartData.setGrammarRules(rules);
 
         }
         else {
 
-          ParallelSAXImplementation ps = new ParallelSAXImplementation();
-          SAXRecords parallelRes = ps.process(ts, 2, windowSize, paaSize, alphabetSize,
-              numerosityReductionStrategy, normalizationThreshold);
-
-          RePairGrammar rePairGrammar = RePairFactory.buildGrammar(parallelRes);
-
-          rePairGrammar.expandRules();
-          rePairGrammar.buildIntervals(parallelRes, ts, windowSize);
-
-          GrammarRules rules = rePairGrammar.toGrammarRulesData();
+          GrammarRules rules = TokenGrammarFactory.series2RePairRules(ts, windowSize, paaSize,
+              alphabetSize, numerosityReductionStrategy, normalizationThreshold);
 
           this.chartData.setGrammarRules(rules);
 
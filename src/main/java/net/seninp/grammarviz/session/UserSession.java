@@ -34,6 +34,7 @@ public class UserSession {
   private static final NumerosityReductionStrategy DEFAULT_NUMEROSITY_REDUCTION_STRATEGY = NumerosityReductionStrategy.EXACT;
   private static final GIAlgorithm DEFAULT_GI_ALGORITHM = GIAlgorithm.REPAIR;
   private static final CoverageCountStrategy DEFAULT_COUNT_STRATEGY = CoverageCountStrategy.COUNT;
+  private static final boolean DEFAULT_EXACT_NN_VERIFICATION = false;
 
   // discretization variables
   //
@@ -48,6 +49,7 @@ public class UserSession {
   //
   public volatile CoverageCountStrategy countStrategy;
   public volatile GIAlgorithm giAlgorithm;
+  public volatile boolean exactNNVerification;
 
   // guesser parameters
   //
@@ -83,6 +85,7 @@ public class UserSession {
     this.normalizationThreshold = DEFAULT_NORMALIZATION_THRESHOLD_VALUE;
     this.giAlgorithm = DEFAULT_GI_ALGORITHM;
     this.countStrategy = DEFAULT_COUNT_STRATEGY;
+    this.exactNNVerification = DEFAULT_EXACT_NN_VERIFICATION;
 
     // attempt to fill the rule coverage name automatically
     //
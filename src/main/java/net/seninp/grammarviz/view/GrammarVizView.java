@@ -37,6 +37,7 @@ import javax.swing.border.TitledBorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.miginfocom.swing.MigLayout;
+import net.seninp.grammarviz.anomaly.RRACancellationToken;
 import net.seninp.grammarviz.controller.GrammarVizController;
 import net.seninp.grammarviz.logic.GrammarVizChartData;
 import net.seninp.grammarviz.model.GrammarVizListener;
@@ -63,6 +64,8 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
   // private static final String COMMA = ",";
   private static final String CR = "\n";
   private static final String TITLE_FONT = "helvetica";
+  private static final String FIND_ANOMALIES_LABEL = "Find anomalies";
+  private static final String STOP_ANOMALIES_LABEL = "Stop anomaly search";
   private SimpleDateFormat logDateFormat = new SimpleDateFormat("HH:mm:ss' '");
 
   // String is the king - constants for actions
@@ -175,6 +178,8 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
   // the chart-data instance the running search is bound to; used to (a) reject only a second
   // search for the SAME chart and (b) let the newest search own the cursor/button restore
   private transient GrammarVizChartData anomalyWorkerChartData;
+  // stops the running search with the discords found so far
+  private transient RRACancellationToken anomalyCancellation;
 
   private boolean isTimeSeriesLoaded = false;
 
@@ -650,7 +655,7 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
     displayRulesLenHistogramButton.setActionCommand(DISPLAY_LENGTH_HISTOGRAM);
     displayRulesLenHistogramButton.addActionListener(this);
 
-    findAnomaliesButton = new JButton("Find anomalies");
+    findAnomaliesButton = new JButton(FIND_ANOMALIES_LABEL);
     findAnomaliesButton.setMnemonic('A');
     findAnomaliesButton.setActionCommand(DISPLAY_ANOMALIES_DATA);
     findAnomaliesButton.addActionListener(this);
@@ -731,6 +736,8 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
     }
     this.anomalyWorker = null;
     this.anomalyWorkerChartData = null;
+    this.anomalyCancellation = null;
+    this.findAnomaliesButton.setText(FIND_ANOMALIES_LABEL);
   }
 
   @Override
@@ -1046,6 +1053,15 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
     }
 
     else if (DISPLAY_ANOMALIES_DATA.equalsIgnoreCase(command)) {
+      // while a search runs for this chart the button stops it, keeping the discords found so far
+      if (null != this.anomalyWorker && !this.anomalyWorker.isDone()
+          && this.controller.getSession().chartData == this.anomalyWorkerChartData // NOPMD
+          && null != this.anomalyCancellation) {
+        this.anomalyCancellation.cancel();
+        this.findAnomaliesButton.setEnabled(false);
+        log(Level.INFO, "stopping the anomaly search, the best-so-far discords will be shown");
+        return;
+      }
       if (isWorkflowBlocked()) {
         log(Level.INFO, "workflow busy; ignoring request");
         return;
@@ -1073,14 +1089,18 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
         // applied back on the EDT in done(). Disable the trigger for the run so overlapping
         // searches cannot race on the same chart data, and only apply the results if the session
         // still points at the same chart data (a reload/re-discretize may have replaced it).
-        this.findAnomaliesButton.setEnabled(false);
+        // The trigger turns into a stop button for the run.
+        final RRACancellationToken cancellation = new RRACancellationToken();
+        final boolean exactVerification = this.controller.getSession().exactNNVerification;
+        this.findAnomaliesButton.setText(STOP_ANOMALIES_LABEL);
         frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         this.anomalyWorkerChartData = anomalyChartData;
+        this.anomalyCancellation = cancellation;
 
         this.anomalyWorker = new SwingWorker<Void, Void>() {
           @Override
           protected Void doInBackground() throws Exception {
-            anomalyChartData.findAnomalies();
+            anomalyChartData.findAnomalies(cancellation, exactVerification);
             return null;
           }
 
@@ -1109,7 +1129,9 @@ public class GrammarVizView implements GrammarVizListener, ActionListener {
               // after a newer run started does not clobber the newer run's UI state
               if (anomalyChartData == GrammarVizView.this.anomalyWorkerChartData) { // NOPMD
                 frame.setCursor(Cursor.getDefaultCursor());
+                GrammarVizView.this.findAnomaliesButton.setText(FIND_ANOMALIES_LABEL);
                 GrammarVizView.this.findAnomaliesButton.setEnabled(true);
+                GrammarVizView.this.anomalyCancellation = null;
               }
             }
           }
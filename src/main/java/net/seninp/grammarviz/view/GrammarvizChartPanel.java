@@ -66,7 +66,7 @@ import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.RuleInterval;
 import net.seninp.gi.GIAlgorithm;
 import net.seninp.gi.rulepruner.SampledPoint;
-import net.seninp.grammarviz.logic.CoverageCountStrategy;
+import net.seninp.grammarviz.logic.RuleCoverage;
 import net.seninp.grammarviz.session.UserSession;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 import net.seninp.jmotif.sax.discord.DiscordRecord;
@@ -358,51 +358,17 @@ public class GrammarvizChartPanel extends JPanel
     // init vars
     //
     int maxObservedCoverage = Integer.MIN_VALUE;
-    int minObservedCoverage = Integer.MAX_VALUE;
-    int[] coverageArray = new int[this.session.chartData.getOriginalTimeseries().length];
-
-    for (GrammarRuleRecord r : this.session.chartData.getGrammarRules()) {
-
-      if (0 == r.ruleNumber()) { // skip R0
-        continue;
-      }
-
-      ArrayList<RuleInterval> occurrences = this.session.chartData
-          .getRulePositionsByRuleNum(r.ruleNumber());
-
-      for (RuleInterval i : occurrences) {
-
-        int start = i.getStart();
-        int end = i.getEnd();
-
-        for (int j = start; j < end; j++) {
-          if (CoverageCountStrategy.COUNT.equals(this.session.countStrategy)) {
-            coverageArray[j] = coverageArray[j] + 1;
-          }
-          else if (CoverageCountStrategy.LEVEL.equals(this.session.countStrategy)) {
-            coverageArray[j] = coverageArray[j] + r.getRuleLevel();
-          }
-          else if (CoverageCountStrategy.OCCURRENCE.equals(this.session.countStrategy)) {
-            coverageArray[j] = coverageArray[j] + r.getOccurrences().size();
-          }
-          else if (CoverageCountStrategy.YIELD.equals(this.session.countStrategy)) {
-            coverageArray[j] = coverageArray[j] + r.getRuleYield();
-          }
-          else if (CoverageCountStrategy.PRODUCT.equals(this.session.countStrategy)) {
-            coverageArray[j] = coverageArray[j] + r.getRuleLevel() * r.getOccurrences().size();
-          }
-
-          if (maxObservedCoverage < coverageArray[j]) {
-            maxObservedCoverage = coverageArray[j];
-          }
-
-          if (minObservedCoverage > coverageArray[j]) {
-            minObservedCoverage = coverageArray[j];
-          }
-
-        }
+    int[] coverageArray = RuleCoverage.compute(this.session.chartData.getGrammarRules(),
+        this.session.chartData.getOriginalTimeseries().length, this.session.countStrategy,
+        Runtime.getRuntime().availableProcessors());
+    for (int c : coverageArray) {
+      if (maxObservedCoverage < c) {
+        maxObservedCoverage = c;
       }
     }
+    int minObservedCoverage = RuleCoverage.minObservedCoverage(
+        this.session.chartData.getGrammarRules(),
+        this.session.chartData.getOriginalTimeseries().length, this.session.countStrategy);
 
     // since we know the maximal coverage value, we can compute the increment for a single coverage
     // interval
@@ -439,21 +405,7 @@ public class GrammarvizChartPanel extends JPanel
         marker.setPaint(Color.BLUE);
 
         // marker.setAlpha((float) 0.05);
-        if (CoverageCountStrategy.COUNT.equals(this.session.countStrategy)) {
-          marker.setAlpha((float) covIncrement);
-        }
-        else if (CoverageCountStrategy.LEVEL.equals(this.session.countStrategy)) {
-          marker.setAlpha((float) covIncrement * r.getRuleLevel());
-        }
-        else if (CoverageCountStrategy.OCCURRENCE.equals(this.session.countStrategy)) {
-          marker.setAlpha((float) covIncrement * r.getOccurrences().size());
-        }
-        else if (CoverageCountStrategy.YIELD.equals(this.session.countStrategy)) {
-          marker.setAlpha((float) covIncrement * r.getRuleYield());
-        }
-        else if (CoverageCountStrategy.PRODUCT.equals(this.session.countStrategy)) {
-          marker.setAlpha((float) covIncrement * (r.getRuleLevel() * r.getOccurrences().size()));
-        }
+        marker.setAlpha((float) covIncrement * this.session.countStrategy.weight(r));
 
         marker.setLabelFont(new Font("SansSerif", Font.PLAIN, 12));
         marker.setLabelPaint(Color.green);
@@ -81,6 +81,9 @@ class GrammarvizOptionsDialog extends JDialog implements ActionListener {
       this.session.normalizationThreshold = this.optionPane.getNormalizationThreshold();
       logStr.append(", norm threshold: ").append(this.optionPane.getNormalizationThreshold());
 
+      this.session.exactNNVerification = this.optionPane.isExactNNVerification();
+      logStr.append(", exact NN verification: ").append(this.optionPane.isExactNNVerification());
+
       // the output file names
       this.session.grammarOutputFileName = this.optionPane.getGrammarOutputFileName();
       logStr.append(", GI output: ").append(this.optionPane.getGrammarOutputFileName());
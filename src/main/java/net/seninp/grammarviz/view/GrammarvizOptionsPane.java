@@ -6,6 +6,7 @@ import java.text.NumberFormat;
 import java.util.Locale;
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
+import javax.swing.JCheckBox;
 import javax.swing.JFormattedTextField;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -60,6 +61,13 @@ public class GrammarvizOptionsPane extends JPanel {
   private static final String SAX_NORMALIZATION_THRESHOLD_LABEL = "Normalization threshold:";
   private static final JFormattedTextField normalizationThresholdField = new JFormattedTextField(
       new NumberFormatter(NumberFormat.getNumberInstance(Locale.US)));
+  //
+  // Exact NN verification of the discords option
+  //
+  private static final String EXACT_NN_VERIFICATION_LABEL = "Verify the discords with their exact "
+      + "nearest neighbors (slower)";
+  private static final JCheckBox exactNNVerificationBox = new JCheckBox(
+      EXACT_NN_VERIFICATION_LABEL);
 
   // Input file params
   //
@@ -147,7 +155,19 @@ public class GrammarvizOptionsPane extends JPanel {
 
     optionsPanel.add(normalizationThresholdField, "wrap");
 
-    res.add(optionsPanel, "pad 0 0 0 0");
+    res.add(optionsPanel, "pad 0 0 0 0, wrap");
+
+    // the anomaly discovery options
+    //
+    JPanel anomalyPanel = new JPanel(new MigLayout("insets 0 0 0 0", "[]", "[]"));
+
+    anomalyPanel.setBorder(BorderFactory.createTitledBorder(
+        BorderFactory.createEtchedBorder(BevelBorder.LOWERED), "Anomaly Discovery Options",
+        TitledBorder.LEFT, TitledBorder.CENTER, new Font(TITLE_FONT, Font.PLAIN, 10)));
+
+    anomalyPanel.add(exactNNVerificationBox, "wrap");
+
+    res.add(anomalyPanel, "pad 0 0 0 0");
 
     return res;
   }
@@ -293,6 +313,7 @@ public class GrammarvizOptionsPane extends JPanel {
     strategyRadioButtons[userSession.countStrategy.index()].setSelected(true);
     giRadioButtons[userSession.giAlgorithm.toAlgIndex()].setSelected(true);
     normalizationThresholdField.setText(userSession.normalizationThreshold.toString());
+    exactNNVerificationBox.setSelected(userSession.exactNNVerification);
     //
     // the output parameters
     outputRuleCoverageFilename.setText(userSession.ruleDensityOutputFileName);
@@ -315,6 +336,15 @@ public class GrammarvizOptionsPane extends JPanel {
     return Double.valueOf(normalizationThresholdField.getText());
   }
 
+  /**
+   * Exact NN verification of the discords getter.
+   * 
+   * @return true if the discords are to be verified with their exact nearest neighbors.
+   */
+  public boolean isExactNNVerification() {
+    return exactNNVerificationBox.isSelected();
+  }
+
   /**
    * Get the rule coverage output filename.
    * 
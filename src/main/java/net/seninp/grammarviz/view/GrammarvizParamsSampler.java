@@ -7,9 +7,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.seninp.gi.GIAlgorithm;
 import net.seninp.gi.rulepruner.ReductionSorter;
-import net.seninp.gi.rulepruner.RulePruner;
 import net.seninp.gi.rulepruner.SampledPoint;
 import net.seninp.grammarviz.GrammarSizeSorter;
+import net.seninp.grammarviz.logic.GrammarSampler;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 
 public class GrammarvizParamsSampler implements Callable<String> {
@@ -42,7 +42,7 @@ public class GrammarvizParamsSampler implements Callable<String> {
 
     this.parent.dispatchGuessEvent(GrammarvizChartPanel.SELECTION_FINISHED, sessionId);
 
-    RulePruner rp = new RulePruner(context.tsSlice);
+    GrammarSampler sampler = new GrammarSampler(context.tsSlice);
     int[] boundaries = context.boundaries;
 
     //
@@ -63,7 +63,7 @@ public class GrammarvizParamsSampler implements Callable<String> {
     // run the grid; success XOR failure always fires an event so the UI never hangs
     //
     try {
-      sampleGrid(rp, boundaries, winLimit, context.giAlgorithm, context.nrStrategy,
+      sampleGrid(sampler, boundaries, winLimit, context.giAlgorithm, context.nrStrategy,
           context.normalizationThreshold, res);
       return finishSampling(res, false);
     }
@@ -81,11 +81,12 @@ public class GrammarvizParamsSampler implements Callable<String> {
   /**
    * Pure (Swing-free, testable) grid scan: samples every valid (window, PAA, alphabet) triple
    * over the inclusive ranges in {@code boundaries}, appending each successful
-   * {@link SampledPoint} to {@code res}. A single point that fails to sample (e.g. an
-   * out-of-range alphabet throws) is logged and skipped so it does not abort the whole grid;
-   * a user interrupt aborts the scan via {@link InterruptedException}.
+   * {@link SampledPoint} to {@code res} in the grid order. The points are sampled concurrently,
+   * one per available processor. A single point that fails to sample (e.g. an out-of-range
+   * alphabet throws) is logged and skipped so it does not abort the whole grid; a user interrupt
+   * aborts the scan via {@link InterruptedException}.
    *
-   * @param rp the rule pruner bound to the (sub)series.
+   * @param sampler the grammar sampler bound to the (sub)series.
    * @param boundaries the 9-element grid: window {min,max,step}, PAA {min,max,step},
    *        alphabet {min,max,step}.
    * @param winLimit the effective window upper bound (min of the series length and the window
@@ -96,9 +97,11 @@ public class GrammarvizParamsSampler implements Callable<String> {
    * @param res the (typically empty) list the sampled points are appended to.
    * @throws InterruptedException if the current thread is interrupted during the scan.
    */
-  static void sampleGrid(RulePruner rp, int[] boundaries, int winLimit, GIAlgorithm giAlgorithm,
-      NumerosityReductionStrategy nrStrategy, double normThreshold, ArrayList<SampledPoint> res)
-      throws InterruptedException {
+  static void sampleGrid(GrammarSampler sampler, int[] boundaries, int winLimit,
+      GIAlgorithm giAlgorithm, NumerosityReductionStrategy nrStrategy, double normThreshold,
+      ArrayList<SampledPoint> res) throws InterruptedException {
+
+    ArrayList<int[]> points = new ArrayList<int[]>();
 
     // inclusive MAX bounds (<=) so the user's typed MAX is actually evaluated
     for (int windowSize = boundaries[0]; windowSize <= winLimit; windowSize += boundaries[2]) {
@@ -111,33 +114,13 @@ public class GrammarvizParamsSampler implements Callable<String> {
         }
 
         for (int alphabetSize = boundaries[6]; alphabetSize <= boundaries[7]; alphabetSize += boundaries[8]) {
-
-          if (Thread.currentThread().isInterrupted()) {
-            throw new InterruptedException("sampler interrupted by the user");
-          }
-
-          SampledPoint p = null;
-          try {
-            p = rp.sample(windowSize, paaSize, alphabetSize, giAlgorithm, nrStrategy,
-                normThreshold);
-          }
-          catch (InterruptedException e) {
-            throw e;
-          }
-          catch (Exception e) {
-            // one bad parameter point (e.g. an out-of-range alphabet) must not abort the
-            // whole grid -- skip it and keep sampling the rest
-            LOGGER.warn("skipping point [w=" + windowSize + ", p=" + paaSize + ", a=" + alphabetSize
-                + "]: " + e.getMessage());
-            continue;
-          }
-
-          if (null != p) {
-            res.add(p);
-          }
+          points.add(new int[] { windowSize, paaSize, alphabetSize });
         }
       }
     }
+
+    sampler.sample(points, giAlgorithm, nrStrategy, normThreshold,
+        Runtime.getRuntime().availableProcessors(), res);
   }
 
   /**
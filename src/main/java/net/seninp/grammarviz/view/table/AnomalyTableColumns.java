@@ -14,6 +14,7 @@ public enum AnomalyTableColumns {
   ANOMALY_POSITION("Position"),
   ANOMALY_LENGTH("Length"),
   ANOMALY_NNDISTANCE("NN Distance"),
+  ANOMALY_EXACT_NNDISTANCE("Exact NN Distance"),
   ANOMALY_RULE("Grammar Rule");
 
   private final String columnName;
@@ -1,6 +1,7 @@
 package net.seninp.grammarviz.view.table;
 
 import net.seninp.grammarviz.GrammarVizAnomaly;
+import net.seninp.grammarviz.anomaly.VerifiedDiscordRecord;
 import net.seninp.jmotif.sax.discord.DiscordRecords;
 
 /**
@@ -37,6 +38,10 @@ public class AnomalyTableModel extends GrammarvizRulesTableDataModel {
         item[nColumn++] = discords.get(rowIndex).getPosition();
         item[nColumn++] = discords.get(rowIndex).getLength();
         item[nColumn++] = Double.valueOf(discords.get(rowIndex).getNNDistance());
+        item[nColumn++] = (discords.get(rowIndex) instanceof VerifiedDiscordRecord)
+            ? Double.valueOf(
+                ((VerifiedDiscordRecord) discords.get(rowIndex)).getExactNNDistance())
+            : null;
         item[nColumn++] = GrammarVizAnomaly.formatRuleIdForDisplay(discords.get(rowIndex).getRuleId());
         rows.add(item);
       }
@@ -62,6 +67,8 @@ public class AnomalyTableModel extends GrammarvizRulesTableDataModel {
       return Integer.class;
     if (columnIndex == AnomalyTableColumns.ANOMALY_NNDISTANCE.ordinal())
       return Double.class;
+    if (columnIndex == AnomalyTableColumns.ANOMALY_EXACT_NNDISTANCE.ordinal())
+      return Double.class;
     if (columnIndex == AnomalyTableColumns.ANOMALY_RULE.ordinal())
       return String.class;
 
@@ -4,14 +4,13 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import net.seninp.gi.logic.GrammarRuleRecord;
 import net.seninp.gi.logic.GrammarRules;
-import net.seninp.gi.logic.RuleInterval;
-import net.seninp.gi.sequitur.SAXRule;
-import net.seninp.gi.sequitur.SAXTerminal;
 import net.seninp.gi.sequitur.SequiturFactory;
+import net.seninp.grammarviz.logic.RuleCoverage;
+import net.seninp.grammarviz.logic.SequiturEngine;
 import net.seninp.jmotif.sax.TSProcessor;
 import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
 import net.seninp.jmotif.sax.datastructure.SAXRecords;
@@ -57,15 +56,15 @@ public class MovieMaker {
     //
     SAXRecords saxFrequencyData = new SAXRecords();
 
-    // getting ready
+    // getting ready, the words are fed to the grammar as the dictionary ids
     //
-    SAXRule.reset();
-    SAXRule grammar = new SAXRule();
+    SequiturEngine grammar = new SequiturEngine(ts.length);
+    HashMap<String, Integer> wordIds = new HashMap<String, Integer>();
+    ArrayList<String> words = new ArrayList<String>();
     String previousString = "";
 
     // scan across the time series extract sub sequences, and convert
     // them to strings
-    int stringPosCounter = 0;
     int saveFileCounter = 0;
     for (int i = 0; i < ts.length - (WINDOW_SIZE - 1); i++) {
 
@@ -94,8 +93,13 @@ public class MovieMaker {
 
       // add a terminal to the Sequitur
       //
-      grammar.last().insertAfter(new SAXTerminal(String.valueOf(currentString), stringPosCounter));
-      grammar.last().p.check();
+      Integer wordId = wordIds.get(previousString);
+      if (null == wordId) {
+        wordId = words.size();
+        wordIds.put(previousString, wordId);
+        words.add(previousString);
+      }
+      grammar.add(wordId);
 
       // add the word to frequency data structure
       //
@@ -111,7 +115,7 @@ public class MovieMaker {
 
         // convert the grammar to a simple data structure
         //
-        GrammarRules rules = grammar.toGrammarRulesData();
+        GrammarRules rules = grammar.toGrammarRules(words::get);
 
         // and populate the coverage
         //
@@ -120,20 +124,7 @@ public class MovieMaker {
 
         // collect the coverage
         //
-        int[] coverageArray = new int[i + WINDOW_SIZE];
-        for (GrammarRuleRecord r : rules) {
-          if (0 == r.ruleNumber()) {
-            continue;
-          }
-          ArrayList<RuleInterval> arrPos = r.getRuleIntervals();
-          for (RuleInterval saxPos : arrPos) {
-            int startPos = saxPos.getStart();
-            int endPos = saxPos.getEnd();
-            for (int j = startPos; j < endPos; j++) {
-              coverageArray[j] = coverageArray[j] + 1;
-            }
-          }
-        }
+        int[] coverageArray = RuleCoverage.compute(rules, i + WINDOW_SIZE);
 
         String outFname = OUT_PREFIX + String.format("%04d", saveFileCounter) + ".csv";
         MovieUtils.saveColumn(coverageArray, outFname);
@@ -142,7 +133,6 @@ public class MovieMaker {
 
       // moving on...
       //
-      stringPosCounter++;
       saveFileCounter++;
     }
 
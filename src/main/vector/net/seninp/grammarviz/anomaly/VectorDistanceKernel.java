@@ -0,0 +1,127 @@
+package net.seninp.grammarviz.anomaly;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels over the incubating Vector API, on the preferred species of the platform. Every
+ * lane keeps its own partial sum, the lanes are added up at the end and the tail is summed in
+ * the scalar way. The early-abandoning distances look at the running sum every few vectors
+ * only, and once more at the end, so they give up a little later than the scalar ones but on
+ * the same pairs, up to the rounding.
+ *
+ * The class may only be loaded when the {@code jdk.incubator.vector} module is in the boot layer,
+ * {@link DistanceKernels} sees to that.
+ *
+ * @author psenin
+ *
+ */
+final class VectorDistanceKernel implements DistanceKernel {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  // the running sum is checked against the limit every that many vectors, a power of two
+  private static final int ABANDON_CHECK_STEPS = 4;
+
+  @Override
+  public String getName() {
+    return "vector (" + SPECIES.length() + " lanes)";
+  }
+
+  @Override
+  public double mean(double[] values, int from, int len) {
+    int upper = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int i = 0;
+    for (; i < upper; i += SPECIES.length()) {
+      acc = acc.add(DoubleVector.fromArray(SPECIES, values, from + i));
+    }
+    double sum = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      sum += values[from + i];
+    }
+    return sum / len;
+  }
+
+  @Override
+  public double stDev(double[] values, int from, int len) {
+    int upper = SPECIES.loopBound(len);
+    DoubleVector sums = DoubleVector.zero(SPECIES);
+    DoubleVector squares = DoubleVector.zero(SPECIES);
+    int i = 0;
+    for (; i < upper; i += SPECIES.length()) {
+      DoubleVector v = DoubleVector.fromArray(SPECIES, values, from + i);
+      sums = sums.add(v);
+      squares = v.fma(v, squares);
+    }
+    double sum = sums.reduceLanes(VectorOperators.ADD);
+    double num0 = squares.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      double v = values[from + i];
+      num0 += v * v;
+      sum += v;
+    }
+    double n = len;
+    return Math.sqrt((n * num0 - sum * sum) / (n * n));
+  }
+
+  @Override
+  public void znormInto(double[] values, int from, int len, double mean, double sd,
+      double[] out) {
+    int upper = SPECIES.loopBound(len);
+    int i = 0;
+    for (; i < upper; i += SPECIES.length()) {
+      DoubleVector.fromArray(SPECIES, values, from + i).sub(mean).div(sd).intoArray(out, i);
+    }
+    for (; i < len; i++) {
+      out[i] = (values[from + i] - mean) / sd;
+    }
+  }
+
+  @Override
+  public double squaredDistance(double[] a, int aStart, double[] b, int bStart, int len,
+      double limit) {
+    int upper = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int i = 0;
+    for (int step = 1; i < upper; i += SPECIES.length(), step++) {
+      DoubleVector d = DoubleVector.fromArray(SPECIES, b, bStart + i)
+          .sub(DoubleVector.fromArray(SPECIES, a, aStart + i));
+      acc = d.fma(d, acc);
+      if (0 == (step & (ABANDON_CHECK_STEPS - 1))
+          && acc.reduceLanes(VectorOperators.ADD) > limit) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    double sum = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      double d = b[bStart + i] - a[aStart + i];
+      sum += d * d;
+    }
+    return (sum > limit) ? Double.POSITIVE_INFINITY : sum;
+  }
+
+  @Override
+  public double squaredZnormDistance(double[] a, int aStart, double aMean, double aSd,
+      double[] b, int bStart, double bMean, double bSd, int len, double limit) {
+    int upper = SPECIES.loopBound(len);
+    DoubleVector acc = DoubleVector.zero(SPECIES);
+    int i = 0;
+    for (int step = 1; i < upper; i += SPECIES.length(), step++) {
+      DoubleVector d = DoubleVector.fromArray(SPECIES, b, bStart + i).sub(bMean).div(bSd)
+          .sub(DoubleVector.fromArray(SPECIES, a, aStart + i).sub(aMean).div(aSd));
+      acc = d.fma(d, acc);
+      if (0 == (step & (ABANDON_CHECK_STEPS - 1))
+          && acc.reduceLanes(VectorOperators.ADD) > limit) {
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    double sum = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      double d = (b[bStart + i] - bMean) / bSd - (a[aStart + i] - aMean) / aSd;
+      sum += d * d;
+    }
+    return (sum > limit) ? Double.POSITIVE_INFINITY : sum;
+  }
+}
@@ -0,0 +1,139 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+
+/**
+ * Bit-array visit registry: range semantics, out-of-range positions, sparse clearing, zero
+ * steady-state allocations, and the {@code HashSet} compatibility overload of the RRA search.
+ */
+public class TestBitVisitRegistry {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testRangeMarkingMatchesPointMarking() {
+    BitVisitRegistry registry = new BitVisitRegistry(300);
+    registry.markVisited(3, 130);
+    registry.markVisited(250);
+    for (int i = 0; i < 300; i++) {
+      assertEquals("position " + i, (i >= 3 && i < 130) || i == 250, registry.isVisited(i));
+    }
+    assertEquals(128, registry.cardinality());
+    assertFalse(registry.isVisited(-1));
+    assertFalse(registry.isVisited(300));
+
+    registry.markVisited(64, 128);
+    registry.markVisited(10, 10);
+    assertEquals(128, registry.cardinality());
+  }
+
+  @Test
+  public void testOutOfRangePositionsAreIgnored() {
+    // the last word has room past the size, which must stay clear
+    BitVisitRegistry registry = new BitVisitRegistry(100);
+    registry.markVisited(100);
+    registry.markVisited(127);
+    registry.markVisited(-1);
+    registry.markVisited(1000);
+    assertEquals(0, registry.cardinality());
+
+    registry.markVisited(-5, 3);
+    registry.markVisited(98, 200);
+    registry.markVisited(150, 300);
+    assertEquals(5, registry.cardinality());
+    for (int i = 0; i < 100; i++) {
+      assertEquals("position " + i, i < 3 || i >= 98, registry.isVisited(i));
+    }
+
+    registry.clear();
+    registry.markVisited(99);
+    assertEquals(1, registry.cardinality());
+  }
+
+  @Test
+  public void testClearResetsEveryMarkedWord() {
+    BitVisitRegistry registry = new BitVisitRegistry(1000);
+    registry.markVisited(0, 1000);
+    registry.clear();
+    assertEquals(0, registry.cardinality());
+    registry.markVisited(999);
+    registry.markVisited(512, 520);
+    registry.clear();
+    for (int i = 0; i < 1000; i++) {
+      assertFalse(registry.isVisited(i));
+    }
+  }
+
+  @Test
+  public void testSteadyStateIsAllocationFree() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+
+    BitVisitRegistry registry = new BitVisitRegistry(1_000_000);
+    int visited = exerciseRegistry(registry);
+
+    long before = sunBean.getCurrentThreadAllocatedBytes();
+    visited += exerciseRegistry(registry);
+    long allocated = sunBean.getCurrentThreadAllocatedBytes() - before;
+
+    assertTrue(visited > 0);
+    // a boxed HashSet would allocate an Integer and a map node for each of the ~10^7 marks
+    assertTrue("registry allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  @Test
+  public void testHashSetOverloadMatchesBitRegistry() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 1600);
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 120, 5, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 5);
+
+    HashSet<Integer> boxed = new HashSet<Integer>();
+    BitVisitRegistry bits = new BitVisitRegistry(series.length);
+    for (int i = 400; i < 640; i++) {
+      boxed.add(i);
+    }
+    bits.markVisited(400, 640);
+
+    DiscordRecord viaHashSet = RRAImplementation.findBestDiscordForIntervals(series, intervals,
+        boxed, Z, new Random(42L));
+    DiscordRecord viaBits = RRAImplementation.findBestDiscordForIntervals(series, intervals, bits,
+        Z, new Random(42L), 1);
+
+    assertEquals(viaHashSet.getPosition(), viaBits.getPosition());
+    assertEquals(viaHashSet.getLength(), viaBits.getLength());
+    assertEquals(viaHashSet.getNNDistance(), viaBits.getNNDistance(), 0D);
+    assertFalse(viaBits.getPosition() >= 400 && viaBits.getPosition() < 640);
+  }
+
+  private static int exerciseRegistry(BitVisitRegistry registry) {
+    int visited = 0;
+    for (int start = 0; start + 300 < registry.size(); start += 997) {
+      registry.clear();
+      registry.markVisited(Math.max(0, start - 150), start + 300);
+      registry.markVisited((start * 31) % registry.size());
+      if (registry.isVisited(start)) {
+        visited++;
+      }
+    }
+    return visited;
+  }
+}
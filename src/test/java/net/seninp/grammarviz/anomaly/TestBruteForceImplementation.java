@@ -0,0 +1,57 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import net.seninp.jmotif.sax.discord.BruteForceDiscordImplementation;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+import net.seninp.jmotif.sax.registry.LargeWindowAlgorithm;
+
+/**
+ * The in-project brute-force discords against the jmotif implementation, bit for bit.
+ */
+public class TestBruteForceImplementation {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testEcgMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    assertMatchesJmotif(series, 100, 3, true);
+  }
+
+  @Test
+  public void testPowerDemandMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 2500);
+    assertMatchesJmotif(series, 120, 2, true);
+  }
+
+  @Test
+  public void testFlatStretchMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 1200);
+    for (int i = 500; i < 620; i++) {
+      series[i] = 1D;
+    }
+    // the windows next to the flat stretch tie and jmotif breaks ties at random, which moves the
+    // exclusion zone of the discord and thereby the following ones
+    assertMatchesJmotif(series, 60, 1, false);
+  }
+
+  private static void assertMatchesJmotif(double[] series, int window, int discordsNum,
+      boolean samePositions) throws Exception {
+    DiscordRecords expected = BruteForceDiscordImplementation.series2BruteForceDiscords(series,
+        window, discordsNum, new LargeWindowAlgorithm(), Z);
+    for (int threads : new int[] { 1, 4 }) {
+      DiscordRecords actual = BruteForceImplementation.series2BruteForceDiscords(series, window,
+          discordsNum, Z, threads);
+      assertEquals(expected.getSize(), actual.getSize());
+      for (int i = 0; i < expected.getSize(); i++) {
+        if (samePositions) {
+          assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+        }
+        assertEquals(expected.get(i).getNNDistance(), actual.get(i).getNNDistance(), 0D);
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The SIMD kernels against the scalar ones on every bundled dataset; skipped when the build or
+ * the JVM runs without the Vector API.
+ */
+public class TestDistanceKernels {
+
+  private static final double TOLERANCE = 1.0E-9;
+
+  private static final int MAX_LENGTH = 20000;
+
+  @Test
+  public void testSelection() {
+    assertSame(DistanceKernels.scalar(), DistanceKernels.select("scalar"));
+    DistanceKernel vector = DistanceKernels.select("vector");
+    assertSame((null == DistanceKernels.vector()) ? DistanceKernels.scalar()
+        : DistanceKernels.vector(), vector);
+    assertSame(DistanceKernels.select("auto"), vector);
+    assertSame(DistanceKernels.scalar(), DistanceKernels.select("simd"));
+    if (null == System.getProperty(DistanceKernels.KERNEL_PROPERTY)) {
+      // the SIMD kernel is opt-in, the module being loaded is not enough
+      assertSame(DistanceKernels.scalar(), DistanceKernels.get());
+    }
+  }
+
+  @Test
+  public void testVectorMatchesScalar() throws Exception {
+    DistanceKernel vector = DistanceKernels.vector();
+    Assume.assumeTrue(null != vector);
+    DistanceKernel scalar = DistanceKernels.scalar();
+
+    List<double[]> datasets = loadDatasets();
+    assertTrue(datasets.size() > 10);
+    Random rnd = new Random(42L);
+    for (double[] series : datasets) {
+      for (int k = 0; k < 200; k++) {
+        int len = 2 + rnd.nextInt(Math.min(400, series.length / 2));
+        int a = rnd.nextInt(series.length - len + 1);
+        int b = rnd.nextInt(series.length - len + 1);
+        assertKernelsAgree(scalar, vector, series, a, b, len, rnd);
+      }
+    }
+  }
+
+  private static void assertKernelsAgree(DistanceKernel scalar, DistanceKernel vector,
+      double[] series, int a, int b, int len, Random rnd) {
+    double magnitude = 0D;
+    for (int i = 0; i < len; i++) {
+      magnitude = Math.max(magnitude, Math.max(Math.abs(series[a + i]), Math.abs(series[b + i])));
+    }
+    double scale = Math.max(1D, magnitude);
+
+    double aMean = scalar.mean(series, a, len);
+    double bMean = scalar.mean(series, b, len);
+    assertEquals(aMean, vector.mean(series, a, len), TOLERANCE * scale);
+    double aSd = scalar.stDev(series, a, len);
+    double bSd = scalar.stDev(series, b, len);
+    // the standard deviation comes off a difference of sums, its error scales with the values,
+    // and on a flat window the rounding may leave a negative variance on either side
+    double actualSd = vector.stDev(series, a, len);
+    if (Double.isNaN(aSd) || Double.isNaN(actualSd)) {
+      assertTrue(Double.isNaN(aSd) || aSd <= Math.sqrt(TOLERANCE) * scale);
+      assertTrue(Double.isNaN(actualSd) || actualSd <= Math.sqrt(TOLERANCE) * scale);
+    }
+    else {
+      assertEquals(aSd, actualSd, Math.sqrt(TOLERANCE) * scale);
+    }
+
+    double[] expected = new double[len];
+    double[] actual = new double[len];
+    if (aSd > 0D) {
+      scalar.znormInto(series, a, len, aMean, aSd, expected);
+      vector.znormInto(series, a, len, aMean, aSd, actual);
+      for (int i = 0; i < len; i++) {
+        assertEquals(expected[i], actual[i], 0D);
+      }
+    }
+
+    double inf = Double.POSITIVE_INFINITY;
+    double full = scalar.squaredDistance(series, a, series, b, len, inf);
+    assertEquals(full, vector.squaredDistance(series, a, series, b, len, inf),
+        TOLERANCE * Math.max(1D, full));
+    double limit = full * rnd.nextDouble() * 2D;
+    assertAbandonAgrees(full, vector.squaredDistance(series, a, series, b, len, limit), limit);
+
+    if (aSd > 0D && bSd > 0D) {
+      double znorm = scalar.squaredZnormDistance(series, a, aMean, aSd, series, b, bMean, bSd,
+          len, inf);
+      assertEquals(znorm, vector.squaredZnormDistance(series, a, aMean, aSd, series, b, bMean,
+          bSd, len, inf), TOLERANCE * Math.max(1D, znorm));
+      limit = znorm * rnd.nextDouble() * 2D;
+      assertAbandonAgrees(znorm, vector.squaredZnormDistance(series, a, aMean, aSd, series, b,
+          bMean, bSd, len, limit), limit);
+    }
+  }
+
+  /**
+   * The limit is drawn at random, only the sides clear of the rounding are checked.
+   */
+  private static void assertAbandonAgrees(double full, double actual, double limit) {
+    if (limit < full * (1D - TOLERANCE)) {
+      assertEquals(Double.POSITIVE_INFINITY, actual, 0D);
+    }
+    else if (limit > full * (1D + TOLERANCE)) {
+      assertEquals(full, actual, TOLERANCE * Math.max(1D, full));
+    }
+  }
+
+  private static List<double[]> loadDatasets() {
+    List<double[]> res = new ArrayList<double[]>();
+    for (String dir : new String[] { "data", "src/resources/test-data" }) {
+      File[] files = new File(dir).listFiles();
+      if (null == files) {
+        continue;
+      }
+      Arrays.sort(files);
+      for (File file : files) {
+        if (!file.isFile()
+            || !(file.getName().endsWith(".txt") || file.getName().endsWith(".csv"))) {
+          continue;
+        }
+        try {
+          double[] series = TSProcessor.readFileColumn(file.getPath(), 0, MAX_LENGTH);
+          if (series.length >= 100) {
+            res.add(series);
+          }
+        }
+        catch (Exception e) {
+          // not a numeric column, not a dataset
+        }
+      }
+    }
+    return res;
+  }
+}
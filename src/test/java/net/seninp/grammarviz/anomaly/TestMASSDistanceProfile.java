@@ -0,0 +1,107 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.jmotif.distance.EuclideanDistance;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The FFT distance profile against the brute-force scan of the distances export, value for value.
+ */
+public class TestMASSDistanceProfile {
+
+  private static final TSProcessor TP = new TSProcessor();
+  private static final EuclideanDistance ED = new EuclideanDistance();
+
+  @Test
+  public void testEcgMatchesBruteForce() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    assertMatchesBruteForce(series, new Random(42L), 60);
+  }
+
+  @Test
+  public void testOffsetRandomWalkMatchesBruteForce() throws Exception {
+    Random rnd = new Random(7L);
+    double[] series = new double[3000];
+    double v = 1.0E6;
+    for (int i = 0; i < series.length; i++) {
+      v += rnd.nextGaussian();
+      series[i] = v;
+    }
+    assertMatchesBruteForce(series, rnd, 40);
+  }
+
+  @Test
+  public void testRepeatedPatternAndEdges() throws Exception {
+    double[] series = new double[500];
+    for (int i = 0; i < series.length; i++) {
+      series[i] = (i % 50 < 25) ? 1D : -1D;
+    }
+    MASSDistanceProfile profile = new MASSDistanceProfile(series);
+    assertEquals(bruteForce(series, 10, 50), profile.nearestNeighborDistance(10, 50), 0D);
+    assertEquals(0D, profile.nearestNeighborDistance(10, 50), 0D);
+    // no window starts farther than the length away
+    assertEquals(Double.MAX_VALUE, profile.nearestNeighborDistance(200, 260), 0D);
+    assertEquals(bruteForce(series, 0, 240), profile.nearestNeighborDistance(0, 240), 0D);
+    assertEquals(bruteForce(series, 499, 1), profile.nearestNeighborDistance(499, 1), 0D);
+  }
+
+  @Test
+  public void testThreadedBatchMatchesSequential() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    Random rnd = new Random(11L);
+    int count = 200;
+    int[] starts = new int[count];
+    int[] lengths = new int[count];
+    for (int i = 0; i < count; i++) {
+      lengths[i] = 2 + rnd.nextInt(400);
+      starts[i] = rnd.nextInt(series.length - lengths[i] + 1);
+    }
+    double[] sequential = new MASSDistanceProfile(series).nearestNeighborDistances(starts,
+        lengths);
+    double[] threaded = new MASSDistanceProfile(series).nearestNeighborDistances(starts, lengths,
+        4);
+    for (int i = 0; i < count; i++) {
+      assertEquals("window " + starts[i] + ", " + lengths[i], sequential[i], threaded[i], 0D);
+    }
+  }
+
+  private static void assertMatchesBruteForce(double[] series, Random rnd, int count)
+      throws Exception {
+    int[] starts = new int[count];
+    int[] lengths = new int[count];
+    for (int i = 0; i < count; i++) {
+      lengths[i] = 2 + rnd.nextInt(300);
+      starts[i] = rnd.nextInt(series.length - lengths[i] + 1);
+    }
+    double[] batch = new MASSDistanceProfile(series).nearestNeighborDistances(starts, lengths);
+    MASSDistanceProfile single = new MASSDistanceProfile(series);
+    for (int i = 0; i < count; i++) {
+      double expected = bruteForce(series, starts[i], lengths[i]);
+      assertEquals("window " + starts[i] + ", " + lengths[i], expected, batch[i], 0D);
+      assertEquals(expected, single.nearestNeighborDistance(starts[i], lengths[i]), 0D);
+    }
+  }
+
+  /**
+   * The loop of the distances export.
+   */
+  private static double bruteForce(double[] ts, int ruleStart, int window) throws Exception {
+    double[] cw = TP.subseriesByCopy(ts, ruleStart, ruleStart + window);
+    double cwNNDist = Double.MAX_VALUE;
+    for (int j = 0; j <= ts.length - window; j++) {
+      if (Math.abs(ruleStart - j) > window) {
+        double[] currentSubsequence = TP.subseriesByCopy(ts, j, j + window);
+        double dist = ED.distance(cw, currentSubsequence);
+        if (dist < cwNNDist) {
+          cwNNDist = dist;
+        }
+      }
+    }
+    return cwNNDist;
+  }
+}
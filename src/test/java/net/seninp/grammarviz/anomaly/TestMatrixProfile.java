@@ -0,0 +1,109 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.jmotif.distance.EuclideanDistance;
+import net.seninp.jmotif.sax.TSProcessor;
+import net.seninp.jmotif.sax.discord.BruteForceDiscordImplementation;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+import net.seninp.jmotif.sax.registry.LargeWindowAlgorithm;
+
+/**
+ * The matrix profile against the z-normalized brute-force scan and the brute-force discords.
+ */
+public class TestMatrixProfile {
+
+  private static final TSProcessor TP = new TSProcessor();
+  private static final EuclideanDistance ED = new EuclideanDistance();
+  private static final double Z = 0.01;
+  private static final double TOLERANCE = 1.0E-7;
+
+  @Test
+  public void testProfileMatchesBruteForce() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 900);
+    // a flat stretch exercises the windows below the normalization threshold
+    for (int i = 400; i < 460; i++) {
+      series[i] = 0.5;
+    }
+    int window = 40;
+    MatrixProfile profile = MatrixProfileImplementation.series2MatrixProfile(series, window, Z, 1);
+    assertEquals(series.length - window, profile.size());
+    assertTrue(profile.isExact());
+    for (int i = 0; i < profile.size(); i++) {
+      double expected = bruteForce(series, i, window);
+      assertEquals("window " + i, expected, profile.getDistance(i), TOLERANCE);
+      int match = profile.getIndex(i);
+      assertTrue(Math.abs(i - match) > window);
+      assertEquals(expected, distance(series, i, match, window), TOLERANCE);
+    }
+  }
+
+  @Test
+  public void testDiscordsMatchBruteForce() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    int window = 100;
+    DiscordRecords expected = BruteForceDiscordImplementation.series2BruteForceDiscords(series,
+        window, 3, new LargeWindowAlgorithm(), Z);
+    DiscordRecords actual = MatrixProfileImplementation.series2MatrixProfileDiscords(series,
+        window, 3, Z, 3);
+    assertEquals(expected.getSize(), actual.getSize());
+    for (int i = 0; i < expected.getSize(); i++) {
+      assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+      assertEquals(expected.get(i).getNNDistance(), actual.get(i).getNNDistance(), TOLERANCE);
+      assertEquals(window, actual.get(i).getLength());
+    }
+  }
+
+  @Test
+  public void testThreadsDoNotChangeTheProfile() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 5000);
+    MatrixProfile single = MatrixProfileImplementation.series2MatrixProfile(series, 150, Z, 1);
+    MatrixProfile threaded = MatrixProfileImplementation.series2MatrixProfile(series, 150, Z, 4);
+    for (int i = 0; i < single.size(); i++) {
+      assertEquals(single.getDistance(i), threaded.getDistance(i), 0D);
+      assertEquals(single.getIndex(i), threaded.getIndex(i));
+    }
+  }
+
+  @Test
+  public void testAnytimeProfileBoundsTheExactOne() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 5000);
+    MatrixProfile exact = MatrixProfileImplementation.series2MatrixProfile(series, 150, Z, 2);
+
+    MatrixProfile partial = MatrixProfileImplementation.series2MatrixProfileAnytime(series, 150,
+        Z, 2, 0.05, 0L, new Random(42L));
+    assertTrue(!partial.isExact() && partial.getCompleteness() > 0D);
+    for (int i = 0; i < exact.size(); i++) {
+      assertTrue(partial.getDistance(i) >= exact.getDistance(i) - TOLERANCE);
+    }
+
+    MatrixProfile full = MatrixProfileImplementation.series2MatrixProfileAnytime(series, 150, Z,
+        2, 1D, 0L, new Random(42L));
+    assertTrue(full.isExact());
+    for (int i = 0; i < exact.size(); i++) {
+      assertEquals(exact.getDistance(i), full.getDistance(i), TOLERANCE);
+    }
+    assertEquals(exact.getDiscords(3).get(0).getPosition(),
+        full.getDiscords(3).get(0).getPosition());
+  }
+
+  private static double bruteForce(double[] series, int start, int window) throws Exception {
+    double res = Double.MAX_VALUE;
+    for (int j = 0; j < series.length - window; j++) {
+      if (Math.abs(start - j) > window) {
+        res = Math.min(res, distance(series, start, j, window));
+      }
+    }
+    return res;
+  }
+
+  private static double distance(double[] series, int a, int b, int window) throws Exception {
+    return ED.distance(TP.znorm(TP.subseriesByCopy(series, a, a + window), Z),
+        TP.znorm(TP.subseriesByCopy(series, b, b + window), Z));
+  }
+}
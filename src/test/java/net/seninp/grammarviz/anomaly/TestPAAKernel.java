@@ -0,0 +1,138 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.seninp.jmotif.sax.SAXException;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The buffer-writing PAA kernel against {@code TSProcessor.paa}, and the zero steady-state
+ * allocations of the kernel and of the RRA cross-length distance, with and without the reduced
+ * interval cache.
+ */
+public class TestPAAKernel {
+
+  private static final TSProcessor TP = new TSProcessor();
+
+  @Test
+  public void testMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    PAAKernel kernel = new PAAKernel();
+    double[] out = new double[256];
+    Random rnd = new Random(42L);
+    // more length pairs than the kernel keeps tables for, so the tables get replaced too
+    for (int i = 0; i < 20000; i++) {
+      int length = 2 + rnd.nextInt(300);
+      int paaSize = 1 + rnd.nextInt(Math.min(length, 200));
+      int start = rnd.nextInt(series.length - length);
+      double[] expected = TP.paa(Arrays.copyOfRange(series, start, start + length), paaSize);
+      Arrays.fill(out, Double.NaN);
+      kernel.paa(series, start, length, paaSize, out);
+      for (int k = 0; k < paaSize; k++) {
+        assertEquals(expected[k], out[k], 1.0E-12);
+        assertEquals(Double.doubleToLongBits(expected[k]), Double.doubleToLongBits(out[k]));
+      }
+      assertEquals(Double.NaN, out[paaSize], 0D);
+    }
+  }
+
+  @Test
+  public void testSteadyStateIsAllocationFree() throws Exception {
+    com.sun.management.ThreadMXBean bean = allocationBean();
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    PAAKernel kernel = new PAAKernel();
+    double[] out = new double[256];
+    // far more length pairs than the kernel keeps tables for
+    exerciseKernel(kernel, series, out);
+
+    long before = bean.getCurrentThreadAllocatedBytes();
+    exerciseKernel(kernel, series, out);
+    long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+
+    // rebuilt tables would take five arrays per replaced length pair
+    assertTrue("kernel allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  @Test
+  public void testUncachedCrossLengthDistanceIsAllocationFree() throws Exception {
+    com.sun.management.ThreadMXBean bean = allocationBean();
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    double sum = exerciseDistance(series, stats, null);
+
+    long before = bean.getCurrentThreadAllocatedBytes();
+    sum += exerciseDistance(series, stats, null);
+    long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+
+    assertTrue(sum > 0D);
+    assertTrue("distance allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  @Test
+  public void testCachedCrossLengthDistanceIsAllocationFree() throws Exception {
+    com.sun.management.ThreadMXBean bean = allocationBean();
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    // the first pass fills the cache, the second one only hits it
+    double sum = exerciseDistance(series, stats, cache);
+
+    long before = bean.getCurrentThreadAllocatedBytes();
+    sum += exerciseDistance(series, stats, cache);
+    long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+
+    assertTrue(sum > 0D);
+    assertTrue(cache.getHits() > 0);
+    assertTrue("cached distance allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+    return sunBean;
+  }
+
+  private static void exerciseKernel(PAAKernel kernel, double[] series, double[] out)
+      throws Exception {
+    for (int length = 100; length < 140; length++) {
+      for (int paaSize = 20; paaSize < 60; paaSize++) {
+        kernel.paa(series, length, length, paaSize, out);
+      }
+    }
+  }
+
+  private static double exerciseDistance(double[] series, SeriesStatsIndex stats,
+      ReducedIntervalCache cache) throws Exception {
+    double res = 0D;
+    for (int length = 100; length < 140; length++) {
+      for (int other = 60; other < 100; other++) {
+        res += RRAImplementation.normalizedDistance(series, stats, 0, length, 500, other, 0.01,
+            Double.POSITIVE_INFINITY, cache);
+      }
+    }
+    return res;
+  }
+
+  @Test
+  public void testRejectsLongerTarget() {
+    try {
+      new PAAKernel().paa(new double[10], 0, 5, 6, new double[6]);
+      fail("expected a SAXException");
+    }
+    catch (SAXException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The pair distance memo: symmetric keys, exact distances and abandon bounds, the clock eviction
+ * within the byte budget, and unchanged discords with fewer distance calls.
+ */
+public class TestPairDistanceMemo {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testExactDistancesAndBounds() {
+    PairDistanceMemo memo = new PairDistanceMemo(1L << 20);
+
+    memo.record(3, 7, 0.5, 0.2);
+    assertEquals(0.2, memo.lookup(7, 3, 0.1), 0D);
+    assertEquals(0.2, memo.lookup(3, 7, Double.MAX_VALUE), 0D);
+
+    // an abandoned call answers the calls with the same or a lower threshold only
+    memo.record(1, 2, 0.3, Double.POSITIVE_INFINITY);
+    assertEquals(Double.POSITIVE_INFINITY, memo.lookup(2, 1, 0.3), 0D);
+    assertEquals(Double.POSITIVE_INFINITY, memo.lookup(1, 2, 0.2), 0D);
+    assertTrue(Double.isNaN(memo.lookup(1, 2, 0.4)));
+    memo.record(1, 2, 0.5, Double.POSITIVE_INFINITY);
+    assertEquals(Double.POSITIVE_INFINITY, memo.lookup(1, 2, 0.4), 0D);
+    memo.record(1, 2, Double.MAX_VALUE, 0.7);
+    assertEquals(0.7, memo.lookup(1, 2, 0.1), 0D);
+    memo.record(1, 2, 0.6, Double.POSITIVE_INFINITY);
+    assertEquals(0.7, memo.lookup(1, 2, 0.1), 0D);
+
+    // pruned pairs and unbounded abandons carry nothing
+    memo.record(4, 5, 0.5, Double.NaN);
+    memo.record(4, 6, Double.MAX_VALUE, Double.POSITIVE_INFINITY);
+    assertTrue(Double.isNaN(memo.lookup(4, 5, 0.1)));
+    assertTrue(Double.isNaN(memo.lookup(4, 6, 0.1)));
+
+    assertEquals(2, memo.size());
+    assertEquals(7, memo.getHits());
+    assertEquals(3, memo.getMisses());
+  }
+
+  @Test
+  public void testClockEvictionWithinBudget() {
+    PairDistanceMemo memo = new PairDistanceMemo(64L * 1024L);
+    memo.record(0, 1, Double.MAX_VALUE, 0.5);
+    for (int i = 0; i < 100000; i++) {
+      int a = 2 + i;
+      int b = 3 + i;
+      memo.record(a, b, Double.MAX_VALUE, i);
+      // the pair looked up all the time keeps its second chance
+      assertEquals(0.5, memo.lookup(1, 0, 0.1), 0D);
+      assertEquals(i, memo.lookup(a, b, 0.1), 0D);
+    }
+    assertTrue(memo.getEvictions() > 0);
+    assertTrue(memo.size() > 1000);
+    assertTrue(memo.getBytes() <= memo.getByteBudget());
+  }
+
+  @Test
+  public void testZeroBudgetKeepsNothing() {
+    PairDistanceMemo memo = new PairDistanceMemo(0L);
+    memo.record(3, 7, 0.5, 0.2);
+    assertTrue(Double.isNaN(memo.lookup(3, 7, 0.5)));
+    assertEquals(0, memo.size());
+    assertEquals(0, memo.getBytes());
+  }
+
+  @Test
+  public void testMemoKeepsDiscords() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 100, 4, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 4);
+    for (int threadsNum : new int[] { 1, 4 }) {
+      RRASearchResult plain = RRAImplementation.searchRRAAnomalies(series, 8, candidates, Z,
+          new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum).setPairMemoBytes(0));
+      RRASearchResult memoized = RRAImplementation.searchRRAAnomalies(series, 8, candidates, Z,
+          new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum));
+
+      DiscordRecords expected = plain.getDiscords();
+      DiscordRecords actual = memoized.getDiscords();
+      assertEquals(expected.getSize(), actual.getSize());
+      assertTrue(actual.getSize() > 1);
+      for (int i = 0; i < expected.getSize(); i++) {
+        assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+        assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+        assertEquals(expected.get(i).getRuleId(), actual.get(i).getRuleId());
+        assertEquals(expected.get(i).getNNDistance(), actual.get(i).getNNDistance(), 0D);
+      }
+
+      assertEquals(0, plain.getPairMemoLookups());
+      assertTrue(memoized.getPairMemoHits() > 0);
+      assertTrue(memoized.getPairMemoBytes() > 0);
+      assertTrue(memoized.getDistanceCalls() < plain.getDistanceCalls());
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+import net.seninp.jmotif.sax.discord.HOTSAXImplementation;
+
+/**
+ * The in-project HOTSAX discords against the jmotif implementation.
+ */
+public class TestParallelHOTSAXImplementation {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testEcgMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    assertMatchesJmotif(series, 100, 3, 3, NumerosityReductionStrategy.EXACT);
+  }
+
+  @Test
+  public void testPowerDemandMatchesJmotif() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 3000);
+    assertMatchesJmotif(series, 120, 4, 4, NumerosityReductionStrategy.NONE);
+  }
+
+  @Test
+  public void testThreadsDoNotChangeTheDiscords() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    DiscordRecords single = ParallelHOTSAXImplementation.series2Discords(series, 4, 150, 5, 4,
+        NumerosityReductionStrategy.EXACT, Z, 1);
+    DiscordRecords threaded = ParallelHOTSAXImplementation.series2Discords(series, 4, 150, 5, 4,
+        NumerosityReductionStrategy.EXACT, Z, 4);
+    assertEquals(single.getSize(), threaded.getSize());
+    for (int i = 0; i < single.getSize(); i++) {
+      assertEquals(single.get(i).getPosition(), threaded.get(i).getPosition());
+      assertEquals(single.get(i).getNNDistance(), threaded.get(i).getNNDistance(), 0D);
+      assertEquals(single.get(i).getPayload(), threaded.get(i).getPayload());
+    }
+  }
+
+  private static void assertMatchesJmotif(double[] series, int window, int paa, int alphabet,
+      NumerosityReductionStrategy strategy) throws Exception {
+    DiscordRecords expected = HOTSAXImplementation.series2Discords(series, 3, window, paa,
+        alphabet, strategy, Z);
+    for (int threads : new int[] { 1, 3 }) {
+      DiscordRecords actual = ParallelHOTSAXImplementation.series2Discords(series, 3, window, paa,
+          alphabet, strategy, Z, threads);
+      assertEquals(expected.getSize(), actual.getSize());
+      for (int i = 0; i < expected.getSize(); i++) {
+        assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+        assertEquals(expected.get(i).getNNDistance(), actual.get(i).getNNDistance(), 1.0E-10);
+        assertEquals(expected.get(i).getPayload(), actual.get(i).getPayload());
+        assertEquals(window, actual.get(i).getLength());
+      }
+    }
+  }
+}
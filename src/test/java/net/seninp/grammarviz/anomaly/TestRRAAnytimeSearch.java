@@ -0,0 +1,107 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The anytime RRA search: budgets and cancellation stop it with flagged best-so-far discords,
+ * an unbounded run is the plain search.
+ */
+public class TestRRAAnytimeSearch {
+
+  private static final double Z = 0.01;
+
+  private static double[] series;
+  private static RRACandidateStore candidates;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+            NumerosityReductionStrategy.EXACT, Z),
+        series.length, 6);
+  }
+
+  @Test
+  public void testUnboundedSearchIsComplete() throws Exception {
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(series, 4, candidates, Z,
+        new Random(42L), new RRASearchOptions().setDistanceCallBudget(Long.MAX_VALUE / 2));
+    assertFalse(result.isPartial());
+    assertEquals(RRASearchResult.StopReason.COMPLETED, result.getStopReason());
+    assertEquals(1D, result.getCompleteness(), 0D);
+    DiscordRecords plain = RRAImplementation.series2RRAAnomalies(series, 4, candidates, Z,
+        new Random(42L), new RRASearchOptions());
+    assertEquals(plain.getSize(), result.getDiscords().getSize());
+    for (int i = 0; i < plain.getSize(); i++) {
+      assertSameDiscords(plain.get(i), result.getDiscords().get(i));
+    }
+  }
+
+  @Test
+  public void testDistanceBudgetYieldsBestSoFarPrefix() throws Exception {
+    DiscordRecords full = RRAImplementation.series2RRAAnomalies(series, 4, candidates, Z,
+        new Random(42L), new RRASearchOptions());
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(series, 4, candidates, Z,
+        new Random(42L), new RRASearchOptions().setDistanceCallBudget(300));
+
+    assertTrue(result.isPartial());
+    assertEquals(RRASearchResult.StopReason.DISTANCE_BUDGET, result.getStopReason());
+    assertTrue(result.getCompleteness() > 0D && result.getCompleteness() < 1D);
+
+    // the discords completed within the budget are exact, an interrupted iteration may add a
+    // flagged best-so-far which cannot beat the exact one
+    DiscordRecords partial = result.getDiscords();
+    assertTrue(partial.getSize() > 0 && partial.getSize() <= full.getSize());
+    for (int i = 0; i < partial.getSize(); i++) {
+      if (partial.get(i).getInfo().contains("partial search")) {
+        assertEquals(partial.getSize() - 1, i);
+        assertTrue(partial.get(i).getNNDistance() <= full.get(i).getNNDistance());
+      }
+      else {
+        assertSameDiscords(full.get(i), partial.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testCancelledTokenStopsBeforeTheFirstDiscord() throws Exception {
+    RRACancellationToken token = new RRACancellationToken();
+    token.cancel();
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(series, 4, candidates, Z,
+        new Random(42L), new RRASearchOptions().setCancellationToken(token).setThreadsNum(3));
+    assertEquals(RRASearchResult.StopReason.CANCELLED, result.getStopReason());
+    assertEquals(0, result.getDiscords().getSize());
+    assertEquals(0D, result.getCompleteness(), 0D);
+  }
+
+  @Test
+  public void testTimeBudgetStopsTheParallelSearch() throws Exception {
+    RRASearchResult result = RRAImplementation.searchRRAAnomalies(series, 50, candidates, Z,
+        new Random(42L), new RRASearchOptions().setThreadsNum(2).setTimeBudgetMillis(1));
+    assertTrue(result.isPartial());
+    assertEquals(RRASearchResult.StopReason.TIME_BUDGET, result.getStopReason());
+    assertTrue(result.getCompleteness() < 1D);
+    // whatever was found before the deadline is a proper discord
+    for (int i = 0; i < result.getDiscords().getSize(); i++) {
+      assertTrue(RRAValidation.isValidDiscord(result.getDiscords().get(i)));
+    }
+  }
+
+  private static void assertSameDiscords(DiscordRecord expected, DiscordRecord actual) {
+    assertEquals(expected.getPosition(), actual.getPosition());
+    assertEquals(expected.getLength(), actual.getLength());
+    assertEquals(expected.getNNDistance(), actual.getNNDistance(), 0D);
+  }
+}
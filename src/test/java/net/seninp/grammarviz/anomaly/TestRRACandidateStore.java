@@ -0,0 +1,110 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The struct-of-arrays candidate store against the boxed list, comparator sort and hash map index
+ * it replaces.
+ */
+public class TestRRACandidateStore {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testStoreMatchesTheIntervalsList() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    GrammarRules rules = RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+        NumerosityReductionStrategy.EXACT, Z);
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(rules, series.length,
+        6);
+    RRACandidateStore store = RRAIntervalBuilder.buildCandidateStore(rules, series.length, 6);
+
+    assertEquals(intervals.size(), store.size());
+    for (int i = 0; i < store.size(); i++) {
+      RuleInterval interval = intervals.get(i);
+      assertEquals(interval.getStart(), store.getStart(i));
+      assertEquals(interval.getEnd(), store.getEnd(i));
+      assertEquals(interval.getId(), store.getRuleId(i));
+      assertEquals(interval.getCoverage(), store.getCoverage(i), 0D);
+    }
+    assertSameOrderAndIndex(intervals, store);
+    assertSameOrderAndIndex(intervals, RRACandidateStore.fromIntervals(intervals));
+  }
+
+  @Test
+  public void testNonIntegralCoverageKeepsTheOrder() {
+    Random rnd = new Random(42L);
+    ArrayList<RuleInterval> intervals = new ArrayList<RuleInterval>();
+    for (int i = 0; i < 500; i++) {
+      int start = rnd.nextInt(1000);
+      intervals.add(new RuleInterval(rnd.nextInt(40) - 5, start, start + 2 + rnd.nextInt(50),
+          rnd.nextInt(8) * 0.25));
+    }
+    assertSameOrderAndIndex(intervals, RRACandidateStore.fromIntervals(intervals));
+  }
+
+  @Test
+  public void testStoreSearchMatchesListSearch() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    GrammarRules rules = RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 150, 7, 4,
+        NumerosityReductionStrategy.NONE, Z);
+    DiscordRecords viaList = RRAImplementation.series2RRAAnomalies(series, 5,
+        RRAIntervalBuilder.fromGrammarRules(rules, series.length, 7), Z, new Random(42L));
+    DiscordRecords viaStore = RRAImplementation.series2RRAAnomalies(series, 5,
+        RRAIntervalBuilder.buildCandidateStore(rules, series.length, 7), Z, new Random(42L),
+        new RRASearchOptions());
+    assertEquals(viaList.getSize(), viaStore.getSize());
+    for (int i = 0; i < viaList.getSize(); i++) {
+      assertEquals(viaList.get(i).getPosition(), viaStore.get(i).getPosition());
+      assertEquals(viaList.get(i).getLength(), viaStore.get(i).getLength());
+      assertEquals(viaList.get(i).getRuleId(), viaStore.get(i).getRuleId());
+      assertEquals(viaList.get(i).getNNDistance(), viaStore.get(i).getNNDistance(), 0D);
+    }
+  }
+
+  /**
+   * The stable comparator sort and the rule id to occurrences map of the former search.
+   */
+  private static void assertSameOrderAndIndex(final ArrayList<RuleInterval> intervals,
+      RRACandidateStore store) {
+    Integer[] order = new Integer[intervals.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Double.compare(intervals.get(a).getCoverage(), intervals.get(b).getCoverage());
+      }
+    });
+    HashMap<Integer, ArrayList<Integer>> index = new HashMap<Integer, ArrayList<Integer>>();
+    for (int j = 0; j < intervals.size(); j++) {
+      index.computeIfAbsent(intervals.get(j).getId(), k -> new ArrayList<Integer>()).add(j);
+    }
+
+    for (int i = 0; i < order.length; i++) {
+      assertEquals(order[i].intValue(), store.sortedIndex(i));
+    }
+    for (int i = 0; i < intervals.size(); i++) {
+      ArrayList<Integer> expected = index.get(intervals.get(i).getId());
+      assertEquals(expected.size(), store.occurrencesTo(i) - store.occurrencesFrom(i));
+      for (int k = 0; k < expected.size(); k++) {
+        assertEquals(expected.get(k).intValue(),
+            store.occurrences()[store.occurrencesFrom(i) + k]);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The bounded distance kernel either completes with the exact unbounded distance or abandons a
+ * distance which lies above the threshold; the RRA search reports both counts.
+ */
+public class TestRRAEarlyAbandon {
+
+  private static final Pattern CALLS = Pattern
+      .compile("distance calls: (\\d+), early abandoned: (\\d+), completed: (\\d+)");
+
+  @Test
+  public void testBoundedKernelMatchesUnbounded() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    Random rnd = new Random(42L);
+    int abandoned = 0;
+    for (double threshold : new double[] { 0.01, 0.5 }) {
+      for (int i = 0; i < 2000; i++) {
+        RuleInterval a = randomInterval(rnd, series.length, 2 + rnd.nextInt(300));
+        // every other pair is equal-length, the rest go through the PAA shrink
+        RuleInterval b = randomInterval(rnd, series.length,
+            (0 == i % 2) ? a.getLength() : 2 + rnd.nextInt(300));
+        double exact = RRAImplementation.normalizedDistance(series, stats, a, b, threshold);
+        double bound = exact * (0.5 + rnd.nextDouble());
+        double bounded = RRAImplementation.normalizedDistance(series, stats, a, b, threshold,
+            bound);
+        if (Double.POSITIVE_INFINITY == bounded) {
+          assertTrue(exact > bound);
+          abandoned++;
+        }
+        else {
+          assertEquals(exact, bounded, 0D);
+        }
+        // the bound equal to the distance itself must never abandon
+        assertEquals(exact,
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold, exact), 0D);
+      }
+    }
+    assertTrue(abandoned > 0);
+  }
+
+  @Test
+  public void testDiscordInfoReportsAbandonedCalls() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(
+        RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+            NumerosityReductionStrategy.EXACT, 0.01),
+        series.length, 6);
+    DiscordRecords discords = RRAImplementation.series2RRAAnomalies(series, 3, intervals, 0.01,
+        new Random(42L));
+    assertTrue(discords.getSize() > 0);
+    int abandoned = 0;
+    for (int i = 0; i < discords.getSize(); i++) {
+      Matcher m = CALLS.matcher(discords.get(i).getInfo());
+      assertTrue(discords.get(i).getInfo(), m.find());
+      int calls = Integer.parseInt(m.group(1));
+      assertEquals(calls, Integer.parseInt(m.group(2)) + Integer.parseInt(m.group(3)));
+      abandoned += Integer.parseInt(m.group(2));
+    }
+    assertTrue(abandoned > 0);
+  }
+
+  private static RuleInterval randomInterval(Random rnd, int seriesLength, int len) {
+    int start = rnd.nextInt(seriesLength - len);
+    return new RuleInterval(1, start, start + len, 1);
+  }
+}
@@ -0,0 +1,76 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The exact nearest neighbors of the RRA discords against a full scan with the RRA distance.
+ */
+public class TestRRAExactVerification {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testEcgDiscordsMatchFullScan() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/ecg0606_1.csv", 0);
+    assertMatchesFullScan(series, 100, 4, 4);
+  }
+
+  @Test
+  public void testFlatStretchMatchesFullScan() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 4000);
+    // a flat stretch exercises the windows below the normalization threshold
+    for (int i = 2000; i < 2300; i++) {
+      series[i] = 1D;
+    }
+    assertMatchesFullScan(series, 150, 5, 4);
+  }
+
+  private static void assertMatchesFullScan(double[] series, int window, int paa, int alphabet)
+      throws Exception {
+    GrammarRules rules = RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, window, paa,
+        alphabet, NumerosityReductionStrategy.EXACT, Z);
+    DiscordRecords discords = RRATestSupport.runRRA(series, rules, paa, 4, Z);
+    assertTrue(discords.getSize() > 0);
+
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    for (int threads : new int[] { 1, 3 }) {
+      DiscordRecords verified = RRAExactVerification.verify(series, discords, Z, threads);
+      assertEquals(discords.getSize(), verified.getSize());
+      for (int i = 0; i < discords.getSize(); i++) {
+        DiscordRecord discord = discords.get(i);
+        VerifiedDiscordRecord exact = (VerifiedDiscordRecord) verified.get(i);
+        assertEquals(discord.getPosition(), exact.getPosition());
+        assertEquals(discord.getLength(), exact.getLength());
+        assertEquals(discord.getNNDistance(), exact.getNNDistance(), 0D);
+        assertEquals(discord.getRuleId(), exact.getRuleId());
+
+        int start = discord.getPosition();
+        int len = discord.getLength();
+        double expected = Double.MAX_VALUE;
+        int expectedPosition = -1;
+        for (int j = 0; j <= series.length - len; j++) {
+          if (j >= start - len && j < start + len) {
+            continue;
+          }
+          double dist = RRAImplementation.normalizedDistance(series, stats, start, len, j, len,
+              Z, Double.MAX_VALUE, null);
+          if (dist < expected) {
+            expected = dist;
+            expectedPosition = j;
+          }
+        }
+        assertEquals(expected, exact.getExactNNDistance(), 0D);
+        assertEquals(expectedPosition, exact.getExactNNPosition());
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecord;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The parallel RRA search must report exactly what the seeded sequential search does.
+ */
+public class TestRRAParallelSearch {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testEcgRePairParallelMatchesSequential() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    assertSameDiscords(series, RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 150, 7, 4,
+        NumerosityReductionStrategy.NONE, Z), 7);
+  }
+
+  @Test
+  public void testDutchPowerSequiturParallelMatchesSequential() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    assertSameDiscords(series, RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6,
+        3, NumerosityReductionStrategy.EXACT, Z), 6);
+  }
+
+  @Test
+  public void testSingleDiscordParallelMatchesSequential() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/chfdbchf15_1.csv", 1800);
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 100, 5, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 5);
+    DiscordRecord sequential = RRAImplementation.findBestDiscordForIntervals(series, intervals,
+        new HashSet<Integer>(), Z, new Random(42L));
+    DiscordRecord parallel = RRAImplementation.findBestDiscordForIntervals(series, intervals,
+        new HashSet<Integer>(), Z, new Random(7L), 3);
+    assertSameDiscord(sequential, parallel);
+  }
+
+  private static void assertSameDiscords(double[] series, GrammarRules rules, int paa)
+      throws Exception {
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(rules, series.length,
+        paa);
+    DiscordRecords sequential = RRAImplementation.series2RRAAnomalies(series, 5, intervals, Z,
+        new Random(42L));
+    DiscordRecords parallel = RRAImplementation.series2RRAAnomalies(series, 5, intervals, Z,
+        new Random(42L), 4);
+    assertEquals(sequential.getSize(), parallel.getSize());
+    for (int i = 0; i < sequential.getSize(); i++) {
+      assertSameDiscord(sequential.get(i), parallel.get(i));
+    }
+  }
+
+  private static void assertSameDiscord(DiscordRecord expected, DiscordRecord actual) {
+    assertEquals(expected.getPosition(), actual.getPosition());
+    assertEquals(expected.getLength(), actual.getLength());
+    assertEquals(expected.getRuleId(), actual.getRuleId());
+    assertEquals(expected.getNNDistance(), actual.getNNDistance(), 0D);
+  }
+}
@@ -0,0 +1,99 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The RRA run statistics: one entry per discord iteration, agreeing with the discords and their
+ * info strings, and rendered as JSON and CSV.
+ */
+public class TestRRARunStats {
+
+  private static final double Z = 0.01;
+
+  private static final Pattern CALLS = Pattern.compile("distance calls: (\\d+), early "
+      + "abandoned: (\\d+)");
+
+  @Test
+  public void testStatsFollowTheDiscords() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 100, 4, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 4);
+    for (int threadsNum : new int[] { 1, 3 }) {
+      RRASearchResult result = RRAImplementation.searchRRAAnomalies(series, 5, candidates, Z,
+          new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum));
+      DiscordRecords discords = result.getDiscords();
+      RRARunStats stats = result.getRunStats();
+
+      assertEquals(candidates.size(), stats.getCandidatesNum());
+      assertEquals(threadsNum, stats.getThreadsNum());
+      assertEquals(DistanceKernels.getSelectedName(), stats.getKernelName());
+      assertEquals(result.getDistanceCalls(), stats.getDistanceCalls());
+      assertTrue(stats.getDiscords().size() >= discords.getSize());
+
+      long elapsed = 0;
+      for (int i = 0; i < discords.getSize(); i++) {
+        RRARunStats.DiscordStats d = stats.getDiscords().get(i);
+        assertEquals(discords.get(i).getPosition(), d.getPosition());
+        assertEquals(discords.get(i).getLength(), d.getLength());
+        assertEquals(discords.get(i).getNNDistance(), d.getNNDistance(), 0D);
+
+        Matcher m = CALLS.matcher(discords.get(i).getInfo());
+        assertTrue(m.find());
+        assertEquals(Long.parseLong(m.group(1)), d.getDistanceCalls());
+        assertEquals(Long.parseLong(m.group(2)), d.getEarlyAbandons());
+
+        assertTrue(d.getCandidatesExamined() > 0);
+        assertTrue(d.getCandidatesExamined() <= candidates.size());
+        assertTrue(d.getRandomPhaseVisits() > 0);
+        assertTrue(d.getExclusionSkips() > 0);
+        assertTrue(d.getElapsedNanos() > 0);
+        elapsed += d.getElapsedNanos();
+      }
+      assertTrue(stats.getElapsedNanos() >= elapsed);
+      // past the first discord the pair distance memo answers some of the pairs
+      assertTrue(stats.getDiscords().get(1).getMemoHits() > 0);
+    }
+  }
+
+  @Test
+  public void testRendering() {
+    RRARunStats stats = new RRARunStats(
+        List.of(new RRARunStats.DiscordStats(120, 50, 0.25, 10, 200, 150, 90, 30, 5, 0, 1000L),
+            new RRARunStats.DiscordStats(-1, -1, Double.NaN, 4, 20, 15, 9, 3, 1, 0, 100L)),
+        12, 2, "scalar", 2000L, 7, 3, 6, 226, 4352);
+
+    assertEquals(220, stats.getDistanceCalls());
+    assertEquals(165, stats.getEarlyAbandons());
+    assertEquals(99, stats.getRandomPhaseVisits());
+    assertEquals(33, stats.getExclusionSkips());
+
+    String json = stats.toJson();
+    assertTrue(json.startsWith("{\"algorithm\":\"RRA\",\"candidates\":12,\"threads\":2,"
+        + "\"kernel\":\"scalar\",\"elapsed_ns\":2000,\"candidates_examined\":14,"
+        + "\"distance_calls\":220,"));
+    assertTrue(json.contains("\"discords\":[{\"position\":120,\"length\":50,"
+        + "\"nn_distance\":0.25,"));
+    assertTrue(json.contains("{\"position\":-1,\"length\":-1,\"nn_distance\":null,"));
+    assertTrue(json.endsWith("\"elapsed_ns\":100}]}"));
+    assertTrue(json.indexOf('\n') < 0);
+
+    List<String> rows = stats.toCsvRows();
+    assertEquals(2, rows.size());
+    assertEquals("0,120,50,0.25,10,200,150,90,30,5,0,1000", rows.get(0));
+    assertEquals(RRARunStats.CSV_HEADER.split(",").length, rows.get(1).split(",").length);
+  }
+}
@@ -0,0 +1,97 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The single-pass top-k mode must report what the iterative search does, under the same
+ * start-in-band exclusion, with fewer distance calls.
+ */
+public class TestRRATopKMode {
+
+  private static final double Z = 0.01;
+
+  private static final Pattern CALLS = Pattern.compile("distance calls: (\\d+)");
+
+  @Test
+  public void testEcgRePairTopKMatchesIterative() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    for (int window : new int[] { 100, 120 }) {
+      RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+          RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, window, 4, 4,
+              NumerosityReductionStrategy.NONE, Z),
+          series.length, 4);
+      assertSameDiscords(series, candidates, 10, 1);
+      assertSameDiscords(series, candidates, 10, 4);
+    }
+  }
+
+  @Test
+  public void testDutchPowerSequiturTopKMatchesIterative() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    GrammarRules rules = RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+        NumerosityReductionStrategy.EXACT, Z);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(rules, series.length, 6);
+    assertSameDiscords(series, candidates, 8, 1);
+    assertSameDiscords(series, candidates, 8, 3);
+  }
+
+  @Test
+  public void testOtherDatasetsTopKMatchesIterative() throws Exception {
+    String[] files = { "data/chfdbchf15_1.csv", "data/ann_gun_CentroidA1.csv" };
+    for (String file : files) {
+      double[] series = RRATestSupport.loadSeries(file, 1800);
+      for (GIAlgorithm gi : GIAlgorithm.values()) {
+        RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+            RRATestSupport.inferGrammar(gi, series, 100, 4, 4, NumerosityReductionStrategy.EXACT,
+                Z),
+            series.length, 4);
+        assertSameDiscords(series, candidates, 6, 1);
+        assertSameDiscords(series, candidates, 6, 2);
+      }
+    }
+  }
+
+  private static void assertSameDiscords(double[] series, RRACandidateStore candidates, int k,
+      int threadsNum) throws Exception {
+    DiscordRecords iterative = RRAImplementation.series2RRAAnomalies(series, k, candidates, Z,
+        new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum));
+    DiscordRecords topK = RRAImplementation.series2RRAAnomalies(series, k, candidates, Z,
+        new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum).setTopKMode(true));
+
+    assertEquals(iterative.getSize(), topK.getSize());
+    assertTrue(topK.getSize() > 1);
+    for (int i = 0; i < iterative.getSize(); i++) {
+      assertEquals(iterative.get(i).getPosition(), topK.get(i).getPosition());
+      assertEquals(iterative.get(i).getLength(), topK.get(i).getLength());
+      assertEquals(iterative.get(i).getRuleId(), topK.get(i).getRuleId());
+      assertEquals(iterative.get(i).getNNDistance(), topK.get(i).getNNDistance(), 0D);
+    }
+    // past the first discord the reused distances pay off; the parallel trajectories, hence
+    // their call counts, vary from run to run, the sequential ones are fixed by the seed
+    if (threadsNum < 2) {
+      assertTrue(distanceCalls(topK, 1) < distanceCalls(iterative, 1));
+    }
+  }
+
+  private static long distanceCalls(DiscordRecords discords, int from) {
+    long res = 0;
+    for (int i = from; i < discords.getSize(); i++) {
+      Matcher m = CALLS.matcher(discords.get(i).getInfo());
+      assertTrue(m.find());
+      res += Long.parseLong(m.group(1));
+    }
+    return res;
+  }
+}
@@ -0,0 +1,185 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The reduced interval cache: bit-identical distances, LRU eviction within the byte budget, the
+ * segmented tables under concurrent lookups, allocation-free hits, and unchanged discords whether
+ * the cache is on or off.
+ */
+public class TestReducedIntervalCache {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testCachedDistanceIsBitIdentical() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    Random rnd = new Random(42L);
+    RuleInterval[] pool = new RuleInterval[50];
+    for (int i = 0; i < pool.length; i++) {
+      int len = 10 + rnd.nextInt(200);
+      int start = rnd.nextInt(series.length - len);
+      pool[i] = new RuleInterval(1, start, start + len, 1);
+    }
+    for (double threshold : new double[] { Z, 0.5 }) {
+      for (int i = 0; i < 5000; i++) {
+        RuleInterval a = pool[rnd.nextInt(pool.length)];
+        RuleInterval b = pool[rnd.nextInt(pool.length)];
+        assertEquals(
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold,
+                Double.POSITIVE_INFINITY),
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold,
+                Double.POSITIVE_INFINITY, cache),
+            0D);
+      }
+    }
+    assertTrue(cache.getHits() > cache.getMisses());
+    assertTrue(cache.getBytes() <= cache.getByteBudget());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvictionWithinBudget() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    ReducedIntervalCache probe = new ReducedIntervalCache(series, 1L << 20);
+    probe.get(0, 200, 100);
+    long entryBytes = probe.getBytes();
+
+    // room for exactly two entries
+    ReducedIntervalCache cache = new ReducedIntervalCache(series, 2 * entryBytes);
+    ReducedIntervalCache.ReducedInterval first = cache.get(0, 200, 100);
+    cache.get(100, 200, 100);
+    assertSame(first, cache.get(0, 200, 100));
+    cache.get(200, 200, 100);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertTrue(cache.getBytes() <= cache.getByteBudget());
+    // the entry at 0 was touched last, so the one at 100 went
+    assertSame(first, cache.get(0, 200, 100));
+    long misses = cache.getMisses();
+    cache.get(100, 200, 100);
+    assertEquals(misses + 1, cache.getMisses());
+
+    ReducedIntervalCache disabled = new ReducedIntervalCache(series, 0L);
+    assertNotSame(disabled.get(0, 200, 100), disabled.get(0, 200, 100));
+    assertEquals(0, disabled.size());
+    assertEquals(2, disabled.getMisses());
+  }
+
+  @Test
+  public void testConcurrentLookupsWithinBudget() throws Exception {
+    final double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv",
+        0);
+    // a few segments, and far more windows than fit in them
+    final ReducedIntervalCache cache = new ReducedIntervalCache(series, 4L << 20);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < 4; t++) {
+        final long seed = t;
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            Random rnd = new Random(seed);
+            for (int i = 0; i < 20000; i++) {
+              int length = 50 + rnd.nextInt(150);
+              int start = rnd.nextInt(series.length - length);
+              int target = 10 + rnd.nextInt(40);
+              ReducedIntervalCache.ReducedInterval expected = ReducedIntervalCache.reduce(series,
+                  start, length, target);
+              ReducedIntervalCache.ReducedInterval actual = cache.get(start, length, target);
+              assertEquals(expected.getMean(), actual.getMean(), 0D);
+              assertEquals(expected.getStDev(), actual.getStDev(), 0D);
+              for (int k = 0; k < target; k++) {
+                assertEquals(expected.getValues()[k], actual.getValues()[k], 0D);
+              }
+            }
+            return 20000;
+          }
+        }));
+      }
+      long lookups = 0;
+      for (Future<Integer> future : futures) {
+        lookups += future.get();
+      }
+      assertEquals(lookups, cache.getHits() + cache.getMisses());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    assertTrue(cache.getEvictions() > 0);
+    assertTrue(cache.getBytes() <= cache.getByteBudget());
+  }
+
+  @Test
+  public void testHitsAreAllocationFree() throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    for (int start = 0; start < 1000; start++) {
+      cache.get(start, 120, 30);
+    }
+    long hits = cache.getHits();
+
+    long before = sunBean.getCurrentThreadAllocatedBytes();
+    for (int round = 0; round < 100; round++) {
+      for (int start = 0; start < 1000; start++) {
+        cache.get(start, 120, 30);
+      }
+    }
+    long allocated = sunBean.getCurrentThreadAllocatedBytes() - before;
+
+    assertEquals(hits + 100000, cache.getHits());
+    // a key object per lookup would take a couple of megabytes here
+    assertTrue("cache allocated " + allocated + " bytes", allocated < 1024);
+  }
+
+  @Test
+  public void testDiscordsDoNotDependOnTheCache() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    ArrayList<RuleInterval> intervals = RRAIntervalBuilder.fromGrammarRules(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 150, 7, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 7);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    DiscordRecords cached = RRAImplementation.series2RRAAnomalies(series, 5, intervals, Z,
+        new Random(42L), new RRASearchOptions().setReducedCache(cache));
+    DiscordRecords uncached = RRAImplementation.series2RRAAnomalies(series, 5, intervals, Z,
+        new Random(42L), new RRASearchOptions().setReducedCacheBytes(0L));
+    assertEquals(uncached.getSize(), cached.getSize());
+    for (int i = 0; i < cached.getSize(); i++) {
+      assertEquals(uncached.get(i).getPosition(), cached.get(i).getPosition());
+      assertEquals(uncached.get(i).getLength(), cached.get(i).getLength());
+      assertEquals(uncached.get(i).getNNDistance(), cached.get(i).getNNDistance(), 0D);
+    }
+    assertTrue(cache.getHits() > 0);
+  }
+}
@@ -0,0 +1,108 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The SAX MINDIST bound must stay below the RRA normalized distance, and the pruned search must
+ * report the discords of the plain one, for both the Sequitur and the RePair candidates.
+ */
+public class TestSAXMinDistBound {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testBoundIsBelowTheDistance() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    for (GIAlgorithm algorithm : new GIAlgorithm[] { GIAlgorithm.SEQUITUR, GIAlgorithm.REPAIR }) {
+      RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+          RRATestSupport.inferGrammar(algorithm, series, 100, 4, 4,
+              NumerosityReductionStrategy.EXACT, Z),
+          series.length, 4);
+      for (int alphabet : new int[] { 3, 6, 10 }) {
+        SAXMinDistBound bound = new SAXMinDistBound(series, stats, candidates, Z, 4, alphabet);
+        Random rnd = new Random(42L);
+        int positive = 0;
+        for (int k = 0; k < 5000; k++) {
+          int a = rnd.nextInt(candidates.size());
+          int b = rnd.nextInt(candidates.size());
+          if (!candidates.isViable(a) || !candidates.isViable(b)) {
+            continue;
+          }
+          int aLen = candidates.getLength(a);
+          int bLen = candidates.getLength(b);
+          double lb;
+          if (aLen == bLen) {
+            lb = bound.lowerBound(a, b, aLen);
+          }
+          else if (aLen > bLen) {
+            lb = bound.lowerBound(b, cache.get(candidates.getStart(a), aLen, bLen), Z);
+          }
+          else {
+            lb = bound.lowerBound(a, cache.get(candidates.getStart(b), bLen, aLen), Z);
+          }
+          double dist = RRAImplementation.normalizedDistance(series, stats,
+              candidates.getStart(a), aLen, candidates.getStart(b), bLen, Z,
+              Double.POSITIVE_INFINITY, cache);
+          assertTrue(algorithm + " pair " + a + ", " + b + ": " + lb + " > " + dist,
+              lb <= dist * (1D + 1E-12));
+          if (lb > 0D) {
+            positive++;
+          }
+        }
+        assertTrue(positive > 0);
+      }
+    }
+  }
+
+  @Test
+  public void testSequiturPrunedSearchMatches() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+            NumerosityReductionStrategy.EXACT, Z),
+        series.length, 6);
+    assertSameDiscords(series, candidates, 6, 3, new RRASearchOptions());
+    assertSameDiscords(series, candidates, 6, 3, new RRASearchOptions().setTopKMode(true));
+  }
+
+  @Test
+  public void testRePairPrunedSearchMatches() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 120, 4, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 4);
+    assertSameDiscords(series, candidates, 4, 4, new RRASearchOptions());
+    assertSameDiscords(series, candidates, 4, 4, new RRASearchOptions().setThreadsNum(3));
+  }
+
+  private static void assertSameDiscords(double[] series, RRACandidateStore candidates,
+      int paaSize, int alphabetSize, RRASearchOptions options) throws Exception {
+    DiscordRecords plain = RRAImplementation.series2RRAAnomalies(series, 5, candidates, Z,
+        new Random(42L), options.disableMinDistPruning());
+    RRASearchResult pruned = RRAImplementation.searchRRAAnomalies(series, 5, candidates, Z,
+        new Random(42L), options.setMinDistPruning(paaSize, alphabetSize));
+
+    DiscordRecords discords = pruned.getDiscords();
+    assertEquals(plain.getSize(), discords.getSize());
+    for (int i = 0; i < plain.getSize(); i++) {
+      assertEquals(plain.get(i).getPosition(), discords.get(i).getPosition());
+      assertEquals(plain.get(i).getLength(), discords.get(i).getLength());
+      assertEquals(plain.get(i).getRuleId(), discords.get(i).getRuleId());
+      assertEquals(plain.get(i).getNNDistance(), discords.get(i).getNNDistance(), 0D);
+    }
+    assertTrue(pruned.getMinDistPrunedPairs() > 0);
+  }
+}
@@ -0,0 +1,206 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.seninp.gi.logic.RuleInterval;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * O(1) window statistics and the fused, copy-free RRA distance against the copying reference;
+ * the windows at the z-normalization threshold against the former arithmetic, bit for bit.
+ */
+public class TestSeriesStatsIndex {
+
+  private static final TSProcessor TP = new TSProcessor();
+
+  @Test
+  public void testWindowStatisticsMatchDirectComputation() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 10000);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    assertEquals(series.length, stats.length());
+    Random rnd = new Random(42L);
+    for (int i = 0; i < 500; i++) {
+      int start = rnd.nextInt(series.length - 2);
+      int end = start + 2 + rnd.nextInt(Math.min(1000, series.length - start - 1));
+      double[] window = Arrays.copyOfRange(series, start, end);
+      assertEquals(TP.mean(window), stats.mean(start, end), 1e-9);
+      assertEquals(populationStDev(window), stats.stDev(start, end), 1e-7);
+    }
+  }
+
+  @Test
+  public void testNormalizedDistanceMatchesCopyingReference() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    Random rnd = new Random(42L);
+    for (double threshold : new double[] { 0.01, 0.5 }) {
+      for (int i = 0; i < 2000; i++) {
+        RuleInterval a = randomInterval(rnd, series.length, 2 + rnd.nextInt(300));
+        // every third pair is equal-length, the rest go through the PAA shrink
+        RuleInterval b = randomInterval(rnd, series.length,
+            (0 == i % 3) ? a.getLength() : 2 + rnd.nextInt(300));
+        assertEquals(referenceDistance(series, a, b, threshold),
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testFlatWindowsFallBackToRawDistance() throws Exception {
+    double[] series = new double[200];
+    for (int i = 100; i < 200; i++) {
+      series[i] = (i % 7) * 0.5;
+    }
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    RuleInterval flat = new RuleInterval(1, 10, 60, 1);
+    RuleInterval wavy = new RuleInterval(2, 120, 170, 1);
+    assertTrue(stats.stDev(10, 60) < 1e-6);
+    assertEquals(referenceDistance(series, flat, wavy, 0.01),
+        RRAImplementation.normalizedDistance(series, stats, flat, wavy, 0.01), 1e-12);
+  }
+
+  @Test
+  public void testWindowsAtTheThresholdTakeTheFormerBranchBitForBit() throws Exception {
+    // the distance loops of the SIMD kernel round differently
+    Assume.assumeTrue(DistanceKernels.scalar() == DistanceKernels.get());
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    ReducedIntervalCache cache = new ReducedIntervalCache(series,
+        ReducedIntervalCache.DEFAULT_BYTE_BUDGET);
+    Random rnd = new Random(42L);
+    for (int i = 0; i < 300; i++) {
+      RuleInterval a = randomInterval(rnd, series.length, 10 + rnd.nextInt(300));
+      // every other pair is equal-length, the rest go through the PAA shrink
+      RuleInterval b = randomInterval(rnd, series.length,
+          (0 == i % 2) ? a.getLength() : 10 + rnd.nextInt(a.getLength()));
+      // the threshold right at the shorter window former deviation, and a hair off either side
+      double sd = formerStDev(Arrays.copyOfRange(series, b.getStart(), b.getEnd()));
+      assertTrue(stats.isNearThreshold(b.getStart(), b.getEnd(), sd));
+      for (double threshold : new double[] { Math.nextDown(sd), sd, Math.nextUp(sd) }) {
+        long expected = Double.doubleToLongBits(formerDistance(series, a, b, threshold));
+        assertEquals("pair " + i, expected, Double.doubleToLongBits(
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold)));
+        assertEquals("pair " + i, expected, Double.doubleToLongBits(
+            RRAImplementation.normalizedDistance(series, stats, b, a, threshold)));
+        assertEquals("cached pair " + i, expected, Double.doubleToLongBits(
+            RRAImplementation.normalizedDistance(series, stats, a, b, threshold,
+                Double.POSITIVE_INFINITY, cache)));
+      }
+    }
+  }
+
+  private static RuleInterval randomInterval(Random rnd, int seriesLength, int len) {
+    int start = rnd.nextInt(seriesLength - len);
+    return new RuleInterval(1, start, start + len, 1);
+  }
+
+  /**
+   * The historical copy / PAA / z-normalize / Euclidean sequence.
+   */
+  private static double referenceDistance(double[] series, RuleInterval reference,
+      RuleInterval candidate, double threshold) throws Exception {
+    double[] ref = Arrays.copyOfRange(series, reference.getStart(), reference.getEnd());
+    double[] cand = Arrays.copyOfRange(series, candidate.getStart(), candidate.getEnd());
+    double divisor = ref.length;
+    if (ref.length > cand.length) {
+      ref = TP.paa(ref, cand.length);
+      divisor = cand.length;
+    }
+    else if (cand.length > ref.length) {
+      cand = TP.paa(cand, ref.length);
+    }
+    if (populationStDev(ref) < threshold || populationStDev(cand) < threshold) {
+      return euclidean(ref, cand) / divisor;
+    }
+    return euclidean(znorm(ref), znorm(cand)) / divisor;
+  }
+
+  /**
+   * The former in-loop copy / PAA / z-normalize / Euclidean arithmetic, to the last bit.
+   */
+  private static double formerDistance(double[] series, RuleInterval reference,
+      RuleInterval candidate, double threshold) throws Exception {
+    double[] ref = Arrays.copyOfRange(series, reference.getStart(), reference.getEnd());
+    double[] cand = Arrays.copyOfRange(series, candidate.getStart(), candidate.getEnd());
+    double divisor = ref.length;
+    if (ref.length > cand.length) {
+      ref = TP.paa(ref, cand.length);
+      divisor = cand.length;
+    }
+    else if (cand.length > ref.length) {
+      cand = TP.paa(cand, ref.length);
+    }
+    if (formerStDev(ref) < threshold || formerStDev(cand) < threshold) {
+      return formerEuclidean(ref, cand) / divisor;
+    }
+    return formerEuclidean(formerZnorm(ref), formerZnorm(cand)) / divisor;
+  }
+
+  private static double formerStDev(double[] values) {
+    double num0 = 0D;
+    double sum = 0D;
+    for (double v : values) {
+      num0 += v * v;
+      sum += v;
+    }
+    double n = values.length;
+    return Math.sqrt((n * num0 - sum * sum) / (n * n));
+  }
+
+  private static double[] formerZnorm(double[] values) {
+    double sum = 0D;
+    for (double v : values) {
+      sum += v;
+    }
+    double mean = sum / values.length;
+    double sd = formerStDev(values);
+    double[] res = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (values[i] - mean) / sd;
+    }
+    return res;
+  }
+
+  private static double formerEuclidean(double[] a, double[] b) {
+    double sum = 0D;
+    for (int i = 0; i < a.length; i++) {
+      double d = b[i] - a[i];
+      sum += d * d;
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static double[] znorm(double[] values) {
+    double mean = TP.mean(values);
+    double sd = populationStDev(values);
+    double[] res = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (values[i] - mean) / sd;
+    }
+    return res;
+  }
+
+  private static double populationStDev(double[] values) {
+    double mean = TP.mean(values);
+    double sum = 0D;
+    for (double v : values) {
+      sum += (v - mean) * (v - mean);
+    }
+    return Math.sqrt(sum / values.length);
+  }
+
+  private static double euclidean(double[] a, double[] b) {
+    double sum = 0D;
+    for (int i = 0; i < a.length; i++) {
+      sum += (a[i] - b[i]) * (a[i] - b[i]);
+    }
+    return Math.sqrt(sum);
+  }
+}
@@ -0,0 +1,93 @@
+package net.seninp.grammarviz.anomaly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.discord.DiscordRecords;
+
+/**
+ * The neighbor visit order changes the distance calls count, not the discords.
+ */
+public class TestVisitOrder {
+
+  private static final double Z = 0.01;
+
+  @Test
+  public void testArrangersPermuteTheNeighbors() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 120, 4, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 4);
+    SeriesStatsIndex stats = new SeriesStatsIndex(series);
+    SAXMinDistBound words = new SAXMinDistBound(series, stats, candidates, Z, 4, 4);
+    RRAVisitContext context = new RRAVisitContext(series, stats, candidates, Z, words);
+
+    int count = candidates.size() - 3;
+    int[] neighbors = new int[candidates.size()];
+    for (int i = 0; i < neighbors.length; i++) {
+      neighbors[i] = i;
+    }
+    new SAXWordVisitOrder(4, 4).newArranger(context).arrange(0, neighbors, count,
+        new Random(42L));
+
+    // a permutation of the first count slots, the rest untouched, nearest words last
+    boolean[] seen = new boolean[count];
+    int previous = Integer.MAX_VALUE;
+    for (int i = 0; i < count; i++) {
+      assertTrue(neighbors[i] < count && !seen[neighbors[i]]);
+      seen[neighbors[i]] = true;
+      int distance = words.hammingDistance(0, neighbors[i]);
+      assertTrue(distance <= previous);
+      previous = distance;
+    }
+    for (int i = count; i < neighbors.length; i++) {
+      assertEquals(i, neighbors[i]);
+    }
+  }
+
+  @Test
+  public void testSequiturDiscordsDoNotDependOnTheOrder() throws Exception {
+    double[] series = RRATestSupport.loadSeries("data/dutch_power_demand.txt", 6000);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.SEQUITUR, series, 750, 6, 3,
+            NumerosityReductionStrategy.EXACT, Z),
+        series.length, 6);
+    assertSameDiscords(series, candidates, new SAXWordVisitOrder(6, 3), 1);
+  }
+
+  @Test
+  public void testRePairDiscordsDoNotDependOnTheOrder() throws Exception {
+    double[] series = RRATestSupport.loadSeries("src/resources/test-data/ecg0606_1.csv", 0);
+    RRACandidateStore candidates = RRAIntervalBuilder.buildCandidateStore(
+        RRATestSupport.inferGrammar(GIAlgorithm.REPAIR, series, 120, 4, 4,
+            NumerosityReductionStrategy.NONE, Z),
+        series.length, 4);
+    assertSameDiscords(series, candidates, new SAXWordVisitOrder(4, 4), 1);
+    assertSameDiscords(series, candidates, new SAXWordVisitOrder(4, 4), 3);
+  }
+
+  private static void assertSameDiscords(double[] series, RRACandidateStore candidates,
+      VisitOrder order, int threadsNum) throws Exception {
+    RRASearchResult random = RRAImplementation.searchRRAAnomalies(series, 5, candidates, Z,
+        new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum));
+    RRASearchResult ordered = RRAImplementation.searchRRAAnomalies(series, 5, candidates, Z,
+        new Random(42L), new RRASearchOptions().setThreadsNum(threadsNum).setVisitOrder(order));
+
+    DiscordRecords expected = random.getDiscords();
+    DiscordRecords actual = ordered.getDiscords();
+    assertEquals(expected.getSize(), actual.getSize());
+    for (int i = 0; i < expected.getSize(); i++) {
+      assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+      assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+      assertEquals(expected.get(i).getNNDistance(), actual.get(i).getNNDistance(), 0D);
+    }
+    assertTrue(random.getDistanceCalls() > 0 && ordered.getDistanceCalls() > 0);
+  }
+}
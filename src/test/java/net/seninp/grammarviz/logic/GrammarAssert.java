@@ -0,0 +1,35 @@
+package net.seninp.grammarviz.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+
+/**
+ * Rule by rule comparison of two grammars, everything the GUI and the anomaly discovery read.
+ */
+final class GrammarAssert {
+
+  private GrammarAssert() {
+    // utility
+  }
+
+  static void assertSameRules(String scenario, GrammarRules expected, GrammarRules actual) {
+    assertEquals(scenario + ": rules number", expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      GrammarRuleRecord e = expected.get(i);
+      GrammarRuleRecord a = actual.get(i);
+      String rule = scenario + ", R" + i;
+      assertEquals(rule, e.getRuleNumber(), a.getRuleNumber());
+      assertEquals(rule, e.getRuleString(), a.getRuleString());
+      assertEquals(rule, e.getExpandedRuleString(), a.getExpandedRuleString());
+      assertEquals(rule, e.getRuleLevel(), a.getRuleLevel());
+      assertEquals(rule, e.getRuleYield(), a.getRuleYield());
+      assertEquals(rule, e.getRuleUseFrequency(), a.getRuleUseFrequency());
+      assertEquals(rule, e.getOccurrences(), a.getOccurrences());
+      assertEquals(rule, e.getRuleIntervals(), a.getRuleIntervals());
+      assertEquals(rule, e.getMeanLength(), a.getMeanLength());
+      assertEquals(rule, e.minMaxLengthAsString(), a.minMaxLengthAsString());
+    }
+  }
+}
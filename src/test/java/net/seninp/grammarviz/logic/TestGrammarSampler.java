@@ -0,0 +1,76 @@
+package net.seninp.grammarviz.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.seninp.gi.GIAlgorithm;
+import net.seninp.gi.rulepruner.RulePruner;
+import net.seninp.gi.rulepruner.SampledPoint;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The grammar sampler against the jmotif rule pruner, and the concurrent grid against the
+ * sequential one.
+ */
+public class TestGrammarSampler {
+
+  private static final double DELTA = 1e-12;
+
+  @Test
+  public void testSameAsRulePruner() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    for (GIAlgorithm gi : GIAlgorithm.values()) {
+      SampledPoint expected = new RulePruner(series).sample(100, 5, 4, gi,
+          NumerosityReductionStrategy.EXACT, 0.01);
+      SampledPoint actual = new GrammarSampler(series).sample(100, 5, 4, gi,
+          NumerosityReductionStrategy.EXACT, 0.01);
+      assertSamePoint(gi.toString(), expected, actual);
+    }
+  }
+
+  @Test
+  public void testConcurrentGrid() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    List<int[]> points = new ArrayList<int[]>();
+    for (int window = 60; window <= 120; window += 30) {
+      for (int alphabet = 3; alphabet <= 21; alphabet += 6) {
+        points.add(new int[] { window, 4, alphabet });
+      }
+    }
+    GrammarSampler sampler = new GrammarSampler(series);
+    List<SampledPoint> sequential = new ArrayList<SampledPoint>();
+    sampler.sample(points, GIAlgorithm.SEQUITUR, NumerosityReductionStrategy.EXACT, 0.01, 1,
+        sequential);
+    List<SampledPoint> concurrent = new ArrayList<SampledPoint>();
+    sampler.sample(points, GIAlgorithm.SEQUITUR, NumerosityReductionStrategy.EXACT, 0.01, 4,
+        concurrent);
+
+    // the out of range alphabet 21 points are skipped
+    assertEquals(9, sequential.size());
+    assertEquals(sequential.size(), concurrent.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertSamePoint("point " + i, sequential.get(i), concurrent.get(i));
+    }
+  }
+
+  private static void assertSamePoint(String scenario, SampledPoint expected,
+      SampledPoint actual) {
+    assertEquals(scenario, expected.getWindow(), actual.getWindow());
+    assertEquals(scenario, expected.getPAA(), actual.getPAA());
+    assertEquals(scenario, expected.getAlphabet(), actual.getAlphabet());
+    assertEquals(scenario, expected.getApproxDist(), actual.getApproxDist(), DELTA);
+    assertEquals(scenario, expected.getGrammarSize(), actual.getGrammarSize());
+    assertEquals(scenario, expected.getGrammarRules(), actual.getGrammarRules());
+    assertEquals(scenario, expected.getCompressedGrammarSize(),
+        actual.getCompressedGrammarSize());
+    assertEquals(scenario, expected.getPrunedRules(), actual.getPrunedRules());
+    assertEquals(scenario, expected.isCovered(), actual.isCovered());
+    assertEquals(scenario, expected.getCoverage(), actual.getCoverage(), DELTA);
+    assertEquals(scenario, expected.getReduction(), actual.getReduction(), DELTA);
+  }
+}
@@ -0,0 +1,72 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.repair.RePairFactory;
+import net.seninp.gi.repair.RePairGrammar;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.TSProcessor;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The in-project RePair against the jmotif one: the same rules, occurrences and intervals on
+ * random token streams with gaps between the positions, as the numerosity reduction leaves them,
+ * and on the discretized series.
+ */
+public class TestRePairEngine {
+
+  private static final String[] WORDS = { "aa", "bb", "cc", "dd", "ab", "ba" };
+
+  @Test
+  public void testRandomStreamsMatchJmotif() throws Exception {
+    Random random = new Random(17L);
+    for (int it = 0; it < 300; it++) {
+      int dictionary = 1 + random.nextInt(WORDS.length);
+      int period = 1 + random.nextInt(6);
+      int[] tokens = new int[2 + random.nextInt(400)];
+      int[] positions = new int[tokens.length];
+      SAXRecords saxData = new SAXRecords();
+      int position = random.nextInt(3);
+      for (int i = 0; i < tokens.length; i++) {
+        // periodic streams with some noise, or plain random ones
+        tokens[i] = (0 == it % 2 && random.nextInt(10) < 8) ? (i % period) % dictionary
+            : random.nextInt(dictionary);
+        positions[i] = position;
+        saxData.add(WORDS[tokens[i]].toCharArray(), position);
+        position += 1 + random.nextInt(3);
+      }
+      saxData.buildIndex();
+      int windowSize = 5 + random.nextInt(20);
+
+      RePairGrammar grammar = RePairFactory.buildGrammar(saxData);
+      grammar.expandRules();
+      grammar.buildIntervals(saxData, new double[position + windowSize], windowSize);
+      GrammarRules expected = grammar.toGrammarRulesData();
+
+      GrammarAssert.assertSameRules("stream " + it, expected,
+          RePairEngine.buildGrammar(tokens, t -> WORDS[t], positions, windowSize));
+    }
+  }
+
+  @Test
+  public void testSeriesMatchJmotif() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    int[][] params = { { 100, 4, 4 }, { 120, 7, 3 }, { 50, 6, 10 }, { 30, 13, 5 }, { 80, 5, 6 },
+        { 60, 3, 3 } };
+    for (NumerosityReductionStrategy nr : NumerosityReductionStrategy.values()) {
+      for (int[] p : params) {
+        SAXRecords saxData = SlidingSAXDiscretizer.ts2saxViaWindow(series, p[0], p[1], p[2], nr,
+            0.01);
+        RePairGrammar grammar = RePairFactory.buildGrammar(saxData);
+        grammar.expandRules();
+        grammar.buildIntervals(saxData, series, p[0]);
+        GrammarAssert.assertSameRules(nr + " " + p[0] + "," + p[1] + "," + p[2],
+            grammar.toGrammarRulesData(),
+            TokenGrammarFactory.series2RePairRules(series, p[0], p[1], p[2], nr, 0.01));
+      }
+    }
+  }
+}
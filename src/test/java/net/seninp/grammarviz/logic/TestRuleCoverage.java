@@ -0,0 +1,135 @@
+package net.seninp.grammarviz.logic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.gi.logic.GrammarRuleRecord;
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.logic.RuleInterval;
+
+/**
+ * The difference array rule coverage against the point by point one, for all the weightings,
+ * with and without R0, on one thread and on several partitions; and the minimum the point by
+ * point loop observed.
+ */
+public class TestRuleCoverage {
+
+  @Test
+  public void testAgreesWithPointByPointCount() {
+    checkAllStrategies(randomRules(new Random(42L), 40, 5, 500), 500);
+  }
+
+  @Test
+  public void testPartitionsWhenIntervalsOutnumberPoints() {
+    // twenty thousand intervals over a hundred points, the partitioned path kicks in
+    checkAllStrategies(randomRules(new Random(7L), 400, 50, 100), 100);
+  }
+
+  @Test
+  public void testClipsIntervalsToTheSeries() {
+    GrammarRules rules = new GrammarRules();
+    rules.addRule(rule(0, 1, 1, new int[] { 0, 10 }));
+    rules.addRule(rule(1, 2, 3, new int[] { -3, 2 }, new int[] { 8, 15 }, new int[] { 4, 4 }));
+
+    assertArrayEquals(new int[] { 1, 1, 0, 0, 0, 0, 0, 0, 1, 1 }, RuleCoverage.compute(rules, 10));
+    assertArrayEquals(new int[] { 7, 7, 1, 1, 1, 1, 1, 1, 7, 7 },
+        RuleCoverage.compute(rules, 10, CoverageCountStrategy.PRODUCT, false, 1));
+  }
+
+  @Test
+  public void testMinObservedCoverageAgreesWithPointByPointLoop() {
+    Random random = new Random(11L);
+    for (int it = 0; it < 50; it++) {
+      GrammarRules rules = randomRules(random, 1 + random.nextInt(40), 5, 300);
+      for (CoverageCountStrategy strategy : CoverageCountStrategy.values()) {
+        assertEquals(strategy + ", rules set " + it, naiveMinObserved(rules, 300, strategy),
+            RuleCoverage.minObservedCoverage(rules, 300, strategy));
+      }
+    }
+    assertEquals(Integer.MAX_VALUE,
+        RuleCoverage.minObservedCoverage(new GrammarRules(), 10, CoverageCountStrategy.COUNT));
+  }
+
+  private static void checkAllStrategies(GrammarRules rules, int seriesLength) {
+    for (CoverageCountStrategy strategy : CoverageCountStrategy.values()) {
+      for (boolean skipR0 : new boolean[] { true, false }) {
+        int[] expected = naiveCoverage(rules, seriesLength, strategy, skipR0);
+        for (int threadsNum : new int[] { 1, 2, 4 }) {
+          assertArrayEquals(strategy + ", skip R0: " + skipR0 + ", threads: " + threadsNum,
+              expected, RuleCoverage.compute(rules, seriesLength, strategy, skipR0, threadsNum));
+        }
+      }
+    }
+  }
+
+  private static int[] naiveCoverage(GrammarRules rules, int seriesLength,
+      CoverageCountStrategy strategy, boolean skipR0) {
+    int[] res = new int[seriesLength];
+    for (GrammarRuleRecord rule : rules) {
+      if (skipR0 && 0 == rule.ruleNumber()) {
+        continue;
+      }
+      for (RuleInterval interval : rule.getRuleIntervals()) {
+        for (int i = Math.max(0, interval.getStart()); i < Math.min(seriesLength,
+            interval.getEnd()); i++) {
+          res[i] += strategy.weight(rule);
+        }
+      }
+    }
+    return res;
+  }
+
+  private static int naiveMinObserved(GrammarRules rules, int seriesLength,
+      CoverageCountStrategy strategy) {
+    int[] coverage = new int[seriesLength];
+    int res = Integer.MAX_VALUE;
+    for (GrammarRuleRecord rule : rules) {
+      if (0 == rule.ruleNumber()) {
+        continue;
+      }
+      for (RuleInterval interval : rule.getRuleIntervals()) {
+        for (int i = Math.max(0, interval.getStart()); i < Math.min(seriesLength,
+            interval.getEnd()); i++) {
+          coverage[i] += strategy.weight(rule);
+          res = Math.min(res, coverage[i]);
+        }
+      }
+    }
+    return res;
+  }
+
+  private static GrammarRules randomRules(Random random, int rulesNum, int maxOccurrences,
+      int seriesLength) {
+    GrammarRules rules = new GrammarRules();
+    for (int r = 0; r < rulesNum; r++) {
+      int[][] intervals = new int[1 + random.nextInt(maxOccurrences)][];
+      for (int i = 0; i < intervals.length; i++) {
+        int start = random.nextInt(seriesLength);
+        intervals[i] = new int[] { start, start + 1 + random.nextInt(seriesLength / 4) };
+      }
+      rules.addRule(rule(r, 1 + random.nextInt(4), 2 + random.nextInt(20), intervals));
+    }
+    return rules;
+  }
+
+  private static GrammarRuleRecord rule(int number, int level, int yield, int[]... intervals) {
+    GrammarRuleRecord rule = new GrammarRuleRecord();
+    rule.setRuleNumber(number);
+    rule.setRuleLevel(level);
+    rule.setRuleYield(yield);
+    ArrayList<RuleInterval> ruleIntervals = new ArrayList<RuleInterval>();
+    int[] occurrences = new int[intervals.length];
+    for (int i = 0; i < intervals.length; i++) {
+      ruleIntervals.add(new RuleInterval(intervals[i][0], intervals[i][1]));
+      occurrences[i] = Math.max(0, intervals[i][0]);
+    }
+    rule.setRuleIntervals(ruleIntervals);
+    rule.setOccurrences(occurrences);
+    return rule;
+  }
+}
@@ -0,0 +1,102 @@
+package net.seninp.grammarviz.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.sequitur.SAXRule;
+import net.seninp.gi.sequitur.SAXTerminal;
+import net.seninp.gi.sequitur.SequiturFactory;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The instance based Sequitur against the jmotif one: the same rules on random token streams of
+ * small dictionaries, which make the rules nest and get expanded, on the grammar snapshots taken
+ * while the tokens are being added, and when the inferences run concurrently.
+ */
+public class TestSequiturEngine {
+
+  private static final String[] WORDS = { "aa", "bb", "cc", "dd" };
+
+  @Test
+  public void testRandomStreamsMatchJmotif() throws Exception {
+    Random random = new Random(11L);
+    for (int it = 0; it < 300; it++) {
+      int dictionary = 1 + random.nextInt(WORDS.length);
+      int[] tokens = new int[random.nextInt(400)];
+      for (int i = 0; i < tokens.length; i++) {
+        // periodic streams with some noise, or plain random ones
+        tokens[i] = (0 == it % 2 && random.nextInt(10) < 8) ? i % dictionary
+            : random.nextInt(dictionary);
+      }
+      StringBuilder sb = new StringBuilder();
+      SequiturEngine engine = new SequiturEngine(random.nextInt(32));
+      for (int token : tokens) {
+        sb.append(WORDS[token]).append(' ');
+        engine.add(token);
+      }
+      GrammarRules expected = SequiturFactory.runSequitur(sb.toString()).toGrammarRulesData();
+      GrammarAssert.assertSameRules("stream " + it, expected,
+          engine.toGrammarRules(t -> WORDS[t]));
+    }
+  }
+
+  @Test
+  public void testSnapshotsMatchJmotif() throws Exception {
+    Random random = new Random(5L);
+    SAXRule.reset();
+    SAXRule grammar = new SAXRule();
+    SequiturEngine engine = new SequiturEngine();
+    for (int i = 0; i < 600; i++) {
+      int token = (random.nextInt(10) < 7) ? (i / 2) % 3 : random.nextInt(WORDS.length);
+      grammar.last().insertAfter(new SAXTerminal(WORDS[token], i));
+      grammar.last().p.check();
+      engine.add(token);
+      if (0 == i % 50) {
+        GrammarAssert.assertSameRules("snapshot " + i, grammar.toGrammarRulesData(),
+            engine.toGrammarRules(t -> WORDS[t]));
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentInferences() throws Exception {
+    final double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv",
+        0, 0);
+    final int[][] params = { { 100, 4, 4 }, { 120, 7, 3 }, { 50, 6, 10 }, { 30, 13, 5 },
+        { 80, 5, 6 }, { 60, 3, 3 } };
+    List<GrammarRules> expected = new ArrayList<GrammarRules>();
+    for (int[] p : params) {
+      expected.add(TokenGrammarFactory.series2SequiturRules(series, p[0], p[1], p[2],
+          NumerosityReductionStrategy.EXACT, 0.01));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(params.length);
+    try {
+      List<Future<GrammarRules>> futures = new ArrayList<Future<GrammarRules>>();
+      for (final int[] p : params) {
+        futures.add(executor.submit(new Callable<GrammarRules>() {
+          @Override
+          public GrammarRules call() throws Exception {
+            return TokenGrammarFactory.series2SequiturRules(series, p[0], p[1], p[2],
+                NumerosityReductionStrategy.EXACT, 0.01);
+          }
+        }));
+      }
+      for (int i = 0; i < params.length; i++) {
+        GrammarAssert.assertSameRules("params " + i, expected.get(i), futures.get(i).get());
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
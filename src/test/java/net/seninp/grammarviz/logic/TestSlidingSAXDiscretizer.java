@@ -0,0 +1,118 @@
+package net.seninp.grammarviz.logic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.SAXProcessor;
+import net.seninp.jmotif.sax.TSProcessor;
+import net.seninp.jmotif.sax.alphabet.NormalAlphabet;
+import net.seninp.jmotif.sax.datastructure.SAXRecords;
+
+/**
+ * The sliding SAX discretizer against the jmotif one: the same words at the same positions, for
+ * all the numerosity reductions, on real data, on a series with a large offset and on one with
+ * flat stretches.
+ */
+public class TestSlidingSAXDiscretizer {
+
+  private static final double Z = 0.01;
+
+  private static final int[][] PARAMS = { { 100, 4, 4 }, { 120, 7, 3 }, { 50, 6, 10 },
+      { 20, 20, 5 }, { 17, 5, 20 }, { 2, 1, 2 } };
+
+  @Test
+  public void testEcgMatchesJmotif() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    for (int[] p : PARAMS) {
+      PackedSAXWords words = checkAllStrategies(series, p[0], p[1], p[2]);
+      if (p[0] > 2) {
+        assertTrue(words.getExactWindows() * 100 < series.length);
+      }
+    }
+  }
+
+  @Test
+  public void testLargeOffsetMatchesJmotif() throws Exception {
+    Random random = new Random(42L);
+    double[] series = new double[3000];
+    double v = 1e6;
+    for (int i = 0; i < series.length; i++) {
+      v += random.nextGaussian();
+      series[i] = v;
+    }
+    for (int[] p : PARAMS) {
+      checkAllStrategies(series, p[0], p[1], p[2]);
+    }
+  }
+
+  @Test
+  public void testFlatStretchesMatchJmotif() throws Exception {
+    Random random = new Random(7L);
+    double[] series = new double[2000];
+    for (int i = 0; i < series.length; i++) {
+      // flat, nearly flat around the threshold, and noisy stretches
+      int stretch = (i / 200) % 3;
+      series[i] = (0 == stretch) ? 5D
+          : (1 == stretch) ? 5D + Z * random.nextGaussian() : Math.sin(i / 10D) * 3D;
+    }
+    for (int[] p : PARAMS) {
+      checkAllStrategies(series, p[0], p[1], p[2]);
+    }
+  }
+
+  @Test
+  public void testPacking() throws Exception {
+    assertTrue(SlidingSAXDiscretizer.fits(31, 4));
+    assertFalse(SlidingSAXDiscretizer.fits(32, 4));
+    assertTrue(SlidingSAXDiscretizer.fits(12, 20));
+    assertFalse(SlidingSAXDiscretizer.fits(13, 20));
+
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    PackedSAXWords words = new SlidingSAXDiscretizer(100, 5, 4, NumerosityReductionStrategy.NONE,
+        Z).discretize(series);
+    SAXRecords expected = jmotif(series, 100, 5, 4, NumerosityReductionStrategy.NONE);
+    for (int i = 0; i < words.size(); i++) {
+      char[] word = expected.getByIndex(words.getPosition(i)).getPayload();
+      assertArrayEquals(word, words.getWord(i));
+      // the codes compare as the words do
+      if (i > 0) {
+        assertEquals(Integer.signum(String.valueOf(words.getWord(i - 1))
+            .compareTo(String.valueOf(word))),
+            Long.signum(Long.compare(words.getCode(i - 1), words.getCode(i))));
+      }
+    }
+  }
+
+  private static PackedSAXWords checkAllStrategies(double[] series, int window, int paa,
+      int alphabet) throws Exception {
+    PackedSAXWords res = null;
+    for (NumerosityReductionStrategy nr : NumerosityReductionStrategy.values()) {
+      String scenario = "window " + window + ", PAA " + paa + ", alphabet " + alphabet + ", " + nr;
+      SAXRecords expected = jmotif(series, window, paa, alphabet, nr);
+      PackedSAXWords words = new SlidingSAXDiscretizer(window, paa, alphabet, nr, Z)
+          .discretize(series);
+      SAXRecords actual = words.toSAXRecords();
+      assertEquals(scenario, expected.getAllIndices(), actual.getAllIndices());
+      assertEquals(scenario, expected.getSAXString(" "), actual.getSAXString(" "));
+      assertEquals(scenario, expected.getSAXString(" "), SlidingSAXDiscretizer
+          .ts2saxViaWindow(series, window, paa, alphabet, nr, Z).getSAXString(" "));
+      if (NumerosityReductionStrategy.NONE.equals(nr)) {
+        res = words;
+      }
+    }
+    return res;
+  }
+
+  private static SAXRecords jmotif(double[] series, int window, int paa, int alphabet,
+      NumerosityReductionStrategy nr) throws Exception {
+    return new SAXProcessor().ts2saxViaWindow(series, window, paa,
+        new NormalAlphabet().getCuts(alphabet), nr, Z);
+  }
+}
@@ -0,0 +1,60 @@
+package net.seninp.grammarviz.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.seninp.gi.logic.GrammarRules;
+import net.seninp.gi.sequitur.SequiturFactory;
+import net.seninp.jmotif.sax.NumerosityReductionStrategy;
+import net.seninp.jmotif.sax.TSProcessor;
+
+/**
+ * The token stream Sequitur pipeline against the jmotif string one: the same rules, occurrences
+ * and intervals.
+ */
+public class TestTokenGrammarFactory {
+
+  private static final double Z = 0.01;
+
+  private static final int[][] PARAMS = { { 100, 4, 4 }, { 120, 7, 3 }, { 50, 6, 10 },
+      { 30, 13, 5 } };
+
+  @Test
+  public void testSameRulesAsSequiturFactory() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    for (int[] p : PARAMS) {
+      for (NumerosityReductionStrategy nr : NumerosityReductionStrategy.values()) {
+        String scenario = "window " + p[0] + ", PAA " + p[1] + ", alphabet " + p[2] + ", " + nr;
+        GrammarRules expected = SequiturFactory.series2SequiturRules(series, p[0], p[1], p[2], nr,
+            Z);
+        GrammarRules actual = TokenGrammarFactory.series2SequiturRules(series, p[0], p[1], p[2],
+            nr, Z);
+        GrammarAssert.assertSameRules(scenario, expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testTokenDictionary() throws Exception {
+    double[] series = TSProcessor.readFileColumn("src/resources/test-data/ecg0606_1.csv", 0, 0);
+    PackedSAXWords words = new SlidingSAXDiscretizer(100, 4, 4, NumerosityReductionStrategy.EXACT,
+        Z).discretize(series);
+    SAXTokens tokens = words.toTokens();
+    assertEquals(words.size(), tokens.size());
+    int next = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      int token = tokens.getToken(i);
+      // the ids are handed out in the order of the first appearance
+      if (token == next) {
+        next++;
+      }
+      assertTrue(token < next);
+      assertEquals(words.getCode(i), tokens.getCode(token));
+      assertEquals(String.valueOf(words.getWord(i)), tokens.getWord(token));
+      assertEquals(words.getPosition(i), tokens.getPosition(i));
+    }
+    assertEquals(next, tokens.getDictionarySize());
+  }
+}
@@ -7,8 +7,8 @@ import java.util.ArrayList;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import net.seninp.gi.GIAlgorithm;
-import net.seninp.gi.rulepruner.RulePruner;
 import net.seninp.gi.rulepruner.SampledPoint;
+import net.seninp.grammarviz.logic.GrammarSampler;
 import net.seninp.jmotif.sax.NumerosityReductionStrategy;
 import net.seninp.jmotif.sax.TSProcessor;
 
@@ -30,7 +30,7 @@ public class TestParamsSamplerGrid {
 
   private static ArrayList<SampledPoint> run(int[] boundaries, int winLimit) throws Exception {
     ArrayList<SampledPoint> res = new ArrayList<SampledPoint>();
-    GrammarvizParamsSampler.sampleGrid(new RulePruner(ts), boundaries, winLimit,
+    GrammarvizParamsSampler.sampleGrid(new GrammarSampler(ts), boundaries, winLimit,
         GIAlgorithm.SEQUITUR, NumerosityReductionStrategy.EXACT, 0.01, res);
     return res;
   }